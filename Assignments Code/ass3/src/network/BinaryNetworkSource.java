@@ -0,0 +1,313 @@
+package network;
+
+import exceptions.NoNameException;
+import exceptions.TransportException;
+import exceptions.TransportFormatException;
+import routes.BusRoute;
+import routes.FerryRoute;
+import routes.Route;
+import routes.TrainRoute;
+import stops.Stop;
+import vehicles.Bus;
+import vehicles.Ferry;
+import vehicles.PublicTransport;
+import vehicles.Train;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+
+/**
+ * Decodes a network saved in the binary format written by
+ * {@link BinaryNetworkWriter}.
+ *
+ * <p>The format starts with {@link #MAGIC} and the format version, followed
+ * by a table of every string in the network. The stops, routes and vehicles
+ * then follow in the same order as in the text format (see
+ * {@link Network#Network(String)}), each section starting with its count.
+ * Strings are referred to by their position in the table, the stops of each
+ * route by their position in the stop section, and the route of each vehicle
+ * by its position in the route section. Counts and positions are written as
+ * unsigned varints (7 bits per byte, least significant first, with the top
+ * bit set on every byte but the last), and other integers as zigzag varints,
+ * so that small negative numbers are also short.
+ *
+ * <p>Each stop is its name and coordinates; each route its type, name,
+ * number and stops; each vehicle its type, id, capacity, route and either its
+ * carriage count (for trains) or its registration number or ferry type.
+ * Anything which cannot be decoded, including trailing bytes, causes a
+ * TransportFormatException, as in the text format.
+ */
+class BinaryNetworkSource implements NetworkSource {
+    /**
+     * The first bytes of a binary network file. The first byte is never the
+     * first byte of a valid text network file.
+     */
+    static final byte[] MAGIC = {(byte) 0x89, 'T', 'N', 'B'};
+
+    /**
+     * The version of the binary format.
+     */
+    static final int VERSION = 1;
+
+    /**
+     * The types of routes and vehicles, by the code they are saved as.
+     */
+    static final String[] TYPES = {"bus", "train", "ferry"};
+
+    // the stream the network is read from
+    private CheckedInputStream input;
+
+    // every string in the network, by position in the string table
+    private String[] strings;
+
+    /**
+     * Creates a source which decodes the given stream, reading its header
+     * and string table.
+     *
+     * @param input The stream to decode, positioned at the magic bytes.
+     * @throws IOException If the stream cannot be read.
+     * @throws TransportFormatException If the stream is not a binary network
+     *         of a known version, or its string table is incomplete.
+     */
+    BinaryNetworkSource(InputStream input)
+            throws IOException, TransportFormatException {
+        this.input = new CheckedInputStream(input, new CRC32());
+        try {
+            for (byte b : MAGIC) {
+                if (readByte() != (b & 0xFF)) {
+                    throw new TransportFormatException();
+                }
+            }
+            if (readVarint() != VERSION) {
+                throw new TransportFormatException();
+            }
+            // the sizes are not trusted until the bytes they cover are read
+            int count = readVarint();
+            List<String> table = new ArrayList<>();
+            byte[] bytes = new byte[64];
+            for (int i = 0; i < count; i++) {
+                int length = readVarint();
+                bytes = readBytes(bytes, length);
+                table.add(new String(bytes, 0, length,
+                        StandardCharsets.UTF_8));
+            }
+            strings = table.toArray(new String[0]);
+        } catch (EOFException | NumberFormatException e) {
+            throw new TransportFormatException();
+        }
+    }
+
+    /**
+     * Returns whether the given stream starts with the magic bytes of a
+     * binary network, leaving the stream at the same position.
+     *
+     * @param input The stream to check, which must support mark and reset.
+     * @return True if the stream holds a binary network, false otherwise.
+     * @throws IOException If the stream cannot be read.
+     */
+    static boolean isBinary(InputStream input) throws IOException {
+        input.mark(MAGIC.length);
+        try {
+            for (byte b : MAGIC) {
+                if (input.read() != (b & 0xFF)) {
+                    return false;
+                }
+            }
+            return true;
+        } finally {
+            input.reset();
+        }
+    }
+
+    @Override
+    public int nextCount() throws IOException {
+        try {
+            return readVarint();
+        } catch (EOFException e) {
+            throw new NoSuchElementException();
+        }
+    }
+
+    @Override
+    public Stop nextStop() throws IOException, TransportFormatException {
+        try {
+            String name = readString();
+            int x = readSignedVarint();
+            int y = readSignedVarint();
+            return new Stop(name, x, y);
+        } catch (EOFException | NumberFormatException | NoNameException e) {
+            throw new TransportFormatException();
+        }
+    }
+
+    @Override
+    public Route nextRoute(List<Stop> stops)
+            throws IOException, TransportFormatException {
+        try {
+            String type = readType();
+            String name = readString();
+            int number = readSignedVarint();
+            Route route;
+            switch (type) {
+                case "train":
+                    route = new TrainRoute(name, number);
+                    break;
+                case "ferry":
+                    route = new FerryRoute(name, number);
+                    break;
+                default:
+                    route = new BusRoute(name, number);
+            }
+            int count = readVarint();
+            for (int i = 0; i < count; i++) {
+                route.addStop(stops.get(readIndex(stops.size())));
+            }
+            return route;
+        } catch (EOFException | NumberFormatException e) {
+            throw new TransportFormatException();
+        }
+    }
+
+    @Override
+    public PublicTransport nextVehicle(List<Route> routes)
+            throws IOException, TransportFormatException {
+        try {
+            String type = readType();
+            int id = readSignedVarint();
+            int capacity = readSignedVarint();
+            Route route = routes.get(readIndex(routes.size()));
+            PublicTransport vehicle;
+            switch (type) {
+                case "train":
+                    vehicle = new Train(id, capacity, route,
+                            readSignedVarint());
+                    break;
+                case "ferry":
+                    vehicle = new Ferry(id, capacity, route, readString());
+                    break;
+                default:
+                    vehicle = new Bus(id, capacity, route, readString());
+            }
+            route.addTransport(vehicle);
+            return vehicle;
+        } catch (EOFException | NumberFormatException
+                | TransportException e) {
+            throw new TransportFormatException();
+        }
+    }
+
+    @Override
+    public boolean hasNext() throws IOException {
+        return input.read() != -1;
+    }
+
+    @Override
+    public long checksum() {
+        return input.getChecksum().getValue();
+    }
+
+    /*
+     * Reads a single byte, throwing EOFException at the end of the stream.
+     */
+    private int readByte() throws IOException {
+        int b = input.read();
+        if (b < 0) {
+            throw new EOFException();
+        }
+        return b;
+    }
+
+    /*
+     * Reads the given number of bytes into the start of the given array,
+     * returning the array they were read into. The array is only grown as
+     * the bytes arrive, so a corrupt length cannot exhaust the heap before
+     * the end of the stream is reached.
+     */
+    private byte[] readBytes(byte[] bytes, int length) throws IOException {
+        int read = 0;
+        while (read < length) {
+            if (read == bytes.length) {
+                bytes = Arrays.copyOf(bytes,
+                        (int) Math.min(length, 2L * bytes.length));
+            }
+            int count = input.read(bytes, read,
+                    Math.min(length, bytes.length) - read);
+            if (count < 0) {
+                throw new EOFException();
+            }
+            read += count;
+        }
+        return bytes;
+    }
+
+    /*
+     * Reads an unsigned varint, throwing NumberFormatException if it does not
+     * fit in a non-negative int.
+     */
+    private int readVarint() throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            int b = readByte();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                if (value > Integer.MAX_VALUE) {
+                    throw new NumberFormatException();
+                }
+                return (int) value;
+            }
+        }
+        throw new NumberFormatException();
+    }
+
+    /*
+     * Reads a zigzag encoded varint.
+     */
+    private int readSignedVarint() throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            int b = readByte();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                if (value > 0xFFFFFFFFL) {
+                    throw new NumberFormatException();
+                }
+                int zigzag = (int) value;
+                return (zigzag >>> 1) ^ -(zigzag & 1);
+            }
+        }
+        throw new NumberFormatException();
+    }
+
+    /*
+     * Reads a position below the given size.
+     */
+    private int readIndex(int size) throws IOException {
+        int index = readVarint();
+        if (index >= size) {
+            throw new NumberFormatException();
+        }
+        return index;
+    }
+
+    /*
+     * Reads a reference to a string in the string table.
+     */
+    private String readString() throws IOException {
+        return strings[readIndex(strings.length)];
+    }
+
+    /*
+     * Reads the code of a route or vehicle type.
+     */
+    private String readType() throws IOException {
+        return TYPES[readIndex(TYPES.length)];
+    }
+}
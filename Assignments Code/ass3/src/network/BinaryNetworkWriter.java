@@ -0,0 +1,198 @@
+package network;
+
+import routes.Route;
+import stops.Stop;
+import vehicles.Bus;
+import vehicles.Ferry;
+import vehicles.PublicTransport;
+import vehicles.Train;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * Encodes a network in the binary format decoded by
+ * {@link BinaryNetworkSource}.
+ *
+ * <p>Every distinct name, registration number and ferry type is written once
+ * to the string table, however many stops, routes or vehicles share it, and
+ * each route refers to its stops by position rather than by name.
+ */
+final class BinaryNetworkWriter {
+    // the stream the network is written to
+    private CheckedOutputStream output;
+
+    // the position of each string in the string table
+    private Map<String, Integer> strings;
+
+    // the position of each stop and route in the network
+    private Map<Stop, Integer> stopIndices;
+    private Map<Route, Integer> routeIndices;
+
+    /*
+     * Creates a writer for the given stream.
+     */
+    private BinaryNetworkWriter(OutputStream output) {
+        this.output = new CheckedOutputStream(output, new CRC32());
+        strings = new HashMap<>();
+        stopIndices = new IdentityHashMap<>();
+        routeIndices = new IdentityHashMap<>();
+    }
+
+    /**
+     * Writes the given stops, routes and vehicles to the given stream in the
+     * binary network format. The stream is not closed or flushed.
+     *
+     * @param stops The stops of the network.
+     * @param routes The routes of the network.
+     * @param vehicles The vehicles of the network.
+     * @param output The stream to write to.
+     * @return The checksum of the bytes up to the end of the routes, as
+     *         {@link BinaryNetworkSource#checksum()} returns after reading
+     *         them.
+     * @throws IOException If the stream cannot be written to, or a route or
+     *         vehicle refers to a stop or route which is not in the network,
+     *         and so could not be decoded.
+     */
+    static long write(List<Stop> stops, List<Route> routes,
+                      List<PublicTransport> vehicles, OutputStream output)
+            throws IOException {
+        return new BinaryNetworkWriter(output).write(stops, routes, vehicles);
+    }
+
+    /*
+     * Writes the network, returning the checksum of its stops and routes.
+     */
+    private long write(List<Stop> stops, List<Route> routes,
+                       List<PublicTransport> vehicles) throws IOException {
+        List<String> table = new ArrayList<>();
+        for (Stop stop : stops) {
+            stopIndices.putIfAbsent(stop, stopIndices.size());
+            intern(stop.getName(), table);
+        }
+        for (Route route : routes) {
+            routeIndices.putIfAbsent(route, routeIndices.size());
+            intern(route.getName(), table);
+        }
+        for (PublicTransport vehicle : vehicles) {
+            intern(extraOf(vehicle), table);
+        }
+
+        output.write(BinaryNetworkSource.MAGIC);
+        writeVarint(BinaryNetworkSource.VERSION);
+        writeVarint(table.size());
+        for (String string : table) {
+            byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+            writeVarint(bytes.length);
+            output.write(bytes);
+        }
+
+        writeVarint(stops.size());
+        for (Stop stop : stops) {
+            writeVarint(strings.get(stop.getName()));
+            writeSignedVarint(stop.getX());
+            writeSignedVarint(stop.getY());
+        }
+
+        writeVarint(routes.size());
+        for (Route route : routes) {
+            writeVarint(typeOf(route.getType()));
+            writeVarint(strings.get(route.getName()));
+            writeSignedVarint(route.getRouteNumber());
+            List<Stop> onRoute = route.getStopsOnRoute();
+            writeVarint(onRoute.size());
+            for (Stop stop : onRoute) {
+                writeVarint(indexOf(stopIndices, stop));
+            }
+        }
+        long checksum = output.getChecksum().getValue();
+
+        writeVarint(vehicles.size());
+        for (PublicTransport vehicle : vehicles) {
+            writeVarint(typeOf(vehicle.getType()));
+            writeSignedVarint(vehicle.getId());
+            writeSignedVarint(vehicle.getCapacity());
+            writeVarint(indexOf(routeIndices, vehicle.getRoute()));
+            if (vehicle instanceof Train) {
+                writeSignedVarint(((Train) vehicle).getCarriageCount());
+            } else {
+                writeVarint(strings.get(extraOf(vehicle)));
+            }
+        }
+        return checksum;
+    }
+
+    /*
+     * Adds the given string to the string table, unless it is null or
+     * already there.
+     */
+    private void intern(String string, List<String> table) {
+        if (string != null && !strings.containsKey(string)) {
+            strings.put(string, table.size());
+            table.add(string);
+        }
+    }
+
+    /*
+     * Returns the registration number or ferry type of the given vehicle, or
+     * null for a train.
+     */
+    private static String extraOf(PublicTransport vehicle) {
+        if (vehicle instanceof Bus) {
+            return ((Bus) vehicle).getRegistrationNumber();
+        } else if (vehicle instanceof Ferry) {
+            return ((Ferry) vehicle).getFerryType();
+        }
+        return null;
+    }
+
+    /*
+     * Returns the code the given route or vehicle type is saved as.
+     */
+    private static int typeOf(String type) throws IOException {
+        for (int i = 0; i < BinaryNetworkSource.TYPES.length; i++) {
+            if (BinaryNetworkSource.TYPES[i].equals(type)) {
+                return i;
+            }
+        }
+        throw new IOException("unknown type " + type);
+    }
+
+    /*
+     * Returns the position of the given stop or route in the network.
+     */
+    private static <T> int indexOf(Map<T, Integer> indices, T element)
+            throws IOException {
+        Integer index = indices.get(element);
+        if (index == null) {
+            throw new IOException(element + " is not in the network");
+        }
+        return index;
+    }
+
+    /*
+     * Writes a non-negative int as an unsigned varint.
+     */
+    private void writeVarint(int value) throws IOException {
+        while ((value & ~0x7F) != 0) {
+            output.write((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        output.write(value);
+    }
+
+    /*
+     * Writes an int as a zigzag encoded varint.
+     */
+    private void writeSignedVarint(int value) throws IOException {
+        writeVarint((value << 1) ^ (value >> 31));
+    }
+}
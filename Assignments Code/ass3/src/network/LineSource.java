@@ -0,0 +1,88 @@
+package network;
+
+import exceptions.TransportFormatException;
+import routes.Route;
+import stops.Stop;
+import vehicles.PublicTransport;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.zip.CRC32;
+
+/**
+ * Reads the lines of a network file one at a time from a reader, decoding
+ * each with the decode method of the class it represents.
+ */
+class LineSource implements NetworkSource {
+    // the reader the lines are read from
+    private BufferedReader reader;
+
+    // the line read ahead by hasNext(), or null if there is none
+    private String next;
+
+    // the checksum of the lines consumed so far
+    private CRC32 checksum;
+
+    /**
+     * Creates a source which reads lines from the given reader.
+     *
+     * @param reader The reader to read the lines from.
+     */
+    LineSource(BufferedReader reader) {
+        this.reader = reader;
+        this.checksum = new CRC32();
+    }
+
+    @Override
+    public int nextCount() throws IOException {
+        return Integer.parseInt(next().trim());
+    }
+
+    @Override
+    public Stop nextStop() throws IOException, TransportFormatException {
+        return Stop.decode(next());
+    }
+
+    @Override
+    public Route nextRoute(List<Stop> stops)
+            throws IOException, TransportFormatException {
+        return Route.decode(next(), stops);
+    }
+
+    @Override
+    public PublicTransport nextVehicle(List<Route> routes)
+            throws IOException, TransportFormatException {
+        return PublicTransport.decode(next(), routes);
+    }
+
+    @Override
+    public boolean hasNext() throws IOException {
+        if (next == null) {
+            next = reader.readLine();
+        }
+        return next != null;
+    }
+
+    @Override
+    public long checksum() {
+        return checksum.getValue();
+    }
+
+    /*
+     * Returns the next line, throwing NoSuchElementException if the end of
+     * the file has been reached.
+     */
+    private String next() throws IOException {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        String line = next;
+        next = null;
+        checksum.update(line.getBytes(StandardCharsets.UTF_8));
+        checksum.update('\n');
+        return line;
+    }
+}
@@ -0,0 +1,468 @@
+package network;
+
+import exceptions.TransportException;
+import exceptions.TransportFormatException;
+import routes.BusRoute;
+import routes.FerryRoute;
+import routes.Route;
+import routes.TrainRoute;
+import stops.Stop;
+import vehicles.Bus;
+import vehicles.Ferry;
+import vehicles.PublicTransport;
+import vehicles.Train;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.zip.CRC32;
+
+/**
+ * Decodes the lines of a network file in place from a buffer holding the
+ * whole file, usually mapped from the file.
+ *
+ * <p>The delimiters of each line are found by scanning its bytes, and
+ * integers are parsed straight from the bytes, so no string is created for a
+ * line or any of its parts. Only the names which are kept (the names of stops
+ * and routes, and the registration numbers and types of buses and ferries)
+ * are decoded into strings. The stops of each route are looked up by
+ * comparing their bytes with the names of the stops decoded earlier.
+ *
+ * <p>Each line is decoded with exactly the same rules as the decode method
+ * of the class it represents, including the cases in which a
+ * TransportFormatException is thrown. The file is expected to be encoded in
+ * UTF-8.
+ */
+class MappedNetworkSource implements NetworkSource {
+    // the file's contents
+    private ByteBuffer buffer;
+
+    // a view of the buffer used to update the checksum
+    private ByteBuffer view;
+
+    // the position of the start of the next line
+    private int position;
+
+    // the bounds of the line consumed last, excluding its line terminator
+    private int lineStart;
+    private int lineEnd;
+
+    // the checksum of the lines consumed so far
+    private CRC32 checksum;
+
+    // room for the bytes of a name being decoded
+    private byte[] scratch;
+
+    // the position and length of the name of each stop decoded
+    private int[] nameStarts;
+    private int[] nameLengths;
+    private int stopCount;
+
+    // the ordinal + 1 of the first stop with each name, by name hash, or 0
+    private int[] nameIndex;
+
+    // the positions of the commas in the vehicle being decoded
+    private int[] commas;
+
+    // the first route with each route number, and the routes it was built for
+    private Map<Integer, Route> routeNumbers;
+    private int indexedRoutes;
+
+    /**
+     * Creates a source which decodes the bytes between the given buffer's
+     * position and limit.
+     *
+     * @param buffer The buffer holding the network file.
+     */
+    MappedNetworkSource(ByteBuffer buffer) {
+        this.buffer = buffer.slice();
+        this.view = this.buffer.duplicate();
+        this.checksum = new CRC32();
+        this.scratch = new byte[64];
+        this.nameStarts = new int[16];
+        this.nameLengths = new int[16];
+        this.commas = new int[4];
+    }
+
+    @Override
+    public int nextCount() {
+        nextLine();
+        return parseInt(lineStart, lineEnd);
+    }
+
+    @Override
+    public Stop nextStop() throws TransportFormatException {
+        nextLine();
+        int first = indexOf(':', lineStart, lineEnd);
+        int second = first < 0 ? -1 : indexOf(':', first + 1, lineEnd);
+        if (second < 0 || indexOf(':', second + 1, lineEnd) >= 0
+                || first == lineStart) {
+            throw new TransportFormatException();
+        }
+        Stop stop;
+        try {
+            int x = parseInt(first + 1, second);
+            int y = parseInt(second + 1, lineEnd);
+            stop = new Stop(string(lineStart, first), x, y);
+        } catch (NumberFormatException e) {
+            throw new TransportFormatException();
+        }
+
+        if (stopCount == nameStarts.length) {
+            nameStarts = Arrays.copyOf(nameStarts, stopCount * 2);
+            nameLengths = Arrays.copyOf(nameLengths, stopCount * 2);
+        }
+        nameStarts[stopCount] = lineStart;
+        nameLengths[stopCount] = first - lineStart;
+        stopCount++;
+        nameIndex = null;
+        return stop;
+    }
+
+    @Override
+    public Route nextRoute(List<Stop> stops) throws TransportFormatException {
+        nextLine();
+        // a single trailing colon is ignored, but not two
+        int end = lineEnd;
+        if (end > lineStart && buffer.get(end - 1) == ':') {
+            end--;
+        }
+        if (end > lineStart && buffer.get(end - 1) == ':') {
+            throw new TransportFormatException();
+        }
+        int colon = indexOf(':', lineStart, end);
+
+        // trailing commas after the route number are ignored
+        int idEnd = colon < 0 ? end : colon;
+        while (idEnd > lineStart && buffer.get(idEnd - 1) == ',') {
+            idEnd--;
+        }
+        int first = indexOf(',', lineStart, idEnd);
+        int second = first < 0 ? -1 : indexOf(',', first + 1, idEnd);
+        if (second < 0 || indexOf(',', second + 1, idEnd) >= 0) {
+            throw new TransportFormatException();
+        }
+        int number;
+        try {
+            number = parseInt(second + 1, idEnd);
+        } catch (NumberFormatException e) {
+            throw new TransportFormatException();
+        }
+        Route route;
+        if (matches(lineStart, first, "train")) {
+            route = new TrainRoute(string(first + 1, second), number);
+        } else if (matches(lineStart, first, "bus")) {
+            route = new BusRoute(string(first + 1, second), number);
+        } else if (matches(lineStart, first, "ferry")) {
+            route = new FerryRoute(string(first + 1, second), number);
+        } else {
+            throw new TransportFormatException();
+        }
+        if (colon < 0) {
+            return route;
+        }
+
+        // only the part up to the next colon lists the stops
+        int stopsEnd = indexOf(':', colon + 1, end);
+        if (stopsEnd < 0) {
+            stopsEnd = end;
+        }
+        if (stops == null
+                || stopsEnd > colon + 1 && buffer.get(stopsEnd - 1) == '|') {
+            throw new TransportFormatException();
+        }
+        int start = colon + 1;
+        while (start <= stopsEnd) {
+            int bar = indexOf('|', start, stopsEnd);
+            if (bar < 0) {
+                bar = stopsEnd;
+            }
+            Stop stop = findStop(start, bar, stops);
+            if (stop == null) {
+                throw new TransportFormatException();
+            }
+            route.addStop(stop);
+            start = bar + 1;
+        }
+        return route;
+    }
+
+    @Override
+    public PublicTransport nextVehicle(List<Route> routes)
+            throws TransportFormatException {
+        nextLine();
+        if (routes == null) {
+            throw new TransportFormatException();
+        }
+        int count = 0;
+        for (int i = lineStart; i < lineEnd; i++) {
+            if (buffer.get(i) == ',') {
+                if (count == commas.length) {
+                    throw new TransportFormatException();
+                }
+                commas[count++] = i;
+            }
+        }
+        if (count != commas.length || commas[3] == lineEnd - 1) {
+            throw new TransportFormatException();
+        }
+
+        PublicTransport vehicle;
+        try {
+            int id = parseInt(commas[0] + 1, commas[1]);
+            int capacity = parseInt(commas[1] + 1, commas[2]);
+            int routeNumber = parseInt(commas[2] + 1, commas[3]);
+            Route route = routeFromNumber(routeNumber, routes);
+            if (route == null
+                    || !matches(lineStart, commas[0], route.getType())) {
+                throw new TransportFormatException();
+            }
+            int extra = commas[3] + 1;
+            switch (route.getType()) {
+                case "train":
+                    vehicle = new Train(id, capacity, route,
+                            parseInt(extra, lineEnd));
+                    break;
+                case "bus":
+                    vehicle = new Bus(id, capacity, route,
+                            string(extra, lineEnd));
+                    break;
+                case "ferry":
+                    vehicle = new Ferry(id, capacity, route,
+                            string(extra, lineEnd));
+                    break;
+                default:
+                    throw new TransportFormatException();
+            }
+            route.addTransport(vehicle);
+        } catch (NumberFormatException | TransportException e) {
+            throw new TransportFormatException();
+        }
+        return vehicle;
+    }
+
+    @Override
+    public boolean hasNext() {
+        return position < buffer.limit();
+    }
+
+    @Override
+    public long checksum() {
+        return checksum.getValue();
+    }
+
+    /*
+     * Finds the bounds of the next line, ended by "\n", "\r" or "\r\n" as in
+     * BufferedReader.readLine(), and adds it to the checksum.
+     */
+    private void nextLine() {
+        int limit = buffer.limit();
+        if (position >= limit) {
+            throw new NoSuchElementException();
+        }
+        int end = position;
+        while (end < limit) {
+            byte b = buffer.get(end);
+            if (b == '\n' || b == '\r') {
+                break;
+            }
+            end++;
+        }
+        lineStart = position;
+        lineEnd = end;
+        if (end + 1 < limit && buffer.get(end) == '\r'
+                && buffer.get(end + 1) == '\n') {
+            position = end + 2;
+        } else {
+            position = end + 1;
+        }
+
+        view.limit(lineEnd).position(lineStart);
+        checksum.update(view);
+        checksum.update('\n');
+    }
+
+    /*
+     * Returns the position of the first of the given character between the
+     * given positions, or -1 if there is none.
+     */
+    private int indexOf(char c, int start, int end) {
+        for (int i = start; i < end; i++) {
+            if (buffer.get(i) == c) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /*
+     * Returns whether the bytes between the given positions are the given
+     * ASCII text.
+     */
+    private boolean matches(int start, int end, String text) {
+        if (end - start != text.length()) {
+            return false;
+        }
+        for (int i = 0; i < text.length(); i++) {
+            if (buffer.get(start + i) != text.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /*
+     * Parses the bytes between the given positions as an integer in the same
+     * way as Integer.parseInt(String.trim()).
+     */
+    private int parseInt(int start, int end) {
+        while (start < end && (buffer.get(start) & 0xFF) <= ' ') {
+            start++;
+        }
+        while (end > start && (buffer.get(end - 1) & 0xFF) <= ' ') {
+            end--;
+        }
+        int i = start;
+        boolean negative = false;
+        if (i < end && (buffer.get(i) == '-' || buffer.get(i) == '+')) {
+            negative = buffer.get(i) == '-';
+            i++;
+        }
+        if (i == end) {
+            throw new NumberFormatException();
+        }
+        long value = 0;
+        for (; i < end; i++) {
+            int digit = buffer.get(i) - '0';
+            if (digit < 0 || digit > 9) {
+                if (buffer.get(i) < 0) {
+                    // digits from other scripts are also accepted
+                    return Integer.parseInt(string(start, end));
+                }
+                throw new NumberFormatException();
+            }
+            value = value * 10 + digit;
+            if (value > 1L + Integer.MAX_VALUE) {
+                throw new NumberFormatException();
+            }
+        }
+        value = negative ? -value : value;
+        if (value > Integer.MAX_VALUE) {
+            throw new NumberFormatException();
+        }
+        return (int) value;
+    }
+
+    /*
+     * Decodes the bytes between the given positions as a UTF-8 string.
+     */
+    private String string(int start, int end) {
+        int length = end - start;
+        if (length > scratch.length) {
+            scratch = new byte[Math.max(length, scratch.length * 2)];
+        }
+        view.limit(end).position(start);
+        view.get(scratch, 0, length);
+        return new String(scratch, 0, length, StandardCharsets.UTF_8);
+    }
+
+    /*
+     * Returns the first of the given stops whose name is the bytes between the
+     * given positions, or null if there is none.
+     */
+    private Stop findStop(int start, int end, List<Stop> stops) {
+        if (stops.size() != stopCount) {
+            // the stops did not all come from this file
+            String name = string(start, end);
+            for (Stop stop : stops) {
+                if (name.equals(stop.getName())) {
+                    return stop;
+                }
+            }
+            return null;
+        }
+        if (nameIndex == null) {
+            indexNames();
+        }
+        int mask = nameIndex.length - 1;
+        for (int slot = hash(start, end) & mask; nameIndex[slot] != 0;
+                slot = (slot + 1) & mask) {
+            int ordinal = nameIndex[slot] - 1;
+            if (sameBytes(nameStarts[ordinal], nameLengths[ordinal], start,
+                    end - start)) {
+                return stops.get(ordinal);
+            }
+        }
+        return null;
+    }
+
+    /*
+     * Builds the hash index of the names of the stops decoded so far, keeping
+     * the first stop with each name.
+     */
+    private void indexNames() {
+        int size = Integer.highestOneBit(Math.max(stopCount, 1) * 2) * 2;
+        nameIndex = new int[size];
+        int mask = size - 1;
+        for (int ordinal = 0; ordinal < stopCount; ordinal++) {
+            int start = nameStarts[ordinal];
+            int length = nameLengths[ordinal];
+            int slot = hash(start, start + length) & mask;
+            while (nameIndex[slot] != 0 && !sameBytes(
+                    nameStarts[nameIndex[slot] - 1],
+                    nameLengths[nameIndex[slot] - 1], start, length)) {
+                slot = (slot + 1) & mask;
+            }
+            if (nameIndex[slot] == 0) {
+                nameIndex[slot] = ordinal + 1;
+            }
+        }
+    }
+
+    /*
+     * Returns a hash of the bytes between the given positions.
+     */
+    private int hash(int start, int end) {
+        int hash = 0;
+        for (int i = start; i < end; i++) {
+            hash = 31 * hash + buffer.get(i);
+        }
+        return hash ^ (hash >>> 16);
+    }
+
+    /*
+     * Returns whether the two ranges of bytes with the given starts and
+     * lengths hold the same bytes.
+     */
+    private boolean sameBytes(int start, int length, int otherStart,
+                              int otherLength) {
+        if (length != otherLength) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (buffer.get(start + i) != buffer.get(otherStart + i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /*
+     * Returns the first of the given routes with the given route number, or
+     * null if there is none.
+     */
+    private Route routeFromNumber(int number, List<Route> routes) {
+        if (routeNumbers == null || indexedRoutes != routes.size()) {
+            routeNumbers = new HashMap<>();
+            for (Route route : routes) {
+                routeNumbers.putIfAbsent(route.getRouteNumber(), route);
+            }
+            indexedRoutes = routes.size();
+        }
+        return routeNumbers.get(number);
+    }
+}
@@ -3,15 +3,31 @@ package network;
 import exceptions.DuplicateStopException;
 import exceptions.TransportFormatException;
 import routes.Route;
+import stops.Connectivity;
+import stops.ParallelRoutingEngine;
+import stops.RegionRouting;
+import stops.RoutingEngine;
+import stops.RoutingMatrix;
 import stops.Stop;
 import utilities.Writeable;
 import vehicles.PublicTransport;
 
 import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Iterator;
 import java.util.List;
 import java.util.NoSuchElementException;
+import java.util.zip.CRC32;
 
 /**
  * Represents the transportation network, and manages all of the various
@@ -30,6 +46,19 @@ public class Network {
     // all the routes in the network
     private List<Route> routes;
 
+    // the engine used to build the routing tables of a loaded network
+    private RoutingEngine routingEngine;
+
+    // stores the routing tables of every stop in the network
+    private RoutingMatrix routing;
+
+    // stores the routing tables instead of the matrix once the routing has
+    // been partitioned, or null
+    private RegionRouting regions;
+
+    // tracks which stops in the network are connected to each other
+    private Connectivity connectivity;
+
     /**
      * Creates a new empty Network with no stops, vehicles, or routes.
      */
@@ -37,6 +66,9 @@ public class Network {
         this.stops = new ArrayList<>();
         this.vehicles = new ArrayList<>();
         this.routes = new ArrayList<>();
+        this.routingEngine = new ParallelRoutingEngine();
+        this.routing = new RoutingMatrix();
+        this.connectivity = new Connectivity();
     }
 
     /**
@@ -83,7 +115,27 @@ public class Network {
      * bus,412,20,2,ABC123<br>
      *
      * <p>The Network object created should have the stops, routes, and vehicles
-     * contained in the given file.
+     * contained in the given file. The file is decoded line by line as it is
+     * read (see {@link #read(Reader)}), so it is never held in memory all at
+     * once.
+     *
+     * <p>The routing tables of the stops are stored in a single
+     * {@link RoutingMatrix} belonging to the network. Routing tables are not
+     * synchronised as each route is decoded.
+     * Instead, the routing tables of every stop are built in a single pass
+     * once all of the routes have been read.
+     *
+     * <p>If the network was saved along with its routing tables (see
+     * {@link #save(String, boolean)}) and the stops and routes in the file
+     * have not changed since, the saved tables are mapped from the routing
+     * file (see {@link #routingFileFor(String)}) instead of being built.
+     * Changes to the tables are never written back to the routing file. If
+     * the routing file is missing, out of date or cannot be read, the tables
+     * are built as usual.
+     *
+     * <p>Networks saved in the binary format (see {@link #saveBinary(String)})
+     * are recognised by their first bytes and decoded from that format
+     * instead, with a TransportFormatException thrown if they are malformed.
      *
      * @param filename The name of the file to load the network from.
      * @throws IOException If any IO exceptions occur whilst trying to read from
@@ -115,41 +167,186 @@ public class Network {
             throw new IOException();
         }
 
-        // create a file reader
-        BufferedReader reader = new BufferedReader(new FileReader(filename));
-        List<String> lines = new ArrayList<>();
-        String line;
+        InputStream input = new BufferedInputStream(
+                new FileInputStream(filename));
+        try {
+            load(sourceFor(input), filename);
+        } finally {
+            input.close();
+        }
+    }
+
+    /**
+     * Creates a new Network from the text read from the given reader, in the
+     * format described in the {@link #Network(String)} constructor.
+     *
+     * <p>The network is decoded line by line as it is read, so the text is
+     * never held in memory all at once. The reader is read to the end, but is
+     * not closed. As there is no network file, the routing tables are always
+     * built rather than loaded from a routing file.
+     *
+     * @param reader The reader to read the network from.
+     * @return The network read.
+     * @throws IOException If any IO exceptions occur whilst reading, or if
+     *         the reader is null.
+     * @throws TransportFormatException If the text is incorrectly formatted,
+     *         in any of the ways described in the {@link #Network(String)}
+     *         constructor.
+     */
+    public static Network read(Reader reader)
+            throws IOException, TransportFormatException {
+        if (reader == null) {
+            throw new IOException();
+        }
+        Network network = new Network();
+        network.load(new LineSource(reader instanceof BufferedReader
+                ? (BufferedReader) reader : new BufferedReader(reader)), null);
+        return network;
+    }
+
+    /**
+     * Creates a new Network from the UTF-8 text read from the given channel,
+     * as defined in {@link #read(Reader)}.
+     *
+     * <p>If the channel holds a network in the binary format (see
+     * {@link #saveBinary(String)}), it is decoded from that format instead.
+     *
+     * @param channel The channel to read the network from.
+     * @return The network read.
+     * @throws IOException If any IO exceptions occur whilst reading, or if
+     *         the channel is null.
+     * @throws TransportFormatException If the text is incorrectly formatted,
+     *         in any of the ways described in the {@link #Network(String)}
+     *         constructor.
+     */
+    public static Network read(ReadableByteChannel channel)
+            throws IOException, TransportFormatException {
+        if (channel == null) {
+            throw new IOException();
+        }
+        InputStream input = new BufferedInputStream(
+                Channels.newInputStream(channel));
+        if (!BinaryNetworkSource.isBinary(input)) {
+            return read(new InputStreamReader(input, StandardCharsets.UTF_8));
+        }
+        Network network = new Network();
+        network.load(new BinaryNetworkSource(input), null);
+        return network;
+    }
+
+    /**
+     * Creates a new Network from the file indicated by the given filename, as
+     * defined in the {@link #Network(String)} constructor, by mapping the
+     * file into memory and decoding it in place.
+     *
+     * <p>Each line is decoded directly from the bytes of the file, without
+     * creating a string for the line or for any of its parts other than the
+     * names which are kept, so large files are decoded much faster than by
+     * the {@link #Network(String)} constructor. The file must be encoded in
+     * UTF-8. The same network is created, and the same
+     * TransportFormatExceptions are thrown, as by the constructor. Files too
+     * large to be mapped at once, and files in the binary format (see
+     * {@link #saveBinary(String)}), are read as by the constructor instead.
+     *
+     * @param filename The name of the file to load the network from.
+     * @return The network loaded.
+     * @throws IOException If any IO exceptions occur whilst trying to read
+     *         from the file, or if the filename is null.
+     * @throws TransportFormatException If the file is incorrectly formatted,
+     *         in any of the ways described in the {@link #Network(String)}
+     *         constructor.
+     */
+    public static Network map(String filename)
+            throws IOException, TransportFormatException {
+        if (filename == null) {
+            throw new IOException();
+        }
+        Network network = new Network();
+        try (FileChannel channel = FileChannel.open(Paths.get(filename))) {
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE) {
+                return new Network(filename);
+            }
+            MappedByteBuffer buffer = channel.map(
+                    FileChannel.MapMode.READ_ONLY, 0, size);
+            if (isBinary(buffer)) {
+                return new Network(filename);
+            }
+            network.load(new MappedNetworkSource(buffer), filename);
+        }
+        return network;
+    }
 
-        // while the end of file has not been reached.
-        while ((line = reader.readLine()) != null) {
-            lines.add(line);
+    /*
+     * Returns a source which decodes the given stream in the format it is
+     * saved in. The stream must support mark and reset.
+     */
+    private static NetworkSource sourceFor(InputStream input)
+            throws IOException, TransportFormatException {
+        if (BinaryNetworkSource.isBinary(input)) {
+            return new BinaryNetworkSource(input);
         }
-        reader.close();
-        Iterator<String> elements = lines.iterator();
+        return new LineSource(new BufferedReader(new InputStreamReader(input)));
+    }
 
+    /*
+     * Returns whether the given buffer starts with the magic bytes of a
+     * binary network.
+     */
+    private static boolean isBinary(ByteBuffer buffer) {
+        byte[] magic = BinaryNetworkSource.MAGIC;
+        if (buffer.limit() < magic.length) {
+            return false;
+        }
+        for (int i = 0; i < magic.length; i++) {
+            if (buffer.get(i) != magic[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /*
+     * Decodes the stops, routes and vehicles of the network from the given
+     * source, one line at a time. If a network filename is given, the routing
+     * tables are loaded from its routing file when they are up to date.
+     */
+    private void load(NetworkSource elements, String filename)
+            throws IOException, TransportFormatException {
         try {
             // read the stopos
             stops = new ArrayList<>();
-            int stopCount = Integer.parseInt(elements.next().trim());
+            int stopCount = elements.nextCount();
             for (int i = 0; i < stopCount; i++) {
-                String stop = elements.next();
-                stops.add(Stop.decode(stop));
+                stops.add(elements.nextStop());
             }
+            connectivity = new Connectivity();
+            connectivity.addAll(stops);
 
-            // read the routes
+            // read the routes, building the routing tables once at the end
             routes = new ArrayList<>();
-            int routeCount = Integer.parseInt(elements.next().trim());
-            for (int i = 0; i < routeCount; i++) {
-                String route = elements.next();
-                routes.add(Route.decode(route, stops));
+            int routeCount = elements.nextCount();
+            suspendRouting();
+            try {
+                for (int i = 0; i < routeCount; i++) {
+                    routes.add(elements.nextRoute(stops));
+                }
+            } finally {
+                resumeRouting();
+            }
+            routing = filename == null ? null
+                    : loadRouting(filename, elements.checksum());
+            if (routing == null) {
+                routing = new RoutingMatrix(stops.size());
+                routing.addAll(stops);
+                routingEngine.build(stops);
             }
 
             // read the public transport
             vehicles = new ArrayList<>();
-            int vehicleCount = Integer.parseInt(elements.next().trim());
+            int vehicleCount = elements.nextCount();
             for (int i = 0; i < vehicleCount; i++) {
-                String vehicle = elements.next();
-                vehicles.add(PublicTransport.decode(vehicle, routes));
+                vehicles.add(elements.nextVehicle(routes));
             }
 
             // there should be no extra lines in the file
@@ -168,6 +365,9 @@ public class Network {
      * If the stop is already in the list, a DuplicateStopException should be
      * thrown
      *
+     * <p>The stop's routing table is moved into the network's
+     * {@link RoutingMatrix}.
+     *
      * @param stop The stop to add to the network.
      * @throws DuplicateStopException If the given stop already exists in the
      *                                network.
@@ -180,6 +380,8 @@ public class Network {
             throw new DuplicateStopException();
         }
         stops.add(stop);
+        routing.add(stop);
+        connectivity.add(stop);
     }
 
     /**
@@ -206,6 +408,42 @@ public class Network {
             }
         }
         this.stops.addAll(stops);
+        routing.addAll(stops);
+        connectivity.addAll(stops);
+    }
+
+    /**
+     * Removes the given stop from the transportation network.
+     *
+     * <p>The stop is removed from every route in the network (as defined in
+     * {@link Route#removeStop(Stop)}), so that each route continues past the
+     * removed stop, and is no longer recorded as a neighbour of any stop,
+     * including stops with a one-way link to it. The routing tables of the
+     * remaining stops are repaired incrementally as each neighbour link is
+     * removed.
+     *
+     * <p>If the given stop is null or is not in the network, the network
+     * should remain unchanged.
+     *
+     * @param stop The stop to remove from the network.
+     */
+    public void removeStop(Stop stop) {
+        if (stop == null || !stops.remove(stop)) {
+            return;
+        }
+        for (Route route : routes) {
+            while (route.removeStop(stop)) {
+                // remove every occurrence of the stop
+            }
+        }
+        for (Stop neighbour : stop.getNeighbours()) {
+            stop.removeNeighbouringStop(neighbour);
+        }
+        for (Stop previous : stop.getPredecessors()) {
+            previous.removeNeighbouringStop(stop);
+        }
+        routing.remove(stop);
+        connectivity.remove(stop);
     }
 
     /**
@@ -233,6 +471,136 @@ public class Network {
         }
     }
 
+    /**
+     * Removes the given route, and the vehicles on it, from the network.
+     *
+     * <p>Every stop is removed from the route (as defined in
+     * {@link Route#removeStop(Stop)}), so stops which were only next to each
+     * other on this route are no longer recorded as neighbours, and the
+     * routing tables of the network are repaired incrementally.
+     *
+     * <p>If the given route is null or is not in the network, the network
+     * should remain unchanged.
+     *
+     * @param route The route to remove from the network.
+     */
+    public void removeRoute(Route route) {
+        if (route == null || !routes.remove(route)) {
+            return;
+        }
+        Iterator<PublicTransport> iterator = vehicles.iterator();
+        while (iterator.hasNext()) {
+            if (iterator.next().getRoute() == route) {
+                iterator.remove();
+            }
+        }
+
+        List<Stop> onRoute = route.getStopsOnRoute();
+        for (Stop stop : onRoute) {
+            route.removeStop(stop);
+        }
+    }
+
+    /**
+     * Returns the matrix which stores the routing tables of every stop in the
+     * network.
+     *
+     * @return The network's routing matrix.
+     */
+    public RoutingMatrix getRoutingMatrix() {
+        return routing;
+    }
+
+    /**
+     * Moves the routing tables of every stop in the network into the given
+     * matrix, keeping their entries.
+     *
+     * <p>This can be used to store the routing tables of a large network
+     * outside the heap, by passing a matrix created by
+     * {@link RoutingMatrix#offHeap(int)} or
+     * {@link RoutingMatrix#mapped(java.nio.file.Path, int)}. Stops added to
+     * the network later are also stored in the given matrix.
+     *
+     * <p>If the given matrix is null, the network remains unchanged.
+     *
+     * @param matrix The matrix to store the routing tables in.
+     * @throws IllegalStateException If the matrix cannot hold every stop in
+     *         the network.
+     */
+    public void setRoutingMatrix(RoutingMatrix matrix) {
+        if (matrix == null) {
+            return;
+        }
+        routing.transferTo(matrix);
+        routing = matrix;
+        routing.addAll(stops);
+        regions = null;
+    }
+
+    /**
+     * Replaces the routing tables of every stop in the network with views of
+     * a {@link RegionRouting}, which stores far fewer entries than the
+     * network's routing matrix when the network is large.
+     *
+     * <p>The routing tables are rebuilt from the current links between the
+     * stops, and any entries in the routing matrix are discarded. Stops added
+     * to the network later are still stored in the routing matrix. The
+     * routing tables cannot be saved with {@link #save(String, boolean)}
+     * until they are moved back into a matrix with
+     * {@link #setRoutingMatrix(RoutingMatrix)}.
+     *
+     * @return The routing which now stores the routing tables.
+     */
+    public RegionRouting partitionRouting() {
+        regions = new RegionRouting(stops);
+        return regions;
+    }
+
+    /**
+     * Returns an identifier for the set of stops in the network which the
+     * given stop is connected to.
+     *
+     * <p>Two stops are connected if there is a path of neighbour links
+     * between them, such as those added by {@link Route#addStop(Stop)}. Two
+     * stops in the network are connected if and only if they have the same
+     * identifier, but identifiers may change as the network changes.
+     *
+     * @param stop The stop to get the component of.
+     * @return The component of the stop, or -1 if the stop is not in the
+     *         network.
+     */
+    public int getComponentId(Stop stop) {
+        return connectivity.componentOf(stop);
+    }
+
+    /**
+     * Returns the number of stops in the network which the given stop is
+     * connected to (see {@link #getComponentId(Stop)}), including itself.
+     *
+     * @param stop The stop to get the component size of.
+     * @return The number of connected stops, or 0 if the stop is not in the
+     *         network.
+     */
+    public int getComponentSize(Stop stop) {
+        return connectivity.componentSize(stop);
+    }
+
+    /**
+     * Returns whether the two given stops are connected (see
+     * {@link #getComponentId(Stop)}).
+     *
+     * <p>Stops which are not connected cannot be travelled between, so there
+     * is no need to plan a journey between them.
+     *
+     * @param first The first stop.
+     * @param second The second stop.
+     * @return True if both stops are in the network and are connected, false
+     *         otherwise.
+     */
+    public boolean isConnected(Stop first, Stop second) {
+        return connectivity.isConnected(first, second);
+    }
+
     /**
      * Gets all the routes in this network.
      *
@@ -288,9 +656,205 @@ public class Network {
      * file.
      */
     public void save(String filename) throws IOException {
+        save(filename, false);
+    }
+
+    /**
+     * Saves this network to the file indicated by the given filename (as
+     * defined in {@link #save(String)}), optionally saving the routing table
+     * of every stop as well.
+     *
+     * <p>The routing tables are written in a binary format to the routing
+     * file for the given filename (see {@link #routingFileFor(String)}),
+     * along with a checksum of the stops and routes in the network. When the
+     * network is next loaded, the tables are mapped from the routing file
+     * rather than built, as long as the stops and routes are unchanged.
+     * The routing file holds 8 bytes for every pair of stops in the network.
+     *
+     * <p>The routing tables cannot be saved while they are partitioned into
+     * regions (see {@link #partitionRouting()}), or while the cost of any
+     * link is raised (see {@link Stop#setLinkCost(Stop, int)}), as the
+     * network file does not hold link costs and the loaded network would not
+     * match the saved tables.
+     *
+     * @param filename The name of the file to save the network to.
+     * @param withRouting Whether the routing tables should also be saved.
+     * @throws IOException If there are any IO errors whilst writing to
+     *         either file, or the routing tables should be saved but are
+     *         partitioned into regions or the cost of a link is raised, in
+     *         which case neither file is written.
+     */
+    public void save(String filename, boolean withRouting)
+            throws IOException {
+        if (filename == null) {
+            return;
+        }
+        if (withRouting) {
+            checkRoutingSavable();
+        }
+        String encoded = this.encode();
         BufferedWriter writer = new BufferedWriter(new FileWriter(filename));
-        writer.write(this.encode());
+        writer.write(encoded);
         writer.close();
+
+        if (withRouting) {
+            long checksum = routingChecksum(
+                    Arrays.asList(encoded.split(NEWLINE)), stops.size());
+            routing.save(Paths.get(routingFileFor(filename)), stops,
+                    checksum);
+        }
+    }
+
+    /**
+     * Saves this network to the file indicated by the given filename in a
+     * compact binary format, which is recognised when the network is loaded
+     * (see {@link #Network(String)}).
+     *
+     * <p>Rather than repeating the name of each stop on every route that
+     * passes through it, the binary format holds every name and other string
+     * once, and refers to stops and routes by their position in the network.
+     * Integers are written in as few bytes as their size allows. The stops,
+     * routes and vehicles are written in the same order as by
+     * {@link #save(String)}, and load as the same network.
+     *
+     * <p>If the given filename is null, the method should do nothing.
+     *
+     * @param filename The name of the file to save the network to.
+     * @throws IOException If there are any IO errors whilst writing to the
+     *         file, or a route or vehicle refers to a stop or route which is
+     *         not in the network.
+     */
+    public void saveBinary(String filename) throws IOException {
+        saveBinary(filename, false);
+    }
+
+    /**
+     * Saves this network to the file indicated by the given filename in the
+     * binary format (as defined in {@link #saveBinary(String)}), optionally
+     * saving the routing tables as well (as defined in
+     * {@link #save(String, boolean)}).
+     *
+     * @param filename The name of the file to save the network to.
+     * @param withRouting Whether the routing tables should also be saved.
+     * @throws IOException If there are any IO errors whilst writing to
+     *         either file, a route or vehicle refers to a stop or route
+     *         which is not in the network, or the routing tables should be
+     *         saved but are partitioned into regions or the cost of a link
+     *         is raised.
+     */
+    public void saveBinary(String filename, boolean withRouting)
+            throws IOException {
+        if (filename == null) {
+            return;
+        }
+        if (withRouting) {
+            checkRoutingSavable();
+        }
+        long checksum;
+        try (OutputStream output = new BufferedOutputStream(
+                new FileOutputStream(filename))) {
+            checksum = BinaryNetworkWriter.write(stops, routes, vehicles,
+                    output);
+        }
+
+        if (withRouting) {
+            routing.save(Paths.get(routingFileFor(filename)), stops,
+                    checksum);
+        }
+    }
+
+    /*
+     * Throws an IOException if the routing tables are not stored in the
+     * routing matrix, or were routed over raised link costs which are not
+     * saved, and so cannot be saved.
+     */
+    private void checkRoutingSavable() throws IOException {
+        if (regions != null) {
+            throw new IOException("The routing tables are partitioned into "
+                    + "regions; move them into a routing matrix to save "
+                    + "them");
+        }
+        for (Stop stop : stops) {
+            for (Stop neighbour : stop.getNeighbours()) {
+                if (stop.linkCostTo(neighbour) != stop.distanceTo(neighbour)) {
+                    throw new IOException("The cost of the link from "
+                            + stop.getName() + " to " + neighbour.getName()
+                            + " is raised; restore it to save the routing "
+                            + "tables");
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the name of the file the routing tables of the network saved
+     * to the given file are stored in (see {@link #save(String, boolean)}).
+     *
+     * @param filename The name of the network file.
+     * @return The name of the routing file.
+     */
+    public static String routingFileFor(String filename) {
+        return filename + ".routing";
+    }
+
+    /*
+     * Returns a checksum of the lines of a network file which describe its
+     * stops and routes (and so determine its routing tables), given the
+     * number of stops. Lines which are missing are not included.
+     */
+    private static long routingChecksum(List<String> lines, int stopCount) {
+        CRC32 checksum = new CRC32();
+        int end = stopCount + 2;
+        for (int i = 0; i < end && i < lines.size(); i++) {
+            checksum.update(lines.get(i).getBytes(StandardCharsets.UTF_8));
+            checksum.update('\n');
+            if (i == stopCount + 1) {
+                try {
+                    end += Integer.parseInt(lines.get(i).trim());
+                } catch (NumberFormatException e) {
+                    // the network file is invalid, and will not be loaded
+                }
+            }
+        }
+        return checksum.getValue();
+    }
+
+    /*
+     * Maps the routing tables saved alongside the given network file, if
+     * they were saved for the stops and routes with the given checksum.
+     * Returns null if there are no such tables.
+     */
+    private RoutingMatrix loadRouting(String filename, long checksum) {
+        Path file = Paths.get(routingFileFor(filename));
+        if (!Files.isRegularFile(file)) {
+            return null;
+        }
+        try {
+            return RoutingMatrix.load(file, stops, checksum);
+        } catch (IOException | IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    /*
+     * Suspends synchronisation of the routing table of every stop in the
+     * network, so that routes can be added without re-routing the network
+     * after every new neighbour.
+     */
+    private void suspendRouting() {
+        for (Stop stop : stops) {
+            stop.getRoutingTable().suspendSynchronisation();
+        }
+    }
+
+    /*
+     * Resumes synchronisation of the routing table of every stop in the
+     * network. The tables are not rebuilt by this method.
+     */
+    private void resumeRouting() {
+        for (Stop stop : stops) {
+            stop.getRoutingTable().resumeSynchronisation();
+        }
     }
 
     /*
@@ -0,0 +1,83 @@
+package network;
+
+import exceptions.TransportFormatException;
+import routes.Route;
+import stops.Stop;
+import vehicles.PublicTransport;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * The lines of a network file, decoded one at a time in the order they
+ * appear in the file (see {@link Network#Network(String)}).
+ *
+ * <p>Each method consumes the next line of the file, and throws
+ * NoSuchElementException if the end of the file has already been reached.
+ */
+interface NetworkSource {
+    /**
+     * Decodes the next line as a count of stops, routes or vehicles, ignoring
+     * spaces around the integer.
+     *
+     * @return The count.
+     * @throws IOException If the file cannot be read.
+     * @throws NoSuchElementException If there are no more lines.
+     * @throws NumberFormatException If the line is not an integer.
+     */
+    int nextCount() throws IOException;
+
+    /**
+     * Decodes the next line as a stop, as defined in
+     * {@link Stop#decode(String)}.
+     *
+     * @return The decoded stop.
+     * @throws IOException If the file cannot be read.
+     * @throws NoSuchElementException If there are no more lines.
+     * @throws TransportFormatException If the line is incorrectly formatted.
+     */
+    Stop nextStop() throws IOException, TransportFormatException;
+
+    /**
+     * Decodes the next line as a route, as defined in
+     * {@link Route#decode(String, List)}.
+     *
+     * @param stops The stops decoded so far.
+     * @return The decoded route.
+     * @throws IOException If the file cannot be read.
+     * @throws NoSuchElementException If there are no more lines.
+     * @throws TransportFormatException If the line is incorrectly formatted.
+     */
+    Route nextRoute(List<Stop> stops)
+            throws IOException, TransportFormatException;
+
+    /**
+     * Decodes the next line as a vehicle, as defined in
+     * {@link PublicTransport#decode(String, List)}.
+     *
+     * @param routes The routes decoded so far.
+     * @return The decoded vehicle.
+     * @throws IOException If the file cannot be read.
+     * @throws NoSuchElementException If there are no more lines.
+     * @throws TransportFormatException If the line is incorrectly formatted.
+     */
+    PublicTransport nextVehicle(List<Route> routes)
+            throws IOException, TransportFormatException;
+
+    /**
+     * Returns whether there is another line in the file.
+     *
+     * @return True if there is another line, false otherwise.
+     * @throws IOException If the file cannot be read.
+     */
+    boolean hasNext() throws IOException;
+
+    /**
+     * Returns a CRC-32 checksum of the lines consumed so far, each encoded in
+     * UTF-8 and followed by a single newline character.
+     *
+     * @return The checksum of the lines consumed.
+     */
+    long checksum();
+}
@@ -134,6 +134,95 @@ public abstract class Route implements Writeable {
         stop.addNeighbouringStop(previous);
     }
 
+    /**
+     * Removes a stop from the route.
+     *
+     * <p>If the given stop appears on the route more than once, only the first
+     * occurrence is removed. If the given stop is null or is not on the route,
+     * the route should remain unchanged.
+     *
+     * <p>The stops before and after the removed stop (if any) are recorded as
+     * neighbouring stops of each other using the
+     * {@link Stop#addNeighbouringStop(Stop)} method, so that the route
+     * continues past the removed stop. The removed stop is then no longer
+     * recorded as a neighbour of the stops before and after it (using the
+     * {@link Stop#removeNeighbouringStop(Stop)} method), unless they are
+     * still next to each other on another route (or elsewhere on this route).
+     *
+     * <p>One record of this route should also be removed from the given stop
+     * using the {@link Stop#removeRoute(Route)} method.
+     *
+     * @param stop The stop to be removed from this route.
+     * @return True if the stop was removed, false if it was not on the route.
+     */
+    public boolean removeStop(Stop stop) {
+        int index = -1;
+        for (int i = 0; i < route.size(); i++) {
+            if (route.get(i) == stop) {
+                index = i;
+                break;
+            }
+        }
+        if (stop == null || index == -1) {
+            return false;
+        }
+
+        Stop previous = index > 0 ? route.get(index - 1) : null;
+        Stop next = index < route.size() - 1 ? route.get(index + 1) : null;
+        route.remove(index);
+        stop.removeRoute(this);
+
+        // join the route back up before removing the old links
+        if (previous != null && next != null && previous != next) {
+            previous.addNeighbouringStop(next);
+            next.addNeighbouringStop(previous);
+        }
+        if (previous != null) {
+            unlinkIfUnused(previous, stop);
+        }
+        if (next != null) {
+            unlinkIfUnused(stop, next);
+        }
+        return true;
+    }
+
+    /**
+     * Returns whether the two given stops are next to each other (in either
+     * order) on this route.
+     *
+     * @param first The first stop.
+     * @param second The second stop.
+     * @return True if the stops are adjacent on this route, false otherwise.
+     */
+    public boolean isAdjacent(Stop first, Stop second) {
+        for (int i = 1; i < route.size(); i++) {
+            Stop previous = route.get(i - 1);
+            Stop current = route.get(i);
+            if ((previous == first && current == second)
+                    || (previous == second && current == first)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /*
+     * Removes the neighbour link between the given stops, unless they are
+     * still next to each other on one of the first stop's routes.
+     */
+    private static void unlinkIfUnused(Stop first, Stop second) {
+        if (first == second) {
+            return;
+        }
+        for (Route other : first.getRoutes()) {
+            if (other.isAdjacent(first, second)) {
+                return;
+            }
+        }
+        first.removeNeighbouringStop(second);
+        second.removeNeighbouringStop(first);
+    }
+
     /**
      * Returns the public transport vehicles currently on this route.
      *
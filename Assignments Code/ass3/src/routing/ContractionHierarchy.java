@@ -0,0 +1,878 @@
+package routing;
+
+import stops.CostHeap;
+import stops.Stop;
+import stops.StopGraph;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Answers journey queries using a contraction hierarchy.
+ *
+ * <p>When the hierarchy is created, the stops are contracted one at a time,
+ * least important first. Contracting a stop removes it from the remaining
+ * graph, adding a shortcut between each pair of its neighbours whose cheapest
+ * route passes through it. Every stop is then given a rank (the order it was
+ * contracted in), and each query searches from both the origin and the
+ * destination, only ever moving to stops of a higher rank. As each search
+ * usually settles only a few hundred stops, even in a large network, queries
+ * take a fraction of a millisecond.
+ *
+ * <p>The cost of each journey is the same as would be recorded in the
+ * origin's {@link stops.RoutingTable}, and shortcuts are expanded into the
+ * stops they pass through when building the path of a journey.
+ *
+ * <p>Like {@link StopGraph}, the hierarchy is a snapshot of the network, and
+ * does not change if neighbours are later added to or removed from any stop.
+ * The search buffers are reused between queries, so a single hierarchy should
+ * not be queried by more than one thread at a time.
+ */
+public class ContractionHierarchy {
+    // the stops in the hierarchy
+    private StopGraph graph;
+
+    // the order in which each stop was contracted
+    private int[] ranks;
+
+    // the edges from each stop to stops of a higher rank, indexed from
+    // upStart[stop] to upStart[stop + 1]
+    private int[] upStart;
+    private int[] upTarget;
+    private int[] upWeight;
+    private int[] upMiddle;
+
+    // the edges to each stop from stops of a higher rank, indexed from
+    // downStart[stop] to downStart[stop + 1]
+    private int[] downStart;
+    private int[] downSource;
+    private int[] downWeight;
+    private int[] downMiddle;
+
+    // the number of shortcuts added while contracting
+    private int shortcuts;
+
+    // the search state of the current query in each direction
+    private Search forward;
+    private Search backward;
+
+    /**
+     * Creates a contraction hierarchy of the given stops and every stop
+     * reachable from them.
+     *
+     * @param stops The stops from which to start building the hierarchy.
+     */
+    public ContractionHierarchy(Collection<Stop> stops) {
+        graph = new StopGraph(stops);
+        Contraction contraction = new Contraction(graph);
+        ranks = contraction.contractAll();
+        shortcuts = contraction.shortcuts;
+        buildEdges(contraction);
+        forward = new Search(graph.size());
+        backward = new Search(graph.size());
+    }
+
+    /**
+     * Returns the number of stops in the hierarchy.
+     *
+     * @return The number of stops.
+     */
+    public int size() {
+        return graph.size();
+    }
+
+    /**
+     * Returns the number of shortcuts added while contracting the stops.
+     *
+     * @return The number of shortcuts.
+     */
+    public int getShortcutCount() {
+        return shortcuts;
+    }
+
+    /**
+     * Returns the number of edges (including shortcuts) searched by queries.
+     *
+     * @return The number of edges in the hierarchy.
+     */
+    public int getEdgeCount() {
+        return upTarget.length + downSource.length;
+    }
+
+    /*
+     * Returns the stops in the hierarchy.
+     */
+    StopGraph getGraph() {
+        return graph;
+    }
+
+    /*
+     * Returns the order in which the stop with the given index in the graph
+     * was contracted; the most important stops are contracted last.
+     */
+    int rankOf(int index) {
+        return ranks[index];
+    }
+
+    /**
+     * Finds the cheapest journey from the origin to the destination.
+     *
+     * <p>If the origin and destination are the same stop, the journey only
+     * contains that stop and has a cost of 0.
+     *
+     * @param origin The stop to start the journey at.
+     * @param destination The stop to end the journey at.
+     * @return The cheapest journey, or null if either stop is not in the
+     *         hierarchy or the destination cannot be reached from the origin.
+     */
+    public Journey plan(Stop origin, Stop destination) {
+        int source = graph.indexOf(origin);
+        int target = graph.indexOf(destination);
+        if (source < 0 || target < 0) {
+            return null;
+        }
+        int meeting = search(source, target);
+        if (meeting < 0) {
+            return null;
+        }
+
+        // the stops settled on the way up from each end
+        List<Integer> ranked = new ArrayList<>();
+        for (int i = meeting; i >= 0; i = forward.previous[i]) {
+            ranked.add(i);
+        }
+        Collections.reverse(ranked);
+        for (int i = backward.previous[meeting]; i >= 0;
+                i = backward.previous[i]) {
+            ranked.add(i);
+        }
+
+        List<Stop> path = new ArrayList<>();
+        path.add(graph.getStop(source));
+        for (int i = 1; i < ranked.size(); i++) {
+            unpack(ranked.get(i - 1), ranked.get(i), path);
+        }
+        return new Journey(path,
+                forward.costs[meeting] + backward.costs[meeting]);
+    }
+
+    /**
+     * Returns the cost of the cheapest journey from the origin to the
+     * destination.
+     *
+     * @param origin The stop to start the journey at.
+     * @param destination The stop to end the journey at.
+     * @return The cost of the cheapest journey, or Integer.MAX_VALUE if
+     *         either stop is not in the hierarchy or the destination cannot be
+     *         reached from the origin.
+     */
+    public int costTo(Stop origin, Stop destination) {
+        int source = graph.indexOf(origin);
+        int target = graph.indexOf(destination);
+        if (source < 0 || target < 0) {
+            return Integer.MAX_VALUE;
+        }
+        int meeting = search(source, target);
+        return meeting < 0 ? Integer.MAX_VALUE
+                : forward.costs[meeting] + backward.costs[meeting];
+    }
+
+    /**
+     * Returns the cost of the cheapest journey from each of the origins to
+     * each of the destinations.
+     *
+     * <p>Rather than running a query for every pair of stops, a single
+     * search is run upwards from each destination, recording its cost at
+     * every stop it settles in a bucket for that stop. A single search is
+     * then run upwards from each origin, and the cost to every destination
+     * is found by scanning the buckets of the stops it settles. The searches
+     * from the destinations are therefore shared by every origin.
+     *
+     * <p>Origins or destinations which are null or not in the hierarchy
+     * cannot be reached, and may appear more than once.
+     *
+     * @param origins The stops to start journeys at.
+     * @param destinations The stops to end journeys at.
+     * @return A matrix with a row for each origin and a column for each
+     *         destination, holding the cost of the cheapest journey between
+     *         them, or Integer.MAX_VALUE if there is none.
+     */
+    public int[][] costMatrix(List<Stop> origins, List<Stop> destinations) {
+        int[][] matrix = new int[origins.size()][destinations.size()];
+        for (int[] row : matrix) {
+            Arrays.fill(row, Integer.MAX_VALUE);
+        }
+
+        // the cost from each stop down to each destination, as recorded by
+        // the search from that destination
+        int[] entryStop = new int[16];
+        int[] entryColumn = new int[16];
+        int[] entryCost = new int[16];
+        int entries = 0;
+        for (int column = 0; column < destinations.size(); column++) {
+            int target = graph.indexOf(destinations.get(column));
+            if (target < 0) {
+                continue;
+            }
+            backward.start(target);
+            while (backward.minCost() != Integer.MAX_VALUE) {
+                int current = backward.settleNext(downStart, downSource,
+                        downWeight, upStart, upTarget, upWeight);
+                if (current < 0 || backward.stalled) {
+                    continue;
+                }
+                if (entries == entryStop.length) {
+                    entryStop = Arrays.copyOf(entryStop, entries * 2);
+                    entryColumn = Arrays.copyOf(entryColumn, entries * 2);
+                    entryCost = Arrays.copyOf(entryCost, entries * 2);
+                }
+                entryStop[entries] = current;
+                entryColumn[entries] = column;
+                entryCost[entries] = backward.costs[current];
+                entries++;
+            }
+        }
+
+        // the entries sorted into a bucket for each stop
+        int size = graph.size();
+        int[] bucketStart = new int[size + 1];
+        for (int i = 0; i < entries; i++) {
+            bucketStart[entryStop[i] + 1]++;
+        }
+        for (int i = 0; i < size; i++) {
+            bucketStart[i + 1] += bucketStart[i];
+        }
+        int[] bucketColumn = new int[entries];
+        int[] bucketCost = new int[entries];
+        int[] filled = Arrays.copyOf(bucketStart, size);
+        for (int i = 0; i < entries; i++) {
+            int j = filled[entryStop[i]]++;
+            bucketColumn[j] = entryColumn[i];
+            bucketCost[j] = entryCost[i];
+        }
+
+        for (int row = 0; row < origins.size(); row++) {
+            int source = graph.indexOf(origins.get(row));
+            if (source < 0) {
+                continue;
+            }
+            int[] costs = matrix[row];
+            forward.start(source);
+            while (forward.minCost() != Integer.MAX_VALUE) {
+                int current = forward.settleNext(upStart, upTarget, upWeight,
+                        downStart, downSource, downWeight);
+                if (current < 0 || forward.stalled) {
+                    continue;
+                }
+                int cost = forward.costs[current];
+                for (int i = bucketStart[current];
+                     i < bucketStart[current + 1]; i++) {
+                    int total = cost + bucketCost[i];
+                    if (total < costs[bucketColumn[i]]) {
+                        costs[bucketColumn[i]] = total;
+                    }
+                }
+            }
+        }
+        return matrix;
+    }
+
+    /*
+     * Searches upwards from both the source and the target, returning the
+     * stop where the cheapest journey between them changes direction, or -1
+     * if there is no journey.
+     */
+    private int search(int source, int target) {
+        forward.start(source);
+        backward.start(target);
+        int best = Integer.MAX_VALUE;
+        int meeting = -1;
+
+        while (true) {
+            int forwardMin = forward.minCost();
+            int backwardMin = backward.minCost();
+            if (forwardMin >= best && backwardMin >= best) {
+                // neither search can find a cheaper journey
+                break;
+            }
+            int current;
+            Search search;
+            Search other;
+            if (forwardMin <= backwardMin) {
+                current = forward.settleNext(upStart, upTarget, upWeight,
+                        downStart, downSource, downWeight);
+                search = forward;
+                other = backward;
+            } else {
+                current = backward.settleNext(downStart, downSource,
+                        downWeight, upStart, upTarget, upWeight);
+                search = backward;
+                other = forward;
+            }
+            if (current >= 0 && other.costs[current] != Integer.MAX_VALUE) {
+                int cost = search.costs[current] + other.costs[current];
+                if (cost < best) {
+                    best = cost;
+                    meeting = current;
+                }
+            }
+        }
+        return meeting;
+    }
+
+    /*
+     * Adds the stops passed through by the edge from one stop to another,
+     * excluding the first, to the given path, expanding shortcuts.
+     */
+    private void unpack(int from, int to, List<Stop> path) {
+        // pairs of stops still to be expanded, last pair on top
+        int[] stack = new int[16];
+        int top = 0;
+        stack[top++] = from;
+        stack[top++] = to;
+        while (top > 0) {
+            int b = stack[--top];
+            int a = stack[--top];
+            int middle = middleOf(a, b);
+            if (middle < 0) {
+                path.add(graph.getStop(b));
+                continue;
+            }
+            if (top + 4 > stack.length) {
+                stack = Arrays.copyOf(stack, stack.length * 2);
+            }
+            stack[top++] = middle;
+            stack[top++] = b;
+            stack[top++] = a;
+            stack[top++] = middle;
+        }
+    }
+
+    /*
+     * Returns the stop a shortcut from one stop to another passes through,
+     * or -1 if the edge between them is not a shortcut.
+     */
+    private int middleOf(int from, int to) {
+        if (ranks[to] > ranks[from]) {
+            for (int e = upStart[from]; e < upStart[from + 1]; e++) {
+                if (upTarget[e] == to) {
+                    return upMiddle[e];
+                }
+            }
+        } else {
+            for (int e = downStart[to]; e < downStart[to + 1]; e++) {
+                if (downSource[e] == from) {
+                    return downMiddle[e];
+                }
+            }
+        }
+        return -1;
+    }
+
+    /*
+     * Splits the edges recorded while contracting into upward and downward
+     * edges, stored by the stop of lower rank.
+     */
+    private void buildEdges(Contraction contraction) {
+        int size = graph.size();
+        upStart = new int[size + 1];
+        downStart = new int[size + 1];
+        for (int e = 0; e < contraction.edgeCount; e++) {
+            int from = contraction.edgeFrom[e];
+            int to = contraction.edgeTo[e];
+            if (ranks[to] > ranks[from]) {
+                upStart[from + 1]++;
+            } else {
+                downStart[to + 1]++;
+            }
+        }
+        for (int i = 0; i < size; i++) {
+            upStart[i + 1] += upStart[i];
+            downStart[i + 1] += downStart[i];
+        }
+
+        upTarget = new int[upStart[size]];
+        upWeight = new int[upStart[size]];
+        upMiddle = new int[upStart[size]];
+        downSource = new int[downStart[size]];
+        downWeight = new int[downStart[size]];
+        downMiddle = new int[downStart[size]];
+        int[] upNext = Arrays.copyOf(upStart, size);
+        int[] downNext = Arrays.copyOf(downStart, size);
+        for (int e = 0; e < contraction.edgeCount; e++) {
+            int from = contraction.edgeFrom[e];
+            int to = contraction.edgeTo[e];
+            if (ranks[to] > ranks[from]) {
+                int i = upNext[from]++;
+                upTarget[i] = to;
+                upWeight[i] = contraction.edgeWeight[e];
+                upMiddle[i] = contraction.edgeMiddle[e];
+            } else {
+                int i = downNext[to]++;
+                downSource[i] = from;
+                downWeight[i] = contraction.edgeWeight[e];
+                downMiddle[i] = contraction.edgeMiddle[e];
+            }
+        }
+    }
+
+    /*
+     * Returns a key identifying the edge from one stop to another.
+     */
+    private static long key(int from, int to) {
+        return ((long) from << 32) | to;
+    }
+
+    /*
+     * The state of a search in one direction, reset lazily between queries.
+     */
+    private static class Search {
+        // the cheapest known cost to each stop from where the search started
+        private int[] costs;
+
+        // the stop each stop was reached from, or -1
+        private int[] previous;
+
+        // the stops whose cost has been set by the current search
+        private int[] touched;
+        private int touchedCount;
+
+        private CostHeap heap;
+
+        // whether the stop settled last was stalled
+        private boolean stalled;
+
+        private Search(int size) {
+            costs = new int[size];
+            previous = new int[size];
+            touched = new int[size];
+            Arrays.fill(costs, Integer.MAX_VALUE);
+            heap = new CostHeap();
+        }
+
+        private void start(int stop) {
+            for (int i = 0; i < touchedCount; i++) {
+                costs[touched[i]] = Integer.MAX_VALUE;
+            }
+            touchedCount = 0;
+            heap.clear();
+            reach(stop, 0, -1);
+        }
+
+        private void reach(int stop, int cost, int from) {
+            if (costs[stop] == Integer.MAX_VALUE) {
+                touched[touchedCount++] = stop;
+            }
+            costs[stop] = cost;
+            previous[stop] = from;
+            heap.push(stop, cost);
+        }
+
+        private int minCost() {
+            return heap.isEmpty() ? Integer.MAX_VALUE : heap.peekCost();
+        }
+
+        /*
+         * Settles the cheapest stop in the heap, relaxing the given edges
+         * from it, and returns the stop or -1 if the entry was stale.
+         *
+         * The opposite edges lead to the stop from stops of a higher rank;
+         * if one of them gives a cheaper route, the stop cannot be on the
+         * cheapest journey, so its edges are not relaxed ("stalled").
+         */
+        private int settleNext(int[] start, int[] adjacent, int[] weights,
+                               int[] oppositeStart, int[] opposite,
+                               int[] oppositeWeights) {
+            int cost = heap.peekCost();
+            int current = heap.pop();
+            if (cost > costs[current]) {
+                return -1;
+            }
+            stalled = false;
+            for (int e = oppositeStart[current];
+                    e < oppositeStart[current + 1]; e++) {
+                int higher = costs[opposite[e]];
+                if (higher != Integer.MAX_VALUE
+                        && higher + oppositeWeights[e] < cost) {
+                    stalled = true;
+                    return current;
+                }
+            }
+            for (int e = start[current]; e < start[current + 1]; e++) {
+                int next = adjacent[e];
+                int newCost = cost + weights[e];
+                if (newCost < costs[next]) {
+                    reach(next, newCost, current);
+                }
+            }
+            return current;
+        }
+    }
+
+    /*
+     * The graph while it is being contracted. The edges between stops which
+     * have not been contracted are stored in growable arrays so that
+     * shortcuts can be added; the edges of each stop are recorded as it is
+     * contracted.
+     */
+    private static class Contraction {
+        // the largest number of stops settled by each witness search when
+        // contracting a stop, and when estimating the shortcuts it would add
+        private static final int WITNESS_LIMIT = 64;
+        private static final int ESTIMATE_LIMIT = 8;
+
+        // added to priorities, which may be negative, before they are queued
+        private static final int PRIORITY_OFFSET = 1 << 24;
+
+        // the edges out of each remaining stop, to remaining stops
+        private Adjacency out;
+
+        // the edges into each remaining stop, from remaining stops
+        private Adjacency in;
+
+        // the stop each shortcut passes through, keyed by key(from, to)
+        private Map<Long, Integer> middles;
+
+        // the number of shortcuts added
+        private int shortcuts;
+
+        // the edges of the contracted stops
+        private int[] edgeFrom;
+        private int[] edgeTo;
+        private int[] edgeWeight;
+        private int[] edgeMiddle;
+        private int edgeCount;
+
+        // the number of contracted neighbours of each stop
+        private int[] contractedNeighbours;
+
+        // the number of levels of contracted stops below each stop
+        private int[] levels;
+
+        // the priority each stop was last queued with
+        private int[] priorities;
+
+        // witness search buffers
+        private int[] costs;
+        private int[] touched;
+        private int touchedCount;
+        private CostHeap heap;
+
+        private Contraction(StopGraph graph) {
+            int size = graph.size();
+            out = new Adjacency(size);
+            in = new Adjacency(size);
+            middles = new HashMap<>();
+            shortcuts = 0;
+            for (int from = 0; from < size; from++) {
+                int[] neighbours = graph.neighboursOf(from);
+                int[] distances = graph.distancesOf(from);
+                for (int i = 0; i < neighbours.length; i++) {
+                    if (neighbours[i] != from) {
+                        addEdge(from, neighbours[i], distances[i], -1);
+                    }
+                }
+            }
+            edgeFrom = new int[16];
+            edgeTo = new int[16];
+            edgeWeight = new int[16];
+            edgeMiddle = new int[16];
+            edgeCount = 0;
+            contractedNeighbours = new int[size];
+            levels = new int[size];
+            priorities = new int[size];
+            costs = new int[size];
+            touched = new int[size];
+            Arrays.fill(costs, Integer.MAX_VALUE);
+            heap = new CostHeap();
+        }
+
+        /*
+         * Contracts every stop, least important first, and returns the rank
+         * of each stop.
+         */
+        private int[] contractAll() {
+            int size = priorities.length;
+            boolean[] contracted = new boolean[size];
+            CostHeap queue = new CostHeap();
+            for (int i = 0; i < size; i++) {
+                priorities[i] = priority(i);
+                queue.push(i, priorities[i]);
+            }
+
+            int[] ranks = new int[size];
+            int rank = 0;
+            while (!queue.isEmpty()) {
+                int queued = queue.peekCost();
+                int current = queue.pop();
+                if (contracted[current] || queued != priorities[current]) {
+                    // stale entry, the stop was queued again
+                    continue;
+                }
+                // the priority may have grown since it was queued
+                int priority = priority(current);
+                if (priority > queued && !queue.isEmpty()
+                        && priority > queue.peekCost()) {
+                    priorities[current] = priority;
+                    queue.push(current, priority);
+                    continue;
+                }
+
+                contract(current, false);
+                int[] neighbours = detach(current);
+                contracted[current] = true;
+                ranks[current] = rank++;
+                for (int neighbour : neighbours) {
+                    contractedNeighbours[neighbour]++;
+                    levels[neighbour] = Math.max(levels[neighbour],
+                            levels[current] + 1);
+                    int updated = priority(neighbour);
+                    if (updated != priorities[neighbour]) {
+                        priorities[neighbour] = updated;
+                        queue.push(neighbour, updated);
+                    }
+                }
+            }
+            return ranks;
+        }
+
+        /*
+         * Returns the priority of contracting the given stop: the number of
+         * shortcuts it would add less the number of edges it would remove,
+         * plus the number of neighbours already contracted and the number of
+         * levels below it, so that stops are contracted evenly across the
+         * network.
+         */
+        private int priority(int stop) {
+            int removed = out.count(stop) + in.count(stop);
+            return contract(stop, true) - removed + contractedNeighbours[stop]
+                    + levels[stop] + PRIORITY_OFFSET;
+        }
+
+        /*
+         * Adds a shortcut between each pair of neighbours of the given stop
+         * whose cheapest route passes through it, and returns the number of
+         * shortcuts. If estimating, the shortcuts are only counted, using a
+         * smaller witness search.
+         */
+        private int contract(int stop, boolean estimate) {
+            int count = 0;
+            int[] sources = in.targets(stop);
+            int[] sourceWeights = in.weights(stop);
+            int[] targets = out.targets(stop);
+            int[] targetWeights = out.weights(stop);
+            int targetCount = out.count(stop);
+
+            for (int i = 0; i < in.count(stop); i++) {
+                int from = sources[i];
+                int maxCost = 0;
+                for (int j = 0; j < targetCount; j++) {
+                    if (targets[j] != from) {
+                        maxCost = Math.max(maxCost,
+                                sourceWeights[i] + targetWeights[j]);
+                    }
+                }
+                if (maxCost == 0) {
+                    continue;
+                }
+                witnessSearch(from, stop, maxCost,
+                        estimate ? ESTIMATE_LIMIT : WITNESS_LIMIT);
+
+                for (int j = 0; j < targetCount; j++) {
+                    int to = targets[j];
+                    int via = sourceWeights[i] + targetWeights[j];
+                    if (to == from || costs[to] <= via) {
+                        continue;
+                    }
+                    count++;
+                    if (!estimate) {
+                        addEdge(from, to, via, stop);
+                    }
+                }
+            }
+            return count;
+        }
+
+        /*
+         * Records the edges of the given stop and removes them from the
+         * remaining graph, returning the stop's remaining neighbours.
+         */
+        private int[] detach(int stop) {
+            int[] neighbours = new int[out.count(stop) + in.count(stop)];
+            int count = 0;
+            for (int i = 0; i < out.count(stop); i++) {
+                int to = out.targets(stop)[i];
+                record(stop, to, out.weights(stop)[i]);
+                in.remove(to, stop);
+                neighbours[count++] = to;
+            }
+            for (int i = 0; i < in.count(stop); i++) {
+                int from = in.targets(stop)[i];
+                record(from, stop, in.weights(stop)[i]);
+                out.remove(from, stop);
+                if (out.find(stop, from) < 0) {
+                    neighbours[count++] = from;
+                }
+            }
+            out.clear(stop);
+            in.clear(stop);
+            return Arrays.copyOf(neighbours, count);
+        }
+
+        private void record(int from, int to, int weight) {
+            if (edgeCount == edgeFrom.length) {
+                int grown = edgeCount * 2;
+                edgeFrom = Arrays.copyOf(edgeFrom, grown);
+                edgeTo = Arrays.copyOf(edgeTo, grown);
+                edgeWeight = Arrays.copyOf(edgeWeight, grown);
+                edgeMiddle = Arrays.copyOf(edgeMiddle, grown);
+            }
+            Integer middle = middles.remove(key(from, to));
+            edgeFrom[edgeCount] = from;
+            edgeTo[edgeCount] = to;
+            edgeWeight[edgeCount] = weight;
+            edgeMiddle[edgeCount] = middle == null ? -1 : middle;
+            edgeCount++;
+        }
+
+        /*
+         * Finds the cheapest routes from the given stop which avoid the
+         * excluded stop, giving up once the cost exceeds the maximum or the
+         * given number of stops have been settled.
+         */
+        private void witnessSearch(int source, int excluded, int maxCost,
+                                   int limit) {
+            for (int i = 0; i < touchedCount; i++) {
+                costs[touched[i]] = Integer.MAX_VALUE;
+            }
+            touchedCount = 0;
+            heap.clear();
+            costs[source] = 0;
+            touched[touchedCount++] = source;
+            heap.push(source, 0);
+
+            int settled = 0;
+            while (!heap.isEmpty() && settled < limit) {
+                int cost = heap.peekCost();
+                int current = heap.pop();
+                if (cost > costs[current]) {
+                    continue;
+                }
+                if (cost > maxCost) {
+                    break;
+                }
+                settled++;
+                int[] targets = out.targets(current);
+                int[] weights = out.weights(current);
+                for (int i = 0; i < out.count(current); i++) {
+                    int next = targets[i];
+                    int newCost = cost + weights[i];
+                    if (next == excluded || newCost >= costs[next]) {
+                        continue;
+                    }
+                    if (costs[next] == Integer.MAX_VALUE) {
+                        touched[touchedCount++] = next;
+                    }
+                    costs[next] = newCost;
+                    heap.push(next, newCost);
+                }
+            }
+        }
+
+        /*
+         * Adds an edge, or lowers the weight of an existing edge, recording
+         * the stop it passes through if it is a shortcut.
+         */
+        private void addEdge(int from, int to, int weight, int middle) {
+            int existing = out.find(from, to);
+            if (existing >= 0 && out.weights(from)[existing] <= weight) {
+                return;
+            }
+            out.put(from, to, weight);
+            in.put(to, from, weight);
+            if (middle >= 0) {
+                if (existing < 0) {
+                    shortcuts++;
+                }
+                middles.put(key(from, to), middle);
+            } else {
+                middles.remove(key(from, to));
+            }
+        }
+    }
+
+    /*
+     * The weighted edges of each stop in one direction, stored in a growable
+     * array per stop. Stops have few edges, so edges are found by scanning.
+     */
+    private static class Adjacency {
+        private int[][] targets;
+        private int[][] weights;
+        private int[] counts;
+
+        private Adjacency(int size) {
+            targets = new int[size][];
+            weights = new int[size][];
+            counts = new int[size];
+            for (int i = 0; i < size; i++) {
+                targets[i] = new int[4];
+                weights[i] = new int[4];
+            }
+        }
+
+        private int count(int stop) {
+            return counts[stop];
+        }
+
+        private int[] targets(int stop) {
+            return targets[stop];
+        }
+
+        private int[] weights(int stop) {
+            return weights[stop];
+        }
+
+        private int find(int stop, int target) {
+            int[] current = targets[stop];
+            for (int i = 0; i < counts[stop]; i++) {
+                if (current[i] == target) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        private void put(int stop, int target, int weight) {
+            int i = find(stop, target);
+            if (i < 0) {
+                i = counts[stop]++;
+                if (i == targets[stop].length) {
+                    targets[stop] = Arrays.copyOf(targets[stop], i * 2);
+                    weights[stop] = Arrays.copyOf(weights[stop], i * 2);
+                }
+                targets[stop][i] = target;
+            }
+            weights[stop][i] = weight;
+        }
+
+        private void remove(int stop, int target) {
+            int i = find(stop, target);
+            if (i >= 0) {
+                int last = --counts[stop];
+                targets[stop][i] = targets[stop][last];
+                weights[stop][i] = weights[stop][last];
+            }
+        }
+
+        private void clear(int stop) {
+            counts[stop] = 0;
+            targets[stop] = new int[0];
+            weights[stop] = new int[0];
+        }
+    }
+}
@@ -0,0 +1,471 @@
+package routing;
+
+import stops.CostHeap;
+import stops.Stop;
+import stops.StopGraph;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * An index which answers cost queries by merging two short sorted arrays.
+ *
+ * <p>Each stop is given two labels: a list of (hub, cost) pairs for the hubs
+ * reachable from the stop, and a list for the hubs from which the stop can be
+ * reached. The labels are chosen so that the cheapest journey between any two
+ * stops passes through a hub in both the origin's first label and the
+ * destination's second label, so the cost of the journey is the lowest sum of
+ * matching pairs. The hubs of each label are sorted, so a query is a single
+ * linear merge.
+ *
+ * <p>The labels are built by pruned landmark labelling: a search is run from
+ * each stop in turn, most important first, skipping stops whose cost can
+ * already be answered by the labels built so far. Stops are ordered by their
+ * rank in a {@link ContractionHierarchy}, as stops contracted last lie on the
+ * most journeys, which keeps the labels short.
+ *
+ * <p>Costs are the same as would be recorded in the origin's
+ * {@link stops.RoutingTable}. The index is a snapshot, and does not change if
+ * neighbours are later added to or removed from any stop. It can be saved next
+ * to the network file (see {@link #sidecarFor(String)}) and loaded again
+ * without searching the network.
+ */
+public class HubLabels {
+    // the first int of a saved index
+    private static final int MAGIC = 0x4855424C;
+
+    // the version of the saved index format
+    private static final int VERSION = 1;
+
+    // the stops in the index, by index
+    private Stop[] stops;
+
+    // the index of each stop
+    private Map<Stop, Integer> indices;
+
+    // the hubs reachable from each stop, in ascending order, and the cost of
+    // reaching each of them
+    private int[][] outHubs;
+    private int[][] outCosts;
+
+    // the hubs from which each stop can be reached, in ascending order, and
+    // the cost of reaching the stop from each of them
+    private int[][] inHubs;
+    private int[][] inCosts;
+
+    /**
+     * Builds the labels of the given stops and every stop reachable from
+     * them.
+     *
+     * <p>Stops are indexed in the same order as {@link StopGraph}, so if every
+     * stop in the network is given, the stops keep the order they are given
+     * in.
+     *
+     * @param stops The stops from which to start building the index.
+     */
+    public HubLabels(Collection<Stop> stops) {
+        ContractionHierarchy hierarchy = new ContractionHierarchy(stops);
+        StopGraph graph = hierarchy.getGraph();
+        int size = graph.size();
+        setStops(size);
+        int[] order = new int[size];
+        for (int i = 0; i < size; i++) {
+            this.stops[i] = graph.getStop(i);
+            indices.put(this.stops[i], i);
+            order[size - 1 - hierarchy.rankOf(i)] = i;
+        }
+        new Labelling(graph).labelAll(order);
+    }
+
+    /*
+     * Creates an index with room for the labels of the given number of stops.
+     */
+    private HubLabels(int size) {
+        setStops(size);
+    }
+
+    private void setStops(int size) {
+        stops = new Stop[size];
+        indices = new IdentityHashMap<>();
+        outHubs = new int[size][];
+        outCosts = new int[size][];
+        inHubs = new int[size][];
+        inCosts = new int[size][];
+    }
+
+    /**
+     * Returns the name of the file the index of the network saved in the
+     * given file should be saved in.
+     *
+     * @param networkFilename The name of the network's file.
+     * @return The name of the index's file.
+     */
+    public static String sidecarFor(String networkFilename) {
+        return networkFilename + ".hubs";
+    }
+
+    /**
+     * Returns the number of stops in the index.
+     *
+     * @return The number of stops.
+     */
+    public int size() {
+        return stops.length;
+    }
+
+    /**
+     * Returns the average number of hubs in each label.
+     *
+     * @return The average label size.
+     */
+    public double getAverageLabelSize() {
+        long total = 0;
+        for (int i = 0; i < stops.length; i++) {
+            total += outHubs[i].length + inHubs[i].length;
+        }
+        return stops.length == 0 ? 0 : total / (2.0 * stops.length);
+    }
+
+    /**
+     * Returns the cost of the cheapest journey from the origin to the
+     * destination.
+     *
+     * @param origin The stop to start the journey at.
+     * @param destination The stop to end the journey at.
+     * @return The cost of the cheapest journey, or Integer.MAX_VALUE if
+     *         either stop is not in the index or the destination cannot be
+     *         reached from the origin.
+     */
+    public int costTo(Stop origin, Stop destination) {
+        Integer source = indices.get(origin);
+        Integer target = indices.get(destination);
+        if (source == null || target == null) {
+            return Integer.MAX_VALUE;
+        }
+        return merge(outHubs[source], outCosts[source], inHubs[target],
+                inCosts[target]);
+    }
+
+    /*
+     * Returns the lowest sum of costs of a hub in both labels.
+     */
+    private static int merge(int[] hubs, int[] costs, int[] otherHubs,
+                             int[] otherCosts) {
+        int best = Integer.MAX_VALUE;
+        int i = 0;
+        int j = 0;
+        while (i < hubs.length && j < otherHubs.length) {
+            if (hubs[i] < otherHubs[j]) {
+                i++;
+            } else if (hubs[i] > otherHubs[j]) {
+                j++;
+            } else {
+                best = Math.min(best, costs[i] + otherCosts[j]);
+                i++;
+                j++;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Saves the index to the given file.
+     *
+     * <p>Each stop is saved as encoded by {@link Stop#encode()}, so that the
+     * index can only be loaded for the same stops.
+     *
+     * @param filename The name of the file to save the index to.
+     * @throws IOException If there are any IO errors whilst writing to the
+     *         file.
+     */
+    public void save(String filename) throws IOException {
+        try (DataOutputStream output = new DataOutputStream(
+                new BufferedOutputStream(new FileOutputStream(filename)))) {
+            output.writeInt(MAGIC);
+            output.writeInt(VERSION);
+            output.writeInt(stops.length);
+            for (Stop stop : stops) {
+                output.writeUTF(stop.encode());
+            }
+            for (int i = 0; i < stops.length; i++) {
+                writeLabel(output, outHubs[i], outCosts[i]);
+                writeLabel(output, inHubs[i], inCosts[i]);
+            }
+        }
+    }
+
+    /**
+     * Loads an index saved by {@link #save(String)}.
+     *
+     * <p>The given stops must be the stops of the saved index, in the order
+     * they were indexed. This is the case if the index was built from every
+     * stop in a network, and the network has been loaded from the same file.
+     *
+     * @param filename The name of the file to load the index from.
+     * @param stops The stops of the saved index, in order.
+     * @return The loaded index.
+     * @throws IOException If there are any IO errors whilst reading from the
+     *         file, if the file is not a saved index, or if the saved stops
+     *         are not the given stops.
+     */
+    public static HubLabels load(String filename, List<Stop> stops)
+            throws IOException {
+        try (DataInputStream input = new DataInputStream(
+                new BufferedInputStream(new FileInputStream(filename)))) {
+            if (input.readInt() != MAGIC || input.readInt() != VERSION) {
+                throw new IOException("Not a hub label index");
+            }
+            int size = input.readInt();
+            if (size != stops.size()) {
+                throw new IOException("Index is for a different network");
+            }
+            HubLabels labels = new HubLabels(size);
+            for (int i = 0; i < size; i++) {
+                Stop stop = stops.get(i);
+                if (!input.readUTF().equals(stop.encode())
+                        || labels.indices.containsKey(stop)) {
+                    throw new IOException("Index is for a different network");
+                }
+                labels.stops[i] = stop;
+                labels.indices.put(stop, i);
+            }
+            for (int i = 0; i < size; i++) {
+                int[][] label = readLabel(input, size);
+                labels.outHubs[i] = label[0];
+                labels.outCosts[i] = label[1];
+                label = readLabel(input, size);
+                labels.inHubs[i] = label[0];
+                labels.inCosts[i] = label[1];
+            }
+            return labels;
+        }
+    }
+
+    private static void writeLabel(DataOutputStream output, int[] hubs,
+                                   int[] costs) throws IOException {
+        output.writeInt(hubs.length);
+        for (int i = 0; i < hubs.length; i++) {
+            output.writeInt(hubs[i]);
+            output.writeInt(costs[i]);
+        }
+    }
+
+    /*
+     * Reads a label written by writeLabel, returning its hubs and costs.
+     */
+    private static int[][] readLabel(DataInputStream input, int size)
+            throws IOException {
+        int length = input.readInt();
+        if (length < 0 || length > size) {
+            throw new IOException("Corrupt hub label index");
+        }
+        int[] hubs = new int[length];
+        int[] costs = new int[length];
+        for (int i = 0; i < length; i++) {
+            hubs[i] = input.readInt();
+            costs[i] = input.readInt();
+            if (hubs[i] < 0 || hubs[i] >= size
+                    || (i > 0 && hubs[i] <= hubs[i - 1])) {
+                throw new IOException("Corrupt hub label index");
+            }
+        }
+        return new int[][] {hubs, costs};
+    }
+
+    /*
+     * The state of building the labels with pruned searches.
+     */
+    private class Labelling {
+        // the neighbours of each stop and the distance to each
+        private StopGraph graph;
+
+        // the stops which have each stop as a neighbour, and the distance
+        private int[][] reverse;
+        private int[][] reverseDistances;
+
+        // labels under construction, with the number of pairs in each
+        private int[][] outHubsBuilt;
+        private int[][] outCostsBuilt;
+        private int[] outCounts;
+        private int[][] inHubsBuilt;
+        private int[][] inCostsBuilt;
+        private int[] inCounts;
+
+        // search buffers
+        private int[] costs;
+        private int[] touched;
+        private int touchedCount;
+        private int[] hubCosts;
+        private CostHeap heap;
+
+        private Labelling(StopGraph graph) {
+            this.graph = graph;
+            int size = graph.size();
+            int[] counts = new int[size];
+            for (int i = 0; i < size; i++) {
+                for (int neighbour : graph.neighboursOf(i)) {
+                    counts[neighbour]++;
+                }
+            }
+            reverse = new int[size][];
+            reverseDistances = new int[size][];
+            for (int i = 0; i < size; i++) {
+                reverse[i] = new int[counts[i]];
+                reverseDistances[i] = new int[counts[i]];
+                counts[i] = 0;
+            }
+            for (int i = 0; i < size; i++) {
+                int[] neighbours = graph.neighboursOf(i);
+                int[] distances = graph.distancesOf(i);
+                for (int j = 0; j < neighbours.length; j++) {
+                    int k = counts[neighbours[j]]++;
+                    reverse[neighbours[j]][k] = i;
+                    reverseDistances[neighbours[j]][k] = distances[j];
+                }
+            }
+
+            outHubsBuilt = new int[size][];
+            outCostsBuilt = new int[size][];
+            outCounts = new int[size];
+            inHubsBuilt = new int[size][];
+            inCostsBuilt = new int[size][];
+            inCounts = new int[size];
+            for (int i = 0; i < size; i++) {
+                outHubsBuilt[i] = new int[2];
+                outCostsBuilt[i] = new int[2];
+                inHubsBuilt[i] = new int[2];
+                inCostsBuilt[i] = new int[2];
+            }
+            costs = new int[size];
+            touched = new int[size];
+            hubCosts = new int[size];
+            Arrays.fill(costs, Integer.MAX_VALUE);
+            Arrays.fill(hubCosts, Integer.MAX_VALUE);
+            heap = new CostHeap();
+        }
+
+        /*
+         * Runs a forward and a backward pruned search from every stop in the
+         * given order, then stores the finished labels in the index.
+         */
+        private void labelAll(int[] order) {
+            int size = graph.size();
+            for (int hub = 0; hub < size; hub++) {
+                int stop = order[hub];
+                search(stop, hub, true);
+                search(stop, hub, false);
+            }
+
+            // hubs are numbered by search order, so labels are already sorted
+            for (int i = 0; i < size; i++) {
+                outHubs[i] = Arrays.copyOf(outHubsBuilt[i], outCounts[i]);
+                outCosts[i] = Arrays.copyOf(outCostsBuilt[i], outCounts[i]);
+                inHubs[i] = Arrays.copyOf(inHubsBuilt[i], inCounts[i]);
+                inCosts[i] = Arrays.copyOf(inCostsBuilt[i], inCounts[i]);
+            }
+        }
+
+        /*
+         * Searches from (or, if not forwards, to) the given stop, adding it as
+         * the given hub to the label of every stop whose cost to (or from) it
+         * cannot already be answered by the labels.
+         */
+        private void search(int stop, int hub, boolean forwards) {
+            // the costs between the stop and its own hubs, by hub
+            int[] ownHubs = forwards ? outHubsBuilt[stop] : inHubsBuilt[stop];
+            int[] ownCosts = forwards ? outCostsBuilt[stop]
+                    : inCostsBuilt[stop];
+            int ownCount = forwards ? outCounts[stop] : inCounts[stop];
+            for (int i = 0; i < ownCount; i++) {
+                hubCosts[ownHubs[i]] = ownCosts[i];
+            }
+
+            for (int i = 0; i < touchedCount; i++) {
+                costs[touched[i]] = Integer.MAX_VALUE;
+            }
+            touchedCount = 0;
+            heap.clear();
+            costs[stop] = 0;
+            touched[touchedCount++] = stop;
+            heap.push(stop, 0);
+
+            while (!heap.isEmpty()) {
+                int cost = heap.peekCost();
+                int current = heap.pop();
+                if (cost > costs[current]) {
+                    continue;
+                }
+                if (labelledCost(current, forwards) <= cost) {
+                    // already answered through a more connected hub
+                    continue;
+                }
+                if (forwards) {
+                    inCounts[current] = append(inHubsBuilt, inCostsBuilt,
+                            inCounts[current], current, hub, cost);
+                } else {
+                    outCounts[current] = append(outHubsBuilt, outCostsBuilt,
+                            outCounts[current], current, hub, cost);
+                }
+
+                int[] next = forwards ? graph.neighboursOf(current)
+                        : reverse[current];
+                int[] distances = forwards ? graph.distancesOf(current)
+                        : reverseDistances[current];
+                for (int i = 0; i < next.length; i++) {
+                    int newCost = cost + distances[i];
+                    if (newCost < costs[next[i]]) {
+                        if (costs[next[i]] == Integer.MAX_VALUE) {
+                            touched[touchedCount++] = next[i];
+                        }
+                        costs[next[i]] = newCost;
+                        heap.push(next[i], newCost);
+                    }
+                }
+            }
+
+            for (int i = 0; i < ownCount; i++) {
+                hubCosts[ownHubs[i]] = Integer.MAX_VALUE;
+            }
+        }
+
+        /*
+         * Returns the cost between the searched stop and the given stop which
+         * can be answered by the labels built so far.
+         */
+        private int labelledCost(int stop, boolean forwards) {
+            int[] hubs = forwards ? inHubsBuilt[stop] : outHubsBuilt[stop];
+            int[] labelCosts = forwards ? inCostsBuilt[stop]
+                    : outCostsBuilt[stop];
+            int count = forwards ? inCounts[stop] : outCounts[stop];
+            int best = Integer.MAX_VALUE;
+            for (int i = 0; i < count; i++) {
+                int own = hubCosts[hubs[i]];
+                if (own != Integer.MAX_VALUE) {
+                    best = Math.min(best, own + labelCosts[i]);
+                }
+            }
+            return best;
+        }
+
+        private int append(int[][] hubs, int[][] labelCosts, int count,
+                           int stop, int hub, int cost) {
+            if (count == hubs[stop].length) {
+                hubs[stop] = Arrays.copyOf(hubs[stop], count * 2);
+                labelCosts[stop] = Arrays.copyOf(labelCosts[stop], count * 2);
+            }
+            hubs[stop][count] = hub;
+            labelCosts[stop][count] = cost;
+            return count + 1;
+        }
+    }
+}
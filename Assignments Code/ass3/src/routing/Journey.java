@@ -0,0 +1,120 @@
+package routing;
+
+import stops.Stop;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The cheapest journey found between two stops in the transportation network.
+ *
+ * <p>A journey consists of every stop passed through, starting with the
+ * origin and ending with the destination. The cost of the journey is the sum
+ * of the distances between consecutive stops, which is the same cost that
+ * would be recorded for the destination in the origin's
+ * {@link stops.RoutingTable}.
+ */
+public class Journey {
+    // the stops passed through, from the origin to the destination
+    private List<Stop> path;
+
+    // the total cost of the journey
+    private int cost;
+
+    /**
+     * Creates a new journey through the given stops.
+     *
+     * @param path The stops passed through, starting with the origin and
+     *             ending with the destination. Must contain at least one stop.
+     * @param cost The total cost of the journey.
+     */
+    public Journey(List<Stop> path, int cost) {
+        this.path = new ArrayList<>(path);
+        this.cost = cost;
+    }
+
+    /**
+     * Returns the stop the journey starts at.
+     *
+     * @return The origin of the journey.
+     */
+    public Stop getOrigin() {
+        return path.get(0);
+    }
+
+    /**
+     * Returns the stop the journey ends at.
+     *
+     * @return The destination of the journey.
+     */
+    public Stop getDestination() {
+        return path.get(path.size() - 1);
+    }
+
+    /**
+     * Returns the total cost of the journey.
+     *
+     * @return The cost of the journey.
+     */
+    public int getCost() {
+        return cost;
+    }
+
+    /**
+     * Returns the stop passengers at the origin should be routed to first.
+     *
+     * <p>As in a routing table, if the origin and destination are the same
+     * stop, the next stop is the origin.
+     *
+     * @return The next stop of the journey.
+     */
+    public Stop getNextStop() {
+        return path.size() > 1 ? path.get(1) : path.get(0);
+    }
+
+    /**
+     * Returns every stop passed through on the journey, starting with the
+     * origin and ending with the destination.
+     *
+     * <p>Modifying the returned list should not result in changes to the
+     * journey.
+     *
+     * @return The stops on the journey.
+     */
+    public List<Stop> getPath() {
+        return new ArrayList<>(path);
+    }
+
+    /**
+     * Returns the number of stops passed through on the journey, including the
+     * origin and destination.
+     *
+     * @return The length of the journey's path.
+     */
+    public int length() {
+        return path.size();
+    }
+
+    /**
+     * Creates a string representation of the journey in the format:
+     *
+     * <p>'{cost}:{stop0}|{stop1}|...|{stopN}'
+     *
+     * <p>without the surrounding quotes, where {cost} is the cost of the
+     * journey and each {stop} is the name of a stop on the journey.
+     *
+     * @return A string representation of the journey.
+     */
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder();
+        builder.append(cost).append(":");
+        for (int i = 0; i < path.size(); i++) {
+            if (i > 0) {
+                builder.append("|");
+            }
+            builder.append(path.get(i).getName());
+        }
+        return builder.toString();
+    }
+}
@@ -0,0 +1,229 @@
+package routing;
+
+import stops.CostHeap;
+import stops.Stop;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Answers point to point journey queries using A* search.
+ *
+ * <p>The cost of travelling between neighbouring stops is the cost of the
+ * link between them (see {@link Stop#linkCostTo(Stop)}), which is never less
+ * than the Manhattan distance between them (see
+ * {@link Stop#distanceTo(Stop)}). The Manhattan distance from a stop straight
+ * to the destination can therefore never be more than the cost of any route
+ * to the destination, so it is used to guide the search towards the
+ * destination. Only the stops which could lie on a
+ * cheaper journey are visited, so a query usually visits a small part of the
+ * network, and no routing tables are needed or updated.
+ *
+ * <p>When journeys have to detour far from the straight line between their
+ * stops, the Manhattan distance underestimates the remaining cost badly and
+ * many more stops are visited. A planner created with {@link Landmarks}
+ * uses the landmarks' tighter lower bounds instead.
+ *
+ * <p>Queries are answered using the current neighbours of each stop. The cost
+ * of each journey is the same as would be recorded in the origin's routing
+ * table; when several journeys have the same cost, the one returned may pass
+ * through different stops to the one recorded in the table.
+ *
+ * <p>A planner reuses its search buffers between queries, so a single planner
+ * should not be used by more than one thread at a time.
+ */
+public class JourneyPlanner {
+    // the stops visited by the current query, by search index
+    private List<Stop> visited;
+
+    // the search index of each stop visited by the current query
+    private Map<Stop, Integer> indices;
+
+    // the cheapest known cost from the origin to each visited stop
+    private int[] costs;
+
+    // the search index of the stop before each visited stop, or -1
+    private int[] previous;
+
+    // whether the cost of each visited stop is final
+    private boolean[] settled;
+
+    // visited stops ordered by cost plus estimated remaining cost
+    private CostHeap heap;
+
+    // the lower bounds used to estimate remaining costs, or null
+    private Landmarks landmarks;
+
+    /**
+     * Creates a new journey planner, which estimates remaining costs using
+     * the Manhattan distance.
+     */
+    public JourneyPlanner() {
+        this(null);
+    }
+
+    /**
+     * Creates a new journey planner, which estimates remaining costs using
+     * the given landmarks.
+     *
+     * @param landmarks The landmarks to compute lower bounds with, or null
+     *         to use the Manhattan distance.
+     */
+    public JourneyPlanner(Landmarks landmarks) {
+        this.landmarks = landmarks;
+        visited = new ArrayList<>();
+        indices = new IdentityHashMap<>();
+        costs = new int[16];
+        previous = new int[16];
+        settled = new boolean[16];
+        heap = new CostHeap();
+    }
+
+    /**
+     * Finds the cheapest journey from the origin to the destination.
+     *
+     * <p>If the origin and destination are the same stop, the journey only
+     * contains that stop and has a cost of 0.
+     *
+     * @param origin The stop to start the journey at.
+     * @param destination The stop to end the journey at.
+     * @return The cheapest journey, or null if either stop is null or the
+     *         destination cannot be reached from the origin.
+     */
+    public Journey plan(Stop origin, Stop destination) {
+        if (origin == null || destination == null) {
+            return null;
+        }
+        reset();
+        int source = visit(origin, 0, -1);
+        int bound = estimate(origin, destination);
+        if (bound == Integer.MAX_VALUE) {
+            return null;
+        }
+        heap.push(source, bound);
+
+        while (!heap.isEmpty()) {
+            int estimate = heap.peekCost();
+            int current = heap.pop();
+            Stop stop = visited.get(current);
+            int remaining = estimate(stop, destination);
+            if (settled[current] || estimate > costs[current] + remaining) {
+                // stale entry, a cheaper route has already been found
+                continue;
+            }
+            settled[current] = true;
+            if (stop == destination) {
+                return journeyTo(current);
+            }
+
+            for (Stop neighbour : stop.getNeighbours()) {
+                int newCost = costs[current] + stop.linkCostTo(neighbour);
+                Integer index = indices.get(neighbour);
+                if (index == null) {
+                    index = visit(neighbour, newCost, current);
+                } else if (newCost < costs[index]) {
+                    costs[index] = newCost;
+                    previous[index] = current;
+                } else {
+                    continue;
+                }
+                int rest = estimate(neighbour, destination);
+                if (rest != Integer.MAX_VALUE) {
+                    heap.push(index, newCost + rest);
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Returns the cost of the cheapest journey from the origin to the
+     * destination.
+     *
+     * @param origin The stop to start the journey at.
+     * @param destination The stop to end the journey at.
+     * @return The cost of the cheapest journey, or Integer.MAX_VALUE if
+     *         either stop is null or the destination cannot be reached from
+     *         the origin.
+     */
+    public int costTo(Stop origin, Stop destination) {
+        Journey journey = plan(origin, destination);
+        return journey == null ? Integer.MAX_VALUE : journey.getCost();
+    }
+
+    /**
+     * Returns the first stop passengers at the origin should travel to on the
+     * cheapest journey to the destination.
+     *
+     * @param origin The stop to start the journey at.
+     * @param destination The stop to end the journey at.
+     * @return The next stop of the cheapest journey, or null if either stop is
+     *         null or the destination cannot be reached from the origin.
+     */
+    public Stop nextStop(Stop origin, Stop destination) {
+        Journey journey = plan(origin, destination);
+        return journey == null ? null : journey.getNextStop();
+    }
+
+    /**
+     * Returns the number of stops visited by the last query.
+     *
+     * @return The number of stops visited.
+     */
+    public int getVisitedCount() {
+        return visited.size();
+    }
+
+    /*
+     * Returns a lower bound on the cost from the stop to the destination.
+     */
+    private int estimate(Stop stop, Stop destination) {
+        return landmarks == null ? stop.distanceTo(destination)
+                : landmarks.lowerBound(stop, destination);
+    }
+
+    /*
+     * Clears the state of the previous query.
+     */
+    private void reset() {
+        visited.clear();
+        indices.clear();
+        heap.clear();
+    }
+
+    /*
+     * Gives the stop the next search index, recording its cost and previous
+     * stop, and returns the index.
+     */
+    private int visit(Stop stop, int cost, int before) {
+        int index = visited.size();
+        if (index == costs.length) {
+            costs = Arrays.copyOf(costs, index * 2);
+            previous = Arrays.copyOf(previous, index * 2);
+            settled = Arrays.copyOf(settled, index * 2);
+        }
+        visited.add(stop);
+        indices.put(stop, index);
+        costs[index] = cost;
+        previous[index] = before;
+        settled[index] = false;
+        return index;
+    }
+
+    /*
+     * Builds the journey ending at the stop with the given search index by
+     * following the previous stops back to the origin.
+     */
+    private Journey journeyTo(int index) {
+        List<Stop> path = new ArrayList<>();
+        for (int i = index; i >= 0; i = previous[i]) {
+            path.add(visited.get(i));
+        }
+        Collections.reverse(path);
+        return new Journey(path, costs[index]);
+    }
+}
@@ -0,0 +1,268 @@
+package routing;
+
+import stops.CostHeap;
+import stops.Stop;
+import stops.StopGraph;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Set;
+
+/**
+ * Finds several alternative journeys between two stops, cheapest first.
+ *
+ * <p>Journeys are found with Yen's algorithm. Once the cheapest journey is
+ * known, each following journey is found by leaving one of the journeys
+ * already found at some stop (the spur stop), and searching for the cheapest
+ * way on to the destination which does not repeat the journey so far and
+ * does not take the same next link as a journey already found with the same
+ * start. The cheapest of these candidates is the next journey. No journey
+ * passes through the same stop twice.
+ *
+ * <p>The cost of travelling between neighbouring stops is the cost of the
+ * link between them (see {@link Stop#linkCostTo(Stop)}). The stops and their
+ * links are copied when the finder is created (see {@link StopGraph}), so
+ * later changes to the network are not seen by an existing finder. A finder
+ * reuses its search buffers between queries, so a single finder should not
+ * be used by more than one thread at a time.
+ */
+public class KShortestPaths {
+    // the cost recorded for stops which have not been reached
+    private static final int UNREACHED = Integer.MAX_VALUE;
+
+    // the stops and links searched
+    private StopGraph graph;
+
+    // the cheapest known cost to each stop in the current search
+    private int[] costs;
+
+    // the stop before each stop on the cheapest known route, or -1
+    private int[] previous;
+
+    // stops the current search may not pass through
+    private BitSet blocked;
+
+    // stops the current search may not travel to directly from its start
+    private BitSet blockedFirst;
+
+    // stops ordered by their cost in the current search
+    private CostHeap heap;
+
+    /**
+     * Creates a finder for journeys between the given stops and every stop
+     * reachable from them.
+     *
+     * @param stops The stops to find journeys between.
+     */
+    public KShortestPaths(Collection<Stop> stops) {
+        graph = new StopGraph(stops);
+        costs = new int[graph.size()];
+        previous = new int[graph.size()];
+        blocked = new BitSet(graph.size());
+        blockedFirst = new BitSet(graph.size());
+        heap = new CostHeap();
+    }
+
+    /**
+     * Returns the number of stops the finder can find journeys between.
+     *
+     * @return The number of stops.
+     */
+    public int size() {
+        return graph.size();
+    }
+
+    /**
+     * Finds up to the given number of journeys from the origin to the
+     * destination, in order of increasing cost.
+     *
+     * <p>The first journey is the cheapest journey, with the same cost as
+     * would be recorded in the origin's routing table. No two journeys pass
+     * through the same stops in the same order. If the origin and destination
+     * are the same stop, the only journey contains that stop and has a cost
+     * of 0.
+     *
+     * @param origin The stop to start the journeys at.
+     * @param destination The stop to end the journeys at.
+     * @param count The largest number of journeys to find.
+     * @return The journeys found, which has fewer than the given number of
+     *         journeys if there are not enough distinct journeys, and is
+     *         empty if either stop is unknown or the destination cannot be
+     *         reached.
+     * @throws IllegalArgumentException If the count is less than 1.
+     */
+    public List<Journey> find(Stop origin, Stop destination, int count) {
+        if (count < 1) {
+            throw new IllegalArgumentException();
+        }
+        int source = origin == null ? -1 : graph.indexOf(origin);
+        int target = destination == null ? -1 : graph.indexOf(destination);
+        List<Journey> found = new ArrayList<>();
+        if (source == -1 || target == -1) {
+            return found;
+        }
+        blocked.clear();
+        blockedFirst.clear();
+        int[] first = search(source, target);
+        if (first == null) {
+            return found;
+        }
+
+        List<int[]> paths = new ArrayList<>();
+        paths.add(first);
+        PriorityQueue<int[]> candidates = new PriorityQueue<>(
+                new Comparator<int[]>() {
+                    @Override
+                    public int compare(int[] a, int[] b) {
+                        return Integer.compare(a[0], b[0]);
+                    }
+                });
+        Set<List<Integer>> seen = new HashSet<>();
+        seen.add(key(first));
+
+        while (paths.size() < count) {
+            int[] last = paths.get(paths.size() - 1);
+            int rootCost = 0;
+            for (int spur = 1; spur < last.length - 1; spur++) {
+                // block the links taken from the spur stop by journeys found
+                // so far which start the same way as this one
+                blocked.clear();
+                blockedFirst.clear();
+                for (int[] path : paths) {
+                    if (path.length > spur + 1 && sameStart(path, last, spur)) {
+                        blockedFirst.set(path[spur + 1]);
+                    }
+                }
+                for (int i = 1; i < spur; i++) {
+                    blocked.set(last[i]);
+                }
+
+                int[] rest = search(last[spur], target);
+                if (rest != null) {
+                    int[] candidate = new int[spur + rest.length - 1];
+                    System.arraycopy(last, 1, candidate, 1, spur - 1);
+                    System.arraycopy(rest, 1, candidate, spur,
+                            rest.length - 1);
+                    candidate[0] = rootCost + rest[0];
+                    if (seen.add(key(candidate))) {
+                        candidates.add(candidate);
+                    }
+                }
+                if (spur < last.length - 2) {
+                    rootCost += linkCost(last[spur], last[spur + 1]);
+                }
+            }
+            if (candidates.isEmpty()) {
+                break;
+            }
+            paths.add(candidates.poll());
+        }
+
+        for (int[] path : paths) {
+            List<Stop> stops = new ArrayList<>();
+            for (int i = 1; i < path.length; i++) {
+                stops.add(graph.getStop(path[i]));
+            }
+            found.add(new Journey(stops, path[0]));
+        }
+        return found;
+    }
+
+    /*
+     * Finds the cheapest route from the source to the target which avoids
+     * the blocked stops and links. Returns the cost followed by the stops of
+     * the route, or null if there is none.
+     */
+    private int[] search(int source, int target) {
+        Arrays.fill(costs, UNREACHED);
+        Arrays.fill(previous, -1);
+        heap.clear();
+        costs[source] = 0;
+        heap.push(source, 0);
+
+        while (!heap.isEmpty()) {
+            int cost = heap.peekCost();
+            int current = heap.pop();
+            if (cost > costs[current]) {
+                continue;
+            }
+            if (current == target) {
+                break;
+            }
+            int[] neighbours = graph.neighboursOf(current);
+            int[] distances = graph.distancesOf(current);
+            for (int i = 0; i < neighbours.length; i++) {
+                int next = neighbours[i];
+                if (blocked.get(next)
+                        || (current == source && blockedFirst.get(next))) {
+                    continue;
+                }
+                int newCost = cost + distances[i];
+                if (newCost < costs[next]) {
+                    costs[next] = newCost;
+                    previous[next] = current;
+                    heap.push(next, newCost);
+                }
+            }
+        }
+        if (costs[target] == UNREACHED) {
+            return null;
+        }
+
+        int length = 1;
+        for (int stop = target; stop != source; stop = previous[stop]) {
+            length++;
+        }
+        int[] path = new int[length + 1];
+        path[0] = costs[target];
+        for (int stop = target, i = length; i > 0; i--) {
+            path[i] = stop;
+            stop = previous[stop];
+        }
+        return path;
+    }
+
+    /*
+     * Returns whether the two paths pass through the same stops up to and
+     * including the given position.
+     */
+    private static boolean sameStart(int[] path, int[] other, int position) {
+        for (int i = 1; i <= position; i++) {
+            if (path[i] != other[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /*
+     * Returns the cost of the link between the given neighbouring stops.
+     */
+    private int linkCost(int from, int to) {
+        int[] neighbours = graph.neighboursOf(from);
+        for (int i = 0; i < neighbours.length; i++) {
+            if (neighbours[i] == to) {
+                return graph.distancesOf(from)[i];
+            }
+        }
+        return UNREACHED;
+    }
+
+    /*
+     * Returns the stops of the given path (without its cost), so that paths
+     * can be compared.
+     */
+    private static List<Integer> key(int[] path) {
+        List<Integer> stops = new ArrayList<>();
+        for (int i = 1; i < path.length; i++) {
+            stops.add(path[i]);
+        }
+        return stops;
+    }
+}
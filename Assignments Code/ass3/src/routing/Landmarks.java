@@ -0,0 +1,315 @@
+package routing;
+
+import stops.CostHeap;
+import stops.Stop;
+import stops.StopGraph;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Random;
+
+/**
+ * Lower bounds on the cost of journeys, computed from the costs to and from
+ * a few landmark stops.
+ *
+ * <p>For any landmark L and stops s and t, the triangle inequality gives
+ * cost(L, t) - cost(L, s) and cost(s, L) - cost(t, L) as lower bounds on
+ * cost(s, t). When a landmark lies beyond the destination, or behind the
+ * origin, these bounds are close to the real cost even when every route
+ * has to detour far from the straight line between the stops (for example
+ * around water crossed by ferry lines), where the Manhattan distance (see
+ * {@link Stop#distanceTo(Stop)}) is a poor guide. A {@link JourneyPlanner}
+ * created with landmarks uses these bounds to guide its search.
+ *
+ * <p>The landmarks are chosen when the index is created, either at random or
+ * by repeatedly taking the stop farthest from the landmarks chosen so far
+ * (see {@link Selection}). The index stores two costs per landmark for every
+ * stop, so its memory use grows with the number of landmarks; see
+ * {@link #countFor(int, long)} to choose the number for a memory budget.
+ *
+ * <p>The stops and their links are copied when the index is created (see
+ * {@link StopGraph}). Removing links or raising their costs afterwards keeps
+ * the bounds valid, only less tight; after links are added or their costs
+ * lowered, the index should be created again.
+ */
+public class Landmarks {
+    /**
+     * The ways in which landmarks can be chosen.
+     */
+    public enum Selection {
+        /**
+         * Landmarks are chosen at random. The same stops are chosen each
+         * time for the same network.
+         */
+        RANDOM,
+
+        /**
+         * Each landmark is the stop with the highest cost from the nearest
+         * landmark chosen so far, which places landmarks around the edges
+         * of the network. Stops which cannot be reached from any landmark so
+         * far are chosen first.
+         */
+        FARTHEST
+    }
+
+    // the cost recorded for stops which cannot be reached
+    private static final int UNREACHED = Integer.MAX_VALUE;
+
+    // the seed used to choose random landmarks
+    private static final long SEED = 2002;
+
+    // the stops and links the costs were computed over
+    private StopGraph graph;
+
+    // the graph index of each landmark
+    private int[] landmarks;
+
+    // the cost from each landmark to each stop, by graph index
+    private int[][] fromLandmark;
+
+    // the cost from each stop to each landmark, by graph index
+    private int[][] toLandmark;
+
+    /**
+     * Builds an index of the given stops and every stop reachable from them,
+     * using sixteen landmarks chosen by {@link Selection#FARTHEST}.
+     *
+     * @param stops The stops from which to start building the index.
+     */
+    public Landmarks(Collection<Stop> stops) {
+        this(stops, 16, Selection.FARTHEST);
+    }
+
+    /**
+     * Builds an index of the given stops and every stop reachable from them.
+     *
+     * <p>If there are fewer stops than the given number of landmarks, every
+     * stop is a landmark.
+     *
+     * @param stops The stops from which to start building the index.
+     * @param count The number of landmarks to choose.
+     * @param selection How the landmarks should be chosen.
+     * @throws IllegalArgumentException If the count is less than 1, or the
+     *         selection is null.
+     */
+    public Landmarks(Collection<Stop> stops, int count, Selection selection) {
+        if (count < 1) {
+            throw new IllegalArgumentException("need at least one landmark");
+        }
+        if (selection == null) {
+            throw new IllegalArgumentException("no landmark selection");
+        }
+        graph = new StopGraph(stops);
+        int size = graph.size();
+        count = Math.min(count, size);
+        landmarks = new int[count];
+        fromLandmark = new int[count][];
+        toLandmark = new int[count][];
+
+        int[][] reverse = new int[size][];
+        int[][] reverseDistances = new int[size][];
+        reverse(reverse, reverseDistances);
+        CostHeap heap = new CostHeap();
+        int[] nearest = new int[size];
+        Arrays.fill(nearest, UNREACHED);
+        Random random = new Random(SEED);
+
+        for (int i = 0; i < count; i++) {
+            int landmark;
+            if (selection == Selection.RANDOM) {
+                do {
+                    landmark = random.nextInt(size);
+                } while (isLandmark(landmark, i));
+            } else {
+                landmark = farthest(nearest, i);
+            }
+            landmarks[i] = landmark;
+            fromLandmark[i] = new int[size];
+            toLandmark[i] = new int[size];
+            search(landmark, null, null, fromLandmark[i], heap);
+            search(landmark, reverse, reverseDistances, toLandmark[i], heap);
+            for (int j = 0; j < size; j++) {
+                nearest[j] = Math.min(nearest[j], fromLandmark[i][j]);
+            }
+        }
+    }
+
+    /**
+     * Returns the number of landmarks which fit in the given memory budget
+     * for a network with the given number of stops.
+     *
+     * @param stopCount The number of stops in the network.
+     * @param bytes The number of bytes the landmark costs may use.
+     * @return The number of landmarks to choose, at least 1.
+     */
+    public static int countFor(int stopCount, long bytes) {
+        long perLandmark = 2L * Integer.BYTES * Math.max(stopCount, 1);
+        return (int) Math.max(1, Math.min(Integer.MAX_VALUE,
+                bytes / perLandmark));
+    }
+
+    /**
+     * Returns the number of stops in the index.
+     *
+     * @return The number of stops.
+     */
+    public int size() {
+        return graph.size();
+    }
+
+    /**
+     * Returns the number of landmarks in the index.
+     *
+     * @return The number of landmarks.
+     */
+    public int getLandmarkCount() {
+        return landmarks.length;
+    }
+
+    /**
+     * Returns the landmark with the given number.
+     *
+     * @param number The number of the landmark, from 0 to
+     *         getLandmarkCount() - 1.
+     * @return The landmark stop.
+     * @throws IndexOutOfBoundsException If there is no landmark with the
+     *         given number.
+     */
+    public Stop getLandmark(int number) {
+        return graph.getStop(landmarks[number]);
+    }
+
+    /**
+     * Returns the approximate number of bytes used by the landmark costs.
+     *
+     * @return The memory used by the costs.
+     */
+    public long getMemoryUse() {
+        return 2L * Integer.BYTES * landmarks.length * graph.size();
+    }
+
+    /**
+     * Returns a lower bound on the cost of the cheapest journey from the
+     * origin to the destination.
+     *
+     * <p>The bound is never less than the Manhattan distance between the
+     * stops. If either stop is not in the index, the Manhattan distance is
+     * returned.
+     *
+     * @param origin The stop the journey starts at.
+     * @param destination The stop the journey ends at.
+     * @return A lower bound on the cost of the journey, or Integer.MAX_VALUE
+     *         if the destination is known to be unreachable from the origin.
+     */
+    public int lowerBound(Stop origin, Stop destination) {
+        int bound = origin.distanceTo(destination);
+        int source = graph.indexOf(origin);
+        int target = graph.indexOf(destination);
+        if (source < 0 || target < 0) {
+            return bound;
+        }
+        for (int i = 0; i < landmarks.length; i++) {
+            int[] from = fromLandmark[i];
+            if (from[source] != UNREACHED && from[target] != UNREACHED) {
+                bound = Math.max(bound, from[target] - from[source]);
+            }
+            int[] to = toLandmark[i];
+            if (to[target] != UNREACHED) {
+                if (to[source] == UNREACHED) {
+                    // the destination reaches the landmark, the origin can't
+                    return UNREACHED;
+                }
+                bound = Math.max(bound, to[source] - to[target]);
+            }
+        }
+        return bound;
+    }
+
+    /*
+     * Returns whether the stop with the given graph index is one of the
+     * first given number of landmarks.
+     */
+    private boolean isLandmark(int index, int count) {
+        for (int i = 0; i < count; i++) {
+            if (landmarks[i] == index) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /*
+     * Returns the stop with the highest cost from its nearest landmark,
+     * skipping the first given number of landmarks themselves.
+     */
+    private int farthest(int[] nearest, int count) {
+        int best = -1;
+        for (int i = 0; i < nearest.length; i++) {
+            if (!isLandmark(i, count)
+                    && (best < 0 || nearest[i] > nearest[best])) {
+                best = i;
+            }
+        }
+        return best;
+    }
+
+    /*
+     * Fills the given arrays with the stops which have each stop as a
+     * neighbour, and the distance from each of them.
+     */
+    private void reverse(int[][] reverse, int[][] reverseDistances) {
+        int size = graph.size();
+        int[] counts = new int[size];
+        for (int i = 0; i < size; i++) {
+            for (int neighbour : graph.neighboursOf(i)) {
+                counts[neighbour]++;
+            }
+        }
+        for (int i = 0; i < size; i++) {
+            reverse[i] = new int[counts[i]];
+            reverseDistances[i] = new int[counts[i]];
+            counts[i] = 0;
+        }
+        for (int i = 0; i < size; i++) {
+            int[] neighbours = graph.neighboursOf(i);
+            int[] distances = graph.distancesOf(i);
+            for (int j = 0; j < neighbours.length; j++) {
+                int k = counts[neighbours[j]]++;
+                reverse[neighbours[j]][k] = i;
+                reverseDistances[neighbours[j]][k] = distances[j];
+            }
+        }
+    }
+
+    /*
+     * Fills the given array with the cost from the landmark to every stop,
+     * or, if reversed links are given, the cost from every stop to the
+     * landmark.
+     */
+    private void search(int landmark, int[][] reverse,
+                        int[][] reverseDistances, int[] costs,
+                        CostHeap heap) {
+        Arrays.fill(costs, UNREACHED);
+        heap.clear();
+        costs[landmark] = 0;
+        heap.push(landmark, 0);
+        while (!heap.isEmpty()) {
+            int cost = heap.peekCost();
+            int current = heap.pop();
+            if (cost > costs[current]) {
+                continue;
+            }
+            int[] neighbours = reverse != null ? reverse[current]
+                    : graph.neighboursOf(current);
+            int[] distances = reverse != null ? reverseDistances[current]
+                    : graph.distancesOf(current);
+            for (int i = 0; i < neighbours.length; i++) {
+                int newCost = cost + distances[i];
+                if (newCost < costs[neighbours[i]]) {
+                    costs[neighbours[i]] = newCost;
+                    heap.push(neighbours[i], newCost);
+                }
+            }
+        }
+    }
+}
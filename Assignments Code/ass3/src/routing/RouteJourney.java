@@ -0,0 +1,55 @@
+package routing;
+
+import routes.Route;
+import stops.Stop;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A journey which travels along one or more routes in the network.
+ *
+ * <p>As well as the stops passed through, a route journey records the route
+ * ridden on each leg of the journey. Passengers transfer between routes at
+ * the end of every leg except the last.
+ */
+public class RouteJourney extends Journey {
+    // the route ridden on each leg of the journey, in order
+    private List<Route> routes;
+
+    /**
+     * Creates a new journey through the given stops, riding the given routes.
+     *
+     * @param path The stops passed through, starting with the origin and
+     *             ending with the destination. Must contain at least one stop.
+     * @param cost The total cost of the journey.
+     * @param routes The route ridden on each leg of the journey, which is
+     *               empty if the origin is the destination.
+     */
+    public RouteJourney(List<Stop> path, int cost, List<Route> routes) {
+        super(path, cost);
+        this.routes = new ArrayList<>(routes);
+    }
+
+    /**
+     * Returns the route ridden on each leg of the journey, in order.
+     *
+     * <p>Modifying the returned list should not result in changes to the
+     * journey.
+     *
+     * @return The routes of the journey.
+     */
+    public List<Route> getRoutes() {
+        return new ArrayList<>(routes);
+    }
+
+    /**
+     * Returns the number of times passengers change routes on the journey.
+     *
+     * @return The number of transfers, which is 0 for a journey riding a
+     *         single route (or none).
+     */
+    public int getTransfers() {
+        return Math.max(0, routes.size() - 1);
+    }
+}
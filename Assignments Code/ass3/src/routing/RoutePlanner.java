@@ -0,0 +1,386 @@
+package routing;
+
+import routes.Route;
+import stops.Stop;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Plans journeys which ride along the routes of the network, trading off the
+ * cost of a journey against the number of transfers between routes.
+ *
+ * <p>Journeys are found in rounds, in the style of the RAPTOR algorithm. The
+ * first round finds the cheapest journey to each stop which rides a single
+ * route, the second round those which ride at most two routes, and so on.
+ * Each round only scans the routes which serve a stop reached more cheaply
+ * in the previous round, and scans the stops of each route in order (in both
+ * directions, as vehicles travel both ways along a route), so no priority
+ * queue or per-stop map lookups are needed.
+ *
+ * <p>A passenger can ride a route between any two of its stops, and the cost
+ * of doing so is the sum of the distances between the consecutive stops
+ * passed (see {@link Stop#distanceTo(Stop)}). The cheapest journey found is
+ * therefore as cheap as the one recorded in the origin's
+ * {@link stops.RoutingTable}, if every link in the network belongs to a
+ * route and no link has had its cost raised (see
+ * {@link Stop#setLinkCost(Stop, int)}).
+ *
+ * <p>The routes and their stops are copied when the planner is created, so
+ * changes to the routes are not seen by an existing planner. A planner reuses
+ * its buffers between queries, so a single planner should not be used by
+ * more than one thread at a time.
+ */
+public class RoutePlanner {
+    // the cost recorded for stops which have not been reached
+    private static final int UNREACHED = Integer.MAX_VALUE;
+
+    // the routes in the planner, by route index
+    private Route[] routes;
+
+    // the stop indices of each route, in order along the route
+    private int[][] routeStops;
+
+    // the cost of riding from the start of each route to each of its stops
+    private int[][] offsets;
+
+    // the stops on any route, by stop index
+    private Stop[] stops;
+
+    // the stop index of each stop
+    private Map<Stop, Integer> indices;
+
+    // the routes serving each stop, in compressed row form
+    private int[] servingStart;
+    private int[] serving;
+
+    // the cheapest cost to each stop using at most each number of rides
+    private List<int[]> labels;
+
+    // for stops improved in each round, the route ridden to reach them
+    private List<int[]> ridden;
+
+    // for stops improved in each round, where the route was boarded and left
+    private List<int[]> boarded;
+    private List<int[]> alighted;
+
+    // the stops improved in the previous and current round
+    private BitSet marked;
+    private BitSet improved;
+
+    // the routes to scan in the current round
+    private BitSet toScan;
+
+    /**
+     * Creates a planner for journeys along the given routes.
+     *
+     * <p>Null routes are ignored.
+     *
+     * @param routes The routes passengers can ride.
+     */
+    public RoutePlanner(Collection<Route> routes) {
+        List<Route> kept = new ArrayList<>();
+        List<Stop> order = new ArrayList<>();
+        indices = new IdentityHashMap<>();
+        for (Route route : routes) {
+            if (route == null) {
+                continue;
+            }
+            kept.add(route);
+            for (Stop stop : route.getStopsOnRoute()) {
+                if (!indices.containsKey(stop)) {
+                    indices.put(stop, order.size());
+                    order.add(stop);
+                }
+            }
+        }
+        this.routes = kept.toArray(new Route[0]);
+        this.stops = order.toArray(new Stop[0]);
+
+        routeStops = new int[this.routes.length][];
+        offsets = new int[this.routes.length][];
+        servingStart = new int[stops.length + 1];
+        for (int r = 0; r < this.routes.length; r++) {
+            List<Stop> onRoute = this.routes[r].getStopsOnRoute();
+            routeStops[r] = new int[onRoute.size()];
+            offsets[r] = new int[onRoute.size()];
+            for (int i = 0; i < onRoute.size(); i++) {
+                routeStops[r][i] = indices.get(onRoute.get(i));
+                servingStart[routeStops[r][i] + 1]++;
+                if (i > 0) {
+                    offsets[r][i] = offsets[r][i - 1]
+                            + onRoute.get(i - 1).distanceTo(onRoute.get(i));
+                }
+            }
+        }
+        for (int stop = 0; stop < stops.length; stop++) {
+            servingStart[stop + 1] += servingStart[stop];
+        }
+        serving = new int[servingStart[stops.length]];
+        int[] filled = Arrays.copyOf(servingStart, stops.length);
+        for (int r = 0; r < this.routes.length; r++) {
+            for (int stop : routeStops[r]) {
+                serving[filled[stop]++] = r;
+            }
+        }
+
+        labels = new ArrayList<>();
+        ridden = new ArrayList<>();
+        boarded = new ArrayList<>();
+        alighted = new ArrayList<>();
+        marked = new BitSet(stops.length);
+        improved = new BitSet(stops.length);
+        toScan = new BitSet(this.routes.length);
+    }
+
+    /**
+     * Returns the number of stops served by the planner's routes.
+     *
+     * @return The number of stops.
+     */
+    public int size() {
+        return stops.length;
+    }
+
+    /**
+     * Returns the number of routes in the planner.
+     *
+     * @return The number of routes.
+     */
+    public int getRouteCount() {
+        return routes.length;
+    }
+
+    /**
+     * Finds every journey from the origin to the destination which is not
+     * beaten on both cost and number of transfers by another journey.
+     *
+     * <p>The journeys are ordered from fewest to most transfers, so each
+     * journey in the list is cheaper but has more transfers than the one
+     * before it. The last journey is the cheapest journey along the routes.
+     *
+     * <p>If the origin and destination are the same stop, the only journey
+     * contains that stop, rides no routes and has a cost of 0.
+     *
+     * @param origin The stop to start the journey at.
+     * @param destination The stop to end the journey at.
+     * @return The Pareto-optimal journeys, which is empty if either stop is
+     *         not on a route or the destination cannot be reached.
+     */
+    public List<RouteJourney> plan(Stop origin, Stop destination) {
+        return plan(origin, destination, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Finds every journey from the origin to the destination with at most
+     * the given number of transfers which is not beaten on both cost and
+     * number of transfers by another journey (see
+     * {@link #plan(Stop, Stop)}).
+     *
+     * @param origin The stop to start the journey at.
+     * @param destination The stop to end the journey at.
+     * @param maxTransfers The largest number of transfers a journey may have.
+     * @return The Pareto-optimal journeys, which is empty if either stop is
+     *         not on a route or the destination cannot be reached with at
+     *         most the given number of transfers.
+     */
+    public List<RouteJourney> plan(Stop origin, Stop destination,
+                                   int maxTransfers) {
+        Integer source = origin == null ? null : indices.get(origin);
+        Integer target = destination == null ? null
+                : indices.get(destination);
+        if (source == null || target == null || maxTransfers < 0) {
+            return new ArrayList<>();
+        }
+        if (source.equals(target)) {
+            List<RouteJourney> journeys = new ArrayList<>();
+            journeys.add(new RouteJourney(Collections.singletonList(origin),
+                    0, Collections.<Route>emptyList()));
+            return journeys;
+        }
+
+        int rounds = search(source, target,
+                (int) Math.min(routes.length, maxTransfers + 1L));
+        List<RouteJourney> journeys = new ArrayList<>();
+        for (int round = 1; round <= rounds; round++) {
+            if (labels.get(round)[target] < labels.get(round - 1)[target]) {
+                journeys.add(unpack(source, target, round));
+            }
+        }
+        return journeys;
+    }
+
+    /**
+     * Returns the cost of the cheapest journey along the routes from the
+     * origin to the destination.
+     *
+     * @param origin The stop to start the journey at.
+     * @param destination The stop to end the journey at.
+     * @return The cost of the cheapest journey, or Integer.MAX_VALUE if
+     *         there is none.
+     */
+    public int costTo(Stop origin, Stop destination) {
+        List<RouteJourney> journeys = plan(origin, destination);
+        return journeys.isEmpty() ? Integer.MAX_VALUE
+                : journeys.get(journeys.size() - 1).getCost();
+    }
+
+    /*
+     * Runs rounds of the search from the source until no stop improves or
+     * the given number of rounds have been run. Returns the last round run.
+     */
+    private int search(int source, int target, int maxRounds) {
+        int[] first = labelsOf(0);
+        Arrays.fill(first, UNREACHED);
+        first[source] = 0;
+        marked.clear();
+        marked.set(source);
+
+        int round = 0;
+        while (round < maxRounds && !marked.isEmpty()) {
+            round++;
+            int[] previous = labels.get(round - 1);
+            int[] current = labelsOf(round);
+            System.arraycopy(previous, 0, current, 0, stops.length);
+            Arrays.fill(ridden.get(round), -1);
+
+            toScan.clear();
+            for (int stop = marked.nextSetBit(0); stop >= 0;
+                 stop = marked.nextSetBit(stop + 1)) {
+                for (int i = servingStart[stop]; i < servingStart[stop + 1];
+                     i++) {
+                    toScan.set(serving[i]);
+                }
+            }
+
+            improved.clear();
+            for (int r = toScan.nextSetBit(0); r >= 0;
+                 r = toScan.nextSetBit(r + 1)) {
+                scanForwards(r, round, target);
+                scanBackwards(r, round, target);
+            }
+            BitSet swap = marked;
+            marked = improved;
+            improved = swap;
+        }
+        return round;
+    }
+
+    /*
+     * Rides the given route from the start towards the end, boarding at
+     * stops improved in the previous round.
+     */
+    private void scanForwards(int route, int round, int target) {
+        int[] previous = labels.get(round - 1);
+        int[] sequence = routeStops[route];
+        int[] offset = offsets[route];
+
+        // the position boarded at, and its cost less the offset there
+        int board = -1;
+        int boardCost = 0;
+        for (int i = 0; i < sequence.length; i++) {
+            int stop = sequence[i];
+            if (board != -1) {
+                update(route, round, target, stop, boardCost + offset[i],
+                        board, i);
+            }
+            if (marked.get(stop) && (board == -1
+                    || previous[stop] - offset[i] < boardCost)) {
+                board = i;
+                boardCost = previous[stop] - offset[i];
+            }
+        }
+    }
+
+    /*
+     * Rides the given route from the end towards the start, boarding at
+     * stops improved in the previous round.
+     */
+    private void scanBackwards(int route, int round, int target) {
+        int[] previous = labels.get(round - 1);
+        int[] sequence = routeStops[route];
+        int[] offset = offsets[route];
+
+        // the position boarded at, and its cost plus the offset there
+        int board = -1;
+        int boardCost = 0;
+        for (int i = sequence.length - 1; i >= 0; i--) {
+            int stop = sequence[i];
+            if (board != -1) {
+                update(route, round, target, stop, boardCost - offset[i],
+                        board, i);
+            }
+            if (marked.get(stop) && (board == -1
+                    || previous[stop] + offset[i] < boardCost)) {
+                board = i;
+                boardCost = previous[stop] + offset[i];
+            }
+        }
+    }
+
+    /*
+     * Records the given cost to the stop if it is cheaper than the cost
+     * known so far, and could be part of a cheaper journey to the target.
+     */
+    private void update(int route, int round, int target, int stop, int cost,
+                        int board, int alight) {
+        int[] current = labels.get(round);
+        if (cost < current[stop] && cost < current[target]) {
+            current[stop] = cost;
+            ridden.get(round)[stop] = route;
+            boarded.get(round)[stop] = board;
+            alighted.get(round)[stop] = alight;
+            improved.set(stop);
+        }
+    }
+
+    /*
+     * Returns the labels of the given round, creating the buffers for the
+     * round if they do not exist yet.
+     */
+    private int[] labelsOf(int round) {
+        while (labels.size() <= round) {
+            labels.add(new int[stops.length]);
+            ridden.add(new int[stops.length]);
+            boarded.add(new int[stops.length]);
+            alighted.add(new int[stops.length]);
+        }
+        return labels.get(round);
+    }
+
+    /*
+     * Builds the journey to the target which uses at most the given number
+     * of rides, by following each ride back to where it was boarded.
+     */
+    private RouteJourney unpack(int source, int target, int round) {
+        int cost = labels.get(round)[target];
+        List<Stop> path = new ArrayList<>();
+        List<Route> legs = new ArrayList<>();
+        int stop = target;
+        while (stop != source) {
+            while (ridden.get(round)[stop] == -1) {
+                // the cost to the stop was found in an earlier round
+                round--;
+            }
+            int route = ridden.get(round)[stop];
+            int board = boarded.get(round)[stop];
+            int step = board < alighted.get(round)[stop] ? -1 : 1;
+            for (int i = alighted.get(round)[stop]; i != board; i += step) {
+                path.add(stops[routeStops[route][i]]);
+            }
+            legs.add(routes[route]);
+            stop = routeStops[route][board];
+            round--;
+        }
+        path.add(stops[source]);
+        Collections.reverse(path);
+        Collections.reverse(legs);
+        return new RouteJourney(path, cost, legs);
+    }
+}
@@ -0,0 +1,408 @@
+package stops;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Routing cells stored outside the heap, either in direct byte buffers or in
+ * a memory-mapped file.
+ *
+ * <p>Each cell takes 8 bytes: the cost followed by the next stop ordinal plus
+ * one, so that newly allocated (zeroed) memory is filled with empty cells. As
+ * a single buffer is limited to 2GB, the cells are split into chunks of
+ * 2<sup>26</sup> cells; only the last chunk may be smaller.
+ *
+ * <p>A mapped file starts with a header of {@link #HEADER_BYTES} bytes,
+ * recording the number of rows in use, the capacity of each row and a
+ * checksum identifying the network the cells were built for, followed by the
+ * cells. The header is written by {@link #flush(int, int)}, after which the
+ * file can be reopened with {@link #open(Path)}, or copied into memory on
+ * demand with {@link #openCopy(Path)}.
+ */
+class BufferRoutingCells implements RoutingCells {
+    /**
+     * The first int of a mapped file.
+     */
+    static final int MAGIC = 0x52544D58;
+
+    /**
+     * The version of the mapped file layout.
+     */
+    static final int VERSION = 1;
+
+    /**
+     * The number of bytes before the first cell of a mapped file.
+     */
+    static final int HEADER_BYTES = 64;
+
+    /**
+     * The largest capacity, so that ordinals and their offset stay positive.
+     */
+    static final int MAX_CAPACITY = Integer.MAX_VALUE - 1;
+
+    private static final int CHUNK_SHIFT = 26;
+    private static final long CHUNK_CELLS = 1L << CHUNK_SHIFT;
+    private static final long CHUNK_MASK = CHUNK_CELLS - 1;
+
+    // the file the cells are mapped from, or null for direct buffers (and
+    // copies of a file)
+    private Path file;
+
+    // the chunks of cells, in order
+    private ByteBuffer[] chunks;
+
+    // the number of rows, capacity and checksum recorded when the file was
+    // opened
+    private int storedSize;
+    private int storedCapacity;
+    private long storedChecksum;
+
+    // the checksum written to the header when the cells are flushed
+    private long checksum;
+
+    // whether any chunk may still be mapped read-only
+    private boolean copyOnWrite;
+
+    private BufferRoutingCells(Path file) {
+        this.file = file;
+        this.chunks = new ByteBuffer[0];
+    }
+
+    /**
+     * Allocates empty cells in direct buffers for a matrix with the given
+     * capacity.
+     *
+     * @param capacity The number of columns (and rows) to allocate.
+     * @return The allocated cells.
+     */
+    static BufferRoutingCells allocate(int capacity) {
+        BufferRoutingCells cells = new BufferRoutingCells(null);
+        cells.grow((long) capacity * capacity);
+        return cells;
+    }
+
+    /**
+     * Creates empty cells mapped from the given file for a matrix with the
+     * given capacity. Any existing contents of the file are discarded.
+     *
+     * @param file The file to map the cells from.
+     * @param capacity The number of columns (and rows) to allocate.
+     * @return The mapped cells.
+     * @throws IOException If the file cannot be created or mapped.
+     */
+    static BufferRoutingCells create(Path file, int capacity)
+            throws IOException {
+        FileChannel.open(file, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING).close();
+        BufferRoutingCells cells = new BufferRoutingCells(file);
+        try {
+            cells.grow((long) capacity * capacity);
+            cells.flush(0, capacity);
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        return cells;
+    }
+
+    /**
+     * Maps the cells of a file written by {@link #flush(int, int)}.
+     *
+     * <p>The number of rows in use and the capacity of the stored matrix are
+     * returned by {@link #storedSize()} and {@link #storedCapacity()}.
+     *
+     * @param file The file to map the cells from.
+     * @return The mapped cells.
+     * @throws IOException If the file cannot be read, or is not a routing
+     *         matrix file.
+     */
+    static BufferRoutingCells open(Path file) throws IOException {
+        BufferRoutingCells cells = new BufferRoutingCells(file);
+        cells.readHeader();
+        try {
+            cells.grow((long) cells.storedCapacity * cells.storedCapacity);
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        return cells;
+    }
+
+    /**
+     * Maps the cells of a file written by {@link #flush(int, int)} without
+     * ever writing to the file.
+     *
+     * <p>The file is mapped read-only, so it only needs to be readable:
+     * cells are read from the file as they are used, and each chunk of cells
+     * is copied into a direct buffer the first time one of its cells is
+     * changed. If the cells need to grow, they are copied into direct
+     * buffers. The file itself is never changed, and flushing the cells does
+     * nothing.
+     *
+     * @param file The file to map the cells from.
+     * @return The mapped cells.
+     * @throws IOException If the file cannot be read, or is not a routing
+     *         matrix file.
+     */
+    static BufferRoutingCells openCopy(Path file) throws IOException {
+        BufferRoutingCells cells = new BufferRoutingCells(file);
+        cells.readHeader();
+        long length = (long) cells.storedCapacity * cells.storedCapacity;
+        int count = (int) ((length + CHUNK_CELLS - 1) >>> CHUNK_SHIFT);
+        cells.chunks = new ByteBuffer[count];
+        try (FileChannel channel = FileChannel.open(file,
+                StandardOpenOption.READ)) {
+            for (int k = 0; k < count; k++) {
+                long start = (long) k << CHUNK_SHIFT;
+                int bytes = (int) Math.min(CHUNK_CELLS, length - start) * 8;
+                cells.chunks[k] = channel.map(FileChannel.MapMode.READ_ONLY,
+                        HEADER_BYTES + start * 8, bytes)
+                        .order(ByteOrder.LITTLE_ENDIAN);
+            }
+        }
+        // grow into direct buffers from now on
+        cells.file = null;
+        cells.copyOnWrite = true;
+        return cells;
+    }
+
+    /**
+     * Returns the number of rows in use recorded in the header of the file
+     * these cells were opened from.
+     *
+     * @return The number of rows in use, or 0 if the cells were not opened
+     *         from an existing file.
+     */
+    int storedSize() {
+        return storedSize;
+    }
+
+    /**
+     * Returns the capacity recorded in the header of the file these cells
+     * were opened from.
+     *
+     * @return The capacity, or 0 if the cells were not opened from an
+     *         existing file.
+     */
+    int storedCapacity() {
+        return storedCapacity;
+    }
+
+    /**
+     * Returns the checksum recorded in the header of the file these cells
+     * were opened from.
+     *
+     * @return The checksum, or 0 if the cells were not opened from an
+     *         existing file.
+     */
+    long storedChecksum() {
+        return storedChecksum;
+    }
+
+    /**
+     * Sets the checksum written to the header when the cells are next
+     * flushed. The checksum is 0 unless it is set.
+     *
+     * @param checksum The checksum to write.
+     */
+    void setChecksum(long checksum) {
+        this.checksum = checksum;
+    }
+
+    /*
+     * Reads and checks the header of the file, recording the size, capacity
+     * and checksum it holds.
+     */
+    private void readHeader() throws IOException {
+        try (FileChannel channel = FileChannel.open(file,
+                StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES)
+                    .order(ByteOrder.LITTLE_ENDIAN);
+            while (header.hasRemaining()) {
+                if (channel.read(header, header.position()) < 0) {
+                    throw new IOException("Truncated routing matrix header");
+                }
+            }
+            int magic = header.getInt(0);
+            int version = header.getInt(4);
+            int size = header.getInt(8);
+            int capacity = header.getInt(12);
+            if (magic != MAGIC || version != VERSION) {
+                throw new IOException("Not a routing matrix file");
+            }
+            if (capacity < 1 || size < 0 || size > capacity
+                    || channel.size() < HEADER_BYTES
+                    + (long) capacity * capacity * 8) {
+                throw new IOException("Corrupt routing matrix header");
+            }
+            storedSize = size;
+            storedCapacity = capacity;
+            storedChecksum = header.getLong(16);
+        }
+    }
+
+    /*
+     * Makes sure there are chunks covering at least the given number of
+     * cells, keeping the contents of existing cells.
+     */
+    private void grow(long length) {
+        int count = (int) ((length + CHUNK_CELLS - 1) >>> CHUNK_SHIFT);
+        if (count < chunks.length) {
+            return;
+        }
+        ByteBuffer[] grown = Arrays.copyOf(chunks, Math.max(count, 1));
+        try (FileChannel channel = file == null ? null : FileChannel.open(
+                file, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            for (int k = Math.max(chunks.length - 1, 0); k < grown.length;
+                    k++) {
+                long start = (long) k << CHUNK_SHIFT;
+                int bytes = (int) Math.min(CHUNK_CELLS,
+                        Math.max(length - start, 1)) * 8;
+                ByteBuffer old = grown[k];
+                if (old != null && old.capacity() >= bytes) {
+                    continue;
+                }
+                ByteBuffer chunk;
+                if (channel == null) {
+                    chunk = ByteBuffer.allocateDirect(bytes);
+                    if (old != null) {
+                        ByteBuffer source = old.duplicate();
+                        source.clear();
+                        chunk.put(source);
+                        chunk.clear();
+                    }
+                } else {
+                    // mapping a longer region of the same file keeps its data
+                    chunk = channel.map(FileChannel.MapMode.READ_WRITE,
+                            HEADER_BYTES + start * 8, bytes);
+                }
+                grown[k] = chunk.order(ByteOrder.LITTLE_ENDIAN);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        chunks = grown;
+    }
+
+    private ByteBuffer chunk(long cell) {
+        return chunks[(int) (cell >>> CHUNK_SHIFT)];
+    }
+
+    /*
+     * Returns the chunk holding the given cell, first copying it into a
+     * direct buffer if it is mapped read-only. Rows in the same chunk may be
+     * written from several threads (see ParallelRoutingEngine), so chunks
+     * are only copied and handed out under a lock while any may be
+     * read-only.
+     */
+    private ByteBuffer writableChunk(long cell) {
+        int k = (int) (cell >>> CHUNK_SHIFT);
+        if (!copyOnWrite) {
+            return chunks[k];
+        }
+        synchronized (this) {
+            ByteBuffer chunk = chunks[k];
+            if (chunk.isReadOnly()) {
+                ByteBuffer source = chunk.duplicate();
+                source.clear();
+                chunk = ByteBuffer.allocateDirect(source.capacity());
+                chunk.put(source);
+                chunk.clear();
+                chunks[k] = chunk.order(ByteOrder.LITTLE_ENDIAN);
+            }
+            return chunk;
+        }
+    }
+
+    private static int offset(long cell) {
+        return (int) (cell & CHUNK_MASK) << 3;
+    }
+
+    @Override
+    public int cost(long cell) {
+        return chunk(cell).getInt(offset(cell));
+    }
+
+    @Override
+    public int nextHop(long cell) {
+        return chunk(cell).getInt(offset(cell) + 4) - 1;
+    }
+
+    @Override
+    public void set(long cell, int cost, int nextHop) {
+        ByteBuffer chunk = writableChunk(cell);
+        int offset = offset(cell);
+        chunk.putInt(offset, cost);
+        chunk.putInt(offset + 4, nextHop + 1);
+    }
+
+    @Override
+    public void clear(long from, long to) {
+        for (long cell = from; cell < to; cell++) {
+            writableChunk(cell).putInt(offset(cell) + 4, 0);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * <p>The cells are resized in place: the buffers are extended, then each
+     * row is moved to its new position, starting from the last row so that
+     * no row is overwritten before it has been moved.
+     *
+     * @throws UncheckedIOException If the backing file cannot be extended.
+     */
+    @Override
+    public void resize(int capacity, int grown, int rows) {
+        grow((long) grown * grown);
+        for (int i = rows - 1; i > 0; i--) {
+            for (int j = rows - 1; j >= 0; j--) {
+                long from = (long) i * capacity + j;
+                set((long) i * grown + j, cost(from), nextHop(from));
+            }
+        }
+        for (int i = 0; i < rows; i++) {
+            clear((long) i * grown + rows, (long) (i + 1) * grown);
+        }
+    }
+
+    @Override
+    public int maxCapacity() {
+        return MAX_CAPACITY;
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @throws UncheckedIOException If the file cannot be written.
+     */
+    @Override
+    public void flush(int size, int capacity) {
+        if (file == null) {
+            return;
+        }
+        for (ByteBuffer chunk : chunks) {
+            ((MappedByteBuffer) chunk).force();
+        }
+        ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES)
+                .order(ByteOrder.LITTLE_ENDIAN);
+        header.putInt(MAGIC).putInt(VERSION).putInt(size).putInt(capacity)
+                .putLong(checksum);
+        header.clear();
+        try (FileChannel channel = FileChannel.open(file,
+                StandardOpenOption.WRITE)) {
+            while (header.hasRemaining()) {
+                channel.write(header, header.position());
+            }
+            channel.force(false);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,293 @@
+package stops;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Tracks which stops in the network are connected to each other.
+ *
+ * <p>Two stops are connected if there is a path of neighbour links between
+ * them, ignoring the direction of each link. The index is a disjoint-set
+ * forest (with path halving and union by size) over the stops added to it,
+ * so queries take near-constant time.
+ *
+ * <p>Once a stop has been added, the index is updated whenever the stop is
+ * linked to a neighbour (see {@link Stop#addNeighbouringStop(Stop)}), such as
+ * when it is added to a route. Links to stops outside the index are
+ * remembered until the other stop is added. A disjoint-set forest cannot
+ * split a component, so when a link is removed the index is instead rebuilt
+ * from the stops' neighbours the next time it is queried.
+ *
+ * <p>The forest is held by the index rather than by its stops, so a stop may
+ * belong to any number of indices (for example, when it is in several
+ * networks).
+ */
+public class Connectivity {
+    // the stops in the index, in index order
+    private List<Stop> stops;
+
+    // the index of each stop
+    private Map<Stop, Integer> indices;
+
+    // the parent of each stop in the forest (a root is its own parent)
+    private int[] parents;
+
+    // the number of stops in the component of each root
+    private int[] sizes;
+
+    // the number of components in the index
+    private int componentCount;
+
+    // whether a link has been removed since the forest was built
+    private boolean stale;
+
+    // the stops in the index linked to each stop outside it
+    private Map<Stop, List<Stop>> outside;
+
+    /**
+     * Creates a new index with no stops.
+     */
+    public Connectivity() {
+        stops = new ArrayList<>();
+        indices = new IdentityHashMap<>();
+        parents = new int[16];
+        sizes = new int[16];
+        componentCount = 0;
+        stale = false;
+        outside = new IdentityHashMap<>();
+    }
+
+    /**
+     * Adds the given stop to the index, connecting it to any of its
+     * neighbours (or stops which link to it) already in the index.
+     *
+     * <p>If the given stop is null or is already in this index, the index
+     * remains unchanged.
+     *
+     * @param stop The stop to add.
+     */
+    public void add(Stop stop) {
+        if (stop == null || contains(stop)) {
+            return;
+        }
+        if (stop.connectivities == null) {
+            stop.connectivities = new ArrayList<>(1);
+        }
+        stop.connectivities.add(this);
+        int index = stops.size();
+        stops.add(stop);
+        indices.put(stop, index);
+        if (index == parents.length) {
+            parents = Arrays.copyOf(parents, index * 2);
+            sizes = Arrays.copyOf(sizes, index * 2);
+        }
+        parents[index] = index;
+        sizes[index] = 1;
+        componentCount++;
+
+        for (Stop neighbour : stop.getNeighbours()) {
+            linked(stop, neighbour);
+        }
+        List<Stop> predecessors = outside.remove(stop);
+        if (predecessors != null) {
+            for (Stop predecessor : predecessors) {
+                linked(predecessor, stop);
+            }
+        }
+    }
+
+    /**
+     * Adds each of the given stops to the index (as defined in
+     * {@link #add(Stop)}).
+     *
+     * @param stops The stops to add.
+     */
+    public void addAll(Collection<Stop> stops) {
+        for (Stop stop : stops) {
+            add(stop);
+        }
+    }
+
+    /**
+     * Removes the given stop from the index.
+     *
+     * <p>The stop should no longer be linked to any stop in the index. If
+     * the given stop is null or not in this index, the index remains
+     * unchanged.
+     *
+     * @param stop The stop to remove.
+     */
+    public void remove(Stop stop) {
+        if (!contains(stop)) {
+            return;
+        }
+        stop.connectivities.remove(this);
+        int index = indices.remove(stop);
+        Stop last = stops.remove(stops.size() - 1);
+        if (last != stop) {
+            stops.set(index, last);
+            indices.put(last, index);
+        }
+        stale = true;
+    }
+
+    /**
+     * Returns whether the given stop is in this index.
+     *
+     * @param stop The stop to check for.
+     * @return True if the stop is in the index, false otherwise.
+     */
+    public boolean contains(Stop stop) {
+        return stop != null && indices.containsKey(stop);
+    }
+
+    /**
+     * Returns the number of stops in this index.
+     *
+     * @return The number of stops.
+     */
+    public int size() {
+        return stops.size();
+    }
+
+    /**
+     * Returns the number of components the stops in this index form.
+     *
+     * @return The number of components.
+     */
+    public int getComponentCount() {
+        rebuildIfStale();
+        return componentCount;
+    }
+
+    /**
+     * Returns an identifier for the component of the given stop.
+     *
+     * <p>Two stops in the index are connected if and only if they have the
+     * same identifier. Identifiers may change when stops are added, linked
+     * or unlinked, so should not be kept across changes to the network.
+     *
+     * @param stop The stop to get the component of.
+     * @return The component of the stop, or -1 if it is not in this index.
+     */
+    public int componentOf(Stop stop) {
+        if (!contains(stop)) {
+            return -1;
+        }
+        rebuildIfStale();
+        return find(indices.get(stop));
+    }
+
+    /**
+     * Returns the number of stops in the component of the given stop,
+     * including the stop itself.
+     *
+     * @param stop The stop to get the component size of.
+     * @return The size of the stop's component, or 0 if it is not in this
+     *         index.
+     */
+    public int componentSize(Stop stop) {
+        int component = componentOf(stop);
+        return component == -1 ? 0 : sizes[component];
+    }
+
+    /**
+     * Returns whether there is a path of neighbour links between the given
+     * stops, ignoring the direction of each link.
+     *
+     * @param first The first stop.
+     * @param second The second stop.
+     * @return True if both stops are in this index and are connected, false
+     *         otherwise.
+     */
+    public boolean isConnected(Stop first, Stop second) {
+        int component = componentOf(first);
+        return component != -1 && component == componentOf(second);
+    }
+
+    /*
+     * Records that the given stop has been linked to the given neighbour.
+     * Links to stops outside the index are only noted, as the neighbour may
+     * be added later.
+     */
+    void linked(Stop stop, Stop neighbour) {
+        if (stale || !contains(stop)) {
+            return;
+        }
+        if (!contains(neighbour)) {
+            List<Stop> predecessors = outside.get(neighbour);
+            if (predecessors == null) {
+                predecessors = new ArrayList<>(1);
+                outside.put(neighbour, predecessors);
+            }
+            predecessors.add(stop);
+            return;
+        }
+        union(indices.get(stop), indices.get(neighbour));
+    }
+
+    /*
+     * Records that a link between two stops in the index has been removed.
+     */
+    void unlinked() {
+        stale = true;
+    }
+
+    /*
+     * Returns the root of the tree containing the given index, halving the
+     * path to it along the way.
+     */
+    private int find(int index) {
+        while (parents[index] != index) {
+            parents[index] = parents[parents[index]];
+            index = parents[index];
+        }
+        return index;
+    }
+
+    /*
+     * Merges the trees containing the given indices, hanging the smaller
+     * tree from the root of the larger.
+     */
+    private void union(int first, int second) {
+        int a = find(first);
+        int b = find(second);
+        if (a == b) {
+            return;
+        }
+        if (sizes[a] < sizes[b]) {
+            int swap = a;
+            a = b;
+            b = swap;
+        }
+        parents[b] = a;
+        sizes[a] += sizes[b];
+        componentCount--;
+    }
+
+    /*
+     * Rebuilds the forest from the current neighbours of every stop, if a
+     * link or stop has been removed since it was last built.
+     */
+    private void rebuildIfStale() {
+        if (!stale) {
+            return;
+        }
+        stale = false;
+        outside.clear();
+        componentCount = stops.size();
+        for (int i = 0; i < stops.size(); i++) {
+            parents[i] = i;
+            sizes[i] = 1;
+        }
+        for (Stop stop : stops) {
+            for (Stop neighbour : stop.getNeighbours()) {
+                linked(stop, neighbour);
+            }
+        }
+    }
+}
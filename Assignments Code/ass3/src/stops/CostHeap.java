@@ -0,0 +1,110 @@
+package stops;
+
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+
+/**
+ * A binary min-heap of stop indices ordered by cost.
+ *
+ * <p>The heap does not support decreasing the cost of an index which is
+ * already in the heap. Instead, the index should be pushed again with its new
+ * cost, and stale entries skipped by the caller when they are popped.
+ *
+ * <p>Each entry is packed into a single long (cost in the high bits, index in
+ * the low bits) so that no objects are allocated while searching.
+ */
+public class CostHeap {
+    // the packed cost and index of each entry in the heap
+    private long[] entries;
+
+    // the number of entries currently in the heap
+    private int size;
+
+    /**
+     * Creates a new empty heap.
+     */
+    public CostHeap() {
+        entries = new long[16];
+        size = 0;
+    }
+
+    /**
+     * Adds the given index to the heap with the given cost.
+     *
+     * @param index The index to add (must not be negative).
+     * @param cost The cost of the index (must not be negative).
+     */
+    public void push(int index, int cost) {
+        if (size == entries.length) {
+            entries = Arrays.copyOf(entries, size * 2);
+        }
+        long entry = ((long) cost << 32) | index;
+        int i = size++;
+        while (i > 0) {
+            int parent = (i - 1) / 2;
+            if (entries[parent] <= entry) {
+                break;
+            }
+            entries[i] = entries[parent];
+            i = parent;
+        }
+        entries[i] = entry;
+    }
+
+    /**
+     * Returns the cost of the cheapest entry in the heap without removing it.
+     *
+     * @return The lowest cost in the heap.
+     * @throws NoSuchElementException If the heap is empty.
+     */
+    public int peekCost() {
+        if (size == 0) {
+            throw new NoSuchElementException();
+        }
+        return (int) (entries[0] >>> 32);
+    }
+
+    /**
+     * Removes the cheapest entry from the heap and returns its index.
+     *
+     * @return The index of the cheapest entry.
+     * @throws NoSuchElementException If the heap is empty.
+     */
+    public int pop() {
+        if (size == 0) {
+            throw new NoSuchElementException();
+        }
+        int index = (int) entries[0];
+        long last = entries[--size];
+        int i = 0;
+        while (2 * i + 1 < size) {
+            int child = 2 * i + 1;
+            if (child + 1 < size && entries[child + 1] < entries[child]) {
+                child++;
+            }
+            if (last <= entries[child]) {
+                break;
+            }
+            entries[i] = entries[child];
+            i = child;
+        }
+        entries[i] = last;
+        return index;
+    }
+
+    /**
+     * Returns whether the heap has no entries.
+     *
+     * @return True if the heap is empty, false otherwise.
+     */
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Removes all entries from the heap.
+     */
+    public void clear() {
+        size = 0;
+    }
+}
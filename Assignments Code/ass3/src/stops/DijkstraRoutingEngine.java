@@ -0,0 +1,132 @@
+package stops;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+
+/**
+ * A routing engine which computes routing tables using Dijkstra's algorithm.
+ *
+ * <p>For each source stop, a single heap based search is performed over the
+ * neighbours of each stop (see {@link Stop#getNeighbours()}), with the cost of
+ * travelling between neighbours being the cost of the link between them (see
+ * {@link Stop#linkCostTo(Stop)}).
+ * The cost and next stop found for each destination are then merged into the
+ * source stop's routing table.
+ *
+ * <p>When building the tables for many stops, the network is only traversed
+ * once, and the same search buffers are reused for every source.
+ */
+public class DijkstraRoutingEngine implements RoutingEngine {
+
+    /**
+     * {@inheritDoc}
+     *
+     * @param source The stop whose routing table should be updated.
+     */
+    @Override
+    public void route(Stop source) {
+        if (source == null) {
+            return;
+        }
+        StopGraph graph = new StopGraph(Collections.singletonList(source));
+        int[] costs = new int[graph.size()];
+        int[] firstHops = new int[graph.size()];
+
+        shortestPaths(graph, 0, costs, firstHops, new CostHeap());
+        RoutingChanges.begin();
+        try {
+            mergeInto(graph, 0, costs, firstHops);
+        } finally {
+            RoutingChanges.end();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @param stops The stops from which to start building routing tables.
+     */
+    @Override
+    public void build(Collection<Stop> stops) {
+        StopGraph graph = new StopGraph(stops);
+        int[] costs = new int[graph.size()];
+        int[] firstHops = new int[graph.size()];
+        CostHeap heap = new CostHeap();
+
+        RoutingChanges.begin();
+        try {
+            for (int source = 0; source < graph.size(); source++) {
+                shortestPaths(graph, source, costs, firstHops, heap);
+                mergeInto(graph, source, costs, firstHops);
+            }
+        } finally {
+            RoutingChanges.end();
+        }
+    }
+
+    /**
+     * Finds the cheapest route from the given source to every stop in the
+     * graph.
+     *
+     * <p>After this method returns, costs[i] holds the cost of the cheapest
+     * route from the source to stop i (or Integer.MAX_VALUE if stop i is not
+     * reachable), and firstHops[i] holds the index of the first stop after
+     * the source on that route (or -1 if stop i is the source or is not
+     * reachable).
+     *
+     * @param graph The graph to search.
+     * @param source The index of the stop to search from.
+     * @param costs Filled with the cost to each stop (length &gt;= graph size).
+     * @param firstHops Filled with the first hop to each stop (length &gt;=
+     *                  graph size).
+     * @param heap A heap to use for the search, which will be cleared.
+     */
+    public static void shortestPaths(StopGraph graph, int source, int[] costs,
+                                     int[] firstHops, CostHeap heap) {
+        Arrays.fill(costs, 0, graph.size(), Integer.MAX_VALUE);
+        Arrays.fill(firstHops, 0, graph.size(), -1);
+        heap.clear();
+
+        costs[source] = 0;
+        heap.push(source, 0);
+
+        while (!heap.isEmpty()) {
+            int cost = heap.peekCost();
+            int current = heap.pop();
+            if (cost > costs[current]) {
+                // stale entry, a cheaper route has already been settled
+                continue;
+            }
+
+            int[] neighbours = graph.neighboursOf(current);
+            int[] distances = graph.distancesOf(current);
+            for (int i = 0; i < neighbours.length; i++) {
+                int next = neighbours[i];
+                int newCost = cost + distances[i];
+                if (newCost < costs[next]) {
+                    costs[next] = newCost;
+                    firstHops[next] =
+                            current == source ? next : firstHops[current];
+                    heap.push(next, newCost);
+                }
+            }
+        }
+    }
+
+    /*
+     * Merges the results of a search from the given source into the source's
+     * routing table. Only the source's table is written to.
+     */
+    static void mergeInto(StopGraph graph, int source, int[] costs,
+                          int[] firstHops) {
+        RoutingTable table = graph.getStop(source).getRoutingTable();
+
+        for (int i = 0; i < graph.size(); i++) {
+            if (i != source && firstHops[i] != -1) {
+                table.addOrUpdateEntry(graph.getStop(i), costs[i],
+                        graph.getStop(firstHops[i]));
+            }
+        }
+    }
+}
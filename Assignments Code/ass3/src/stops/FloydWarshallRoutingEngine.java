@@ -0,0 +1,239 @@
+package stops;
+
+import java.util.Arrays;
+import java.util.Collection;
+
+/**
+ * A routing engine which computes every routing table at once using a
+ * cache-blocked Floyd-Warshall algorithm.
+ *
+ * <p>The cheapest route between every pair of stops is held in a single n by
+ * n matrix, indexed by the stops' indices in a {@link StopGraph}. Each route
+ * is its cost and number of links packed into a long, so that of two routes
+ * with the same cost the one with fewer links is kept. The matrix is split
+ * into square blocks small enough to stay in the CPU cache, and the blocks
+ * are relaxed in the usual three phases (the diagonal block, then the blocks
+ * in its row and column, then all other blocks), so each block is loaded
+ * from memory once per phase rather than once per intermediate stop. The
+ * innermost loop is a branch-free minimum over two contiguous rows, which
+ * the JIT compiler turns into SIMD instructions.
+ *
+ * <p>The next stop of each entry is then found from the routes: it is the
+ * first neighbour of the source whose link plus its own route to the
+ * destination has the same cost and number of links as the source's route.
+ * The next stop's route therefore has one link fewer, so following the next
+ * stops always reaches the destination, even across links which cost
+ * nothing. The routing tables are filled in a single pass over the matrix.
+ *
+ * <p>The work grows with the cube of the number of stops, and the matrix
+ * takes 8 bytes for every pair of stops, so this engine is intended for
+ * dense networks of up to a few thousand stops, where every table is needed
+ * anyway. Larger networks should use a {@link DijkstraRoutingEngine} or a
+ * {@link ParallelRoutingEngine}.
+ */
+public class FloydWarshallRoutingEngine implements RoutingEngine {
+    // the cost recorded for pairs of stops with no route between them; small
+    // enough that adding two of them together does not overflow
+    private static final int UNREACHED = Integer.MAX_VALUE / 2;
+
+    // the route recorded for pairs of stops with no route between them
+    private static final long NO_ROUTE = route(UNREACHED, 0);
+
+    // the number of rows and columns in each block of the matrix
+    private static final int BLOCK_SIZE = 64;
+
+    // the engine used to route single stops
+    private static final DijkstraRoutingEngine SEQUENTIAL =
+            new DijkstraRoutingEngine();
+
+    /**
+     * {@inheritDoc}
+     *
+     * <p>A single source only needs one search, so it is routed by a
+     * {@link DijkstraRoutingEngine} instead.
+     *
+     * @param source The stop whose routing table should be updated.
+     */
+    @Override
+    public void route(Stop source) {
+        SEQUENTIAL.route(source);
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @param stops The stops from which to start building routing tables.
+     * @throws IllegalStateException If there are too many stops for the
+     *         cost matrix to fit in an array.
+     */
+    @Override
+    public void build(Collection<Stop> stops) {
+        StopGraph graph = new StopGraph(stops);
+        int size = graph.size();
+        long[] routes = allRoutes(graph);
+
+        int[] nextHops = new int[size];
+        RoutingChanges.begin();
+        try {
+            for (int source = 0; source < size; source++) {
+                nextHopsFrom(graph, routes, source, nextHops);
+                RoutingTable table = graph.getStop(source).getRoutingTable();
+                int row = source * size;
+                for (int target = 0; target < size; target++) {
+                    if (target != source && nextHops[target] != -1) {
+                        table.addOrUpdateEntry(graph.getStop(target),
+                                costOf(routes[row + target]),
+                                graph.getStop(nextHops[target]));
+                    }
+                }
+            }
+        } finally {
+            RoutingChanges.end();
+        }
+    }
+
+    /**
+     * Finds the cost of the cheapest route between every pair of stops in
+     * the given graph.
+     *
+     * <p>The cost from stop i to stop j is held at index (i * size + j) of
+     * the returned array, where size is the number of stops in the graph.
+     * Pairs with no route between them have a cost of Integer.MAX_VALUE.
+     *
+     * @param graph The graph to find the costs in.
+     * @return The cost between every pair of stops.
+     * @throws IllegalStateException If there are too many stops for the
+     *         cost matrix to fit in an array.
+     */
+    public static int[] allPairs(StopGraph graph) {
+        long[] routes = allRoutes(graph);
+        int[] costs = new int[routes.length];
+        for (int i = 0; i < routes.length; i++) {
+            costs[i] = costOf(routes[i]);
+        }
+        return costs;
+    }
+
+    /*
+     * Finds the cheapest route, with the fewest links of the cheapest, between
+     * every pair of stops in the given graph, indexed in the same way as the
+     * costs returned by allPairs.
+     */
+    private static long[] allRoutes(StopGraph graph) {
+        int size = graph.size();
+        if ((long) size * size > Integer.MAX_VALUE - 8) {
+            throw new IllegalStateException("too many stops");
+        }
+        long[] routes = new long[size * size];
+        Arrays.fill(routes, NO_ROUTE);
+        for (int i = 0; i < size; i++) {
+            routes[i * size + i] = route(0, 0);
+            int[] neighbours = graph.neighboursOf(i);
+            int[] distances = graph.distancesOf(i);
+            for (int j = 0; j < neighbours.length; j++) {
+                int cell = i * size + neighbours[j];
+                routes[cell] = Math.min(routes[cell], route(distances[j], 1));
+            }
+        }
+
+        for (int k0 = 0; k0 < size; k0 += BLOCK_SIZE) {
+            int k1 = Math.min(k0 + BLOCK_SIZE, size);
+
+            // the diagonal block only depends on itself
+            relax(routes, size, k0, k1, k0, k1, k0, k1);
+
+            // the blocks in its row and column depend on it
+            for (int b0 = 0; b0 < size; b0 += BLOCK_SIZE) {
+                int b1 = Math.min(b0 + BLOCK_SIZE, size);
+                if (b0 != k0) {
+                    relax(routes, size, k0, k1, b0, b1, k0, k1);
+                    relax(routes, size, b0, b1, k0, k1, k0, k1);
+                }
+            }
+
+            // every other block depends on one block of each
+            for (int i0 = 0; i0 < size; i0 += BLOCK_SIZE) {
+                if (i0 == k0) {
+                    continue;
+                }
+                int i1 = Math.min(i0 + BLOCK_SIZE, size);
+                for (int j0 = 0; j0 < size; j0 += BLOCK_SIZE) {
+                    if (j0 != k0) {
+                        relax(routes, size, i0, i1, j0,
+                                Math.min(j0 + BLOCK_SIZE, size), k0, k1);
+                    }
+                }
+            }
+        }
+        return routes;
+    }
+
+    /*
+     * Packs the cost and number of links of a route into a long, so that
+     * adding two routes adds their costs and links, and comparing them
+     * compares their costs and then their links.
+     */
+    private static long route(int cost, int links) {
+        return (long) cost << 32 | links;
+    }
+
+    /*
+     * Returns the cost of the given route, or Integer.MAX_VALUE if there is
+     * no route.
+     */
+    private static int costOf(long route) {
+        int cost = (int) (route >>> 32);
+        return cost >= UNREACHED ? Integer.MAX_VALUE : cost;
+    }
+
+    /*
+     * Relaxes the routes in rows i0 to i1 and columns j0 to j1 of the matrix
+     * through each intermediate stop from k0 to k1.
+     */
+    private static void relax(long[] routes, int size, int i0, int i1, int j0,
+                              int j1, int k0, int k1) {
+        for (int k = k0; k < k1; k++) {
+            int through = k * size;
+            for (int i = i0; i < i1; i++) {
+                int row = i * size;
+                long toK = routes[row + k];
+                if (toK >= NO_ROUTE) {
+                    continue;
+                }
+                for (int j = j0; j < j1; j++) {
+                    routes[row + j] = Math.min(routes[row + j],
+                            toK + routes[through + j]);
+                }
+            }
+        }
+    }
+
+    /*
+     * Fills the given array with the next stop from the source towards each
+     * stop on the route found to it, or -1 if the stop is the source or
+     * cannot be reached.
+     */
+    private static void nextHopsFrom(StopGraph graph, long[] routes,
+                                     int source, int[] nextHops) {
+        int size = graph.size();
+        int row = source * size;
+        Arrays.fill(nextHops, -1);
+        int[] neighbours = graph.neighboursOf(source);
+        int[] distances = graph.distancesOf(source);
+        for (int i = 0; i < neighbours.length; i++) {
+            if (neighbours[i] == source) {
+                continue;
+            }
+            int through = neighbours[i] * size;
+            long link = route(distances[i], 1);
+            for (int target = 0; target < size; target++) {
+                long rest = routes[through + target];
+                if (nextHops[target] == -1 && target != source
+                        && rest < NO_ROUTE
+                        && link + rest == routes[row + target]) {
+                    nextHops[target] = neighbours[i];
+                }
+            }
+        }
+    }
+}
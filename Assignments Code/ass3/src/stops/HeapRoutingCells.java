@@ -0,0 +1,75 @@
+package stops;
+
+/**
+ * Routing cells stored in two int arrays on the heap.
+ *
+ * <p>Next stop ordinals are stored offset by one, so that a newly allocated
+ * array is already filled with empty cells.
+ */
+class HeapRoutingCells implements RoutingCells {
+    /**
+     * The largest capacity whose cells fit in a single int array.
+     */
+    static final int MAX_CAPACITY = 46340;
+
+    // the cost of each cell
+    private int[] costs;
+
+    // the next stop ordinal of each cell, plus one
+    private int[] nextHops;
+
+    /**
+     * Creates empty cells for a matrix with the given capacity.
+     *
+     * @param capacity The number of columns (and rows) to allocate.
+     */
+    HeapRoutingCells(int capacity) {
+        costs = new int[capacity * capacity];
+        nextHops = new int[capacity * capacity];
+    }
+
+    @Override
+    public int cost(long cell) {
+        return costs[(int) cell];
+    }
+
+    @Override
+    public int nextHop(long cell) {
+        return nextHops[(int) cell] - 1;
+    }
+
+    @Override
+    public void set(long cell, int cost, int nextHop) {
+        costs[(int) cell] = cost;
+        nextHops[(int) cell] = nextHop + 1;
+    }
+
+    @Override
+    public void clear(long from, long to) {
+        for (int cell = (int) from; cell < to; cell++) {
+            nextHops[cell] = 0;
+        }
+    }
+
+    @Override
+    public void resize(int capacity, int grown, int rows) {
+        int[] grownCosts = new int[grown * grown];
+        int[] grownNextHops = new int[grown * grown];
+        for (int i = 0; i < rows; i++) {
+            System.arraycopy(costs, i * capacity, grownCosts, i * grown, rows);
+            System.arraycopy(nextHops, i * capacity, grownNextHops, i * grown,
+                    rows);
+        }
+        costs = grownCosts;
+        nextHops = grownNextHops;
+    }
+
+    @Override
+    public int maxCapacity() {
+        return MAX_CAPACITY;
+    }
+
+    @Override
+    public void flush(int size, int capacity) {
+    }
+}
@@ -0,0 +1,278 @@
+package stops;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+
+/**
+ * Keeps the routing tables in the network up to date as the network changes,
+ * without recomputing every table from scratch.
+ *
+ * <p>When a neighbour is added, only entries whose cost actually improves are
+ * rewritten. Each improved entry is transferred to the stops which have its
+ * stop as a neighbour (see {@link Stop#getPredecessors()}), and their
+ * improved entries are transferred in turn, until no more entries improve.
+ * Pending updates are processed cheapest first, so each entry is normally
+ * rewritten at most once per change.
+ *
+ * <p>When a neighbour is removed, only the entries whose route used the
+ * removed neighbour are invalidated. These are found by following next stops
+ * backwards from the removed neighbour, and are then recomputed from the
+ * entries of the stops which were not affected.
+ */
+final class IncrementalRouting {
+
+    /*
+     * An entry of a routing table which has improved, and whose new cost
+     * must be transferred to the stops which travel to its stop.
+     */
+    private static class Update implements Comparable<Update> {
+        // the stop whose table has improved
+        private final Stop stop;
+
+        // the destination whose entry has improved
+        private final Stop destination;
+
+        // the improved cost to the destination
+        private final int cost;
+
+        // the next stop on the improved route to the destination
+        private final Stop next;
+
+        private Update(Stop stop, Stop destination, int cost, Stop next) {
+            this.stop = stop;
+            this.destination = destination;
+            this.cost = cost;
+            this.next = next;
+        }
+
+        @Override
+        public int compareTo(Update other) {
+            return Integer.compare(cost, other.cost);
+        }
+    }
+
+    private IncrementalRouting() {
+    }
+
+    /**
+     * Updates the routing tables in the network after the given neighbour has
+     * been added to the given stop.
+     *
+     * <p>The stop's table first learns every route known by the neighbour's
+     * table, travelling via the neighbour. Any entries which improve are then
+     * propagated outwards through the network.
+     *
+     * @param stop The stop which has a new neighbour.
+     * @param neighbour The new neighbour of the stop.
+     * @return The number of entries which were added or updated.
+     */
+    static int neighbourAdded(Stop stop, Stop neighbour) {
+        if (stop == neighbour) {
+            return 0;
+        }
+        RoutingChanges.begin();
+        try {
+            return transfer(stop, neighbour);
+        } finally {
+            RoutingChanges.end();
+        }
+    }
+
+    /*
+     * Transfers the neighbour's entries to the stop's table, and propagates
+     * any improved entries. Returns the number of entries added or updated.
+     */
+    private static int transfer(Stop stop, Stop neighbour) {
+        PriorityQueue<Update> pending = new PriorityQueue<>();
+        RoutingTable table = stop.getRoutingTable();
+        RoutingTable neighbourTable = neighbour.getRoutingTable();
+        int distance = stop.linkCostTo(neighbour);
+
+        for (Stop destination : neighbourTable.getDestinations()) {
+            int cost = neighbourTable.costTo(destination);
+            if (cost == Integer.MAX_VALUE) {
+                continue;
+            }
+            cost += distance;
+            if (table.addOrUpdateEntry(destination, cost, neighbour)) {
+                pending.add(new Update(stop, destination, cost, neighbour));
+            }
+        }
+        return pending.size() + propagate(pending);
+    }
+
+    /**
+     * Repairs the routing tables in the network after the given neighbour has
+     * been removed from the given stop.
+     *
+     * <p>The stop's entries whose next stop was the removed neighbour are
+     * invalidated, along with every entry elsewhere in the network whose
+     * route passed through an invalidated entry. Each invalidated entry is
+     * then recomputed from the valid entries of its stop's neighbours, or
+     * removed if its destination can no longer be reached.
+     *
+     * @param stop The stop which no longer has the neighbour.
+     * @param neighbour The removed neighbour of the stop.
+     * @return The number of entries which were updated or removed.
+     */
+    static int neighbourRemoved(Stop stop, Stop neighbour) {
+        Map<Stop, Set<Stop>> invalid = new HashMap<>();
+        Deque<Stop[]> search = new ArrayDeque<>();
+
+        for (Stop destination : stop.getRoutingTable().getDestinations()) {
+            if (destination != stop && stop.getRoutingTable()
+                    .nextStop(destination) == neighbour) {
+                invalidate(invalid, destination, stop);
+                search.add(new Stop[] {stop, destination});
+            }
+        }
+
+        // follow next stops backwards to find every route through the stop
+        while (!search.isEmpty()) {
+            Stop[] pair = search.poll();
+            Stop current = pair[0];
+            Stop destination = pair[1];
+            for (Stop previous : current.getPredecessors()) {
+                if (previous.getRoutingTable().nextStop(destination) == current
+                        && invalidate(invalid, destination, previous)) {
+                    search.add(new Stop[] {previous, destination});
+                }
+            }
+        }
+
+        int changes = 0;
+        RoutingChanges.begin();
+        try {
+            for (Map.Entry<Stop, Set<Stop>> entry : invalid.entrySet()) {
+                changes += repair(entry.getKey(), entry.getValue());
+            }
+        } finally {
+            RoutingChanges.end();
+        }
+        return changes;
+    }
+
+    /**
+     * Repairs the routing tables in the network after the cost of the link
+     * from the given stop to the given neighbour has been raised.
+     *
+     * <p>Raising the cost of a link can only make the routes which use it
+     * more expensive, so the same entries are invalidated and recomputed as
+     * when the neighbour is removed (see
+     * {@link #neighbourRemoved(Stop, Stop)}). As the link still exists, the
+     * recomputed entries may still use it at its new cost.
+     *
+     * @param stop The stop the link starts at.
+     * @param neighbour The stop the link ends at.
+     * @return The number of entries which were updated or removed.
+     */
+    static int linkCostRaised(Stop stop, Stop neighbour) {
+        return neighbourRemoved(stop, neighbour);
+    }
+
+    /*
+     * Records that the given stop's entry for the given destination is
+     * invalid. Returns false if it had already been recorded.
+     */
+    private static boolean invalidate(Map<Stop, Set<Stop>> invalid,
+                                      Stop destination, Stop stop) {
+        Set<Stop> stops = invalid.get(destination);
+        if (stops == null) {
+            stops = Collections.newSetFromMap(new IdentityHashMap<>());
+            invalid.put(destination, stops);
+        }
+        return stops.add(stop);
+    }
+
+    /*
+     * Recomputes the entries for the given destination in the tables of the
+     * given (invalidated) stops, cheapest first, using only the entries of
+     * stops which were not invalidated. Entries which cannot be recomputed
+     * are removed. Returns the number of entries updated or removed.
+     */
+    private static int repair(Stop destination, Set<Stop> invalid) {
+        PriorityQueue<Update> pending = new PriorityQueue<>();
+
+        for (Stop current : invalid) {
+            Update best = null;
+            for (Stop next : current.getNeighbours()) {
+                int cost = next.getRoutingTable().costTo(destination);
+                if (invalid.contains(next) || cost == Integer.MAX_VALUE) {
+                    continue;
+                }
+                cost += current.linkCostTo(next);
+                if (best == null || cost < best.cost) {
+                    best = new Update(current, destination, cost, next);
+                }
+            }
+            if (best != null) {
+                pending.add(best);
+            }
+        }
+
+        Set<Stop> settled = Collections.newSetFromMap(new IdentityHashMap<>());
+        while (!pending.isEmpty()) {
+            Update update = pending.poll();
+            if (!settled.add(update.stop)) {
+                continue;
+            }
+            update.stop.getRoutingTable().setEntry(destination, update.cost,
+                    update.next);
+
+            for (Stop previous : update.stop.getPredecessors()) {
+                if (invalid.contains(previous)
+                        && !settled.contains(previous)) {
+                    pending.add(new Update(previous, destination,
+                            update.cost + previous.linkCostTo(update.stop),
+                            update.stop));
+                }
+            }
+        }
+
+        for (Stop current : invalid) {
+            if (!settled.contains(current)) {
+                current.getRoutingTable().removeEntry(destination);
+            }
+        }
+        return invalid.size();
+    }
+
+    /*
+     * Transfers each pending improved entry to the stops which have its stop
+     * as a neighbour, until no further entries improve. Returns the number
+     * of entries which were added or updated.
+     */
+    private static int propagate(PriorityQueue<Update> pending) {
+        int changes = 0;
+
+        while (!pending.isEmpty()) {
+            Update update = pending.poll();
+            if (update.stop.getRoutingTable().costTo(update.destination)
+                    != update.cost) {
+                // superseded by a cheaper update
+                continue;
+            }
+
+            List<Update> improved = new ArrayList<>();
+            for (Stop previous : update.stop.getPredecessors()) {
+                int cost = update.cost + previous.linkCostTo(update.stop);
+                if (previous.getRoutingTable().addOrUpdateEntry(
+                        update.destination, cost, update.stop)) {
+                    improved.add(new Update(previous, update.destination,
+                            cost, update.stop));
+                }
+            }
+            changes += improved.size();
+            pending.addAll(improved);
+        }
+        return changes;
+    }
+}
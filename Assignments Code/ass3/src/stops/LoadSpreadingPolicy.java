@@ -0,0 +1,108 @@
+package stops;
+
+import routes.Route;
+import vehicles.PublicTransport;
+
+/**
+ * A routing policy which spreads passengers over near-optimal routes,
+ * according to the capacity left in the vehicles waiting at each stop.
+ *
+ * <p>A neighbour of the stop is an alternative to the next stop in the
+ * stop's routing table if its own routing table is closer to the
+ * destination than the stop's, and the cost of travelling to the
+ * destination through it is at most a given fraction (the slack) more than
+ * the cheapest cost. Requiring each alternative to be closer to the
+ * destination means a passenger can never be routed around in a loop.
+ *
+ * <p>Each passenger is routed to whichever of these stops has the most spare
+ * capacity: the capacity left in the vehicles at the stop whose routes travel
+ * directly to that neighbour, less the passengers already waiting to be taken
+ * there. Ties go to the next stop in the routing table. When no vehicles are
+ * waiting, passengers are therefore spread so that about the same number
+ * wait for each of the stops.
+ */
+public class LoadSpreadingPolicy implements RoutingPolicy {
+    // the default slack, allowing routes up to a quarter more expensive
+    private static final double DEFAULT_SLACK = 0.25;
+
+    // how much more expensive than the cheapest route an alternative may be,
+    // as a fraction of the cheapest cost
+    private double slack;
+
+    /**
+     * Creates a new policy allowing alternative routes which cost up to 25%
+     * more than the cheapest route.
+     */
+    public LoadSpreadingPolicy() {
+        this(DEFAULT_SLACK);
+    }
+
+    /**
+     * Creates a new policy allowing alternative routes which cost up to the
+     * given fraction more than the cheapest route.
+     *
+     * @param slack The fraction of the cheapest cost an alternative route
+     *              may cost in addition to it (e.g. 0.1 for 10% more).
+     * @throws IllegalArgumentException If the slack is negative or not a
+     *         number.
+     */
+    public LoadSpreadingPolicy(double slack) {
+        if (!(slack >= 0)) {
+            throw new IllegalArgumentException();
+        }
+        this.slack = slack;
+    }
+
+    /**
+     * Returns how much more expensive than the cheapest route an alternative
+     * route may be, as a fraction of the cheapest cost.
+     *
+     * @return The slack of this policy.
+     */
+    public double getSlack() {
+        return slack;
+    }
+
+    @Override
+    public Stop nextStop(Stop stop, Stop destination) {
+        RoutingTable table = stop.getRoutingTable();
+        Stop best = table.nextStop(destination);
+        int cost = table.costTo(destination);
+        if (best == null || best == stop || cost == Integer.MAX_VALUE) {
+            return best;
+        }
+        long limit = cost + (long) Math.floor(cost * slack);
+
+        Stop chosen = best;
+        int chosenSpare = spareCapacity(stop, best);
+        for (Stop neighbour : stop.getNeighbours()) {
+            int remaining = neighbour.getRoutingTable().costTo(destination);
+            if (neighbour == best || remaining >= cost
+                    || stop.linkCostTo(neighbour) + (long) remaining > limit) {
+                continue;
+            }
+            int spare = spareCapacity(stop, neighbour);
+            if (spare > chosenSpare) {
+                chosen = neighbour;
+                chosenSpare = spare;
+            }
+        }
+        return chosen;
+    }
+
+    /*
+     * Returns the capacity left in the vehicles at the stop which travel
+     * directly to the given neighbour, less the number of passengers already
+     * waiting to be taken there.
+     */
+    private static int spareCapacity(Stop stop, Stop neighbour) {
+        int spare = 0;
+        for (PublicTransport vehicle : stop.getVehicles()) {
+            Route route = vehicle.getRoute();
+            if (route != null && route.isAdjacent(stop, neighbour)) {
+                spare += vehicle.getCapacity() - vehicle.passengerCount();
+            }
+        }
+        return spare - stop.waitingFor(neighbour);
+    }
+}
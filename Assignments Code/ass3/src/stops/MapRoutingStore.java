@@ -0,0 +1,65 @@
+package stops;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A routing store which maps each destination to a {@link RoutingEntry}.
+ *
+ * <p>This is the store used by routing tables which are not part of a
+ * {@link RoutingMatrix}.
+ */
+class MapRoutingStore implements RoutingStore {
+    // maps destination stops to RoutingEntry objects
+    private Map<Stop, RoutingEntry> entries;
+
+    /**
+     * Creates a new empty store.
+     */
+    MapRoutingStore() {
+        entries = new HashMap<>();
+    }
+
+    @Override
+    public boolean contains(Stop destination) {
+        return entries.containsKey(destination);
+    }
+
+    @Override
+    public int cost(Stop destination) {
+        RoutingEntry entry = entries.get(destination);
+        return entry == null ? Integer.MAX_VALUE : entry.getCost();
+    }
+
+    @Override
+    public Stop next(Stop destination) {
+        RoutingEntry entry = entries.get(destination);
+        return entry == null ? null : entry.getNext();
+    }
+
+    @Override
+    public void put(Stop destination, int cost, Stop next) {
+        entries.put(destination, new RoutingEntry(next, cost));
+    }
+
+    @Override
+    public void remove(Stop destination) {
+        entries.remove(destination);
+    }
+
+    @Override
+    public List<Stop> destinations() {
+        return new ArrayList<>(entries.keySet());
+    }
+
+    /**
+     * Returns whether this store has no entries.
+     *
+     * @return True if the store is empty, false otherwise.
+     */
+    boolean isEmpty() {
+        return entries.isEmpty();
+    }
+}
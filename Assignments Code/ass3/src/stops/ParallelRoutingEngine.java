@@ -0,0 +1,169 @@
+package stops;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * A routing engine which builds routing tables on several threads.
+ *
+ * <p>The routes found are the same as those of a
+ * {@link DijkstraRoutingEngine}: a single Dijkstra search is run from each
+ * source stop. As the search from each source is independent of every other
+ * search, the sources are split into ranges which are searched in parallel
+ * on a {@link ForkJoinPool}.
+ *
+ * <p>Each search only writes to the routing table of its own source stop, so
+ * no two threads ever write to the same table. Tables stored in the same
+ * {@link RoutingMatrix} do share its cells and its count of the entries
+ * which route via each stop, so the matrix stops keeping that count during
+ * the build, and counts every entry again when it is next needed. The tables
+ * changed by each range are collected on its thread and handed back to the
+ * thread which started the build, where their listeners are notified once
+ * the build is complete. The network must not be modified while a build is
+ * in progress.
+ */
+public class ParallelRoutingEngine implements RoutingEngine {
+    // the engine used to route single stops
+    private static final DijkstraRoutingEngine SEQUENTIAL =
+            new DijkstraRoutingEngine();
+
+    // the number of ranges each thread's share of the sources is split into
+    private static final int RANGES_PER_THREAD = 4;
+
+    // the pool which runs the searches
+    private ForkJoinPool pool;
+
+    /**
+     * Creates a new engine which runs its searches on the common pool (see
+     * {@link ForkJoinPool#commonPool()}).
+     */
+    public ParallelRoutingEngine() {
+        this(ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Creates a new engine which runs its searches on the given pool.
+     *
+     * @param pool The pool to run the searches on.
+     * @throws IllegalArgumentException If the given pool is null.
+     */
+    public ParallelRoutingEngine(ForkJoinPool pool) {
+        if (pool == null) {
+            throw new IllegalArgumentException("pool must not be null");
+        }
+        this.pool = pool;
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * <p>Only a single search is needed, so it is run on the calling thread.
+     *
+     * @param source The stop whose routing table should be updated.
+     */
+    @Override
+    public void route(Stop source) {
+        SEQUENTIAL.route(source);
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * <p>This method returns once every table has been built.
+     *
+     * @param stops The stops from which to start building routing tables.
+     */
+    @Override
+    public void build(Collection<Stop> stops) {
+        StopGraph graph = new StopGraph(stops);
+        if (graph.size() == 0) {
+            return;
+        }
+        int threshold = Math.max(1, graph.size()
+                / (pool.getParallelism() * RANGES_PER_THREAD));
+
+        // the rows of a matrix share its referrer counts
+        for (int i = 0; i < graph.size(); i++) {
+            RoutingMatrix matrix = graph.getStop(i).getRoutingTable().matrix;
+            if (matrix != null) {
+                matrix.forgetReferrers();
+            }
+        }
+
+        // changes are delivered on this thread once every search is merged
+        RoutingChanges.begin();
+        try {
+            Sources sources = new Sources(graph, 0, graph.size(), threshold);
+            try {
+                pool.invoke(sources);
+            } finally {
+                RoutingChanges.deferAll(sources.changed);
+            }
+        } finally {
+            RoutingChanges.end();
+        }
+    }
+
+    /*
+     * Searches from a range of source stops, splitting the range in half
+     * until it is no larger than the threshold.
+     */
+    private static class Sources extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        // the graph being searched
+        private final StopGraph graph;
+
+        // the first source in the range, and one past the last
+        private final int from;
+        private final int to;
+
+        // the largest range which is searched without being split
+        private final int threshold;
+
+        // the tables changed by the searches of the range
+        private List<RoutingTable> changed = new ArrayList<>();
+
+        private Sources(StopGraph graph, int from, int to, int threshold) {
+            this.graph = graph;
+            this.from = from;
+            this.to = to;
+            this.threshold = threshold;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > threshold) {
+                int middle = (from + to) >>> 1;
+                Sources first = new Sources(graph, from, middle, threshold);
+                Sources second = new Sources(graph, middle, to, threshold);
+                try {
+                    invokeAll(first, second);
+                } finally {
+                    changed.addAll(first.changed);
+                    changed.addAll(second.changed);
+                }
+                return;
+            }
+
+            // each range has its own search buffers, reused for its sources
+            int[] costs = new int[graph.size()];
+            int[] firstHops = new int[graph.size()];
+            CostHeap heap = new CostHeap();
+            RoutingChanges.Batch previous = RoutingChanges.collect();
+            try {
+                for (int source = from; source < to; source++) {
+                    DijkstraRoutingEngine.shortestPaths(graph, source, costs,
+                            firstHops, heap);
+                    DijkstraRoutingEngine.mergeInto(graph, source, costs,
+                            firstHops);
+                }
+            } finally {
+                changed = RoutingChanges.collected(previous);
+            }
+        }
+    }
+}
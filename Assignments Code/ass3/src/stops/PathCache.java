@@ -0,0 +1,221 @@
+package stops;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A bounded cache of the most recently requested paths between stops.
+ *
+ * <p>Building a {@link RoutePath} looks up the next stop in the routing
+ * table of every stop along the way. The cache keeps the paths which were
+ * requested most recently, up to a fixed number, and evicts the least
+ * recently requested path when it is full.
+ *
+ * <p>A cached path stays valid until the entry for its destination changes
+ * in the routing table of any stop on the path. The cache listens to the
+ * routing tables of those stops (see {@link RoutingListener}), and drops the
+ * affected paths as soon as a routing update is complete, so a path returned
+ * by the cache is always the one {@link RoutingTable#pathTo(Stop)} would
+ * build. Call {@link #clear()} to stop listening to the tables once the cache
+ * is no longer needed.
+ */
+public class PathCache implements RoutingListener {
+    // the number of paths kept by a cache created without a capacity
+    private static final int DEFAULT_CAPACITY = 1024;
+
+    // the greatest number of paths kept
+    private int capacity;
+
+    // the cached paths, least recently requested first
+    private LinkedHashMap<Key, RoutePath> paths;
+
+    // the keys of the cached paths which pass through each stop
+    private Map<Stop, List<Key>> through;
+
+    // the number of requests answered from and not from the cache
+    private long hits;
+    private long misses;
+
+    /**
+     * Creates a new cache which keeps up to 1024 paths.
+     */
+    public PathCache() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Creates a new cache which keeps up to the given number of paths.
+     *
+     * @param capacity The greatest number of paths to keep.
+     * @throws IllegalArgumentException If the capacity is less than 1.
+     */
+    public PathCache(int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("capacity must be positive");
+        }
+        this.capacity = capacity;
+        paths = new LinkedHashMap<Key, RoutePath>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(
+                    Map.Entry<Key, RoutePath> eldest) {
+                if (size() > PathCache.this.capacity) {
+                    unindex(eldest.getKey(), eldest.getValue());
+                    return true;
+                }
+                return false;
+            }
+        };
+        through = new IdentityHashMap<>();
+    }
+
+    /**
+     * Returns the path recorded in the routing tables from the origin to the
+     * destination, reusing the cached path if there is one.
+     *
+     * @param origin The stop the path should start at.
+     * @param destination The stop the path should end at.
+     * @return The path from the origin to the destination, or null if either
+     *         stop is null or the tables have no route between them.
+     */
+    public synchronized RoutePath pathTo(Stop origin, Stop destination) {
+        if (origin == null || destination == null) {
+            return null;
+        }
+        Key key = new Key(origin, destination);
+        RoutePath path = paths.get(key);
+        if (path != null) {
+            hits++;
+            return path;
+        }
+        misses++;
+        path = origin.getRoutingTable().pathTo(destination);
+        if (path != null) {
+            for (Stop stop : path.getStops()) {
+                List<Key> keys = through.get(stop);
+                if (keys == null) {
+                    keys = new ArrayList<>();
+                    through.put(stop, keys);
+                    stop.getRoutingTable().addRoutingListener(this);
+                }
+                keys.add(key);
+            }
+            paths.put(key, path);
+        }
+        return path;
+    }
+
+    /**
+     * Drops the cached paths which pass through the given table's stop to
+     * any of the given destinations.
+     *
+     * @param table The table whose entries changed.
+     * @param destinations The destinations whose entries changed.
+     */
+    @Override
+    public synchronized void routingChanged(RoutingTable table,
+                                            Set<Stop> destinations) {
+        List<Key> keys = through.get(table.getStop());
+        if (keys == null) {
+            return;
+        }
+        for (Key key : new ArrayList<>(keys)) {
+            if (destinations.contains(key.destination)) {
+                unindex(key, paths.remove(key));
+            }
+        }
+    }
+
+    /**
+     * Drops every cached path, and stops listening to routing tables.
+     */
+    public synchronized void clear() {
+        for (Stop stop : through.keySet()) {
+            stop.getRoutingTable().removeRoutingListener(this);
+        }
+        through.clear();
+        paths.clear();
+    }
+
+    /**
+     * Returns the number of paths currently cached.
+     *
+     * @return The number of cached paths.
+     */
+    public synchronized int size() {
+        return paths.size();
+    }
+
+    /**
+     * Returns the greatest number of paths the cache keeps.
+     *
+     * @return The capacity of the cache.
+     */
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * Returns the number of requests answered with a cached path.
+     *
+     * @return The number of cache hits.
+     */
+    public synchronized long getHitCount() {
+        return hits;
+    }
+
+    /**
+     * Returns the number of requests which had to build a path.
+     *
+     * @return The number of cache misses.
+     */
+    public synchronized long getMissCount() {
+        return misses;
+    }
+
+    /*
+     * Removes the given path from the index of stops, and stops listening to
+     * the tables of stops no cached path passes through.
+     */
+    private void unindex(Key key, RoutePath path) {
+        for (Stop stop : path.getStops()) {
+            List<Key> keys = through.get(stop);
+            keys.remove(key);
+            if (keys.isEmpty()) {
+                through.remove(stop);
+                stop.getRoutingTable().removeRoutingListener(this);
+            }
+        }
+    }
+
+    /*
+     * The origin and destination of a cached path, compared by identity.
+     */
+    private static final class Key {
+        private final Stop origin;
+        private final Stop destination;
+
+        private Key(Stop origin, Stop destination) {
+            this.origin = origin;
+            this.destination = destination;
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if (!(other instanceof Key)) {
+                return false;
+            }
+            Key key = (Key) other;
+            return origin == key.origin && destination == key.destination;
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * System.identityHashCode(origin)
+                    + System.identityHashCode(destination);
+        }
+    }
+}
@@ -0,0 +1,681 @@
+package stops;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Stores the routing tables of many stops in two levels, by partitioning the
+ * stops into regions.
+ *
+ * <p>The stops are divided into regions of neighbouring stops by their x and
+ * y coordinates. A stop with a link to or from a stop in another region is a
+ * boundary stop of its region. Two levels of routes are then stored:
+ * <ul>
+ *     <li>the cheapest route from each stop to every other stop in its
+ *     region, which stays inside the region, and</li>
+ *     <li>the cheapest route (through the whole network) from each boundary
+ *     stop to every other boundary stop.</li>
+ * </ul>
+ * Any route which leaves the origin's region does so at one of its boundary
+ * stops, and enters the destination's region at another, so the cost to any
+ * destination is the cheaper of the route inside the region and the
+ * cheapest combination of the two levels. The next stop towards the
+ * destination is the first stop of whichever route is cheapest.
+ *
+ * <p>Every cost is the same as in complete routing tables, but where several
+ * routes are equally cheap the next stop may differ. At both levels, and
+ * when combining them, the cheapest route with the fewest links is chosen,
+ * so the next stop's route to the destination always has one link fewer
+ * than the route it continues. Following the next stops therefore always
+ * reaches the destination, even across links which cost nothing.
+ *
+ * <p>With about sqrt(n) / 4 regions of 4 * sqrt(n) stops each, a network of
+ * n stops needs on the order of n * sqrt(n) entries, rather than the n * n
+ * of a {@link RoutingMatrix}. In exchange, looking up an entry considers
+ * every pair of boundary stops of the two regions involved.
+ *
+ * <p>The routing table of each stop becomes a view of the two levels. The
+ * levels are a snapshot of the network when the routing was created; entries
+ * written to a table afterwards (for example by
+ * {@link RoutingTable#addOrUpdateEntry(Stop, int, Stop)}) are kept in a
+ * small map belonging to the table, and take precedence over the snapshot. As
+ * in a routing matrix, destinations in the snapshot are matched by identity
+ * rather than by {@link Stop#equals(Object)}.
+ */
+public class RegionRouting {
+    // the cost recorded for stops which cannot be reached
+    private static final int UNREACHED = Integer.MAX_VALUE;
+
+    // the stops in the routing, and their neighbours
+    private StopGraph graph;
+
+    // the region of each stop, and its index among the stops of its region
+    private int[] regionOf;
+    private int[] localIndex;
+
+    // the stops in each region, by index in the region
+    private int[][] members;
+
+    // for each region, the cost of the cheapest route inside the region
+    // between each pair of its stops, indexed by (from * size + to)
+    private int[][] localCosts;
+
+    // for each region, the number of links on each of those routes
+    private int[][] localLinks;
+
+    // for each region, the next stop (or -1) on each of those routes
+    private int[][] localNexts;
+
+    // the boundary stops of each region
+    private int[][] regionBoundaries;
+
+    // the index of each stop among all boundary stops, or -1
+    private int[] boundaryIndex;
+
+    // the number of boundary stops
+    private int boundaryCount;
+
+    // the cost of the cheapest route between each pair of boundary stops,
+    // indexed by (from * boundaryCount + to)
+    private int[] overlayCosts;
+
+    // the number of links on each of those routes
+    private int[] overlayLinks;
+
+    // the first stop after the start of each of those routes (or -1)
+    private int[] overlayHops;
+
+    // for each region, the stops which can be reached through its boundary
+    // stops, keyed by the boundary stops (by index in the region) which can
+    // be reached from inside the region
+    private List<Map<BitSet, boolean[]>> entered;
+
+    /**
+     * Partitions the given stops (and every stop reachable from them) into
+     * about sqrt(n) / 4 regions, and makes the routing table of each stop a
+     * view of the routes between them.
+     *
+     * <p>If the routing table of any of the stops is stored in a
+     * {@link RoutingMatrix}, every stop is removed from that matrix, and the
+     * entries held in the matrix are discarded.
+     *
+     * @param stops The stops to route between.
+     */
+    public RegionRouting(Collection<Stop> stops) {
+        graph = new StopGraph(stops);
+        build((int) Math.max(1, Math.round(Math.sqrt(graph.size()) / 4)));
+    }
+
+    /**
+     * Partitions the given stops (and every stop reachable from them) into
+     * the given number of regions, as defined in
+     * {@link #RegionRouting(Collection)}.
+     *
+     * <p>There may be fewer regions than requested if there are few stops.
+     *
+     * @param stops The stops to route between.
+     * @param regions The number of regions to partition the stops into.
+     * @throws IllegalArgumentException If the number of regions is less
+     *         than 1.
+     */
+    public RegionRouting(Collection<Stop> stops, int regions) {
+        if (regions < 1) {
+            throw new IllegalArgumentException();
+        }
+        graph = new StopGraph(stops);
+        build(regions);
+    }
+
+    /**
+     * Returns the number of stops in the routing.
+     *
+     * @return The number of stops.
+     */
+    public int size() {
+        return graph.size();
+    }
+
+    /**
+     * Returns the number of regions the stops are partitioned into.
+     *
+     * @return The number of regions.
+     */
+    public int getRegionCount() {
+        return members.length;
+    }
+
+    /**
+     * Returns the region the given stop belongs to.
+     *
+     * @param stop The stop to find the region of.
+     * @return The region, from 0 to {@link #getRegionCount()} - 1, or -1 if
+     *         the stop is not in the routing.
+     */
+    public int regionOf(Stop stop) {
+        int index = stop == null ? -1 : graph.indexOf(stop);
+        return index == -1 ? -1 : regionOf[index];
+    }
+
+    /**
+     * Returns whether the given stop is linked to or from a stop in another
+     * region.
+     *
+     * @param stop The stop to check.
+     * @return True if the stop is a boundary stop, false otherwise.
+     */
+    public boolean isBoundary(Stop stop) {
+        int index = stop == null ? -1 : graph.indexOf(stop);
+        return index != -1 && boundaryIndex[index] != -1;
+    }
+
+    /**
+     * Returns the number of boundary stops over all regions.
+     *
+     * @return The number of boundary stops.
+     */
+    public int getBoundaryCount() {
+        return boundaryCount;
+    }
+
+    /**
+     * Returns the number of entries stored by both levels of the routing,
+     * each of which takes 12 bytes.
+     *
+     * @return The number of stored entries.
+     */
+    public long getEntryCount() {
+        long entries = (long) boundaryCount * boundaryCount;
+        for (int[] region : members) {
+            entries += (long) region.length * region.length;
+        }
+        return entries;
+    }
+
+    /*
+     * Partitions the graph into regions, routes within each region and
+     * between the boundary stops, and installs a view in each routing table.
+     */
+    private void build(int regions) {
+        partition(regions);
+        findBoundaries();
+
+        localCosts = new int[members.length][];
+        localLinks = new int[members.length][];
+        localNexts = new int[members.length][];
+        entered = new ArrayList<>();
+        CostHeap heap = new CostHeap();
+        for (int region = 0; region < members.length; region++) {
+            int count = members[region].length;
+            localCosts[region] = new int[count * count];
+            localLinks[region] = new int[count * count];
+            localNexts[region] = new int[count * count];
+            entered.add(new HashMap<BitSet, boolean[]>());
+            for (int source = 0; source < count; source++) {
+                routeInside(region, source, heap);
+            }
+        }
+        routeBoundaries(heap);
+
+        for (int i = 0; i < graph.size(); i++) {
+            RoutingTable table = graph.getStop(i).getRoutingTable();
+            if (table.matrix != null) {
+                table.matrix.release();
+            }
+            table.setStore(new Store(i));
+        }
+    }
+
+    /*
+     * Divides the stops into vertical strips of equal size by x coordinate,
+     * then divides each strip into regions of equal size by y coordinate.
+     */
+    private void partition(int regions) {
+        int size = graph.size();
+        int columns = (int) Math.ceil(Math.sqrt(regions));
+        int rows = (regions + columns - 1) / columns;
+
+        Integer[] order = new Integer[size];
+        for (int i = 0; i < size; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, new Comparator<Integer>() {
+            @Override
+            public int compare(Integer a, Integer b) {
+                return Integer.compare(graph.getStop(a).getX(),
+                        graph.getStop(b).getX());
+            }
+        });
+        Comparator<Integer> byY = new Comparator<Integer>() {
+            @Override
+            public int compare(Integer a, Integer b) {
+                return Integer.compare(graph.getStop(a).getY(),
+                        graph.getStop(b).getY());
+            }
+        };
+
+        regionOf = new int[size];
+        localIndex = new int[size];
+        List<int[]> found = new ArrayList<>();
+        for (int column = 0; column < columns; column++) {
+            int from = (int) ((long) size * column / columns);
+            int to = (int) ((long) size * (column + 1) / columns);
+            Arrays.sort(order, from, to, byY);
+            for (int row = 0; row < rows; row++) {
+                int start = from + (int) ((long) (to - from) * row / rows);
+                int end = from + (int) ((long) (to - from) * (row + 1) / rows);
+                if (start == end) {
+                    continue;
+                }
+                int[] region = new int[end - start];
+                for (int i = start; i < end; i++) {
+                    region[i - start] = order[i];
+                    regionOf[order[i]] = found.size();
+                    localIndex[order[i]] = i - start;
+                }
+                found.add(region);
+            }
+        }
+        members = found.toArray(new int[0][]);
+    }
+
+    /*
+     * Marks every stop linked to or from a stop in another region as a
+     * boundary stop.
+     */
+    private void findBoundaries() {
+        boolean[] boundary = new boolean[graph.size()];
+        for (int i = 0; i < graph.size(); i++) {
+            for (int neighbour : graph.neighboursOf(i)) {
+                if (regionOf[neighbour] != regionOf[i]) {
+                    boundary[i] = true;
+                    boundary[neighbour] = true;
+                }
+            }
+        }
+
+        boundaryIndex = new int[graph.size()];
+        regionBoundaries = new int[members.length][];
+        boundaryCount = 0;
+        for (int region = 0; region < members.length; region++) {
+            int count = 0;
+            for (int stop : members[region]) {
+                if (boundary[stop]) {
+                    count++;
+                }
+            }
+            regionBoundaries[region] = new int[count];
+            count = 0;
+            for (int stop : members[region]) {
+                boundaryIndex[stop] = boundary[stop] ? boundaryCount++ : -1;
+                if (boundary[stop]) {
+                    regionBoundaries[region][count++] = stop;
+                }
+            }
+        }
+        if ((long) boundaryCount * boundaryCount > Integer.MAX_VALUE - 8) {
+            throw new IllegalStateException("too many boundary stops");
+        }
+    }
+
+    /*
+     * Finds the cheapest route, with the fewest links of the cheapest, from
+     * the given stop of the region to every other stop of the region, using
+     * only links inside the region.
+     */
+    private void routeInside(int region, int source, CostHeap heap) {
+        int count = members[region].length;
+        int[] costs = localCosts[region];
+        int[] links = localLinks[region];
+        int[] nexts = localNexts[region];
+        int row = source * count;
+        Arrays.fill(costs, row, row + count, UNREACHED);
+        Arrays.fill(links, row, row + count, 0);
+        Arrays.fill(nexts, row, row + count, -1);
+        heap.clear();
+
+        costs[row + source] = 0;
+        nexts[row + source] = members[region][source];
+        heap.push(source, 0);
+        while (!heap.isEmpty()) {
+            int cost = heap.peekCost();
+            int current = heap.pop();
+            if (cost > costs[row + current]) {
+                continue;
+            }
+            int stop = members[region][current];
+            int[] neighbours = graph.neighboursOf(stop);
+            int[] distances = graph.distancesOf(stop);
+            for (int i = 0; i < neighbours.length; i++) {
+                if (regionOf[neighbours[i]] != region) {
+                    continue;
+                }
+                int next = localIndex[neighbours[i]];
+                int newCost = cost + distances[i];
+                int newLinks = links[row + current] + 1;
+                if (shorter(newCost, newLinks, costs[row + next],
+                        links[row + next])) {
+                    costs[row + next] = newCost;
+                    links[row + next] = newLinks;
+                    nexts[row + next] = current == source ? neighbours[i]
+                            : nexts[row + current];
+                    heap.push(next, newCost);
+                }
+            }
+        }
+    }
+
+    /*
+     * Finds the cheapest route through the whole network, with the fewest
+     * links of the cheapest, between every pair of boundary stops.
+     */
+    private void routeBoundaries(CostHeap heap) {
+        overlayCosts = new int[boundaryCount * boundaryCount];
+        overlayLinks = new int[boundaryCount * boundaryCount];
+        overlayHops = new int[boundaryCount * boundaryCount];
+        int[] costs = new int[graph.size()];
+        int[] links = new int[graph.size()];
+        int[] firstHops = new int[graph.size()];
+        for (int[] region : regionBoundaries) {
+            for (int source : region) {
+                routeFrom(source, costs, links, firstHops, heap);
+                int row = boundaryIndex[source] * boundaryCount;
+                for (int[] other : regionBoundaries) {
+                    for (int target : other) {
+                        int cell = row + boundaryIndex[target];
+                        overlayCosts[cell] = costs[target];
+                        overlayLinks[cell] = links[target];
+                        overlayHops[cell] = firstHops[target];
+                    }
+                }
+            }
+        }
+    }
+
+    /*
+     * Finds the cheapest route through the whole network, with the fewest
+     * links of the cheapest, from the given stop to every stop, in the same
+     * way as DijkstraRoutingEngine.shortestPaths.
+     */
+    private void routeFrom(int source, int[] costs, int[] links,
+                           int[] firstHops, CostHeap heap) {
+        Arrays.fill(costs, UNREACHED);
+        Arrays.fill(links, 0);
+        Arrays.fill(firstHops, -1);
+        heap.clear();
+
+        costs[source] = 0;
+        heap.push(source, 0);
+        while (!heap.isEmpty()) {
+            int cost = heap.peekCost();
+            int current = heap.pop();
+            if (cost > costs[current]) {
+                continue;
+            }
+            int[] neighbours = graph.neighboursOf(current);
+            int[] distances = graph.distancesOf(current);
+            for (int i = 0; i < neighbours.length; i++) {
+                int next = neighbours[i];
+                int newCost = cost + distances[i];
+                int newLinks = links[current] + 1;
+                if (shorter(newCost, newLinks, costs[next], links[next])) {
+                    costs[next] = newCost;
+                    links[next] = newLinks;
+                    firstHops[next] =
+                            current == source ? next : firstHops[current];
+                    heap.push(next, newCost);
+                }
+            }
+        }
+    }
+
+    /*
+     * Returns whether a route with the first cost and number of links is
+     * cheaper than one with the second, or as cheap with fewer links. A stop
+     * reached again at the same cost with fewer links is pushed again, and
+     * searched from a second time.
+     */
+    private static boolean shorter(int cost, int links, int otherCost,
+                                   int otherLinks) {
+        return cost < otherCost || (cost == otherCost && links < otherLinks);
+    }
+
+    /*
+     * Returns the cost of the cheapest route (with the fewest links of the
+     * cheapest) from the source to the target in the upper 32 bits, and the
+     * next stop on it in the lower 32 bits, or -1 if the target cannot be
+     * reached.
+     */
+    private long route(int source, int target) {
+        if (source == target) {
+            return pack(0, source);
+        }
+        int from = regionOf[source];
+        int to = regionOf[target];
+        int fromRow = localIndex[source] * members[from].length;
+        int toColumn = localIndex[target];
+        int[] fromCosts = localCosts[from];
+        int[] fromLinks = localLinks[from];
+        int[] toCosts = localCosts[to];
+        int[] toLinks = localLinks[to];
+        int toCount = members[to].length;
+
+        // routes are compared by cost, then by number of links
+        long best = Long.MAX_VALUE;
+        int next = -1;
+        if (from == to && fromCosts[fromRow + toColumn] != UNREACHED) {
+            best = pack(fromCosts[fromRow + toColumn],
+                    fromLinks[fromRow + toColumn]);
+            next = localNexts[from][fromRow + toColumn];
+        }
+        for (int exit : regionBoundaries[from]) {
+            int cell = fromRow + localIndex[exit];
+            if (fromCosts[cell] == UNREACHED) {
+                continue;
+            }
+            long toExit = pack(fromCosts[cell], fromLinks[cell]);
+            if (toExit >= best) {
+                continue;
+            }
+            int row = boundaryIndex[exit] * boundaryCount;
+            for (int entry : regionBoundaries[to]) {
+                int across = row + boundaryIndex[entry];
+                int fromEntry = localIndex[entry] * toCount + toColumn;
+                if (entry == exit || overlayCosts[across] == UNREACHED
+                        || toCosts[fromEntry] == UNREACHED) {
+                    // a route through a single boundary stop stays inside
+                    // the region, so is never cheaper
+                    continue;
+                }
+                long total = toExit
+                        + pack(overlayCosts[across], overlayLinks[across])
+                        + pack(toCosts[fromEntry], toLinks[fromEntry]);
+                if (total < best) {
+                    best = total;
+                    next = exit != source ? localNexts[from][cell]
+                            : overlayHops[across];
+                }
+            }
+        }
+        if (best >>> 32 >= UNREACHED) {
+            return -1;
+        }
+        return pack((int) (best >>> 32), next);
+    }
+
+    /*
+     * Returns whether each stop is reachable from the source, considering
+     * every pair of boundary stops once per boundary stop rather than once
+     * per target.
+     */
+    private boolean[] reachableFrom(int source) {
+        int from = regionOf[source];
+        int fromRow = localIndex[source] * members[from].length;
+        BitSet exits = new BitSet();
+        for (int i = 0; i < regionBoundaries[from].length; i++) {
+            int exit = regionBoundaries[from][i];
+            if (localCosts[from][fromRow + localIndex[exit]] != UNREACHED) {
+                exits.set(i);
+            }
+        }
+
+        boolean[] through = entered.get(from).get(exits);
+        if (through == null) {
+            through = reachableThrough(from, exits);
+            entered.get(from).put(exits, through);
+        }
+        boolean[] reachable = through.clone();
+        for (int target = 0; target < members[from].length; target++) {
+            if (localCosts[from][fromRow + target] != UNREACHED) {
+                reachable[members[from][target]] = true;
+            }
+        }
+        return reachable;
+    }
+
+    /*
+     * Marks every stop reachable by leaving the region through the given
+     * boundary stops of the region (by index in the region). Every stop in
+     * a region is usually reachable from the same boundary stops, so the
+     * result is shared by the stops of the region.
+     */
+    private boolean[] reachableThrough(int from, BitSet exits) {
+        boolean[] reachable = new boolean[graph.size()];
+        boolean[] entries = new boolean[boundaryCount];
+        for (int i = exits.nextSetBit(0); i >= 0; i = exits.nextSetBit(i + 1)) {
+            int row = boundaryIndex[regionBoundaries[from][i]] * boundaryCount;
+            for (int j = 0; j < boundaryCount; j++) {
+                entries[j] |= overlayCosts[row + j] != UNREACHED;
+            }
+        }
+
+        for (int region = 0; region < members.length; region++) {
+            int count = members[region].length;
+            int[] costs = localCosts[region];
+            for (int target = 0; target < count; target++) {
+                boolean found = false;
+                for (int entry : regionBoundaries[region]) {
+                    if (found) {
+                        break;
+                    }
+                    found = entries[boundaryIndex[entry]]
+                            && costs[localIndex[entry] * count + target]
+                            != UNREACHED;
+                }
+                reachable[members[region][target]] = found;
+            }
+        }
+        return reachable;
+    }
+
+    private static long pack(int cost, int next) {
+        return ((long) cost << 32) | next;
+    }
+
+    /*
+     * A view of the routes from a single stop, used as the store of the
+     * stop's routing table.
+     */
+    private class Store implements RoutingStore {
+        // the index of the table's stop in the graph
+        private final int source;
+
+        // entries written since the routing was built (created when needed)
+        private MapRoutingStore changed;
+
+        // destinations in the snapshot whose entries have been removed
+        private Set<Stop> removed;
+
+        private Store(int source) {
+            this.source = source;
+        }
+
+        /*
+         * Returns the packed route to the destination in the snapshot, or -1
+         * if it is not in the snapshot or its entry has been removed.
+         */
+        private long snapshot(Stop destination) {
+            int target = destination == null ? -1
+                    : graph.indexOf(destination);
+            if (target == -1
+                    || (removed != null && removed.contains(destination))) {
+                return -1;
+            }
+            return route(source, target);
+        }
+
+        @Override
+        public boolean contains(Stop destination) {
+            if (changed != null && changed.contains(destination)) {
+                return true;
+            }
+            return snapshot(destination) != -1;
+        }
+
+        @Override
+        public int cost(Stop destination) {
+            if (changed != null && changed.contains(destination)) {
+                return changed.cost(destination);
+            }
+            long route = snapshot(destination);
+            return route == -1 ? UNREACHED : (int) (route >>> 32);
+        }
+
+        @Override
+        public Stop next(Stop destination) {
+            if (changed != null && changed.contains(destination)) {
+                return changed.next(destination);
+            }
+            long route = snapshot(destination);
+            return route == -1 ? null : graph.getStop((int) route);
+        }
+
+        @Override
+        public void put(Stop destination, int cost, Stop next) {
+            if (changed == null) {
+                changed = new MapRoutingStore();
+            }
+            changed.put(destination, cost, next);
+        }
+
+        @Override
+        public void remove(Stop destination) {
+            if (changed != null) {
+                changed.remove(destination);
+            }
+            if (destination != null && graph.indexOf(destination) != -1) {
+                if (removed == null) {
+                    removed = Collections.newSetFromMap(
+                            new IdentityHashMap<Stop, Boolean>());
+                }
+                removed.add(destination);
+            }
+        }
+
+        @Override
+        public List<Stop> destinations() {
+            List<Stop> destinations = new ArrayList<>();
+            boolean[] reachable = reachableFrom(source);
+            for (int i = 0; i < reachable.length; i++) {
+                Stop stop = graph.getStop(i);
+                if (reachable[i]
+                        && (removed == null || !removed.contains(stop))
+                        && (changed == null || !changed.contains(stop))) {
+                    destinations.add(stop);
+                }
+            }
+            if (changed != null) {
+                destinations.addAll(changed.destinations());
+            }
+            return destinations;
+        }
+    }
+}
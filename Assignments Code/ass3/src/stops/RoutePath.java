@@ -0,0 +1,169 @@
+package stops;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * The full route recorded in the routing tables from one stop to another.
+ *
+ * <p>A path consists of every stop passed through, starting with the origin
+ * and ending with the destination, along with the cost of travelling from the
+ * origin to each of those stops. The cost of each step is the cost of the
+ * link between the stops (see {@link Stop#linkCostTo(Stop)}).
+ *
+ * <p>A path is a snapshot: it does not change when the routing tables it was
+ * built from change. See {@link RoutingTable#pathTo(Stop)} to build a path,
+ * and {@link PathCache} to reuse paths until their routes change.
+ */
+public class RoutePath {
+    // the stops passed through, from the origin to the destination
+    private List<Stop> stops;
+
+    // the cost from the origin to each stop on the path
+    private int[] costs;
+
+    /*
+     * Creates a path through the given stops, with the given cumulative
+     * costs. The path takes ownership of the given list and array.
+     */
+    RoutePath(List<Stop> stops, int[] costs) {
+        this.stops = Collections.unmodifiableList(stops);
+        this.costs = costs;
+    }
+
+    /**
+     * Returns the stop the path starts at.
+     *
+     * @return The origin of the path.
+     */
+    public Stop getOrigin() {
+        return stops.get(0);
+    }
+
+    /**
+     * Returns the stop the path ends at.
+     *
+     * @return The destination of the path.
+     */
+    public Stop getDestination() {
+        return stops.get(stops.size() - 1);
+    }
+
+    /**
+     * Returns the total cost of the path.
+     *
+     * @return The cost of travelling from the origin to the destination.
+     */
+    public int getCost() {
+        return costs[costs.length - 1];
+    }
+
+    /**
+     * Returns the number of stops passed through on the path, including the
+     * origin and destination.
+     *
+     * @return The length of the path.
+     */
+    public int length() {
+        return stops.size();
+    }
+
+    /**
+     * Returns every stop passed through on the path, starting with the origin
+     * and ending with the destination.
+     *
+     * <p>The returned list cannot be modified.
+     *
+     * @return The stops on the path.
+     */
+    public List<Stop> getStops() {
+        return stops;
+    }
+
+    /**
+     * Returns the cost of travelling from the origin to each stop on the
+     * path, in the same order as {@link #getStops()}. The first cost is
+     * always 0.
+     *
+     * <p>Modifying the returned array should not result in changes to the
+     * path.
+     *
+     * @return The cumulative costs of the path.
+     */
+    public int[] getCosts() {
+        return Arrays.copyOf(costs, costs.length);
+    }
+
+    /**
+     * Returns the cost of travelling from the origin to the stop at the given
+     * position on the path.
+     *
+     * @param position The position of the stop, from 0 (the origin) to
+     *         length() - 1 (the destination).
+     * @return The cost of reaching the stop.
+     * @throws IndexOutOfBoundsException If there is no stop at the given
+     *         position.
+     */
+    public int costAt(int position) {
+        if (position < 0 || position >= costs.length) {
+            throw new IndexOutOfBoundsException("no stop at " + position);
+        }
+        return costs[position];
+    }
+
+    /**
+     * Creates a string representation of the path in the format:
+     *
+     * <p>'{cost}:{stop0}|{stop1}|...|{stopN}'
+     *
+     * <p>without the surrounding quotes, where {cost} is the total cost of
+     * the path and each {stop} is the name of a stop on the path.
+     *
+     * @return A string representation of the path.
+     */
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder();
+        builder.append(getCost()).append(":");
+        for (int i = 0; i < stops.size(); i++) {
+            if (i > 0) {
+                builder.append("|");
+            }
+            builder.append(stops.get(i).getName());
+        }
+        return builder.toString();
+    }
+
+    /*
+     * Builds the path from the origin to the destination by following the
+     * next stop of each routing table, or returns null if the tables have no
+     * route between them, or the route they record loops back on itself.
+     */
+    static RoutePath follow(Stop origin, Stop destination) {
+        List<Stop> stops = new ArrayList<>();
+        Set<Stop> visited = Collections.newSetFromMap(
+                new IdentityHashMap<Stop, Boolean>());
+        int[] costs = new int[8];
+        Stop current = origin;
+        stops.add(current);
+        visited.add(current);
+        while (current != destination) {
+            Stop next = current.getRoutingTable().nextStop(destination);
+            if (next == null || !visited.add(next)) {
+                return null;
+            }
+            int position = stops.size();
+            if (position == costs.length) {
+                costs = Arrays.copyOf(costs, position * 2);
+            }
+            costs[position] = costs[position - 1] + current.linkCostTo(next);
+            stops.add(next);
+            current = next;
+        }
+        return new RoutePath(stops, Arrays.copyOf(costs, stops.size()));
+    }
+}
@@ -0,0 +1,79 @@
+package stops;
+
+/**
+ * The storage behind a {@link RoutingMatrix}.
+ *
+ * <p>Cells are indexed by (row * capacity + column), where capacity is the
+ * number of columns in each row. Every cell holds the cost of an entry and the
+ * ordinal of the entry's next stop. A cell which has never been written, or
+ * which has been cleared, holds {@link #NO_ENTRY} as its next stop.
+ */
+interface RoutingCells {
+    /**
+     * The next stop of a cell which has no entry.
+     */
+    int NO_ENTRY = -1;
+
+    /**
+     * Returns the cost stored in the given cell.
+     *
+     * @param cell The index of the cell.
+     * @return The cost in the cell.
+     */
+    int cost(long cell);
+
+    /**
+     * Returns the next stop ordinal stored in the given cell.
+     *
+     * @param cell The index of the cell.
+     * @return The next stop ordinal, or NO_ENTRY if the cell is empty.
+     */
+    int nextHop(long cell);
+
+    /**
+     * Stores the given cost and next stop ordinal in a cell.
+     *
+     * @param cell The index of the cell.
+     * @param cost The cost to store.
+     * @param nextHop The next stop ordinal to store.
+     */
+    void set(long cell, int cost, int nextHop);
+
+    /**
+     * Empties every cell from the first index (inclusive) to the last index
+     * (exclusive).
+     *
+     * @param from The index of the first cell to empty.
+     * @param to The index after the last cell to empty.
+     */
+    void clear(long from, long to);
+
+    /**
+     * Changes the number of columns in each row, keeping the first given
+     * number of cells of each of the first given number of rows.
+     *
+     * @param capacity The current number of columns in each row.
+     * @param grown The new number of columns (and rows), greater than the
+     *              current capacity.
+     * @param rows The number of rows (and columns) in use.
+     */
+    void resize(int capacity, int grown, int rows);
+
+    /**
+     * Returns the largest number of rows which can be stored.
+     *
+     * @return The largest capacity this storage supports.
+     */
+    int maxCapacity();
+
+    /**
+     * Writes any changes through to the storage's backing file, recording
+     * the number of rows in use and the capacity of each row.
+     *
+     * <p>Storage which is not backed by a file does nothing.
+     *
+     * @param size The number of rows in use.
+     * @param capacity The number of columns in each row.
+     */
+    void flush(int size, int capacity);
+}
@@ -0,0 +1,134 @@
+package stops;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Collects the routing tables changed by a routing update, so that the
+ * listeners of each table (see {@link RoutingListener}) are notified once per
+ * update rather than once per entry.
+ *
+ * <p>Updates may be nested, in which case listeners are notified when the
+ * outermost update ends. Updates are tracked separately for each thread: a
+ * change made while the changing thread has no update in progress is
+ * delivered immediately, on that thread, even if another thread is inside an
+ * update. A task which writes tables on behalf of another thread's update
+ * (see {@link ParallelRoutingEngine}) collects its changes with
+ * {@link #collect()} and {@link #collected(Batch)}, and the updating thread
+ * takes them over with {@link #deferAll(List)}.
+ */
+final class RoutingChanges {
+    // the update in progress on each thread
+    private static final ThreadLocal<Batch> CURRENT =
+            new ThreadLocal<Batch>() {
+                @Override
+                protected Batch initialValue() {
+                    return new Batch();
+                }
+            };
+
+    /**
+     * The changes collected by the updates in progress on one thread.
+     */
+    static final class Batch {
+        // the number of updates in progress
+        private int depth;
+
+        // the tables with changes waiting to be delivered
+        private List<RoutingTable> changed = new ArrayList<>();
+    }
+
+    private RoutingChanges() {
+    }
+
+    /**
+     * Starts a routing update on the calling thread. Every call must be
+     * matched by a call to {@link #end()} on the same thread, normally in a
+     * finally block.
+     */
+    static void begin() {
+        CURRENT.get().depth++;
+    }
+
+    /**
+     * Ends a routing update, notifying the listeners of every table changed
+     * on the calling thread since its outermost update began.
+     */
+    static void end() {
+        Batch batch = CURRENT.get();
+        if (--batch.depth > 0) {
+            return;
+        }
+        List<RoutingTable> tables = batch.changed;
+        batch.changed = new ArrayList<>();
+        for (RoutingTable table : tables) {
+            table.deliverChanges();
+        }
+    }
+
+    /**
+     * Starts collecting the changes made on the calling thread without
+     * delivering them, setting aside any update already in progress on the
+     * thread. Every call must be matched by a call to
+     * {@link #collected(Batch)} on the same thread, normally in a finally
+     * block.
+     *
+     * @return The update set aside, to be given to {@link #collected(Batch)}.
+     */
+    static Batch collect() {
+        Batch previous = CURRENT.get();
+        Batch batch = new Batch();
+        batch.depth = 1;
+        CURRENT.set(batch);
+        return previous;
+    }
+
+    /**
+     * Stops collecting changes, restoring the update set aside by
+     * {@link #collect()}.
+     *
+     * @param previous The update returned by {@link #collect()}.
+     * @return The tables with changes collected since {@link #collect()},
+     *         which have not been delivered.
+     */
+    static List<RoutingTable> collected(Batch previous) {
+        Batch batch = CURRENT.get();
+        CURRENT.set(previous);
+        return batch.changed;
+    }
+
+    /**
+     * Takes over tables with changes collected on another thread, delivering
+     * them when the calling thread's update ends, or immediately if it has no
+     * update in progress.
+     *
+     * @param tables The tables returned by {@link #collected(Batch)}.
+     */
+    static void deferAll(List<RoutingTable> tables) {
+        Batch batch = CURRENT.get();
+        if (batch.depth > 0) {
+            batch.changed.addAll(tables);
+            return;
+        }
+        for (RoutingTable table : tables) {
+            table.deliverChanges();
+        }
+    }
+
+    /**
+     * Records that the given table has changes waiting to be delivered, if
+     * an update is in progress on the calling thread.
+     *
+     * @param table The changed table.
+     * @return True if the changes will be delivered when the update ends,
+     *         or false if no update is in progress.
+     */
+    static boolean defer(RoutingTable table) {
+        Batch batch = CURRENT.get();
+        if (batch.depth == 0) {
+            return false;
+        }
+        batch.changed.add(table);
+        return true;
+    }
+}
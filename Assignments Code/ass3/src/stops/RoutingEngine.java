@@ -0,0 +1,36 @@
+package stops;
+
+import java.util.Collection;
+
+/**
+ * Computes the entries of the routing tables in the transportation network.
+ *
+ * <p>A routing engine is responsible for filling each stop's
+ * {@link RoutingTable} with the lowest cost to every reachable destination,
+ * along with the next stop passengers should be routed to in order to reach
+ * that destination.
+ *
+ * <p>Entries are merged into the tables as defined in
+ * {@link RoutingTable#addOrUpdateEntry(Stop, int, Stop)}, so an existing
+ * entry is only replaced when a strictly cheaper route is found.
+ */
+public interface RoutingEngine {
+    /**
+     * Updates the routing table of the given source stop with the cheapest
+     * route to every stop reachable from it.
+     *
+     * <p>Only the routing table of the source stop is updated.
+     *
+     * @param source The stop whose routing table should be updated.
+     */
+    void route(Stop source);
+
+    /**
+     * Updates the routing tables of the given stops, and of every stop
+     * reachable from them, with the cheapest route to every reachable
+     * destination.
+     *
+     * @param stops The stops from which to start building routing tables.
+     */
+    void build(Collection<Stop> stops);
+}
@@ -0,0 +1,26 @@
+package stops;
+
+import java.util.Set;
+
+/**
+ * Receives notice of changes to the entries of a {@link RoutingTable}.
+ *
+ * <p>Changes are delivered once per routing update rather than once per
+ * entry: when a change to the network is propagated through the routing
+ * tables (see {@link RoutingTable#addNeighbour(Stop)}), or the tables are
+ * built by a {@link RoutingEngine}, each listener is told about every
+ * destination whose entry changed once the update is complete.
+ */
+public interface RoutingListener {
+    /**
+     * Called after the entries of the given table for the given destinations
+     * have been added, updated or removed.
+     *
+     * <p>The given set cannot be modified, and is only valid for the
+     * duration of the call.
+     *
+     * @param table The table whose entries changed.
+     * @param destinations The destinations whose entries changed.
+     */
+    void routingChanged(RoutingTable table, Set<Stop> destinations);
+}
@@ -0,0 +1,929 @@
+package stops;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Stores the routing tables of many stops in shared primitive storage.
+ *
+ * <p>Each stop added to the matrix is given an ordinal from 0 to
+ * {@link #ordinalBound()} - 1. When a stop is removed its ordinal is freed,
+ * and given to a later stop once no entry routes passengers via the removed
+ * stop, so removing a stop only touches its own row and column. The cost
+ * and next stop of every entry are stored as a
+ * pair of ints, indexed by the ordinals of the table's stop and of the
+ * destination, so each entry takes 8 bytes instead of a map node and a
+ * {@link RoutingEntry} object. The routing table of each stop in the matrix
+ * becomes a view of its row.
+ *
+ * <p>By default the entries are stored in int arrays on the heap, which hold
+ * at most 46340 stops; a matrix which needs room for more moves its entries
+ * into direct buffers. A matrix created by {@link #offHeap(int)} stores its
+ * entries in direct buffers from the start, and one created by
+ * {@link #mapped(Path, int)} in a memory-mapped file; neither is limited by
+ * the size of the heap or adds to the work of the garbage collector. A mapped
+ * matrix can be written out with {@link #flush()} and reopened later with
+ * {@link #open(Path, List)}, without rebuilding any routing tables.
+ *
+ * <p>Entries whose destination or next stop is not in the matrix are kept in
+ * a small map belonging to the row, so routing tables behave in the same way
+ * whether or not their stops are in a matrix. Unlike a table which is not in a
+ * matrix, destinations in the matrix are matched by identity rather than by
+ * {@link Stop#equals(Object)}.
+ *
+ * <p>A stop's routing table can only be stored in one matrix at a time.
+ */
+public class RoutingMatrix {
+    // marks a cell which has no entry
+    private static final int NO_ENTRY = RoutingCells.NO_ENTRY;
+
+    // marks a cell with an entry that has no next stop
+    private static final int NO_NEXT = -2;
+
+    // the stops in the matrix, indexed by ordinal; a freed ordinal keeps
+    // its removed stop, as entries may still route via it
+    private Stop[] stops;
+
+    // the number of ordinals given out, including freed ones
+    private int bound;
+
+    // the number of stops in the matrix
+    private int size;
+
+    // the freed ordinals, and how many there are
+    private int[] free;
+    private int freeCount;
+
+    // the number of cells whose next stop is each ordinal, or null if they
+    // have not been counted since the matrix was opened from a file or its
+    // rows were written from several threads
+    private int[] referrers;
+
+    // the number of columns in each row of the cells
+    private int capacity;
+
+    // the cost and next stop ordinal (or NO_NEXT) of each entry, indexed by
+    // (row * capacity + column)
+    private RoutingCells cells;
+
+    /**
+     * Creates a new empty matrix.
+     */
+    public RoutingMatrix() {
+        this(16);
+    }
+
+    /**
+     * Creates a new empty matrix with room for the given number of stops.
+     *
+     * <p>If more stops are expected than fit on the heap, the entries are
+     * stored outside the heap, as in a matrix created by
+     * {@link #offHeap(int)}.
+     *
+     * @param expectedStops The number of stops expected to be added.
+     */
+    public RoutingMatrix(int expectedStops) {
+        capacity = Math.max(1, expectedStops);
+        cells = capacity > HeapRoutingCells.MAX_CAPACITY
+                ? BufferRoutingCells.allocate(capacity)
+                : new HeapRoutingCells(capacity);
+        stops = new Stop[capacity];
+        free = new int[0];
+        referrers = new int[capacity];
+    }
+
+    /*
+     * Creates a new empty matrix using the given cells, which have room for
+     * the given number of stops.
+     */
+    RoutingMatrix(RoutingCells cells, int capacity) {
+        this.capacity = capacity;
+        this.cells = cells;
+        this.stops = new Stop[capacity];
+        this.free = new int[0];
+        this.referrers = new int[capacity];
+    }
+
+    /**
+     * Creates a new empty matrix which stores its entries outside the heap.
+     *
+     * @param expectedStops The number of stops expected to be added.
+     * @return The new matrix.
+     */
+    public static RoutingMatrix offHeap(int expectedStops) {
+        int capacity = Math.max(1, expectedStops);
+        return new RoutingMatrix(BufferRoutingCells.allocate(capacity),
+                capacity);
+    }
+
+    /**
+     * Creates a new empty matrix which stores its entries in a memory-mapped
+     * file.
+     *
+     * <p>If the file already exists, its contents are discarded. Changes to
+     * the matrix are only guaranteed to be written to the file once
+     * {@link #flush()} is called.
+     *
+     * @param file The file to store the entries in.
+     * @param expectedStops The number of stops expected to be added.
+     * @return The new matrix.
+     * @throws IOException If the file cannot be created or mapped.
+     */
+    public static RoutingMatrix mapped(Path file, int expectedStops)
+            throws IOException {
+        int capacity = Math.max(1, expectedStops);
+        return new RoutingMatrix(BufferRoutingCells.create(file, capacity),
+                capacity);
+    }
+
+    /**
+     * Reopens a mapped matrix which was written out by {@link #flush()}.
+     *
+     * <p>The given stops are added to the matrix in order, so they must be
+     * the stops which had ordinals 0, 1, 2, ... in the flushed matrix, with
+     * null for any ordinal which was free (see {@link #getStop(int)}). Entries
+     * which routed passengers via the stop of a free ordinal are not kept.
+     * Their
+     * routing tables are replaced by the stored rows; the previous entries of
+     * the tables are discarded. If a stop is currently stored in another
+     * matrix, it is first removed from that matrix.
+     *
+     * <p>The file is mapped rather than read, so the entries are only loaded
+     * into memory as they are used.
+     *
+     * @param file The file written by a mapped matrix.
+     * @param stops The stops of the flushed matrix, in ordinal order.
+     * @return The reopened matrix.
+     * @throws IOException If the file cannot be read or mapped, or is not a
+     *         routing matrix file.
+     * @throws IllegalArgumentException If the number of stops does not match
+     *         the flushed matrix, or the same stop is given twice.
+     */
+    public static RoutingMatrix open(Path file, List<Stop> stops)
+            throws IOException {
+        return attach(BufferRoutingCells.open(file), stops);
+    }
+
+    /**
+     * Opens a matrix written by {@link #save(Path, List, long)} without
+     * changing the file.
+     *
+     * <p>As with {@link #open(Path, List)}, the given stops are added in
+     * ordinal order and their routing tables are replaced by the stored rows,
+     * which are mapped rather than read. The file is mapped read-only, so it
+     * only needs to be readable, and changes to the routing tables are kept
+     * in memory and never written to the file.
+     *
+     * @param file The file written by {@link #save(Path, List, long)}.
+     * @param stops The stops of the saved matrix, in ordinal order.
+     * @param checksum The checksum the matrix must have been saved with.
+     * @return The loaded matrix.
+     * @throws IOException If the file cannot be read or mapped, is not a
+     *         routing matrix file, or was saved with a different checksum or
+     *         number of stops. The routing tables of the stops are unchanged
+     *         if this is thrown.
+     * @throws IllegalArgumentException If the same stop is given twice.
+     */
+    public static RoutingMatrix load(Path file, List<Stop> stops,
+                                     long checksum) throws IOException {
+        BufferRoutingCells cells = BufferRoutingCells.openCopy(file);
+        if (cells.storedChecksum() != checksum
+                || cells.storedSize() != stops.size()) {
+            throw new IOException("Routing matrix was saved for a different "
+                    + "network");
+        }
+        return attach(cells, stops);
+    }
+
+    /*
+     * Creates a matrix from cells opened from a file, giving the stops the
+     * rows stored in the cells in order.
+     */
+    private static RoutingMatrix attach(BufferRoutingCells cells,
+                                        List<Stop> stops) {
+        if (cells.storedSize() != stops.size()) {
+            throw new IllegalArgumentException();
+        }
+        RoutingMatrix matrix = new RoutingMatrix(cells,
+                cells.storedCapacity());
+        // the counts are only needed once an ordinal is freed or reused
+        matrix.referrers = null;
+        for (Stop stop : stops) {
+            int ordinal = matrix.bound++;
+            if (stop == null) {
+                matrix.freeOrdinal(ordinal);
+                continue;
+            }
+            RoutingTable table = stop.getRoutingTable();
+            if (table.matrix == matrix) {
+                throw new IllegalArgumentException();
+            }
+            if (table.matrix != null) {
+                table.matrix.remove(stop);
+            }
+            matrix.size++;
+            matrix.stops[ordinal] = stop;
+            table.matrix = matrix;
+            table.ordinal = ordinal;
+            table.setStore(matrix.new Row(table));
+        }
+        return matrix;
+    }
+
+    /**
+     * Writes the entries of the given stops' routing tables to the given
+     * file, along with the given checksum, so that they can be loaded by
+     * {@link #load(Path, List, long)} with the same stops in the same order.
+     *
+     * <p>Only the entries between the given stops are written, so the file
+     * holds 8 bytes for every pair of the stops. If the file already exists,
+     * its contents are replaced.
+     *
+     * @param file The file to write.
+     * @param stops The stops whose tables should be written, in the order
+     *              they will be loaded in.
+     * @param checksum A checksum identifying the network the entries belong
+     *                 to.
+     * @throws IOException If the file cannot be written.
+     * @throws IllegalArgumentException If any of the stops is not in this
+     *         matrix, or the same stop is given twice.
+     */
+    public void save(Path file, List<Stop> stops, long checksum)
+            throws IOException {
+        int count = stops.size();
+        // the ordinal of each saved stop, and the saved position of each
+        // ordinal (or -1 if it is not saved)
+        int[] ordinals = new int[count];
+        int[] positions = new int[bound];
+        Arrays.fill(positions, -1);
+        for (int k = 0; k < count; k++) {
+            ordinals[k] = ordinalOf(stops.get(k));
+            if (ordinals[k] < 0 || positions[ordinals[k]] != -1) {
+                throw new IllegalArgumentException();
+            }
+            positions[ordinals[k]] = k;
+        }
+
+        BufferRoutingCells saved = BufferRoutingCells.create(file,
+                Math.max(1, count));
+        for (int k = 0; k < count; k++) {
+            for (int l = 0; l < count; l++) {
+                long cell = cell(ordinals[k], ordinals[l]);
+                int next = nextHop(cell);
+                if (next == NO_ENTRY || next >= 0 && positions[next] < 0) {
+                    continue;
+                }
+                saved.set((long) k * count + l, cells.cost(cell),
+                        next < 0 ? next : positions[next]);
+            }
+        }
+        saved.setChecksum(checksum);
+        try {
+            saved.flush(count, Math.max(1, count));
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * Adds the given stop to this matrix, moving the existing entries of its
+     * routing table into the matrix.
+     *
+     * <p>The stop is given a freed ordinal if one is no longer referred to
+     * by any entry, or a new ordinal otherwise.
+     *
+     * <p>If the stop's table is currently stored in another matrix, it is
+     * first removed from that matrix. If the stop is null or already in this
+     * matrix, the matrix remains unchanged.
+     *
+     * @param stop The stop to add.
+     * @throws IllegalStateException If the matrix cannot hold any more stops.
+     */
+    public void add(Stop stop) {
+        if (stop == null || contains(stop)) {
+            return;
+        }
+        RoutingTable table = stop.getRoutingTable();
+        if (table.matrix != null) {
+            table.matrix.remove(stop);
+        }
+
+        int ordinal = reuseOrdinal();
+        if (ordinal < 0) {
+            ensureCapacity(bound + 1);
+            ordinal = bound++;
+        }
+        size++;
+        stops[ordinal] = stop;
+
+        RoutingStore previous = table.getStore();
+        Row row = new Row(table);
+        table.matrix = this;
+        table.ordinal = ordinal;
+        table.setStore(row);
+        for (Stop destination : previous.destinations()) {
+            row.put(destination, previous.cost(destination),
+                    previous.next(destination));
+        }
+
+        // entries in other rows which can now be stored in the arrays
+        for (int i = 0; i < bound; i++) {
+            if (i != ordinal && isLive(i)) {
+                ((Row) stops[i].getRoutingTable().getStore()).adopt(stop);
+            }
+        }
+    }
+
+    /**
+     * Adds each of the given stops to this matrix, as defined in
+     * {@link #add(Stop)}.
+     *
+     * @param stops The stops to add.
+     * @throws IllegalStateException If the matrix cannot hold all the stops.
+     */
+    public void addAll(Collection<Stop> stops) {
+        ensureCapacity(Math.max(bound, size + stops.size()));
+        for (Stop stop : stops) {
+            add(stop);
+        }
+    }
+
+    /**
+     * Removes the given stop from this matrix.
+     *
+     * <p>The stop's routing table keeps its entries, but they are no longer
+     * stored in the matrix. Entries of other tables which refer to the stop
+     * are also kept. Only the stop's own row and column are read, and the
+     * ordinals of the other stops do not change. The stop's ordinal is freed
+     * (see {@link #add(Stop)}).
+     *
+     * <p>If the stop is null or not in this matrix, the matrix remains
+     * unchanged.
+     *
+     * @param stop The stop to remove.
+     */
+    public void remove(Stop stop) {
+        if (!contains(stop)) {
+            return;
+        }
+        countReferrers();
+        RoutingTable table = stop.getRoutingTable();
+        int removed = table.ordinal;
+
+        // detach the stop's own table
+        MapRoutingStore detached = new MapRoutingStore();
+        RoutingStore row = table.getStore();
+        for (Stop destination : row.destinations()) {
+            detached.put(destination, row.cost(destination),
+                    row.next(destination));
+        }
+        clearRow(removed);
+        table.matrix = null;
+        table.ordinal = -1;
+        table.setStore(detached);
+
+        // entries elsewhere for the stop can no longer be cells; entries
+        // which route via the stop stay, as its ordinal is not reused
+        // until they are gone
+        for (int i = 0; i < bound; i++) {
+            if (!isLive(i)) {
+                continue;
+            }
+            long cell = cell(i, removed);
+            int next = nextHop(cell);
+            if (next != NO_ENTRY) {
+                Row other = (Row) stops[i].getRoutingTable().getStore();
+                other.overflow().put(stop, cells.cost(cell), stopAt(next));
+                clearCell(cell);
+            }
+        }
+        freeOrdinal(removed);
+        size--;
+    }
+
+    /**
+     * Moves every stop in this matrix into the given matrix, keeping the
+     * entries of their routing tables.
+     *
+     * <p>This is equivalent to adding each stop to the given matrix in
+     * ordinal order, but only reads each entry once, so it can be used to
+     * move a large network to a different kind of matrix. This matrix is left
+     * empty. If the given matrix is this matrix, nothing changes.
+     *
+     * @param target The matrix to move the stops to.
+     * @throws IllegalStateException If the given matrix cannot hold all the
+     *         stops.
+     */
+    public void transferTo(RoutingMatrix target) {
+        if (target == this) {
+            return;
+        }
+        target.ensureCapacity(target.bound + size);
+        int existing = target.bound;
+
+        // give every stop its new row before copying, as entries may refer
+        // to stops which have not been moved yet
+        Row[] previous = new Row[bound];
+        Row[] moved = new Row[bound];
+        for (int i = 0; i < bound; i++) {
+            if (!isLive(i)) {
+                continue;
+            }
+            RoutingTable table = stops[i].getRoutingTable();
+            previous[i] = (Row) table.getStore();
+            moved[i] = target.new Row(table);
+            int ordinal = target.bound++;
+            target.size++;
+            target.stops[ordinal] = stops[i];
+            table.matrix = target;
+            table.ordinal = ordinal;
+            table.setStore(moved[i]);
+        }
+        for (int i = 0; i < bound; i++) {
+            if (moved[i] == null) {
+                continue;
+            }
+            for (int j = 0; j < bound; j++) {
+                long cell = cell(i, j);
+                int next = nextHop(cell);
+                if (next != NO_ENTRY) {
+                    moved[i].put(stops[j], cells.cost(cell), stopAt(next));
+                }
+            }
+            MapRoutingStore overflow = previous[i].overflow;
+            if (overflow != null) {
+                for (Stop destination : overflow.destinations()) {
+                    moved[i].put(destination, overflow.cost(destination),
+                            overflow.next(destination));
+                }
+            }
+        }
+
+        // entries in the target's other rows which can now be cells
+        for (int i = 0; i < existing; i++) {
+            if (target.isLive(i)) {
+                ((Row) target.stops[i].getRoutingTable().getStore())
+                        .adoptAll();
+            }
+        }
+        clearAll();
+    }
+
+    /*
+     * Removes every stop from this matrix, discarding the entries held in
+     * it. Unlike remove(Stop), no entries are copied out of the cells, so
+     * each stop's table is left with only its entry for the stop itself.
+     */
+    void release() {
+        for (int i = 0; i < bound; i++) {
+            if (!isLive(i)) {
+                continue;
+            }
+            RoutingTable table = stops[i].getRoutingTable();
+            MapRoutingStore empty = new MapRoutingStore();
+            empty.put(stops[i], 0, stops[i]);
+            table.matrix = null;
+            table.ordinal = -1;
+            table.setStore(empty);
+        }
+        clearAll();
+    }
+
+    /**
+     * Writes the entries of a mapped matrix through to its file, so that the
+     * matrix can be reopened with {@link #open(Path, List)}.
+     *
+     * <p>Every ordinal below {@link #ordinalBound()} is written, including
+     * freed ones, which must be given as null when the matrix is reopened.
+     * Matrices which are not mapped from a file are unchanged.
+     *
+     * @throws java.io.UncheckedIOException If the file cannot be written.
+     */
+    public void flush() {
+        cells.flush(bound, capacity);
+    }
+
+    /**
+     * Returns whether the routing table of the given stop is stored in this
+     * matrix.
+     *
+     * @param stop The stop to check for.
+     * @return True if the stop is in this matrix, false otherwise.
+     */
+    public boolean contains(Stop stop) {
+        return stop != null && stop.getRoutingTable().matrix == this;
+    }
+
+    /**
+     * Returns the number of stops in this matrix.
+     *
+     * @return The number of stops.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns the ordinal of the given stop in this matrix.
+     *
+     * @param stop The stop to get the ordinal of.
+     * @return The ordinal of the stop, or -1 if it is not in this matrix.
+     */
+    public int ordinalOf(Stop stop) {
+        return contains(stop) ? stop.getRoutingTable().ordinal : -1;
+    }
+
+    /**
+     * Returns one more than the highest ordinal given to a stop in this
+     * matrix. This is {@link #size()} unless stops have been removed.
+     *
+     * @return The bound on the ordinals of the stops in this matrix.
+     */
+    public int ordinalBound() {
+        return bound;
+    }
+
+    /**
+     * Returns the stop with the given ordinal.
+     *
+     * @param ordinal The ordinal of the stop.
+     * @return The stop with the given ordinal, or null if the ordinal has
+     *         been freed by removing its stop.
+     * @throws IndexOutOfBoundsException If the ordinal is not between 0 and
+     *         {@link #ordinalBound()} - 1.
+     */
+    public Stop getStop(int ordinal) {
+        if (ordinal < 0 || ordinal >= bound) {
+            throw new IndexOutOfBoundsException();
+        }
+        return isLive(ordinal) ? stops[ordinal] : null;
+    }
+
+    /*
+     * Grows the cells so that they can hold at least the given number of
+     * stops, moving them off the heap if they no longer fit on it.
+     */
+    private void ensureCapacity(int required) {
+        if (required <= capacity) {
+            return;
+        }
+        boolean moveOffHeap = cells instanceof HeapRoutingCells
+                && required > cells.maxCapacity();
+        int max = moveOffHeap ? BufferRoutingCells.MAX_CAPACITY
+                : cells.maxCapacity();
+        if (required > max) {
+            throw new IllegalStateException();
+        }
+        int grown = (int) Math.min(max,
+                Math.max(required, capacity + (long) (capacity >> 1)));
+        if (moveOffHeap) {
+            cells = offHeapCopy(grown);
+        } else {
+            cells.resize(capacity, grown, bound);
+        }
+        stops = Arrays.copyOf(stops, grown);
+        if (referrers != null) {
+            referrers = Arrays.copyOf(referrers, grown);
+        }
+        capacity = grown;
+    }
+
+    /*
+     * Copies the cells in use into new cells outside the heap, with room for
+     * the given number of stops.
+     */
+    private RoutingCells offHeapCopy(int grown) {
+        RoutingCells copy = BufferRoutingCells.allocate(grown);
+        for (int row = 0; row < bound; row++) {
+            for (int column = 0; column < bound; column++) {
+                long cell = (long) row * capacity + column;
+                int next = cells.nextHop(cell);
+                if (next != NO_ENTRY) {
+                    copy.set((long) row * grown + column, cells.cost(cell),
+                            next);
+                }
+            }
+        }
+        return copy;
+    }
+
+    /*
+     * Returns whether the given ordinal belongs to a stop in this matrix,
+     * rather than being freed.
+     */
+    private boolean isLive(int ordinal) {
+        Stop stop = stops[ordinal];
+        if (stop == null) {
+            return false;
+        }
+        RoutingTable table = stop.getRoutingTable();
+        return table.matrix == this && table.ordinal == ordinal;
+    }
+
+    /*
+     * Adds the given ordinal to the freed ordinals.
+     */
+    private void freeOrdinal(int ordinal) {
+        if (freeCount == free.length) {
+            free = Arrays.copyOf(free, Math.max(4, freeCount * 2));
+        }
+        free[freeCount++] = ordinal;
+    }
+
+    /*
+     * Stops counting the cells which refer to each ordinal until the counts
+     * are next needed, when every cell is counted again. The counts are
+     * shared by every row, so this must be called before rows are written
+     * from several threads at once.
+     */
+    void forgetReferrers() {
+        referrers = null;
+    }
+
+    /*
+     * Takes a freed ordinal which no cell refers to, or returns -1 if there
+     * is none.
+     */
+    private int reuseOrdinal() {
+        if (freeCount == 0) {
+            return -1;
+        }
+        countReferrers();
+        for (int k = freeCount - 1; k >= 0; k--) {
+            int ordinal = free[k];
+            if (referrers[ordinal] == 0) {
+                free[k] = free[--freeCount];
+                return ordinal;
+            }
+        }
+        return -1;
+    }
+
+    /*
+     * Counts the cells whose next stop is each ordinal, if they are not
+     * being counted already. Cells which route via the
+     * stop of a freed ordinal with no stop are cleared.
+     */
+    private void countReferrers() {
+        if (referrers != null) {
+            return;
+        }
+        referrers = new int[capacity];
+        for (int i = 0; i < bound; i++) {
+            for (int j = 0; j < bound; j++) {
+                long cell = cell(i, j);
+                int next = cells.nextHop(cell);
+                if (next >= 0 && stops[next] == null) {
+                    clearCell(cell);
+                } else if (next >= 0) {
+                    referrers[next]++;
+                }
+            }
+        }
+    }
+
+    /*
+     * Removes every stop and freed ordinal from this matrix, and clears the
+     * cells.
+     */
+    private void clearAll() {
+        cells.clear(0, cell(bound, 0));
+        Arrays.fill(stops, 0, bound, null);
+        if (referrers != null) {
+            Arrays.fill(referrers, 0, bound, 0);
+        }
+        freeCount = 0;
+        bound = 0;
+        size = 0;
+    }
+
+    /*
+     * Returns the index of the cell in the given row and column.
+     */
+    private long cell(int row, int column) {
+        return (long) row * capacity + column;
+    }
+
+    /*
+     * Returns the stop with the given ordinal, or null for NO_NEXT.
+     */
+    private Stop stopAt(int ordinal) {
+        return ordinal < 0 ? null : stops[ordinal];
+    }
+
+    /*
+     * Returns the ordinal of the given stop in this matrix, or -1 if it is
+     * null or not in the matrix.
+     */
+    private int column(Stop stop) {
+        if (stop == null) {
+            return -1;
+        }
+        RoutingTable table = stop.getRoutingTable();
+        return table.matrix == this ? table.ordinal : -1;
+    }
+
+    /*
+     * Returns the next stop ordinal (or NO_NEXT) of the given cell, or
+     * NO_ENTRY if it has no entry. Cells which route via the stop of a freed
+     * ordinal with no stop, left by opening a file, have no entry.
+     */
+    private int nextHop(long cell) {
+        int next = cells.nextHop(cell);
+        return next >= 0 && stops[next] == null ? NO_ENTRY : next;
+    }
+
+    /*
+     * Stores an entry in the given cell, keeping the referrer counts.
+     */
+    private void setCell(long cell, int cost, int next) {
+        if (referrers != null) {
+            int previous = cells.nextHop(cell);
+            if (previous >= 0) {
+                referrers[previous]--;
+            }
+            if (next >= 0) {
+                referrers[next]++;
+            }
+        }
+        cells.set(cell, cost, next);
+    }
+
+    private void clearCell(long cell) {
+        if (referrers != null) {
+            int previous = cells.nextHop(cell);
+            if (previous >= 0) {
+                referrers[previous]--;
+            }
+        }
+        cells.clear(cell, cell + 1);
+    }
+
+    private void clearRow(int ordinal) {
+        long start = cell(ordinal, 0);
+        if (referrers != null) {
+            for (int j = 0; j < bound; j++) {
+                int previous = cells.nextHop(start + j);
+                if (previous >= 0) {
+                    referrers[previous]--;
+                }
+            }
+        }
+        cells.clear(start, start + bound);
+    }
+
+    /*
+     * A view of a single row of the matrix, used as the store of the routing
+     * table of the row's stop.
+     */
+    private class Row implements RoutingStore {
+        // the routing table this row belongs to
+        private final RoutingTable table;
+
+        // entries which cannot be stored in the arrays (created when needed)
+        private MapRoutingStore overflow;
+
+        private Row(RoutingTable table) {
+            this.table = table;
+        }
+
+        /*
+         * Returns the index of the cell for the given destination, or -1 if
+         * the destination is not in the matrix.
+         */
+        private long cell(Stop destination) {
+            int column = column(destination);
+            return column < 0 ? -1 : RoutingMatrix.this.cell(table.ordinal,
+                    column);
+        }
+
+        private MapRoutingStore overflow() {
+            if (overflow == null) {
+                overflow = new MapRoutingStore();
+            }
+            return overflow;
+        }
+
+        /*
+         * Moves entries which involve the given (newly added) stop from the
+         * overflow map into the arrays.
+         */
+        private void adopt(Stop stop) {
+            if (overflow == null) {
+                return;
+            }
+            for (Stop destination : overflow.destinations()) {
+                Stop next = overflow.next(destination);
+                if (destination == stop || next == stop) {
+                    int cost = overflow.cost(destination);
+                    overflow.remove(destination);
+                    put(destination, cost, next);
+                }
+            }
+            if (overflow.isEmpty()) {
+                overflow = null;
+            }
+        }
+
+        /*
+         * Moves every entry which can now be stored in the cells from the
+         * overflow map into the cells.
+         */
+        private void adoptAll() {
+            if (overflow == null) {
+                return;
+            }
+            MapRoutingStore entries = overflow;
+            overflow = null;
+            for (Stop destination : entries.destinations()) {
+                put(destination, entries.cost(destination),
+                        entries.next(destination));
+            }
+        }
+
+        @Override
+        public boolean contains(Stop destination) {
+            long cell = cell(destination);
+            if (cell >= 0 && nextHop(cell) != NO_ENTRY) {
+                return true;
+            }
+            return overflow != null && overflow.contains(destination);
+        }
+
+        @Override
+        public int cost(Stop destination) {
+            long cell = cell(destination);
+            if (cell >= 0 && nextHop(cell) != NO_ENTRY) {
+                return cells.cost(cell);
+            }
+            return overflow == null ? Integer.MAX_VALUE
+                    : overflow.cost(destination);
+        }
+
+        @Override
+        public Stop next(Stop destination) {
+            long cell = cell(destination);
+            if (cell >= 0) {
+                int next = nextHop(cell);
+                if (next != NO_ENTRY) {
+                    return stopAt(next);
+                }
+            }
+            return overflow == null ? null : overflow.next(destination);
+        }
+
+        @Override
+        public void put(Stop destination, int cost, Stop next) {
+            // the same defaults as RoutingEntry
+            if (next == null || cost < 0) {
+                next = null;
+                cost = Integer.MAX_VALUE;
+            }
+            long cell = cell(destination);
+            int nextColumn = next == null ? NO_NEXT : column(next);
+
+            if (cell >= 0 && nextColumn != -1) {
+                setCell(cell, cost, nextColumn);
+                if (overflow != null) {
+                    overflow.remove(destination);
+                }
+            } else {
+                if (cell >= 0) {
+                    clearCell(cell);
+                }
+                overflow().put(destination, cost, next);
+            }
+        }
+
+        @Override
+        public void remove(Stop destination) {
+            long cell = cell(destination);
+            if (cell >= 0) {
+                clearCell(cell);
+            }
+            if (overflow != null) {
+                overflow.remove(destination);
+            }
+        }
+
+        @Override
+        public List<Stop> destinations() {
+            List<Stop> destinations = new ArrayList<>();
+            long start = RoutingMatrix.this.cell(table.ordinal, 0);
+            for (int j = 0; j < bound; j++) {
+                if (nextHop(start + j) != NO_ENTRY) {
+                    destinations.add(stops[j]);
+                }
+            }
+            if (overflow != null) {
+                destinations.addAll(overflow.destinations());
+            }
+            return destinations;
+        }
+    }
+}
@@ -0,0 +1,26 @@
+package stops;
+
+/**
+ * Chooses where passengers arriving at a stop should be routed to next.
+ *
+ * <p>By default, every passenger is routed to the next stop recorded in the
+ * stop's {@link RoutingTable}, so all passengers with the same destination
+ * take the same route. A routing policy can instead spread passengers over
+ * other routes, as long as each passenger still reaches its destination.
+ */
+public interface RoutingPolicy {
+    /**
+     * Chooses the neighbouring stop which a passenger waiting at the given
+     * stop should be routed to in order to reach the given destination.
+     *
+     * <p>The chosen stop must be closer to the destination (according to its
+     * routing table) than the given stop, so that passengers never travel
+     * around in a loop.
+     *
+     * @param stop The stop the passenger is waiting at.
+     * @param destination The passenger's final destination (not null).
+     * @return The stop to route the passenger to, or null if the
+     *         destination cannot be reached.
+     */
+    Stop nextStop(Stop stop, Stop destination);
+}
@@ -0,0 +1,61 @@
+package stops;
+
+import java.util.List;
+
+/**
+ * Stores the entries of a single routing table.
+ *
+ * <p>Each entry maps a destination stop to the cost of reaching it and the
+ * next stop to route passengers to, as described by {@link RoutingEntry}.
+ */
+interface RoutingStore {
+    /**
+     * Returns whether there is an entry for the given destination.
+     *
+     * @param destination The destination to check for.
+     * @return True if there is an entry, false otherwise.
+     */
+    boolean contains(Stop destination);
+
+    /**
+     * Returns the cost of the entry for the given destination.
+     *
+     * @param destination The destination of the entry.
+     * @return The cost, or Integer.MAX_VALUE if there is no entry.
+     */
+    int cost(Stop destination);
+
+    /**
+     * Returns the next stop of the entry for the given destination.
+     *
+     * @param destination The destination of the entry.
+     * @return The next stop, or null if there is no entry.
+     */
+    Stop next(Stop destination);
+
+    /**
+     * Adds or replaces the entry for the given destination.
+     *
+     * @param destination The destination of the entry.
+     * @param cost The cost to the destination.
+     * @param next The next stop to route passengers to.
+     */
+    void put(Stop destination, int cost, Stop next);
+
+    /**
+     * Removes the entry for the given destination, if there is one.
+     *
+     * @param destination The destination of the entry.
+     */
+    void remove(Stop destination);
+
+    /**
+     * Returns every destination with an entry in this store.
+     *
+     * <p>Modifying the returned list should not result in changes to the
+     * store.
+     *
+     * @return The destinations in this store.
+     */
+    List<Stop> destinations();
+}
@@ -8,13 +8,39 @@ import java.util.*;
  * <p>The table is able to redirect passengers from their current stop to the next
  * intermediate stop which they should go to in order to reach their final
  * destination.
+ *
+ * <p>The entries of a table are normally stored in a map owned by the table.
+ * If the table's stop is added to a {@link RoutingMatrix}, the table becomes a
+ * view of the stop's row in the matrix instead.
  */
 public class RoutingTable {
+    // the engine used to synchronise tables when none has been set
+    private static final RoutingEngine DEFAULT_ENGINE =
+            new DijkstraRoutingEngine();
+
     // the current stop of this routing table
     private Stop thisStop;
 
-    // the routing table witch map destination stops to RoutingEntry objects
-    private Map<Stop,RoutingEntry> table;
+    // the store which maps destination stops to their entries
+    private RoutingStore table;
+
+    // the engine used to compute the entries of the tables in the network
+    private RoutingEngine engine;
+
+    // whether synchronisation with the rest of the network is suspended
+    private boolean suspended;
+
+    // the matrix which stores this table's entries, or null if there is none
+    RoutingMatrix matrix;
+
+    // the ordinal of this table's stop in its matrix
+    int ordinal;
+
+    // the listeners notified of changes to this table, or null if none
+    private List<RoutingListener> listeners;
+
+    // destinations whose entries changed since listeners were last notified
+    private Set<Stop> pendingChanges;
 
     /**
      * Creates a new RoutingTable for the given stop.
@@ -27,8 +53,68 @@ public class RoutingTable {
      */
     public RoutingTable(Stop initialStop) {
         this.thisStop = initialStop;
-        this.table = new HashMap<>();
-        this.table.put(initialStop, new RoutingEntry(initialStop, 0));
+        this.table = new MapRoutingStore();
+        this.table.put(initialStop, 0, initialStop);
+        this.matrix = null;
+        this.ordinal = -1;
+        this.engine = DEFAULT_ENGINE;
+        this.suspended = false;
+    }
+
+    /**
+     * Sets the routing engine used by this table when it is synchronised with
+     * the rest of the network (see {@link RoutingTable#synchronise()}).
+     *
+     * <p>If the given engine is null, the default engine (a
+     * {@link DijkstraRoutingEngine}) should be used instead.
+     *
+     * @param engine The routing engine to use.
+     */
+    public void setRoutingEngine(RoutingEngine engine) {
+        this.engine = engine == null ? DEFAULT_ENGINE : engine;
+    }
+
+    /**
+     * Returns the routing engine used by this table when it is synchronised
+     * with the rest of the network.
+     *
+     * @return The routing engine of this table.
+     */
+    public RoutingEngine getRoutingEngine() {
+        return engine;
+    }
+
+    /**
+     * Suspends synchronisation of this table with the rest of the network.
+     *
+     * <p>While suspended, neighbours added to this table are recorded as
+     * entries, but {@link RoutingTable#addNeighbour(Stop)} does not
+     * synchronise the network. This allows many neighbours to be added (e.g.
+     * whilst loading a network) before building every table in a single pass
+     * using {@link RoutingEngine#build(java.util.Collection)}.
+     */
+    public void suspendSynchronisation() {
+        suspended = true;
+    }
+
+    /**
+     * Resumes synchronisation of this table with the rest of the network.
+     *
+     * <p>Resuming does not synchronise the table itself; any neighbours added
+     * while synchronisation was suspended are only routed over once the
+     * table is next synchronised or built by a routing engine.
+     */
+    public void resumeSynchronisation() {
+        suspended = false;
+    }
+
+    /**
+     * Returns whether synchronisation of this table is currently suspended.
+     *
+     * @return True if synchronisation is suspended, false otherwise.
+     */
+    public boolean isSynchronisationSuspended() {
+        return suspended;
     }
 
     /**
@@ -45,20 +131,89 @@ public class RoutingTable {
      * <p>The 'intermediate'/'next' stop between this table's stop and the new
      * neighbour stop should simply be the neighbour stop itself.
      *
-     * <p>Once the new neighbour has been added as an entry, this table should
-     * be synchronised with the rest of the network using the
-     * {@link RoutingTable#synchronise()} method.
+     * <p>Once the new neighbour has been added as an entry, the change is
+     * propagated through the network: this table learns the routes known by
+     * the neighbour's table, and only the entries (in this table or any other
+     * table in the network) whose cost improves as a result are updated.
+     * Nothing is propagated while synchronisation is suspended (see
+     * {@link #suspendSynchronisation()}).
+     *
+     * <p>If the given neighbour is null, the table remains unchanged.
      *
      * @param neighbour The stop to be added as a neighbour.
      */
     public void addNeighbour(Stop neighbour) {
-        int cost = thisStop.distanceTo(neighbour);
-
-        if (table.containsKey(neighbour)) {
-            addOrUpdateEntry(neighbour, cost, neighbour);
+        if (neighbour == null) {
+            return;
+        }
+        if (suspended) {
+            addOrUpdateEntry(neighbour, thisStop.linkCostTo(neighbour),
+                    neighbour);
         } else {
-            table.put(neighbour, new RoutingEntry(neighbour, cost));
-            synchronise();
+            // the neighbour's own entry is among those transferred
+            IncrementalRouting.neighbourAdded(thisStop, neighbour);
+        }
+    }
+
+    /**
+     * Removes the given stop as a neighbour of the stop stored in this table.
+     *
+     * <p>This method should be called once the neighbour is no longer
+     * returned by {@link Stop#getNeighbours()} for this table's stop.
+     *
+     * <p>Every entry in the network which routed passengers between this
+     * table's stop and the removed neighbour is invalidated and recomputed
+     * from the remaining neighbours. Entries for destinations which are no
+     * longer reachable are removed. Entries which did not use the removed
+     * neighbour are left unchanged.
+     *
+     * <p>If the given neighbour is null, the table remains unchanged.
+     *
+     * @param neighbour The stop to be removed as a neighbour.
+     */
+    public void removeNeighbour(Stop neighbour) {
+        if (neighbour == null) {
+            return;
+        }
+        IncrementalRouting.neighbourRemoved(thisStop, neighbour);
+    }
+
+    /**
+     * Updates the routing tables in the network after the cost of travelling
+     * from this table's stop to the given neighbour has changed (see
+     * {@link Stop#setLinkCost(Stop, int)}).
+     *
+     * <p>If the cost was lowered, the change is propagated in the same way
+     * as a new neighbour (see {@link #addNeighbour(Stop)}), so only entries
+     * which become cheaper are updated. If the cost was raised, only the
+     * entries in the network whose route used the link are invalidated and
+     * recomputed (in the same way as {@link #removeNeighbour(Stop)}), and
+     * may still use the link at its new cost. No other entries are touched,
+     * and the network is never fully synchronised.
+     *
+     * <p>Nothing is propagated while synchronisation is suspended (see
+     * {@link #suspendSynchronisation()}); only this table's entry for the
+     * neighbour is updated, if it travels over the link directly.
+     *
+     * <p>If the given neighbour is null, or the cost is unchanged, the table
+     * remains unchanged.
+     *
+     * @param neighbour The neighbour at the other end of the link.
+     * @param previousCost The cost of the link before it changed.
+     */
+    public void updateLinkCost(Stop neighbour, int previousCost) {
+        if (neighbour == null) {
+            return;
+        }
+        int cost = thisStop.linkCostTo(neighbour);
+        if (cost < previousCost) {
+            addNeighbour(neighbour);
+        } else if (cost > previousCost && suspended) {
+            if (nextStop(neighbour) == neighbour) {
+                setEntry(neighbour, cost, neighbour);
+            }
+        } else if (cost > previousCost) {
+            IncrementalRouting.linkCostRaised(thisStop, neighbour);
         }
     }
 
@@ -88,21 +243,20 @@ public class RoutingTable {
         int updatingState = -1;
         final int UNCHANGED = -1;
 
-        RoutingEntry newEntry = new RoutingEntry(intermediate, newCost);
-        RoutingEntry updatedEntry =
-                new RoutingEntry(nextStop(destination), newCost);
-
-        if (!table.containsKey(destination)) {
-            table.put(destination, newEntry);
+        if (!table.contains(destination)) {
+            table.put(destination, newCost, intermediate);
             updatingState = 0;
         } else {
-            int currentCost = table.get(destination).getCost();
+            int currentCost = table.cost(destination);
 
             if (newCost < currentCost) {
-                table.put(destination, updatedEntry);
+                table.put(destination, newCost, intermediate);
                 updatingState = 0;
             }
         }
+        if (updatingState != UNCHANGED) {
+            recordChange(destination);
+        }
         return (updatingState != UNCHANGED);
     }
 
@@ -114,11 +268,7 @@ public class RoutingTable {
      *         not currently in this routing table.
      */
     public int costTo(Stop stop) {
-        if (table.containsKey(stop)) {
-            return table.get(stop).getCost();
-        } else {
-            return Integer.MAX_VALUE;
-        }
+        return table.cost(stop);
     }
 
     /**
@@ -131,13 +281,133 @@ public class RoutingTable {
     public Map<Stop,Integer> getCosts() {
         Map<Stop,Integer> costs = new HashMap<>();
 
-        for (Stop key : table.keySet()) {
-            Integer cost = table.get(key).getCost();
+        for (Stop key : table.destinations()) {
+            Integer cost = table.cost(key);
             costs.put(key, cost);
         }
         return costs;
     }
 
+    /*
+     * Replaces the entry for the given destination with the given cost and
+     * next stop, regardless of the cost of any existing entry.
+     */
+    void setEntry(Stop destination, int cost, Stop next) {
+        table.put(destination, cost, next);
+        recordChange(destination);
+    }
+
+    /*
+     * Removes the entry for the given destination, if there is one.
+     */
+    void removeEntry(Stop destination) {
+        if (table.contains(destination)) {
+            table.remove(destination);
+            recordChange(destination);
+        }
+    }
+
+    /**
+     * Adds a listener to be notified when entries in this table change.
+     *
+     * <p>Changes made while a change to the network is propagated, or while
+     * the tables are built by a routing engine, are delivered together once
+     * the update is complete (see {@link RoutingListener}). Any other change
+     * is delivered as soon as it is made.
+     *
+     * <p>If the given listener is null or has already been added, the table
+     * remains unchanged.
+     *
+     * @param listener The listener to add.
+     */
+    public void addRoutingListener(RoutingListener listener) {
+        if (listener == null) {
+            return;
+        }
+        if (listeners == null) {
+            listeners = new ArrayList<>();
+        }
+        if (!listeners.contains(listener)) {
+            listeners.add(listener);
+        }
+    }
+
+    /**
+     * Removes a listener added with
+     * {@link #addRoutingListener(RoutingListener)}, so that it is no longer
+     * notified of changes to this table.
+     *
+     * <p>If the given listener has not been added, the table remains
+     * unchanged.
+     *
+     * @param listener The listener to remove.
+     */
+    public void removeRoutingListener(RoutingListener listener) {
+        if (listeners != null && listeners.remove(listener)
+                && listeners.isEmpty()) {
+            listeners = null;
+            pendingChanges = null;
+        }
+    }
+
+    /*
+     * Records that the entry for the given destination has changed, so that
+     * the listeners of this table are notified. Nothing is recorded when the
+     * table has no listeners.
+     */
+    private void recordChange(Stop destination) {
+        if (listeners == null) {
+            return;
+        }
+        if (pendingChanges != null) {
+            pendingChanges.add(destination);
+            return;
+        }
+        pendingChanges = Collections.newSetFromMap(new IdentityHashMap<>());
+        pendingChanges.add(destination);
+        if (!RoutingChanges.defer(this)) {
+            deliverChanges();
+        }
+    }
+
+    /*
+     * Notifies the listeners of this table of every change recorded since
+     * they were last notified.
+     */
+    void deliverChanges() {
+        Set<Stop> changed = pendingChanges;
+        pendingChanges = null;
+        if (changed == null || listeners == null) {
+            return;
+        }
+        Set<Stop> destinations = Collections.unmodifiableSet(changed);
+        for (RoutingListener listener : new ArrayList<>(listeners)) {
+            listener.routingChanged(this, destinations);
+        }
+    }
+
+    /*
+     * Returns the destinations which currently have an entry in this table.
+     */
+    List<Stop> getDestinations() {
+        return table.destinations();
+    }
+
+    /*
+     * Returns the store which holds the entries of this table.
+     */
+    RoutingStore getStore() {
+        return table;
+    }
+
+    /*
+     * Replaces the store which holds the entries of this table. The new store
+     * should already contain the entries of the old one.
+     */
+    void setStore(RoutingStore store) {
+        this.table = store;
+    }
+
     /**
      * Return the stop for which this table will handle routing.
      *
@@ -157,45 +427,53 @@ public class RoutingTable {
      *                  given destination.
      */
     public Stop nextStop(Stop destination) {
-        if (!table.containsKey(destination) || destination == null) {
+        if (destination == null) {
             return null;
         } else {
-            return table.get(destination).getNext();
+            return table.next(destination);
         }
     }
 
+    /**
+     * Returns the full route recorded from this table's stop to the given
+     * destination, found by following the next stop of each routing table
+     * along the way.
+     *
+     * <p>If the destination is this table's stop, the path only contains
+     * that stop. Paths which are needed repeatedly can be kept in a
+     * {@link PathCache}.
+     *
+     * @param destination The stop the path should end at.
+     * @return The path to the destination, or null if the destination is
+     *         null, or the tables have no route to it.
+     */
+    public RoutePath pathTo(Stop destination) {
+        if (destination == null) {
+            return null;
+        }
+        return RoutePath.follow(thisStop, destination);
+    }
+
     /**
      * Synchronises this routing table with the other tables in the network.
      *
-     * <p>In each iteration, every stop in the network which is reachable by
-     * this table's stop (as returned by {@link RoutingTable#traverseNetwork()})
-     * must be considered. For each stop x in the network, each of its
-     * neighbours must be visited, and the entries from x must be transferred
-     * to each neighbour (using the
-     * {@link RoutingTable#transferEntries(Stop)} method).
+     * <p>Every stop in the network which is reachable by this table's stop
+     * has its routing table updated by this table's routing engine (see
+     * {@link RoutingEngine#build(java.util.Collection)}), so that each table
+     * holds the cheapest known route to every destination it can reach.
      *
-     * <p>If any of these transfers results in a change to the table that the
-     * entries are being transferred, then the entire process must be repeated
-     * again. These iterations should continue happening until no changes occur
-     * to any of the tables in the network.
+     * <p>As with {@link RoutingTable#addOrUpdateEntry(Stop, int, Stop)},
+     * existing entries are only replaced when a cheaper route is found.
      *
      * This process is designed to handle changes which need to be propagated
-     * throughout the entire network, which could take more than one iteration.
+     * throughout the entire network.
      */
     public void synchronise() {
-        boolean change = true;
-
-        while (change) {
-            change = false;
-            List<Stop> reachable = traverseNetwork();
-
-            for (Stop stop : reachable) {
-                for (Stop neighbour : stop.getNeighbours()) {
-                    if (stop.getRoutingTable().transferEntries(neighbour)) {
-                        change = true;
-                    }
-                }
-            }
+        RoutingChanges.begin();
+        try {
+            engine.build(Collections.singletonList(thisStop));
+        } finally {
+            RoutingChanges.end();
         }
     }
 
@@ -206,7 +484,8 @@ public class RoutingTable {
      * <p>If this routing table has entries which the other stop's table
      * doesn't, then the entries should be added to the other table (as defined
      * in {@link RoutingTable#addOrUpdateEntry(Stop, int, Stop)}) with the cost
-     * being updated to include the distance.
+     * being updated to include the cost of travelling from the other stop to
+     * this table's stop (see {@link Stop#linkCostTo(Stop)}).
      *
      * <p>If this routing table has entries which the other stop's table does
      * have, and the new cost would be lower than that associated with its
@@ -229,13 +508,18 @@ public class RoutingTable {
         final int UNCHANGED = -1;
         RoutingTable otherTable = other.getRoutingTable();
 
-        for (Map.Entry<Stop,RoutingEntry> entry : table.entrySet()) {
-            Stop destination = entry.getKey();
-            int cost = entry.getValue().getCost() + thisStop.distanceTo(other);
+        RoutingChanges.begin();
+        try {
+            for (Stop destination : table.destinations()) {
+                int cost = table.cost(destination)
+                        + other.linkCostTo(thisStop);
 
-            if (otherTable.addOrUpdateEntry(destination, cost, thisStop)) {
-                updatingState = 0;
+                if (otherTable.addOrUpdateEntry(destination, cost, thisStop)) {
+                    updatingState = 0;
+                }
             }
+        } finally {
+            RoutingChanges.end();
         }
         return (updatingState != UNCHANGED);
     }
@@ -244,31 +528,13 @@ public class RoutingTable {
      * Performs a traversal of all the stops in the network, and returns a list
      * of every stop which is reachable from the stop stored in this table.
      *
-     *   1.Firstly create an empty list of Stops and an empty Stack of Stops.
-     *     Push the RoutingTable's Stop on to the stack.
-     *   2.While the stack is not empty,
-     *       1.pop the top Stop (current) from the stack.
-     *       2.For each of that stop's neighbours,
-     *           1.if they are not in the list, add them to the stack.
-     *       3.Then add the current Stop to the list.
-     *   3.Return the list of seen stops.
+     * <p>The list starts with this table's stop, and each reachable stop
+     * appears in it once (see {@link StopTraversal#reachableFrom(Stop)}).
+     *
      * @return All of the stops in the network which are reachable by the stop
      *         stored in this table.
      */
     public java.util.List<Stop> traverseNetwork() {
-        List<Stop> list = new ArrayList<>();
-        Stack<Stop> stack = new Stack<>();
-        stack.push(thisStop);
-
-        while (!stack.empty()) {
-            Stop currentStop = stack.pop();
-            for (Stop p : currentStop.getNeighbours()) {
-                if (!list.contains(p)) {
-                    stack.push(p);
-                }
-            }
-            list.add(currentStop);
-        }
-        return list;
+        return StopTraversal.reachableFrom(thisStop);
     }
 }
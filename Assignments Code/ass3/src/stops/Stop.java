@@ -32,6 +32,9 @@ public class Stop implements Writeable {
     // the stops directly adjacent to this stop along routes
     private List<Stop> neighbours;
 
+    // the stops which have this stop as a neighbour
+    private List<Stop> predecessors;
+
     // the x and y coordinates of this stop
     private int xCoordinate;
     private int yCoordinate;
@@ -42,6 +45,19 @@ public class Stop implements Writeable {
     // the next stop where each passenger waiting at it should be routed to
     private Map<Passenger, Stop> nextStops;
 
+    // the connectivity indices this stop is in (created when needed)
+    List<Connectivity> connectivities;
+
+    // the raised cost of the link to each neighbour (created when needed)
+    private Map<Stop, Integer> linkCosts;
+
+    // chooses the next stop of arriving passengers, or null to use the table
+    private RoutingPolicy policy;
+
+    // re-routes waiting passengers when the routing table changes, listening
+    // only while passengers are waiting to be routed (created when needed)
+    private RoutingListener rerouter;
+
 
     /**
      * Creates a new Stop object with the given name and coordinates.
@@ -68,6 +84,7 @@ public class Stop implements Writeable {
         this.yCoordinate = y;
 
         this.neighbours = new ArrayList<>();
+        this.predecessors = new ArrayList<>();
         this.passengers = new ArrayList<>();
         this.routes = new ArrayList<>();
         this.atStop = new HashSet<>();
@@ -116,6 +133,21 @@ public class Stop implements Writeable {
         routes.add(route);
     }
 
+    /**
+     * Records that this stop is no longer part of the given route.
+     *
+     * <p>As a stop is recorded once for each time it is added to a route,
+     * only a single record of the given route is removed.
+     *
+     * <p>If the given route is null, or is not a route of this stop, the
+     * stop's routes should remain unchanged.
+     *
+     * @param route The route to be removed.
+     */
+    public void removeRoute(Route route) {
+        routes.remove(route);
+    }
+
     /**
      * Returns the routes associated with this stop.
      *
@@ -138,6 +170,9 @@ public class Stop implements Writeable {
      * {@link RoutingTable#addNeighbour(Stop)}) in the routing table for use
      * when routing passengers.
      *
+     * <p>Every {@link Connectivity} index this stop is in records that the
+     * two stops are now connected.
+     *
      * <p>If the given stop is null, or if this stop is already recorded as a
      * neighbour, it should not be added as a neighbour, and the method should
      * return early.
@@ -149,9 +184,43 @@ public class Stop implements Writeable {
             return;
         }
         neighbours.add(neighbour);
+        neighbour.predecessors.add(this);
+        if (connectivities != null) {
+            for (Connectivity connectivity : connectivities) {
+                connectivity.linked(this, neighbour);
+            }
+        }
         table.addNeighbour(neighbour);
     }
 
+    /**
+     * Records that the given stop is no longer a neighbour of this stop.
+     *
+     * <p>The neighbour should also be removed from the routing table (
+     * {@link RoutingTable#removeNeighbour(Stop)}), so that passengers are no
+     * longer routed between this stop and the removed neighbour.
+     *
+     * <p>If the given stop is null, or is not recorded as a neighbour of this
+     * stop, the method should return early.
+     *
+     * @param neighbour The stop to remove as a neighbour.
+     */
+    public void removeNeighbouringStop(Stop neighbour) {
+        if (neighbour == null || !neighbours.remove(neighbour)) {
+            return;
+        }
+        neighbour.predecessors.remove(this);
+        if (linkCosts != null) {
+            linkCosts.remove(neighbour);
+        }
+        if (connectivities != null) {
+            for (Connectivity connectivity : connectivities) {
+                connectivity.unlinked();
+            }
+        }
+        table.removeNeighbour(neighbour);
+    }
+
     /**
      * Returns all of the stops adjacent to this one on any routes.
      *
@@ -167,6 +236,23 @@ public class Stop implements Writeable {
         return new ArrayList<>(neighbours);
     }
 
+    /**
+     * Returns all of the stops which have this stop as a neighbour (see
+     * {@link #addNeighbouringStop(Stop)}), that is, the stops passengers
+     * can travel to this stop from.
+     *
+     * <p>No specific order is required for the stop objects in the returned
+     * list.
+     *
+     * <p>Modifying the returned list should not result in changes to the
+     * internal state of the class.
+     *
+     * @return The stops which have this stop as a neighbour.
+     */
+    public List<Stop> getPredecessors() {
+        return new ArrayList<>(predecessors);
+    }
+
     /**
      * Places a passenger at this stop.
      *
@@ -180,6 +266,15 @@ public class Stop implements Writeable {
      * {@link RoutingTable#nextStop(Stop)}). The stop should keep a record of
      * where each passenger waiting at it should be routed to next.
      *
+     * <p>If the stop has a routing policy (see
+     * {@link #setRoutingPolicy(RoutingPolicy)}), the policy chooses the next
+     * stop instead of the routing table.
+     *
+     * <p>While passengers are waiting, the stop listens for changes to its
+     * routing table (see {@link RoutingListener}). When the entries for some
+     * destinations change, only the passengers travelling to those
+     * destinations are routed again, once per routing update.
+     *
      * @param passenger The passenger to add to the stop.
      */
     public void addPassenger(Passenger passenger) {
@@ -189,11 +284,86 @@ public class Stop implements Writeable {
             this.passengers.add(passenger);
         } else {
             this.passengers.add(passenger);
-            Stop nextStop = table.nextStop(passenger.getDestination());
-            this.nextStops.put(passenger, nextStop);
+            this.nextStops.put(passenger,
+                    route(passenger.getDestination()));
+            if (rerouter == null) {
+                rerouter = new RoutingListener() {
+                    @Override
+                    public void routingChanged(RoutingTable table,
+                                               Set<Stop> destinations) {
+                        reroute(destinations);
+                    }
+                };
+            }
+            table.addRoutingListener(rerouter);
         }
     }
 
+    /*
+     * Returns the next stop a passenger at this stop should be routed to in
+     * order to reach the given destination.
+     */
+    private Stop route(Stop destination) {
+        return policy == null ? table.nextStop(destination)
+                : policy.nextStop(this, destination);
+    }
+
+    /*
+     * Routes every waiting passenger travelling to one of the given
+     * destinations again.
+     */
+    private void reroute(Set<Stop> destinations) {
+        for (Map.Entry<Passenger, Stop> entry : nextStops.entrySet()) {
+            Stop destination = entry.getKey().getDestination();
+            if (destinations.contains(destination)) {
+                entry.setValue(route(destination));
+            }
+        }
+    }
+
+    /**
+     * Sets the policy which chooses the next stop of each passenger added to
+     * this stop (see {@link #addPassenger(Passenger)}).
+     *
+     * <p>If the given policy is null, passengers are routed to the next stop
+     * recorded in this stop's routing table (see
+     * {@link RoutingTable#nextStop(Stop)}). Passengers already waiting at the
+     * stop keep their next stop.
+     *
+     * @param policy The routing policy to use.
+     */
+    public void setRoutingPolicy(RoutingPolicy policy) {
+        this.policy = policy;
+    }
+
+    /**
+     * Returns the policy which chooses the next stop of each passenger added
+     * to this stop.
+     *
+     * @return The routing policy of this stop, or null if passengers are
+     *         routed by the routing table.
+     */
+    public RoutingPolicy getRoutingPolicy() {
+        return policy;
+    }
+
+    /**
+     * Returns the number of passengers waiting at this stop who are routed
+     * to the given next stop.
+     *
+     * @param nextStop The next stop to count the passengers of.
+     * @return The number of waiting passengers routed to the given stop.
+     */
+    public int waitingFor(Stop nextStop) {
+        int count = 0;
+        for (Stop next : nextStops.values()) {
+            if (next == nextStop) {
+                count++;
+            }
+        }
+        return count;
+    }
+
     /**
      * Returns the passengers currently at this stop.
      *
@@ -294,21 +464,24 @@ public class Stop implements Writeable {
             return;
         }
         try {
-            for (Passenger p : passengers) {
+            Iterator<Passenger> waiting = passengers.iterator();
+            while (waiting.hasNext()) {
+                Passenger p = waiting.next();
                 Stop next = nextStops.get(p);
                 if (next == nextStop) {
                     transport.addPassenger(p);
-                    passengers.remove(p);
+                    waiting.remove();
                     nextStops.remove(p);
                 }
             }
         } catch (OverCapacityException e) {
-            transport.travelTo(nextStop);
-            atStop.remove(transport);
-            return;
+            // the vehicle is full, so the remaining passengers keep waiting
         }
         transport.travelTo(nextStop);
         atStop.remove(transport);
+        if (nextStops.isEmpty() && rerouter != null) {
+            table.removeRoutingListener(rerouter);
+        }
     }
 
     /**
@@ -331,6 +504,73 @@ public class Stop implements Writeable {
         return Math.abs(getX() - stop.getX()) + Math.abs(getY() - stop.getY());
     }
 
+    /**
+     * Returns the cost of travelling from this stop directly to the given
+     * neighbour, which routing tables use as the cost of the link.
+     *
+     * <p>This is the Manhattan distance between the stops (see
+     * {@link #distanceTo(Stop)}), unless the cost has been raised by
+     * {@link #setLinkCost(Stop, int)}.
+     *
+     * @param neighbour The stop to get the cost of travelling to.
+     * @return The cost of the link to the given stop (or -1 if the given
+     *         stop is null)
+     */
+    public int linkCostTo(Stop neighbour) {
+        if (linkCosts != null) {
+            Integer cost = linkCosts.get(neighbour);
+            if (cost != null) {
+                return cost;
+            }
+        }
+        return distanceTo(neighbour);
+    }
+
+    /**
+     * Sets the cost of travelling from this stop directly to the given
+     * neighbour, for example to route passengers around crowding or an
+     * incident between the two stops.
+     *
+     * <p>The cost can be raised and lowered again at any time, but never
+     * below the Manhattan distance between the stops, so that the distance
+     * remains a lower bound on the cost of any journey. Setting the cost to
+     * the distance restores the normal cost of the link. The cost of
+     * travelling in the other direction is unchanged, and the raised cost is
+     * forgotten if the neighbour is removed.
+     *
+     * <p>The routing tables of the network are repaired incrementally (see
+     * {@link RoutingTable#updateLinkCost(Stop, int)}).
+     *
+     * <p>If the given stop is null or is not a neighbour of this stop, the
+     * method should return early.
+     *
+     * @param neighbour The stop at the other end of the link.
+     * @param cost The new cost of travelling to the neighbour.
+     * @throws IllegalArgumentException If the cost is less than the
+     *         Manhattan distance to the neighbour.
+     */
+    public void setLinkCost(Stop neighbour, int cost) {
+        if (neighbour == null || !neighbours.contains(neighbour)) {
+            return;
+        }
+        if (cost < distanceTo(neighbour)) {
+            throw new IllegalArgumentException();
+        }
+        int previousCost = linkCostTo(neighbour);
+        if (cost == previousCost) {
+            return;
+        }
+        if (cost == distanceTo(neighbour)) {
+            linkCosts.remove(neighbour);
+        } else {
+            if (linkCosts == null) {
+                linkCosts = new HashMap<>();
+            }
+            linkCosts.put(neighbour, cost);
+        }
+        table.updateLinkCost(neighbour, previousCost);
+    }
+
     /**
      * Returns the routing table for this stop.
      *
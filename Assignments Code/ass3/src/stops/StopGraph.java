@@ -0,0 +1,140 @@
+package stops;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * An array based snapshot of the stops in the network and the neighbours of
+ * each stop.
+ *
+ * <p>Every stop reachable from the stops the graph was created with is
+ * assigned an index from 0 to {@link #size()} - 1. The neighbours of each stop
+ * (as returned by {@link Stop#getNeighbours()}) are stored as arrays of
+ * indices, along with the cost of the link to each neighbour (see
+ * {@link Stop#linkCostTo(Stop)}), so that
+ * routing algorithms do not need to perform any map lookups while searching.
+ *
+ * <p>The snapshot does not change if neighbours are later added to any of
+ * the stops.
+ */
+public class StopGraph {
+    // the stops in the graph, in index order
+    private Stop[] stops;
+
+    // the index of each neighbour of each stop
+    private int[][] neighbours;
+
+    // the distance from each stop to each of its neighbours
+    private int[][] distances;
+
+    // the index of each stop in the graph
+    private Map<Stop, Integer> indices;
+
+    /**
+     * Creates a snapshot of the given stops and every stop reachable from
+     * them.
+     *
+     * <p>Stops are indexed in the order they are first encountered, starting
+     * with the given stops in iteration order. Null stops are ignored.
+     *
+     * @param roots The stops from which to start the traversal.
+     */
+    public StopGraph(Collection<Stop> roots) {
+        // stops are compared by identity, as two distinct stops may be equal
+        indices = new IdentityHashMap<>();
+        List<Stop> order = new ArrayList<>();
+        List<List<Stop>> adjacent = new ArrayList<>();
+
+        for (Stop root : roots) {
+            if (root != null && !indices.containsKey(root)) {
+                indices.put(root, order.size());
+                order.add(root);
+            }
+        }
+
+        // breadth first traversal, indexing each stop as it is discovered
+        for (int i = 0; i < order.size(); i++) {
+            List<Stop> current = order.get(i).getNeighbours();
+            adjacent.add(current);
+            for (Stop neighbour : current) {
+                if (!indices.containsKey(neighbour)) {
+                    indices.put(neighbour, order.size());
+                    order.add(neighbour);
+                }
+            }
+        }
+
+        stops = order.toArray(new Stop[0]);
+        neighbours = new int[stops.length][];
+        distances = new int[stops.length][];
+        for (int i = 0; i < stops.length; i++) {
+            List<Stop> current = adjacent.get(i);
+            neighbours[i] = new int[current.size()];
+            distances[i] = new int[current.size()];
+            for (int j = 0; j < current.size(); j++) {
+                neighbours[i][j] = indices.get(current.get(j));
+                distances[i][j] = stops[i].linkCostTo(current.get(j));
+            }
+        }
+    }
+
+    /**
+     * Returns the number of stops in this graph.
+     *
+     * @return The number of stops in the graph.
+     */
+    public int size() {
+        return stops.length;
+    }
+
+    /**
+     * Returns the stop with the given index.
+     *
+     * @param index The index of the stop.
+     * @return The stop with the given index.
+     * @throws ArrayIndexOutOfBoundsException If the index is not between 0
+     *         and {@link #size()} - 1.
+     */
+    public Stop getStop(int index) {
+        return stops[index];
+    }
+
+    /**
+     * Returns the index of the given stop in this graph.
+     *
+     * @param stop The stop to find the index of.
+     * @return The index of the stop, or -1 if the stop is not in the graph.
+     */
+    public int indexOf(Stop stop) {
+        Integer index = indices.get(stop);
+        return index == null ? -1 : index;
+    }
+
+    /**
+     * Returns the indices of the neighbours of the stop with the given index.
+     *
+     * <p>The returned array is shared and must not be modified.
+     *
+     * @param index The index of the stop.
+     * @return The indices of the stop's neighbours.
+     */
+    public int[] neighboursOf(int index) {
+        return neighbours[index];
+    }
+
+    /**
+     * Returns the distance from the stop with the given index to each of its
+     * neighbours, in the same order as {@link #neighboursOf(int)}.
+     *
+     * <p>The returned array is shared and must not be modified.
+     *
+     * @param index The index of the stop.
+     * @return The distance to each of the stop's neighbours.
+     */
+    public int[] distancesOf(int index) {
+        return distances[index];
+    }
+}
@@ -0,0 +1,294 @@
+package stops;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Finds the stops which are reachable from other stops in the network.
+ *
+ * <p>Traversals work on integer ordinals rather than stops: the stops which
+ * have been visited are recorded in a {@link BitSet} and the stops still to
+ * be visited are kept on an int array stack. Each thread reuses its own
+ * buffers between traversals, so a traversal only allocates its result.
+ * Every traversal visits each reachable stop and each of its neighbours
+ * once.
+ *
+ * <p>A traversal can be created for a {@link StopGraph} snapshot, in which
+ * case each stop in the graph is labelled with its connected component so
+ * that reachability can be looked up without searching (see
+ * {@link #isReachable(Stop, Stop)}).
+ */
+public class StopTraversal {
+    // the buffers used by traversals on each thread
+    private static final ThreadLocal<Buffers> BUFFERS =
+            new ThreadLocal<Buffers>() {
+                @Override
+                protected Buffers initialValue() {
+                    return new Buffers();
+                }
+            };
+
+    // the graph whose stops are labelled
+    private StopGraph graph;
+
+    // the connected component of each stop in the graph
+    private int[] components;
+
+    // the number of connected components in the graph
+    private int componentCount;
+
+    // whether every link in the graph also exists in the other direction
+    private boolean symmetric;
+
+    /**
+     * Labels each stop in the given graph with its connected component.
+     *
+     * <p>Links are treated as two way when labelling, so two stops are in
+     * the same component if there is a path between them ignoring the
+     * direction of each link.
+     *
+     * @param graph The graph to label.
+     */
+    public StopTraversal(StopGraph graph) {
+        this.graph = graph;
+        int size = graph.size();
+
+        // the stops linking to each stop, in compressed row form
+        int[] reverseStart = new int[size + 1];
+        for (int stop = 0; stop < size; stop++) {
+            for (int neighbour : graph.neighboursOf(stop)) {
+                reverseStart[neighbour + 1]++;
+            }
+        }
+        for (int stop = 0; stop < size; stop++) {
+            reverseStart[stop + 1] += reverseStart[stop];
+        }
+        int[] reverse = new int[reverseStart[size]];
+        int[] filled = Arrays.copyOf(reverseStart, size);
+        for (int stop = 0; stop < size; stop++) {
+            for (int neighbour : graph.neighboursOf(stop)) {
+                reverse[filled[neighbour]++] = stop;
+            }
+        }
+        symmetric = isSymmetric(reverseStart, reverse);
+
+        components = new int[size];
+        Arrays.fill(components, -1);
+        Buffers buffers = BUFFERS.get();
+        for (int root = 0; root < size; root++) {
+            if (components[root] != -1) {
+                continue;
+            }
+            int component = componentCount++;
+            components[root] = component;
+            int top = buffers.push(0, root);
+            while (top > 0) {
+                int current = buffers.stack[--top];
+                for (int neighbour : graph.neighboursOf(current)) {
+                    if (components[neighbour] == -1) {
+                        components[neighbour] = component;
+                        top = buffers.push(top, neighbour);
+                    }
+                }
+                for (int i = reverseStart[current];
+                     i < reverseStart[current + 1]; i++) {
+                    if (components[reverse[i]] == -1) {
+                        components[reverse[i]] = component;
+                        top = buffers.push(top, reverse[i]);
+                    }
+                }
+            }
+        }
+    }
+
+    /*
+     * Returns whether the stops linking to each stop are exactly the stops
+     * it links to.
+     */
+    private boolean isSymmetric(int[] reverseStart, int[] reverse) {
+        for (int stop = 0; stop < graph.size(); stop++) {
+            int[] forwards = graph.neighboursOf(stop).clone();
+            int[] backwards = Arrays.copyOfRange(reverse, reverseStart[stop],
+                    reverseStart[stop + 1]);
+            Arrays.sort(forwards);
+            Arrays.sort(backwards);
+            if (!Arrays.equals(forwards, backwards)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns the number of connected components in the graph.
+     *
+     * @return The number of components.
+     */
+    public int getComponentCount() {
+        return componentCount;
+    }
+
+    /**
+     * Returns the connected component of the given stop.
+     *
+     * <p>Components are numbered from 0 to {@link #getComponentCount()} - 1.
+     *
+     * @param stop The stop to get the component of.
+     * @return The component of the stop, or -1 if it is not in the graph.
+     */
+    public int componentOf(Stop stop) {
+        int index = graph.indexOf(stop);
+        return index == -1 ? -1 : components[index];
+    }
+
+    /**
+     * Returns whether the destination can be reached from the origin by
+     * travelling between neighbouring stops.
+     *
+     * <p>If every link in the graph is two way (as the links added by routes
+     * are), this is a constant time lookup of the stops' components.
+     * Otherwise, stops in different components are still rejected without
+     * searching, but stops in the same component are searched for.
+     *
+     * @param origin The stop to travel from.
+     * @param destination The stop to travel to.
+     * @return True if the destination is reachable, false if it is not or if
+     *         either stop is not in the graph.
+     */
+    public boolean isReachable(Stop origin, Stop destination) {
+        int from = graph.indexOf(origin);
+        int to = graph.indexOf(destination);
+        if (from == -1 || to == -1 || components[from] != components[to]) {
+            return false;
+        }
+        if (from == to || symmetric) {
+            return true;
+        }
+
+        Buffers buffers = BUFFERS.get();
+        BitSet visited = buffers.clearVisited();
+        visited.set(from);
+        int top = buffers.push(0, from);
+        while (top > 0) {
+            int current = buffers.stack[--top];
+            for (int neighbour : graph.neighboursOf(current)) {
+                if (neighbour == to) {
+                    return true;
+                }
+                if (!visited.get(neighbour)) {
+                    visited.set(neighbour);
+                    top = buffers.push(top, neighbour);
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns every stop which is reachable from the given stop by travelling
+     * between neighbouring stops, including the stop itself.
+     *
+     * <p>The stops are returned in the order they are visited, starting with
+     * the given stop, and each stop appears in the list once. The neighbours
+     * of each stop are read when it is visited (see
+     * {@link Stop#getNeighbours()}).
+     *
+     * <p>If the stop's routing table is stored in a {@link RoutingMatrix},
+     * stops in the same matrix are tracked by their ordinal in the matrix,
+     * and no hashing is needed to visit them.
+     *
+     * @param start The stop to start from.
+     * @return The stops which are reachable from the given stop, or an empty
+     *         list if it is null.
+     */
+    public static List<Stop> reachableFrom(Stop start) {
+        List<Stop> reachable = new ArrayList<>();
+        if (start == null) {
+            return reachable;
+        }
+        RoutingMatrix matrix = start.getRoutingTable().matrix;
+        int base = matrix == null ? 0 : matrix.ordinalBound();
+
+        // ordinals after base are given to stops outside the matrix
+        Map<Stop, Integer> others = null;
+        List<Stop> otherStops = null;
+        if (matrix == null) {
+            others = new IdentityHashMap<>();
+            otherStops = new ArrayList<>();
+            others.put(start, 0);
+            otherStops.add(start);
+        }
+
+        Buffers buffers = BUFFERS.get();
+        BitSet visited = buffers.clearVisited();
+        int first = matrix == null ? 0 : start.getRoutingTable().ordinal;
+        visited.set(first);
+        int top = buffers.push(0, first);
+        while (top > 0) {
+            int current = buffers.stack[--top];
+            Stop stop = current < base ? matrix.getStop(current)
+                    : otherStops.get(current - base);
+            reachable.add(stop);
+
+            for (Stop neighbour : stop.getNeighbours()) {
+                int ordinal;
+                if (neighbour.getRoutingTable().matrix == matrix
+                        && matrix != null) {
+                    ordinal = neighbour.getRoutingTable().ordinal;
+                } else {
+                    if (others == null) {
+                        others = new IdentityHashMap<>();
+                        otherStops = new ArrayList<>();
+                    }
+                    Integer other = others.get(neighbour);
+                    if (other == null) {
+                        other = base + otherStops.size();
+                        others.put(neighbour, other);
+                        otherStops.add(neighbour);
+                    }
+                    ordinal = other;
+                }
+                if (!visited.get(ordinal)) {
+                    visited.set(ordinal);
+                    top = buffers.push(top, ordinal);
+                }
+            }
+        }
+        return reachable;
+    }
+
+    /*
+     * The reusable buffers of a single thread.
+     */
+    private static class Buffers {
+        // the ordinals which have been visited
+        private BitSet visited = new BitSet();
+
+        // the ordinals still to be visited
+        private int[] stack = new int[16];
+
+        /*
+         * Clears and returns the visited set.
+         */
+        private BitSet clearVisited() {
+            visited.clear();
+            return visited;
+        }
+
+        /*
+         * Pushes the given ordinal onto the stack, whose top is at the given
+         * position, growing the stack if needed. Returns the new top.
+         */
+        private int push(int top, int ordinal) {
+            if (top == stack.length) {
+                stack = Arrays.copyOf(stack, top * 2);
+            }
+            stack[top] = ordinal;
+            return top + 1;
+        }
+    }
+}
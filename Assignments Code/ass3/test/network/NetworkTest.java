@@ -0,0 +1,427 @@
+package network;
+
+import exceptions.TransportFormatException;
+import org.junit.Assume;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import stops.RoutingMatrix;
+import stops.Stop;
+
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class NetworkTest {
+    // the network described in the Network(String) documentation
+    private static final String SPEC = "4\n"
+            + "stop0:0:1\n"
+            + "stop1:-1:0\n"
+            + "stop2:4:2\n"
+            + "stop3:2:-8\n"
+            + "2\n"
+            + "train,red,1:stop0|stop2|stop1\n"
+            + "bus,blue,2:stop1|stop3|stop0\n"
+            + "3\n"
+            + "train,123,30,1,2\n"
+            + "train,42,60,1,3\n"
+            + "bus,412,20,2,ABC123\n";
+
+    // the sample network files of the second assignment
+    private static final File SAMPLES = new File("../ass2/networks");
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private String write(String name, String contents) throws Exception {
+        File file = folder.newFile(name);
+        FileWriter writer = new FileWriter(file);
+        writer.write(contents);
+        writer.close();
+        return file.getPath();
+    }
+
+    @Test
+    public void saveWithRouting() throws Exception {
+        Network network = new Network(write("spec.txt", SPEC));
+        String filename = folder.getRoot().getPath() + "/saved.txt";
+        network.save(filename, true);
+        assertTrue(new File(Network.routingFileFor(filename)).isFile());
+
+        Network loaded = new Network(filename);
+        List<Stop> stops = loaded.getStops();
+        List<Stop> expected = network.getStops();
+        for (int i = 0; i < stops.size(); i++) {
+            for (int j = 0; j < stops.size(); j++) {
+                assertEquals(expected.get(i).getRoutingTable()
+                                .costTo(expected.get(j)),
+                        stops.get(i).getRoutingTable().costTo(stops.get(j)));
+                assertEquals(expected.get(i).getRoutingTable()
+                                .nextStop(expected.get(j)).getName(),
+                        stops.get(i).getRoutingTable().nextStop(stops.get(j))
+                                .getName());
+            }
+        }
+        assertEquals(3, loaded.getVehicles().size());
+    }
+
+    @Test
+    public void partitionedRoutingNotSaved() throws Exception {
+        Network network = new Network(write("spec.txt", SPEC));
+        network.partitionRouting();
+        String filename = folder.getRoot().getPath() + "/saved.txt";
+        try {
+            network.save(filename, true);
+            fail();
+        } catch (IOException expected) {
+            assertFalse(new File(filename).exists());
+            assertFalse(new File(Network.routingFileFor(filename)).exists());
+        }
+        try {
+            network.saveBinary(filename, true);
+            fail();
+        } catch (IOException expected) {
+            assertFalse(new File(filename).exists());
+        }
+
+        network.setRoutingMatrix(new RoutingMatrix());
+        network.save(filename, true);
+        assertTrue(new File(Network.routingFileFor(filename)).isFile());
+        List<Stop> stops = new Network(filename).getStops();
+        assertEquals(network.getStops().get(3).getRoutingTable()
+                        .costTo(network.getStops().get(2)),
+                stops.get(3).getRoutingTable().costTo(stops.get(2)));
+    }
+
+    @Test
+    public void raisedCostRoutingNotSaved() throws Exception {
+        Network network = new Network(write("spec.txt", SPEC));
+        Stop stop = network.getStops().get(0);
+        Stop neighbour = stop.getNeighbours().get(0);
+        stop.setLinkCost(neighbour, stop.distanceTo(neighbour) + 10);
+        String filename = folder.getRoot().getPath() + "/saved.txt";
+        try {
+            network.save(filename, true);
+            fail();
+        } catch (IOException expected) {
+            assertFalse(new File(filename).exists());
+            assertFalse(new File(Network.routingFileFor(filename)).exists());
+        }
+        try {
+            network.saveBinary(filename, true);
+            fail();
+        } catch (IOException expected) {
+            assertFalse(new File(filename).exists());
+        }
+
+        stop.setLinkCost(neighbour, stop.distanceTo(neighbour));
+        network.save(filename, true);
+        assertTrue(new File(Network.routingFileFor(filename)).isFile());
+    }
+
+    @Test
+    public void outdatedRoutingIgnored() throws Exception {
+        String filename = write("spec.txt", SPEC);
+        new Network(filename).save(filename, true);
+
+        // the same stops, but the bus no longer stops at stop3
+        write("changed.txt", SPEC.replace("stop1|stop3|stop0",
+                "stop1|stop0"));
+        new File(Network.routingFileFor(filename)).renameTo(new File(
+                Network.routingFileFor(folder.getRoot().getPath()
+                        + "/changed.txt")));
+        Network changed = new Network(folder.getRoot().getPath()
+                + "/changed.txt");
+
+        Stop stop3 = changed.getStops().get(3);
+        Stop stop0 = changed.getStops().get(0);
+        assertEquals(Integer.MAX_VALUE,
+                stop3.getRoutingTable().costTo(stop0));
+        assertEquals(Integer.MAX_VALUE,
+                stop0.getRoutingTable().costTo(stop3));
+    }
+
+    @Test
+    public void removeStopWithOneWayLink() throws Exception {
+        Network network = Network.read(new StringReader(SPEC));
+        Stop stop0 = network.getStops().get(0);
+        Stop stop1 = network.getStops().get(1);
+        Stop stop4 = new Stop("stop4", 0, 2);
+        network.addStop(stop4);
+        stop4.addNeighbouringStop(stop0);
+        assertEquals(stop0, stop4.getRoutingTable().nextStop(stop1));
+
+        network.removeStop(stop0);
+        assertTrue(stop4.getNeighbours().isEmpty());
+        assertTrue(stop0.getPredecessors().isEmpty());
+        assertNull(stop4.getRoutingTable().nextStop(stop0));
+        assertNull(stop4.getRoutingTable().nextStop(stop1));
+    }
+
+    @Test
+    public void readMatchesFile() throws Exception {
+        File[] files = SAMPLES.listFiles();
+        Assume.assumeNotNull((Object) files);
+        for (File file : files) {
+            String expected;
+            try {
+                expected = saved(new Network(file.getPath()));
+            } catch (TransportFormatException e) {
+                expected = null;
+            }
+
+            String fromReader;
+            try (Reader reader = new FileReader(file)) {
+                fromReader = saved(Network.read(reader));
+            } catch (TransportFormatException e) {
+                fromReader = null;
+            }
+            assertEquals(file.getName(), expected, fromReader);
+
+            String fromChannel;
+            try (FileChannel channel = FileChannel.open(file.toPath())) {
+                fromChannel = saved(Network.read(channel));
+            } catch (TransportFormatException e) {
+                fromChannel = null;
+            }
+            assertEquals(file.getName(), expected, fromChannel);
+
+            String mapped;
+            try {
+                mapped = saved(Network.map(file.getPath()));
+            } catch (TransportFormatException e) {
+                mapped = null;
+            }
+            assertEquals(file.getName(), expected, mapped);
+        }
+    }
+
+    @Test
+    public void mapMatchesFileWhenMalformed() throws Exception {
+        // mangle the spec with characters which matter to the decoders
+        String characters = ":,|\n\r\t -+0123456789stopbusrainfery";
+        Random random = new Random(2024);
+        for (int i = 0; i < 400; i++) {
+            StringBuilder contents = new StringBuilder(SPEC);
+            for (int j = random.nextInt(3); j >= 0; j--) {
+                int at = random.nextInt(contents.length());
+                char c = characters.charAt(
+                        random.nextInt(characters.length()));
+                switch (random.nextInt(3)) {
+                    case 0:
+                        contents.insert(at, c);
+                        break;
+                    case 1:
+                        contents.setCharAt(at, c);
+                        break;
+                    default:
+                        contents.deleteCharAt(at);
+                }
+            }
+            String filename = write("mangled" + i + ".txt",
+                    contents.toString());
+
+            String expected;
+            try {
+                expected = saved(new Network(filename));
+            } catch (TransportFormatException e) {
+                expected = null;
+            }
+            String mapped;
+            try {
+                mapped = saved(Network.map(filename));
+            } catch (TransportFormatException e) {
+                mapped = null;
+            }
+            assertEquals(contents.toString(), expected, mapped);
+        }
+    }
+
+    @Test
+    public void mapLineEndingsAndQuirks() throws Exception {
+        // CRLF line endings, padded integers, trailing separators which the
+        // decoders accept, and a final line without a line ending
+        Network network = Network.map(write("quirks.txt", "2\r\n"
+                + "stop0: +1 :-2\r\n"
+                + "stop1:3:4\r\n"
+                + " 1\r\n"
+                + "bus,blue,2,,:stop0|stop1:\r\n"
+                + "1\r\n"
+                + "bus, 412 ,20,2,ABC123"));
+        assertEquals(1, network.getStops().get(0).getX());
+        assertEquals("blue", network.getRoutes().get(0).getName());
+        assertEquals(2, network.getRoutes().get(0).getStopsOnRoute().size());
+        assertEquals(412, network.getVehicles().get(0).getId());
+    }
+
+    @Test
+    public void readRoutesNetwork() throws Exception {
+        Network network = Network.read(new StringReader(SPEC));
+        Stop stop3 = network.getStops().get(3);
+        Stop stop2 = network.getStops().get(2);
+        Stop stop0 = network.getStops().get(0);
+        assertEquals(stop3.distanceTo(stop0) + stop0.distanceTo(stop2),
+                stop3.getRoutingTable().costTo(stop2));
+        assertEquals(stop0, stop3.getRoutingTable().nextStop(stop2));
+        assertEquals(3, network.getVehicles().size());
+    }
+
+    @Test(expected = TransportFormatException.class)
+    public void readExtraLine() throws Exception {
+        Network.read(new StringReader(SPEC + "\n"));
+    }
+
+    @Test(expected = TransportFormatException.class)
+    public void readMissingVehicle() throws Exception {
+        Network.read(new StringReader(SPEC.replace("\n3\n", "\n4\n")));
+    }
+
+    @Test
+    public void binaryRoundTrip() throws Exception {
+        File[] files = SAMPLES.listFiles();
+        Assume.assumeNotNull((Object) files);
+        long textBytes = 0;
+        long binaryBytes = 0;
+        for (File file : files) {
+            Network network;
+            try {
+                network = new Network(file.getPath());
+            } catch (TransportFormatException e) {
+                continue;
+            }
+            String expected = saved(network);
+            File binary = folder.newFile();
+            network.saveBinary(binary.getPath());
+            textBytes += expected.getBytes().length;
+            binaryBytes += binary.length();
+
+            assertEquals(file.getName(), expected,
+                    saved(new Network(binary.getPath())));
+            assertEquals(file.getName(), expected,
+                    saved(Network.map(binary.getPath())));
+            try (FileChannel channel = FileChannel.open(binary.toPath())) {
+                assertEquals(file.getName(), expected,
+                        saved(Network.read(channel)));
+            }
+        }
+        assertTrue(binaryBytes < textBytes);
+    }
+
+    @Test
+    public void binaryWithRouting() throws Exception {
+        Network network = new Network(write("spec.txt", SPEC));
+        String filename = folder.getRoot().getPath() + "/saved.bin";
+        network.saveBinary(filename, true);
+        assertTrue(new File(Network.routingFileFor(filename)).isFile());
+
+        Network loaded = new Network(filename);
+        Stop stop3 = loaded.getStops().get(3);
+        Stop stop2 = loaded.getStops().get(2);
+        assertEquals(network.getStops().get(3).getRoutingTable()
+                        .costTo(network.getStops().get(2)),
+                stop3.getRoutingTable().costTo(stop2));
+        assertEquals(loaded.getStops().get(0),
+                stop3.getRoutingTable().nextStop(stop2));
+        assertEquals(saved(network), saved(loaded));
+    }
+
+    @Test
+    public void binaryTruncated() throws Exception {
+        File binary = folder.newFile();
+        new Network(write("spec.txt", SPEC)).saveBinary(binary.getPath());
+        byte[] bytes = Files.readAllBytes(binary.toPath());
+        for (int length = 0; length < bytes.length; length++) {
+            File truncated = folder.newFile();
+            Files.write(truncated.toPath(), Arrays.copyOf(bytes, length));
+            try {
+                new Network(truncated.getPath());
+                fail("decoded " + length + " of " + bytes.length + " bytes");
+            } catch (TransportFormatException e) {
+                // expected
+            }
+        }
+    }
+
+    @Test
+    public void binaryOversizedHeader() throws Exception {
+        // a string table and a string length close to the largest int
+        byte[][] headers = {
+                {(byte) 0x89, 'T', 'N', 'B', 1, (byte) 0xfe, (byte) 0xff,
+                        (byte) 0xff, (byte) 0xff, 7},
+                {(byte) 0x89, 'T', 'N', 'B', 1, 1, (byte) 0xfe, (byte) 0xff,
+                        (byte) 0xff, (byte) 0xff, 7},
+        };
+        for (byte[] header : headers) {
+            File binary = folder.newFile();
+            Files.write(binary.toPath(), header);
+            try {
+                new Network(binary.getPath());
+                fail("decoded " + Arrays.toString(header));
+            } catch (TransportFormatException e) {
+                // expected
+            }
+        }
+    }
+
+    @Test
+    public void binaryCorruptHeader() throws Exception {
+        File binary = folder.newFile();
+        new Network(write("spec.txt", SPEC)).saveBinary(binary.getPath());
+        byte[] bytes = Files.readAllBytes(binary.toPath());
+
+        // overwrite the bytes after the magic, mostly in the string table,
+        // with random bytes or with large varints
+        Random random = new Random(2025);
+        for (int i = 0; i < 400; i++) {
+            byte[] corrupt = bytes.clone();
+            for (int j = random.nextInt(3); j >= 0; j--) {
+                int at = 4 + random.nextInt(40);
+                if (random.nextBoolean()) {
+                    corrupt[at] = (byte) random.nextInt(256);
+                    continue;
+                }
+                int value = random.nextInt(Integer.MAX_VALUE);
+                while ((value & ~0x7F) != 0) {
+                    corrupt[at++] = (byte) ((value & 0x7F) | 0x80);
+                    value >>>= 7;
+                }
+                corrupt[at] = (byte) value;
+            }
+            File file = folder.newFile();
+            Files.write(file.toPath(), corrupt);
+            try {
+                new Network(file.getPath());
+            } catch (TransportFormatException e) {
+                // expected for most corruptions
+            }
+        }
+    }
+
+    @Test(expected = TransportFormatException.class)
+    public void binaryExtraByte() throws Exception {
+        File binary = folder.newFile();
+        new Network(write("spec.txt", SPEC)).saveBinary(binary.getPath());
+        byte[] bytes = Files.readAllBytes(binary.toPath());
+        Files.write(binary.toPath(), Arrays.copyOf(bytes, bytes.length + 1));
+        new Network(binary.getPath());
+    }
+
+    /*
+     * Returns the contents of the file the given network is saved to.
+     */
+    private String saved(Network network) throws Exception {
+        File file = folder.newFile();
+        network.save(file.getPath());
+        return new String(Files.readAllBytes(file.toPath()));
+    }
+}
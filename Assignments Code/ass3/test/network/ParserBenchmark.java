@@ -0,0 +1,118 @@
+package network;
+
+import routes.Route;
+import stops.Stop;
+import vehicles.PublicTransport;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Compares the time taken to decode a large generated network file line by
+ * line with the decode methods and in place from a mapped buffer.
+ *
+ * <p>Only the stops, routes and vehicles are decoded; no routing tables are
+ * built. This is not a unit test; run it directly with the number of stops
+ * as an optional argument, e.g. {@code java network.ParserBenchmark 200000}.
+ */
+public class ParserBenchmark {
+    public static void main(String[] args) throws Exception {
+        int stopCount = args.length > 0 ? Integer.parseInt(args[0]) : 200000;
+        File file = File.createTempFile("network", ".txt");
+        file.deleteOnExit();
+        generate(file, stopCount, new Random(2024));
+        System.out.printf("%d stops, %d KB%n", stopCount,
+                file.length() / 1024);
+
+        for (int round = 0; round < 5; round++) {
+            long[] lines;
+            try (BufferedReader reader = new BufferedReader(
+                    new FileReader(file))) {
+                lines = decode(new LineSource(reader));
+            }
+            long[] mapped;
+            try (FileChannel channel = FileChannel.open(file.toPath())) {
+                mapped = decode(new MappedNetworkSource(channel.map(
+                        FileChannel.MapMode.READ_ONLY, 0, channel.size())));
+            }
+            System.out.printf("stops: decode methods %d ms, mapped %d ms "
+                            + "(%.1fx); routes and vehicles: %d ms, %d ms "
+                            + "(%.1fx)%n", lines[0] / 1000000,
+                    mapped[0] / 1000000, (double) lines[0] / mapped[0],
+                    lines[1] / 1000000, mapped[1] / 1000000,
+                    (double) lines[1] / mapped[1]);
+        }
+    }
+
+    /*
+     * Decodes every line of the network from the given source, as in
+     * Network(String) but without building routing tables, and returns the
+     * time taken to decode the stops and the rest of the file.
+     */
+    private static long[] decode(NetworkSource source) throws Exception {
+        long start = System.nanoTime();
+        List<Stop> stops = new ArrayList<>();
+        int count = source.nextCount();
+        for (int i = 0; i < count; i++) {
+            Stop stop = source.nextStop();
+            stop.getRoutingTable().suspendSynchronisation();
+            stops.add(stop);
+        }
+        long stopsDone = System.nanoTime();
+        List<Route> routes = new ArrayList<>();
+        count = source.nextCount();
+        for (int i = 0; i < count; i++) {
+            routes.add(source.nextRoute(stops));
+        }
+        List<PublicTransport> vehicles = new ArrayList<>();
+        count = source.nextCount();
+        for (int i = 0; i < count; i++) {
+            vehicles.add(source.nextVehicle(routes));
+        }
+        if (source.hasNext()) {
+            throw new AssertionError("extra lines");
+        }
+        return new long[] {stopsDone - start, System.nanoTime() - stopsDone};
+    }
+
+    /*
+     * Writes a network with the given number of stops, a route for every
+     * hundred stops passing through ten of them, and two vehicles per route.
+     */
+    private static void generate(File file, int stopCount, Random random)
+            throws IOException {
+        int routeCount = Math.max(1, stopCount / 100);
+        try (BufferedWriter writer = new BufferedWriter(
+                new FileWriter(file))) {
+            writer.write(stopCount + "\n");
+            for (int i = 0; i < stopCount; i++) {
+                writer.write("stop" + i + ":" + random.nextInt(100000) + ":"
+                        + random.nextInt(100000) + "\n");
+            }
+            writer.write(routeCount + "\n");
+            for (int i = 0; i < routeCount; i++) {
+                StringBuilder route = new StringBuilder("bus,route" + i + ","
+                        + i + ":");
+                for (int j = 0; j < 10; j++) {
+                    if (j > 0) {
+                        route.append("|");
+                    }
+                    route.append("stop").append(random.nextInt(stopCount));
+                }
+                writer.write(route.append("\n").toString());
+            }
+            writer.write(2 * routeCount + "\n");
+            for (int i = 0; i < 2 * routeCount; i++) {
+                writer.write("bus," + i + ",40," + i / 2 + ",REG" + i + "\n");
+            }
+        }
+    }
+}
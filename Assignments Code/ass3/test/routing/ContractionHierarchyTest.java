@@ -0,0 +1,136 @@
+package routing;
+
+import org.junit.Before;
+import org.junit.Test;
+import stops.DijkstraRoutingEngine;
+import stops.Stop;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+import static stops.TestNetworks.assertPathCost;
+import static stops.TestNetworks.link;
+import static stops.TestNetworks.linkRandomly;
+import static stops.TestNetworks.randomStops;
+
+public class ContractionHierarchyTest {
+    Stop stop0, stop1, stop2, stop3, stop4;
+    ContractionHierarchy hierarchy;
+
+    @Before
+    public void setUp() throws Exception {
+        stop0 = new Stop("stop0", 0, 0);
+        stop1 = new Stop("stop1", 1, 0);
+        stop2 = new Stop("stop2", 2, 0);
+        stop3 = new Stop("stop3", 2, 4);
+        stop4 = new Stop("stop4", 9, 9);
+
+        // stop0 - stop1 - stop2 and stop0 - stop3 - stop2
+        link(stop0, stop1);
+        link(stop1, stop2);
+        link(stop0, stop3);
+        link(stop3, stop2);
+
+        hierarchy = new ContractionHierarchy(Arrays.asList(stop0, stop4));
+    }
+
+    @Test
+    public void plan() {
+        assertEquals(5, hierarchy.size());
+
+        Journey journey = hierarchy.plan(stop3, stop1);
+        assertEquals(5, journey.getCost());
+        assertEquals(Arrays.asList(stop3, stop2, stop1), journey.getPath());
+        assertEquals(stop2, journey.getNextStop());
+
+        journey = hierarchy.plan(stop1, stop1);
+        assertEquals(0, journey.getCost());
+        assertEquals(1, journey.length());
+    }
+
+    @Test
+    public void planUnreachable() {
+        assertNull(hierarchy.plan(stop0, stop4));
+        assertEquals(Integer.MAX_VALUE, hierarchy.costTo(stop4, stop2));
+        assertNull(hierarchy.plan(stop0, new Stop("stop5", 0, 0)));
+    }
+
+    @Test
+    public void matchesRoutingTables() {
+        // some links are only one way
+        Random random = new Random(2008);
+        List<Stop> stops = randomStops(random, 150, 60, true);
+        linkRandomly(random, stops, 300, 5);
+        new DijkstraRoutingEngine().build(stops);
+        ContractionHierarchy random150 = new ContractionHierarchy(stops);
+
+        for (Stop origin : stops) {
+            for (Stop destination : stops) {
+                int expected = origin.getRoutingTable().costTo(destination);
+                assertEquals(expected, random150.costTo(origin, destination));
+
+                Journey journey = random150.plan(origin, destination);
+                if (expected == Integer.MAX_VALUE) {
+                    assertNull(journey);
+                    continue;
+                }
+                List<Stop> path = journey.getPath();
+                assertSame(origin, path.get(0));
+                assertSame(destination, path.get(path.size() - 1));
+                assertPathCost(expected, path);
+            }
+        }
+    }
+
+    @Test
+    public void costMatrix() {
+        Stop stop5 = new Stop("stop5", 0, 0);
+        int[][] costs = hierarchy.costMatrix(
+                Arrays.asList(stop0, stop3, null, stop4),
+                Arrays.asList(stop1, stop2, stop4, stop5, stop1));
+
+        assertArrayEquals(new int[] {1, 2, Integer.MAX_VALUE,
+                Integer.MAX_VALUE, 1}, costs[0]);
+        assertArrayEquals(new int[] {5, 4, Integer.MAX_VALUE,
+                Integer.MAX_VALUE, 5}, costs[1]);
+        for (int cost : costs[2]) {
+            assertEquals(Integer.MAX_VALUE, cost);
+        }
+        assertEquals(0, costs[3][2]);
+        assertEquals(0, hierarchy.costMatrix(Arrays.asList(stop0),
+                Collections.<Stop>emptyList())[0].length);
+    }
+
+    @Test
+    public void costMatrixMatchesRoutingTables() {
+        // some links are only one way
+        Random random = new Random(2014);
+        List<Stop> stops = randomStops(random, 200, 80, true);
+        linkRandomly(random, stops, 450, 4);
+        new DijkstraRoutingEngine().build(stops);
+        ContractionHierarchy random200 = new ContractionHierarchy(stops);
+
+        List<Stop> origins = stops.subList(0, 120);
+        List<Stop> destinations = stops.subList(60, 200);
+        int[][] costs = random200.costMatrix(origins, destinations);
+        for (int i = 0; i < origins.size(); i++) {
+            for (int j = 0; j < destinations.size(); j++) {
+                assertEquals(origins.get(i).getRoutingTable()
+                        .costTo(destinations.get(j)), costs[i][j]);
+            }
+        }
+    }
+
+    @Test
+    public void snapshot() {
+        Stop stop5 = new Stop("stop5", 2, 1);
+        link(stop2, stop5);
+
+        assertEquals(Integer.MAX_VALUE, hierarchy.costTo(stop0, stop5));
+        assertEquals(3, new ContractionHierarchy(
+                Collections.singletonList(stop0)).costTo(stop0, stop5));
+    }
+}
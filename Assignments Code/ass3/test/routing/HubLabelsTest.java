@@ -0,0 +1,99 @@
+package routing;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import stops.DijkstraRoutingEngine;
+import stops.Stop;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+import static stops.TestNetworks.link;
+import static stops.TestNetworks.linkRandomly;
+import static stops.TestNetworks.randomStops;
+
+public class HubLabelsTest {
+    Stop stop0, stop1, stop2, stop3, stop4;
+    HubLabels labels;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Before
+    public void setUp() throws Exception {
+        stop0 = new Stop("stop0", 0, 0);
+        stop1 = new Stop("stop1", 1, 0);
+        stop2 = new Stop("stop2", 2, 0);
+        stop3 = new Stop("stop3", 2, 4);
+        stop4 = new Stop("stop4", 9, 9);
+
+        // stop0 - stop1 - stop2 and stop0 - stop3 - stop2
+        link(stop0, stop1);
+        link(stop1, stop2);
+        link(stop0, stop3);
+        link(stop3, stop2);
+
+        labels = new HubLabels(Arrays.asList(stop0, stop1, stop2, stop3,
+                stop4));
+    }
+
+    @Test
+    public void costTo() {
+        assertEquals(5, labels.size());
+        assertEquals(5, labels.costTo(stop3, stop1));
+        assertEquals(2, labels.costTo(stop2, stop0));
+        assertEquals(0, labels.costTo(stop3, stop3));
+        assertEquals(Integer.MAX_VALUE, labels.costTo(stop0, stop4));
+        assertEquals(Integer.MAX_VALUE, labels.costTo(stop0, null));
+        assertTrue(labels.getAverageLabelSize() >= 1);
+    }
+
+    @Test
+    public void matchesRoutingTables() {
+        // some links are only one way
+        Random random = new Random(2009);
+        List<Stop> stops = randomStops(random, 150, 60, true);
+        linkRandomly(random, stops, 300, 5);
+        new DijkstraRoutingEngine().build(stops);
+        HubLabels random150 = new HubLabels(stops);
+
+        for (Stop origin : stops) {
+            for (Stop destination : stops) {
+                assertEquals(origin.getRoutingTable().costTo(destination),
+                        random150.costTo(origin, destination));
+            }
+        }
+    }
+
+    @Test
+    public void saveAndLoad() throws Exception {
+        String filename = folder.getRoot().getPath() + "/network.txt";
+        labels.save(HubLabels.sidecarFor(filename));
+
+        List<Stop> copies = Arrays.asList(new Stop("stop0", 0, 0),
+                new Stop("stop1", 1, 0), new Stop("stop2", 2, 0),
+                new Stop("stop3", 2, 4), new Stop("stop4", 9, 9));
+        HubLabels loaded = HubLabels.load(HubLabels.sidecarFor(filename),
+                copies);
+
+        assertEquals(5, loaded.size());
+        assertEquals(5, loaded.costTo(copies.get(3), copies.get(1)));
+        assertEquals(Integer.MAX_VALUE,
+                loaded.costTo(copies.get(4), copies.get(0)));
+        assertEquals(Integer.MAX_VALUE, loaded.costTo(stop3, stop1));
+    }
+
+    @Test(expected = IOException.class)
+    public void loadDifferentStops() throws Exception {
+        String filename = folder.getRoot().getPath() + "/network.txt.hubs";
+        labels.save(filename);
+
+        HubLabels.load(filename, Arrays.asList(stop1, stop0, stop2, stop3,
+                stop4));
+    }
+}
@@ -0,0 +1,87 @@
+package routing;
+
+import org.junit.Before;
+import org.junit.Test;
+import stops.Stop;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+import static stops.TestNetworks.assertPathCost;
+import static stops.TestNetworks.link;
+import static stops.TestNetworks.linkRandomly;
+import static stops.TestNetworks.randomStops;
+
+public class JourneyPlannerTest {
+    Stop stop0, stop1, stop2, stop3, stop4;
+    JourneyPlanner planner;
+
+    @Before
+    public void setUp() throws Exception {
+        stop0 = new Stop("stop0", 0, 0);
+        stop1 = new Stop("stop1", 1, 0);
+        stop2 = new Stop("stop2", 2, 0);
+        stop3 = new Stop("stop3", 2, 4);
+        stop4 = new Stop("stop4", 9, 9);
+
+        // stop0 - stop1 - stop2 and stop0 - stop3 - stop2
+        link(stop0, stop1);
+        link(stop1, stop2);
+        link(stop0, stop3);
+        link(stop3, stop2);
+
+        planner = new JourneyPlanner();
+    }
+
+    @Test
+    public void plan() {
+        Journey journey = planner.plan(stop3, stop1);
+
+        assertEquals(5, journey.getCost());
+        assertEquals(stop3, journey.getOrigin());
+        assertEquals(stop1, journey.getDestination());
+        assertEquals(3, journey.length());
+        assertEquals("5:stop3|stop2|stop1", journey.toString());
+        assertEquals(Arrays.asList(stop3, stop2, stop1), journey.getPath());
+        assertEquals(stop2, journey.getNextStop());
+    }
+
+    @Test
+    public void planSameStop() {
+        Journey journey = planner.plan(stop2, stop2);
+
+        assertEquals(0, journey.getCost());
+        assertEquals(stop2, journey.getNextStop());
+        assertEquals(1, journey.length());
+    }
+
+    @Test
+    public void planUnreachable() {
+        assertNull(planner.plan(stop0, stop4));
+        assertNull(planner.plan(null, stop4));
+        assertEquals(Integer.MAX_VALUE, planner.costTo(stop4, stop0));
+        assertNull(planner.nextStop(stop4, stop0));
+    }
+
+    @Test
+    public void matchesRoutingTables() {
+        Random random = new Random(2007);
+        List<Stop> stops = randomStops(random, 60, 50, false);
+        linkRandomly(random, stops, 120, 0);
+
+        for (Stop origin : stops) {
+            for (Stop destination : stops) {
+                int expected = origin.getRoutingTable().costTo(destination);
+                Journey journey = planner.plan(origin, destination);
+                if (expected == Integer.MAX_VALUE) {
+                    assertNull(journey);
+                    continue;
+                }
+                assertEquals(expected, journey.getCost());
+                assertPathCost(expected, journey.getPath());
+            }
+        }
+    }
+}
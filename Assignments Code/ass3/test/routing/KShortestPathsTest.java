@@ -0,0 +1,131 @@
+package routing;
+
+import org.junit.Before;
+import org.junit.Test;
+import stops.Stop;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+import static stops.TestNetworks.link;
+import static stops.TestNetworks.linkRandomly;
+import static stops.TestNetworks.randomStops;
+
+public class KShortestPathsTest {
+    Stop stop0, stop1, stop2, stop3, stop4, stop5;
+    KShortestPaths paths;
+
+    @Before
+    public void setUp() throws Exception {
+        stop0 = new Stop("stop0", 0, 0);
+        stop1 = new Stop("stop1", 2, 0);
+        stop2 = new Stop("stop2", 4, 0);
+        stop3 = new Stop("stop3", 2, 3);
+        stop4 = new Stop("stop4", 2, -5);
+        stop5 = new Stop("stop5", 9, 9);
+
+        // three ways from stop0 to stop2, with a shortcut between two
+        link(stop0, stop1);
+        link(stop1, stop2);
+        link(stop0, stop3);
+        link(stop3, stop2);
+        link(stop0, stop4);
+        link(stop4, stop2);
+        link(stop1, stop3);
+
+        paths = new KShortestPaths(Arrays.asList(stop0, stop5));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void noJourneys() {
+        paths.find(stop0, stop2, 0);
+    }
+
+    @Test
+    public void find() {
+        assertEquals(6, paths.size());
+        List<Journey> journeys = paths.find(stop0, stop2, 10);
+        assertEquals(5, journeys.size());
+
+        assertEquals(4, journeys.get(0).getCost());
+        assertEquals(Arrays.asList(stop0, stop1, stop2),
+                journeys.get(0).getPath());
+        assertEquals(10, journeys.get(1).getCost());
+        assertEquals(10, journeys.get(2).getCost());
+        assertEquals(10, journeys.get(3).getCost());
+        assertEquals(14, journeys.get(4).getCost());
+        assertEquals(Arrays.asList(stop0, stop4, stop2),
+                journeys.get(4).getPath());
+
+        assertEquals(2, paths.find(stop0, stop2, 2).size());
+    }
+
+    @Test
+    public void findSameOrUnknownStop() {
+        List<Journey> journeys = paths.find(stop3, stop3, 3);
+        assertEquals(1, journeys.size());
+        assertEquals(0, journeys.get(0).getCost());
+        assertEquals(Collections.singletonList(stop3),
+                journeys.get(0).getPath());
+
+        assertTrue(paths.find(stop0, stop5, 3).isEmpty());
+        assertTrue(paths.find(null, stop0, 3).isEmpty());
+        assertTrue(paths.find(stop0, new Stop("other", 0, 0), 3).isEmpty());
+    }
+
+    @Test
+    public void matchesAllSimplePaths() {
+        Random random = new Random(2018);
+        List<Stop> stops = randomStops(random, 9, 20, true);
+        linkRandomly(random, stops, 16, 2);
+        KShortestPaths random9 = new KShortestPaths(stops);
+
+        for (Stop origin : stops) {
+            for (Stop destination : stops) {
+                List<Integer> expected = new ArrayList<>();
+                List<Stop> path = new ArrayList<>();
+                path.add(origin);
+                simplePaths(path, 0, destination, expected);
+                Collections.sort(expected);
+
+                List<Journey> journeys = random9.find(origin, destination, 6);
+                assertEquals(Math.min(6, expected.size()), journeys.size());
+                Set<List<Stop>> distinct = new HashSet<>();
+                for (int i = 0; i < journeys.size(); i++) {
+                    Journey journey = journeys.get(i);
+                    assertEquals((int) expected.get(i), journey.getCost());
+                    assertTrue(distinct.add(journey.getPath()));
+                    assertEquals(journey.getPath().size(),
+                            new HashSet<>(journey.getPath()).size());
+                }
+            }
+        }
+    }
+
+    /*
+     * Adds the cost of every simple path from the end of the given path to
+     * the destination to the given list.
+     */
+    private static void simplePaths(List<Stop> path, int cost,
+                                    Stop destination, List<Integer> costs) {
+        Stop last = path.get(path.size() - 1);
+        if (last == destination) {
+            costs.add(cost);
+            return;
+        }
+        for (Stop next : last.getNeighbours()) {
+            if (!path.contains(next)) {
+                path.add(next);
+                simplePaths(path, cost + last.linkCostTo(next), destination,
+                        costs);
+                path.remove(path.size() - 1);
+            }
+        }
+    }
+}
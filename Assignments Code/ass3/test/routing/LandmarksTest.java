@@ -0,0 +1,104 @@
+package routing;
+
+import org.junit.Before;
+import org.junit.Test;
+import stops.Stop;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+import static stops.TestNetworks.link;
+import static stops.TestNetworks.linkRandomly;
+import static stops.TestNetworks.randomStops;
+
+public class LandmarksTest {
+    Stop stop0, stop1, stop2, stop3, stop4, stop5;
+    Landmarks landmarks;
+
+    @Before
+    public void setUp() throws Exception {
+        stop0 = new Stop("stop0", 0, 0);
+        stop1 = new Stop("stop1", 0, 10);
+        stop2 = new Stop("stop2", 10, 10);
+        stop3 = new Stop("stop3", 10, 0);
+        stop4 = new Stop("stop4", 1, 0);
+        stop5 = new Stop("stop5", 9, 9);
+
+        // the way from stop0 to stop3 goes round the water between them
+        link(stop0, stop1);
+        link(stop1, stop2);
+        link(stop2, stop3);
+        link(stop4, stop0);
+        stop5.addNeighbouringStop(stop2);
+
+        landmarks = new Landmarks(Arrays.asList(stop0, stop5), 2,
+                Landmarks.Selection.FARTHEST);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void noLandmarks() {
+        new Landmarks(Arrays.asList(stop0), 0, Landmarks.Selection.RANDOM);
+    }
+
+    @Test
+    public void lowerBound() {
+        assertEquals(6, landmarks.size());
+        assertEquals(2, landmarks.getLandmarkCount());
+        assertEquals(2L * 2 * 4 * 6, landmarks.getMemoryUse());
+
+        // the Manhattan distance is 9, the journey costs 31
+        assertEquals(31, new JourneyPlanner().costTo(stop4, stop3));
+        assertTrue(landmarks.lowerBound(stop4, stop3) > 9);
+        assertTrue(landmarks.lowerBound(stop4, stop3) <= 31);
+
+        // stop5 can only be left, never reached
+        assertEquals(Integer.MAX_VALUE, landmarks.lowerBound(stop0, stop5));
+        assertEquals(stop2.distanceTo(stop0),
+                landmarks.lowerBound(stop2, new Stop("other", 0, 0)));
+    }
+
+    @Test
+    public void countFor() {
+        assertEquals(1, Landmarks.countFor(1000, 0));
+        assertEquals(4, Landmarks.countFor(1000, 32000));
+        assertEquals(4, Landmarks.countFor(1000, 39999));
+    }
+
+    @Test
+    public void plannerMatchesWithFewerVisits() {
+        Random random = new Random(2021);
+        List<Stop> stops = randomStops(random, 80, 50, true);
+        linkRandomly(random, stops, 160, 4);
+        for (Stop stop : stops) {
+            for (Stop neighbour : stop.getNeighbours()) {
+                if (random.nextInt(3) == 0) {
+                    stop.setLinkCost(neighbour,
+                            stop.distanceTo(neighbour) * 3);
+                }
+            }
+        }
+
+        for (Landmarks.Selection selection : Landmarks.Selection.values()) {
+            Landmarks index = new Landmarks(stops, 6, selection);
+            assertEquals(6, index.getLandmarkCount());
+            JourneyPlanner plain = new JourneyPlanner();
+            JourneyPlanner guided = new JourneyPlanner(index);
+            long plainVisits = 0;
+            long guidedVisits = 0;
+            for (Stop origin : stops) {
+                for (Stop destination : stops) {
+                    int cost = plain.costTo(origin, destination);
+                    plainVisits += plain.getVisitedCount();
+                    assertEquals(cost, guided.costTo(origin, destination));
+                    guidedVisits += guided.getVisitedCount();
+                    int bound = index.lowerBound(origin, destination);
+                    assertTrue(bound >= origin.distanceTo(destination));
+                    assertTrue(bound <= cost);
+                }
+            }
+            assertTrue(guidedVisits < plainVisits);
+        }
+    }
+}
@@ -0,0 +1,153 @@
+package routing;
+
+import org.junit.Before;
+import org.junit.Test;
+import routes.BusRoute;
+import routes.FerryRoute;
+import routes.Route;
+import routes.TrainRoute;
+import stops.DijkstraRoutingEngine;
+import stops.Stop;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+import static stops.TestNetworks.assertPathCost;
+import static stops.TestNetworks.randomStops;
+
+public class RoutePlannerTest {
+    Stop stopA, stopB, stopC, stopD, stopE, stopF;
+    Route bus, train, ferry;
+    RoutePlanner planner;
+
+    @Before
+    public void setUp() throws Exception {
+        stopA = new Stop("stopA", 0, 0);
+        stopB = new Stop("stopB", 0, 15);
+        stopC = new Stop("stopC", 10, 10);
+        stopD = new Stop("stopD", 10, 0);
+        stopE = new Stop("stopE", 5, 0);
+        stopF = new Stop("stopF", 20, 20);
+
+        // the bus goes the long way round, the train and ferry go direct
+        bus = route(new BusRoute("bus", 1), stopA, stopB, stopC, stopD);
+        train = route(new TrainRoute("train", 2), stopA, stopE);
+        ferry = route(new FerryRoute("ferry", 3), stopE, stopD);
+
+        planner = new RoutePlanner(Arrays.asList(bus, train, ferry));
+    }
+
+    private static Route route(Route route, Stop... stops) {
+        for (Stop stop : stops) {
+            route.addStop(stop);
+        }
+        return route;
+    }
+
+    @Test
+    public void plan() {
+        assertEquals(5, planner.size());
+        assertEquals(3, planner.getRouteCount());
+
+        List<RouteJourney> journeys = planner.plan(stopA, stopD);
+        assertEquals(2, journeys.size());
+
+        RouteJourney direct = journeys.get(0);
+        assertEquals(40, direct.getCost());
+        assertEquals(0, direct.getTransfers());
+        assertEquals(Arrays.asList(stopA, stopB, stopC, stopD),
+                direct.getPath());
+        assertEquals(Arrays.asList(bus), direct.getRoutes());
+
+        RouteJourney cheapest = journeys.get(1);
+        assertEquals(10, cheapest.getCost());
+        assertEquals(1, cheapest.getTransfers());
+        assertEquals(Arrays.asList(stopA, stopE, stopD), cheapest.getPath());
+        assertEquals(Arrays.asList(train, ferry), cheapest.getRoutes());
+        assertEquals(10, planner.costTo(stopA, stopD));
+    }
+
+    @Test
+    public void planBackwards() {
+        List<RouteJourney> journeys = planner.plan(stopC, stopA);
+        assertEquals(2, journeys.size());
+        assertEquals(30, journeys.get(0).getCost());
+        assertEquals(Arrays.asList(stopC, stopB, stopA),
+                journeys.get(0).getPath());
+        assertEquals(20, journeys.get(1).getCost());
+        assertEquals(Arrays.asList(stopC, stopD, stopE, stopA),
+                journeys.get(1).getPath());
+        assertEquals(2, journeys.get(1).getTransfers());
+    }
+
+    @Test
+    public void planMaxTransfers() {
+        List<RouteJourney> journeys = planner.plan(stopA, stopD, 0);
+        assertEquals(1, journeys.size());
+        assertEquals(40, journeys.get(0).getCost());
+
+        assertTrue(planner.plan(stopB, stopE, 0).isEmpty());
+        assertEquals(1, planner.plan(stopB, stopE, 1).size());
+    }
+
+    @Test
+    public void planSameOrUnknownStop() {
+        List<RouteJourney> journeys = planner.plan(stopC, stopC);
+        assertEquals(1, journeys.size());
+        assertEquals(0, journeys.get(0).getCost());
+        assertEquals(0, journeys.get(0).getTransfers());
+        assertTrue(journeys.get(0).getRoutes().isEmpty());
+
+        assertTrue(planner.plan(stopA, stopF).isEmpty());
+        assertTrue(planner.plan(null, stopA).isEmpty());
+        assertEquals(Integer.MAX_VALUE, planner.costTo(stopA, stopF));
+    }
+
+    @Test
+    public void matchesRoutingTables() {
+        Random random = new Random(2013);
+        List<Stop> stops = randomStops(random, 120, 60, true);
+        List<Route> routes = new ArrayList<>();
+        for (int i = 0; i < 25; i++) {
+            Route route = new BusRoute("r" + i, i);
+            for (int j = 2 + random.nextInt(10); j > 0; j--) {
+                route.addStop(stops.get(random.nextInt(stops.size())));
+            }
+            routes.add(route);
+        }
+        new DijkstraRoutingEngine().build(stops);
+        RoutePlanner random120 = new RoutePlanner(routes);
+
+        for (Stop origin : stops) {
+            for (Stop destination : stops) {
+                List<RouteJourney> journeys = random120.plan(origin,
+                        destination);
+                int expected = origin.getRoutingTable().costTo(destination);
+                if (journeys.isEmpty()) {
+                    // unreachable, or not on any route
+                    assertTrue(expected == Integer.MAX_VALUE
+                            || origin.getRoutes().isEmpty());
+                    continue;
+                }
+                assertEquals(expected,
+                        journeys.get(journeys.size() - 1).getCost());
+                for (int i = 0; i < journeys.size(); i++) {
+                    RouteJourney journey = journeys.get(i);
+                    if (i > 0) {
+                        assertTrue(journey.getTransfers()
+                                > journeys.get(i - 1).getTransfers());
+                        assertTrue(journey.getCost()
+                                < journeys.get(i - 1).getCost());
+                    }
+                    List<Stop> path = journey.getPath();
+                    assertSame(origin, path.get(0));
+                    assertSame(destination, path.get(path.size() - 1));
+                    assertPathCost(journey.getCost(), path);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,301 @@
+package routing;
+
+import stops.CostHeap;
+import stops.DijkstraRoutingEngine;
+import stops.FloydWarshallRoutingEngine;
+import stops.RegionRouting;
+import stops.Stop;
+import stops.StopGraph;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static stops.TestNetworks.link;
+
+/**
+ * Compares the preprocessing time, query latency and memory use of the
+ * journey query services on a large generated network.
+ *
+ * <p>This is not a unit test; run it directly with the number of stops and
+ * the number of queries as optional arguments, e.g.
+ * {@code java routing.RoutingBenchmark 50000 1000}.
+ */
+public class RoutingBenchmark {
+    private static final Runtime RUNTIME = Runtime.getRuntime();
+
+    public static void main(String[] args) {
+        int stopCount = args.length > 0 ? Integer.parseInt(args[0]) : 50000;
+        int queryCount = args.length > 1 ? Integer.parseInt(args[1]) : 1000;
+
+        List<Stop> stops = generate(stopCount, new Random(2002));
+        Random random = new Random(42);
+        Stop[] origins = new Stop[queryCount];
+        Stop[] destinations = new Stop[queryCount];
+        for (int i = 0; i < queryCount; i++) {
+            origins[i] = stops.get(random.nextInt(stops.size()));
+            destinations[i] = stops.get(random.nextInt(stops.size()));
+        }
+        System.out.printf("%d stops, %d queries%n", stops.size(), queryCount);
+
+        // contraction hierarchy
+        long before = usedMemory();
+        long start = System.nanoTime();
+        ContractionHierarchy hierarchy = new ContractionHierarchy(stops);
+        long preprocessing = System.nanoTime() - start;
+        long memory = usedMemory() - before;
+        System.out.printf("contraction hierarchy: preprocessing %d ms, "
+                        + "%d shortcuts, %d edges, ~%d KB%n",
+                preprocessing / 1000000, hierarchy.getShortcutCount(),
+                hierarchy.getEdgeCount(), memory / 1024);
+
+        // queries are run once before being timed, so that they are compiled
+        int[] expected = new int[queryCount];
+        for (int i = 0; i < queryCount; i++) {
+            hierarchy.costTo(origins[i], destinations[i]);
+        }
+        start = System.nanoTime();
+        for (int i = 0; i < queryCount; i++) {
+            expected[i] = hierarchy.costTo(origins[i], destinations[i]);
+        }
+        report("contraction hierarchy", System.nanoTime() - start,
+                queryCount);
+
+        // many-to-many costs, from every origin to every destination
+        int matrixSize = Math.min(queryCount, 1000);
+        List<Stop> matrixOrigins = new ArrayList<>();
+        List<Stop> matrixDestinations = new ArrayList<>();
+        for (int i = 0; i < matrixSize; i++) {
+            matrixOrigins.add(origins[i]);
+            matrixDestinations.add(destinations[i]);
+        }
+        hierarchy.costMatrix(matrixOrigins, matrixDestinations);
+        start = System.nanoTime();
+        int[][] matrix = hierarchy.costMatrix(matrixOrigins,
+                matrixDestinations);
+        long nanos = System.nanoTime() - start;
+        for (int i = 0; i < matrixSize; i++) {
+            check(expected[i], matrix[i][i]);
+        }
+        System.out.printf("contraction hierarchy: %dx%d cost matrix in %d ms "
+                        + "(%.2f us per pair)%n", matrixSize, matrixSize,
+                nanos / 1000000, nanos / 1000.0 / matrixSize / matrixSize);
+
+        // hub labels
+        before = usedMemory();
+        start = System.nanoTime();
+        HubLabels labels = new HubLabels(stops);
+        preprocessing = System.nanoTime() - start;
+        memory = usedMemory() - before;
+        System.out.printf("hub labels: preprocessing %d ms, "
+                        + "%.1f hubs per label, ~%d KB%n",
+                preprocessing / 1000000, labels.getAverageLabelSize(),
+                memory / 1024);
+        for (int i = 0; i < queryCount; i++) {
+            labels.costTo(origins[i], destinations[i]);
+        }
+        start = System.nanoTime();
+        for (int i = 0; i < queryCount; i++) {
+            check(expected[i], labels.costTo(origins[i], destinations[i]));
+        }
+        report("hub labels", System.nanoTime() - start, queryCount);
+
+        // A* search
+        JourneyPlanner planner = new JourneyPlanner();
+        for (int i = 0; i < queryCount; i++) {
+            planner.costTo(origins[i], destinations[i]);
+        }
+        long visited = 0;
+        start = System.nanoTime();
+        for (int i = 0; i < queryCount; i++) {
+            check(expected[i], planner.costTo(origins[i], destinations[i]));
+            visited += planner.getVisitedCount();
+        }
+        report("A* journey planner", System.nanoTime() - start, queryCount);
+        System.out.printf("A* journey planner: %d stops visited per query%n",
+                visited / queryCount);
+
+        // A* search guided by landmarks
+        start = System.nanoTime();
+        Landmarks landmarks = new Landmarks(stops);
+        System.out.printf("landmarks: preprocessing %d ms, %d landmarks, "
+                        + "~%d KB%n", (System.nanoTime() - start) / 1000000,
+                landmarks.getLandmarkCount(),
+                landmarks.getMemoryUse() / 1024);
+        planner = new JourneyPlanner(landmarks);
+        for (int i = 0; i < queryCount; i++) {
+            planner.costTo(origins[i], destinations[i]);
+        }
+        visited = 0;
+        start = System.nanoTime();
+        for (int i = 0; i < queryCount; i++) {
+            check(expected[i], planner.costTo(origins[i], destinations[i]));
+            visited += planner.getVisitedCount();
+        }
+        report("ALT journey planner", System.nanoTime() - start, queryCount);
+        System.out.printf("ALT journey planner: %d stops visited per "
+                + "query%n", visited / queryCount);
+
+        // two level routing tables, partitioned into regions
+        before = usedMemory();
+        start = System.nanoTime();
+        RegionRouting regions = new RegionRouting(stops);
+        preprocessing = System.nanoTime() - start;
+        memory = usedMemory() - before;
+        System.out.printf("region routing: preprocessing %d ms, "
+                        + "%d regions, %d boundary stops, %d entries, "
+                        + "~%d KB%n", preprocessing / 1000000,
+                regions.getRegionCount(), regions.getBoundaryCount(),
+                regions.getEntryCount(), memory / 1024);
+        for (int i = 0; i < queryCount; i++) {
+            origins[i].getRoutingTable().costTo(destinations[i]);
+        }
+        start = System.nanoTime();
+        for (int i = 0; i < queryCount; i++) {
+            check(expected[i],
+                    origins[i].getRoutingTable().costTo(destinations[i]));
+        }
+        report("region routing", System.nanoTime() - start, queryCount);
+
+        // one full Dijkstra search per query
+        StopGraph graph = new StopGraph(stops);
+        int[] costs = new int[graph.size()];
+        int[] firstHops = new int[graph.size()];
+        CostHeap heap = new CostHeap();
+        int dijkstraQueries = Math.min(queryCount, 100);
+        start = System.nanoTime();
+        for (int i = 0; i < dijkstraQueries; i++) {
+            DijkstraRoutingEngine.shortestPaths(graph,
+                    graph.indexOf(origins[i]), costs, firstHops, heap);
+            check(expected[i], costs[graph.indexOf(destinations[i])]);
+        }
+        report("Dijkstra", System.nanoTime() - start, dijkstraQueries);
+
+        // every routing table of a smaller network, built three ways
+        int coreCount = Math.min(stopCount, 1000);
+        buildAll("grid", coreCount, 1);
+        buildAll("dense", coreCount, 30);
+    }
+
+    /*
+     * Builds every routing table of a generated network with the given
+     * number of random long links from each stop three ways, each on a fresh
+     * copy of the network, and prints the time each build takes: the fixed
+     * point of transferEntries which synchronise() ran before it used a
+     * routing engine, the Dijkstra routing engine, and the Floyd-Warshall
+     * routing engine. Every build writes the same routing tables.
+     */
+    private static void buildAll(String name, int count, int links) {
+        List<Stop> fixedPoint = generateDense(count, links, new Random(2020));
+        System.out.printf("all tables of %d stops (%s, %.1f links per "
+                        + "stop): ", count, name, linksPerStop(fixedPoint));
+        long start = System.nanoTime();
+        boolean change = true;
+        while (change) {
+            change = false;
+            for (Stop stop : fixedPoint) {
+                for (Stop neighbour : stop.getNeighbours()) {
+                    if (stop.getRoutingTable().transferEntries(neighbour)) {
+                        change = true;
+                    }
+                }
+            }
+        }
+        System.out.printf("fixed point %d ms, ",
+                (System.nanoTime() - start) / 1000000);
+
+        List<Stop> dijkstra = generateDense(count, links, new Random(2020));
+        start = System.nanoTime();
+        new DijkstraRoutingEngine().build(dijkstra);
+        System.out.printf("Dijkstra %d ms, ",
+                (System.nanoTime() - start) / 1000000);
+
+        List<Stop> floyd = generateDense(count, links, new Random(2020));
+        start = System.nanoTime();
+        new FloydWarshallRoutingEngine().build(floyd);
+        System.out.printf("Floyd-Warshall %d ms%n",
+                (System.nanoTime() - start) / 1000000);
+
+        for (int i = 0; i < count; i += 97) {
+            for (int j = 0; j < count; j++) {
+                int expected = dijkstra.get(i).getRoutingTable()
+                        .costTo(dijkstra.get(j));
+                check(expected, fixedPoint.get(i).getRoutingTable()
+                        .costTo(fixedPoint.get(j)));
+                check(expected, floyd.get(i).getRoutingTable()
+                        .costTo(floyd.get(j)));
+            }
+        }
+    }
+
+    /*
+     * Generates a grid of stops with jittered positions, linking each stop
+     * to most of its horizontal and vertical neighbours. Routing tables are
+     * suspended so that linking the stops does not route the network.
+     */
+    private static List<Stop> generate(int count, Random random) {
+        int side = (int) Math.ceil(Math.sqrt(count));
+        List<Stop> stops = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            Stop stop = new Stop("stop" + i,
+                    (i % side) * 10 + random.nextInt(5),
+                    (i / side) * 10 + random.nextInt(5));
+            stop.getRoutingTable().suspendSynchronisation();
+            stops.add(stop);
+        }
+        for (int i = 0; i < count; i++) {
+            if (i % side + 1 < side && i + 1 < count
+                    && random.nextInt(10) > 0) {
+                link(stops.get(i), stops.get(i + 1));
+            }
+            if (i + side < count && random.nextInt(10) > 0) {
+                link(stops.get(i), stops.get(i + side));
+            }
+        }
+        return stops;
+    }
+
+    /*
+     * Generates a grid of stops as above, with the given number of random
+     * long links from every stop so that most routes cross the whole
+     * network.
+     */
+    private static List<Stop> generateDense(int count, int links,
+                                            Random random) {
+        List<Stop> stops = generate(count, random);
+        for (Stop stop : stops) {
+            for (int i = 0; i < links; i++) {
+                link(stop, stops.get(random.nextInt(count)));
+            }
+        }
+        return stops;
+    }
+
+    /*
+     * Returns the average number of neighbours of the given stops.
+     */
+    private static double linksPerStop(List<Stop> stops) {
+        long links = 0;
+        for (Stop stop : stops) {
+            links += stop.getNeighbours().size();
+        }
+        return (double) links / stops.size();
+    }
+
+    private static void check(int expected, int actual) {
+        if (expected != actual) {
+            throw new AssertionError("expected " + expected + " but was "
+                    + actual);
+        }
+    }
+
+    private static void report(String name, long nanos, int queries) {
+        System.out.printf("%s: %.1f us per query%n", name,
+                nanos / 1000.0 / queries);
+    }
+
+    private static long usedMemory() {
+        System.gc();
+        return RUNTIME.totalMemory() - RUNTIME.freeMemory();
+    }
+}
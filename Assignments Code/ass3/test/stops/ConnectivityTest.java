@@ -0,0 +1,163 @@
+package stops;
+
+import network.Network;
+import org.junit.Before;
+import org.junit.Test;
+import routes.BusRoute;
+import routes.Route;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+import static stops.TestNetworks.link;
+
+public class ConnectivityTest {
+    Stop stop0, stop1, stop2, stop3, stop4;
+    Connectivity connectivity;
+
+    @Before
+    public void setUp() throws Exception {
+        stop0 = new Stop("stop0", 0, 0);
+        stop1 = new Stop("stop1", 1, 0);
+        stop2 = new Stop("stop2", 2, 0);
+        stop3 = new Stop("stop3", 0, 5);
+        stop4 = new Stop("stop4", 9, 9);
+
+        connectivity = new Connectivity();
+        connectivity.addAll(Arrays.asList(stop0, stop1, stop2, stop3,
+                stop4));
+    }
+
+    @Test
+    public void linking() {
+        assertEquals(5, connectivity.getComponentCount());
+        assertFalse(connectivity.isConnected(stop0, stop1));
+
+        link(stop0, stop1);
+        link(stop2, stop3);
+        assertEquals(3, connectivity.getComponentCount());
+        assertTrue(connectivity.isConnected(stop1, stop0));
+        assertEquals(2, connectivity.componentSize(stop3));
+
+        link(stop1, stop2);
+        assertTrue(connectivity.isConnected(stop0, stop3));
+        assertEquals(4, connectivity.componentSize(stop0));
+        assertEquals(connectivity.componentOf(stop0),
+                connectivity.componentOf(stop2));
+        assertNotEquals(connectivity.componentOf(stop0),
+                connectivity.componentOf(stop4));
+        assertEquals(1, connectivity.componentSize(stop4));
+    }
+
+    @Test
+    public void unlinking() {
+        link(stop0, stop1);
+        link(stop1, stop2);
+        stop1.removeNeighbouringStop(stop2);
+        assertTrue(connectivity.isConnected(stop1, stop2));
+
+        stop2.removeNeighbouringStop(stop1);
+        assertFalse(connectivity.isConnected(stop1, stop2));
+        assertEquals(2, connectivity.componentSize(stop0));
+        assertEquals(4, connectivity.getComponentCount());
+    }
+
+    @Test
+    public void stopsOutsideIndex() {
+        Stop stop5 = new Stop("stop5", 5, 5);
+        stop4.addNeighbouringStop(stop5);
+        stop5.addNeighbouringStop(stop3);
+        assertFalse(connectivity.isConnected(stop4, stop3));
+        assertEquals(-1, connectivity.componentOf(stop5));
+        assertEquals(0, connectivity.componentSize(stop5));
+        assertFalse(connectivity.isConnected(stop5, stop5));
+
+        // links to and from the new stop were made before it was added
+        connectivity.add(stop5);
+        assertTrue(connectivity.isConnected(stop4, stop3));
+        assertEquals(3, connectivity.componentSize(stop5));
+
+        connectivity.remove(stop5);
+        assertFalse(connectivity.contains(stop5));
+        assertEquals(5, connectivity.size());
+        stop4.removeNeighbouringStop(stop5);
+        assertFalse(connectivity.isConnected(stop4, stop3));
+    }
+
+    @Test
+    public void addToSecondIndex() {
+        Connectivity other = new Connectivity();
+        other.addAll(Arrays.asList(stop0, stop1));
+        link(stop0, stop1);
+        link(stop1, stop2);
+        assertTrue(other.isConnected(stop0, stop1));
+        assertFalse(other.contains(stop2));
+        assertEquals(3, connectivity.componentSize(stop0));
+        assertEquals(2, other.componentSize(stop0));
+
+        other.remove(stop1);
+        assertTrue(connectivity.contains(stop1));
+        assertEquals(1, other.componentSize(stop0));
+        stop1.removeNeighbouringStop(stop2);
+        stop2.removeNeighbouringStop(stop1);
+        assertEquals(2, connectivity.componentSize(stop0));
+    }
+
+    @Test
+    public void addAfterLinkOutside() {
+        Stop stop5 = new Stop("stop5", 5, 5);
+        Stop stop6 = new Stop("stop6", 6, 6);
+        stop4.addNeighbouringStop(stop5);
+        stop6.addNeighbouringStop(stop3);
+        connectivity.add(stop6);
+        assertTrue(connectivity.isConnected(stop3, stop6));
+        assertFalse(connectivity.isConnected(stop4, stop6));
+
+        stop5.addNeighbouringStop(stop6);
+        connectivity.add(stop5);
+        assertTrue(connectivity.isConnected(stop4, stop3));
+        assertEquals(4, connectivity.componentSize(stop5));
+        assertEquals(4, connectivity.getComponentCount());
+    }
+
+    @Test
+    public void stopInTwoNetworks() throws Exception {
+        Stop shared = new Stop("shared", 0, 0);
+        Network first = new Network();
+        Network second = new Network();
+        first.addStop(shared);
+        second.addStops(Arrays.asList(shared, stop4));
+        assertEquals(1, first.getComponentSize(shared));
+        assertFalse(second.isConnected(shared, stop4));
+
+        link(shared, stop4);
+        assertTrue(second.isConnected(shared, stop4));
+        assertEquals(1, first.getComponentSize(shared));
+    }
+
+    @Test
+    public void network() throws Exception {
+        Network network = new Network();
+        Stop stop5 = new Stop("stop5", 5, 5);
+        network.addStops(Arrays.asList(new Stop("a", 0, 0),
+                new Stop("b", 0, 1)));
+        network.addStop(stop5);
+        Stop a = network.getStops().get(0);
+        Stop b = network.getStops().get(1);
+        assertFalse(network.isConnected(a, b));
+
+        Route route = new BusRoute("route", 1);
+        route.addStop(a);
+        route.addStop(b);
+        network.addRoute(route);
+        assertTrue(network.isConnected(a, b));
+        assertEquals(2, network.getComponentSize(b));
+        assertNotEquals(network.getComponentId(a),
+                network.getComponentId(stop5));
+
+        network.removeStop(b);
+        assertEquals(-1, network.getComponentId(b));
+        assertEquals(1, network.getComponentSize(a));
+        assertFalse(network.isConnected(a, b));
+    }
+}
@@ -0,0 +1,84 @@
+package stops;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+import static stops.TestNetworks.linkSuspended;
+
+public class DijkstraRoutingEngineTest {
+    Stop stop0, stop1, stop2, stop3, stop4;
+    RoutingEngine engine;
+
+    @Before
+    public void setUp() throws Exception {
+        stop0 = new Stop("stop0", 0, 0);
+        stop1 = new Stop("stop1", 1, 0);
+        stop2 = new Stop("stop2", 2, 0);
+        stop3 = new Stop("stop3", 0, 5);
+        stop4 = new Stop("stop4", 9, 9);
+
+        // stop0 - stop1 - stop2 - stop3 - stop0
+        linkSuspended(stop0, stop1);
+        linkSuspended(stop1, stop2);
+        linkSuspended(stop2, stop3);
+        linkSuspended(stop3, stop0);
+
+        engine = new DijkstraRoutingEngine();
+    }
+
+    @Test
+    public void route() {
+        engine.route(stop0);
+
+        assertEquals(1, stop0.getRoutingTable().costTo(stop1));
+        assertEquals(2, stop0.getRoutingTable().costTo(stop2));
+        assertEquals(5, stop0.getRoutingTable().costTo(stop3));
+        assertEquals(stop1, stop0.getRoutingTable().nextStop(stop2));
+        assertEquals(stop3, stop0.getRoutingTable().nextStop(stop3));
+
+        // only the source table should be updated
+        assertEquals(Integer.MAX_VALUE, stop2.getRoutingTable().costTo(stop0));
+    }
+
+    @Test
+    public void build() {
+        engine.build(Arrays.asList(stop0));
+
+        assertEquals(2, stop2.getRoutingTable().costTo(stop0));
+        assertEquals(stop1, stop2.getRoutingTable().nextStop(stop0));
+        assertEquals(6, stop3.getRoutingTable().costTo(stop1));
+        assertEquals(stop0, stop3.getRoutingTable().nextStop(stop1));
+    }
+
+    @Test
+    public void buildUnreachableStop() {
+        engine.build(Arrays.asList(stop0));
+
+        assertEquals(Integer.MAX_VALUE, stop0.getRoutingTable().costTo(stop4));
+        assertNull(stop0.getRoutingTable().nextStop(stop4));
+        assertEquals(1, stop4.getRoutingTable().getCosts().size());
+    }
+
+    @Test
+    public void buildKeepsCheaperEntries() {
+        stop2.getRoutingTable().addOrUpdateEntry(stop0, 1, stop3);
+        engine.build(Arrays.asList(stop0));
+
+        assertEquals(1, stop2.getRoutingTable().costTo(stop0));
+        assertEquals(stop3, stop2.getRoutingTable().nextStop(stop0));
+    }
+
+    @Test
+    public void synchroniseUsesEngine() {
+        stop1.getRoutingTable().setRoutingEngine(null);
+        stop1.getRoutingTable().resumeSynchronisation();
+        stop1.getRoutingTable().synchronise();
+
+        assertEquals(5, stop0.getRoutingTable().costTo(stop3));
+        assertEquals(6, stop1.getRoutingTable().costTo(stop3));
+        assertEquals(stop0, stop1.getRoutingTable().nextStop(stop3));
+    }
+}
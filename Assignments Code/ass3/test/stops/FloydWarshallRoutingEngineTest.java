@@ -0,0 +1,129 @@
+package stops;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+import static stops.TestNetworks.linkRandomly;
+import static stops.TestNetworks.linkSuspended;
+import static stops.TestNetworks.randomStops;
+
+public class FloydWarshallRoutingEngineTest {
+    Stop stop0, stop1, stop2, stop3, stop4;
+    RoutingEngine engine;
+
+    @Before
+    public void setUp() throws Exception {
+        stop0 = new Stop("stop0", 0, 0);
+        stop1 = new Stop("stop1", 1, 0);
+        stop2 = new Stop("stop2", 2, 0);
+        stop3 = new Stop("stop3", 0, 5);
+        stop4 = new Stop("stop4", 9, 9);
+
+        // stop0 - stop1 - stop2 - stop3 - stop0
+        linkSuspended(stop0, stop1);
+        linkSuspended(stop1, stop2);
+        linkSuspended(stop2, stop3);
+        linkSuspended(stop3, stop0);
+
+        engine = new FloydWarshallRoutingEngine();
+    }
+
+    @Test
+    public void build() {
+        engine.build(Arrays.asList(stop0, stop4));
+
+        assertEquals(2, stop2.getRoutingTable().costTo(stop0));
+        assertEquals(stop1, stop2.getRoutingTable().nextStop(stop0));
+        assertEquals(6, stop3.getRoutingTable().costTo(stop1));
+        assertEquals(stop0, stop3.getRoutingTable().nextStop(stop1));
+        assertEquals(Integer.MAX_VALUE, stop0.getRoutingTable().costTo(stop4));
+        assertEquals(1, stop4.getRoutingTable().getCosts().size());
+    }
+
+    @Test
+    public void route() {
+        engine.route(stop3);
+
+        assertEquals(6, stop3.getRoutingTable().costTo(stop1));
+        assertEquals(Integer.MAX_VALUE, stop2.getRoutingTable().costTo(stop0));
+    }
+
+    @Test
+    public void buildColocatedStops() {
+        // the link between p and q costs nothing
+        Stop p = new Stop("p", 0, 0);
+        Stop q = new Stop("q", 0, 0);
+        Stop m = new Stop("m", 2, 0);
+        Stop t = new Stop("t", 5, 0);
+        linkSuspended(p, q);
+        linkSuspended(p, m);
+        linkSuspended(q, m);
+        linkSuspended(m, t);
+        engine.build(Arrays.asList(p));
+
+        assertEquals(m, p.getRoutingTable().nextStop(t));
+        assertEquals(m, q.getRoutingTable().nextStop(t));
+        assertEquals(Arrays.asList(p, m, t),
+                p.getRoutingTable().pathTo(t).getStops());
+        assertEquals(5, q.getRoutingTable().pathTo(t).getCost());
+        assertEquals(q, p.getRoutingTable().nextStop(q));
+        assertEquals(0, p.getRoutingTable().costTo(q));
+    }
+
+    @Test
+    public void buildColocatedPathsEnd() {
+        // many stops share a few positions, so many links cost nothing
+        Random random = new Random(2026);
+        List<Stop> stops = randomStops(random, 120, 4, true);
+        linkRandomly(random, stops, 300, 3);
+        engine.build(stops);
+
+        for (Stop origin : stops) {
+            for (Stop destination : stops) {
+                int cost = origin.getRoutingTable().costTo(destination);
+                RoutePath path = origin.getRoutingTable().pathTo(destination);
+                if (cost == Integer.MAX_VALUE) {
+                    assertNull(path);
+                } else {
+                    assertEquals(cost, path.getCost());
+                }
+            }
+        }
+    }
+
+    @Test
+    public void buildMatchesDijkstra() {
+        // more stops than fit in a single block, with some one-way links
+        Random random = new Random(2020);
+        List<Stop> stops = randomStops(random, 150, 80, true);
+        linkRandomly(random, stops, 400, 3);
+        StopGraph graph = new StopGraph(stops);
+        int[] costs = FloydWarshallRoutingEngine.allPairs(graph);
+        engine.build(stops);
+
+        int[] expected = new int[graph.size()];
+        int[] firstHops = new int[graph.size()];
+        for (int i = 0; i < graph.size(); i++) {
+            DijkstraRoutingEngine.shortestPaths(graph, i, expected,
+                    firstHops, new CostHeap());
+            RoutingTable table = graph.getStop(i).getRoutingTable();
+            for (int j = 0; j < graph.size(); j++) {
+                Stop destination = graph.getStop(j);
+                assertEquals(expected[j], costs[i * graph.size() + j]);
+                assertEquals(expected[j], table.costTo(destination));
+                if (i == j || expected[j] == Integer.MAX_VALUE) {
+                    continue;
+                }
+                Stop next = table.nextStop(destination);
+                assertTrue(graph.getStop(i).getNeighbours().contains(next));
+                assertEquals(expected[j], graph.getStop(i).linkCostTo(next)
+                        + next.getRoutingTable().costTo(destination));
+            }
+        }
+    }
+}
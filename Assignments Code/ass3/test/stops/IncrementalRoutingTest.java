@@ -0,0 +1,242 @@
+package stops;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+import static stops.TestNetworks.assertSameCosts;
+import static stops.TestNetworks.link;
+import static stops.TestNetworks.linkRandomly;
+import static stops.TestNetworks.randomStops;
+import static stops.TestNetworks.rebuiltCopy;
+
+public class IncrementalRoutingTest {
+    Stop stop0, stop1, stop2, stop3;
+
+    @Before
+    public void setUp() throws Exception {
+        stop0 = new Stop("stop0", 0, 0);
+        stop1 = new Stop("stop1", 1, 0);
+        stop2 = new Stop("stop2", 2, 0);
+        stop3 = new Stop("stop3", 2, 4);
+
+        // stop0 - stop1 - stop2 and stop0 - stop3 - stop2
+        link(stop0, stop1);
+        link(stop1, stop2);
+        link(stop0, stop3);
+        link(stop3, stop2);
+    }
+
+    @Test
+    public void neighbourAddedNoImprovement() {
+        // already routed, and a shortcut to an existing neighbour
+        int changes = IncrementalRouting.neighbourAdded(stop0, stop1);
+
+        assertEquals(0, changes);
+    }
+
+    @Test
+    public void neighbourAddedPropagates() {
+        Stop stop4 = new Stop("stop4", 3, 0);
+        stop2.addNeighbouringStop(stop4);
+
+        assertEquals(3, stop0.getRoutingTable().costTo(stop4));
+        assertEquals(stop1, stop0.getRoutingTable().nextStop(stop4));
+        assertEquals(5, stop3.getRoutingTable().costTo(stop4));
+        assertEquals(stop2, stop3.getRoutingTable().nextStop(stop4));
+
+        stop4.addNeighbouringStop(stop2);
+        assertEquals(3, stop4.getRoutingTable().costTo(stop0));
+        assertEquals(stop2, stop4.getRoutingTable().nextStop(stop0));
+    }
+
+    @Test
+    public void matchesFullRebuild() {
+        Random random = new Random(2002);
+        List<Stop> incremental = randomStops(random, 40, 50, false);
+        linkRandomly(random, incremental, 80, 0);
+
+        assertSameCosts(rebuiltCopy(incremental), incremental);
+    }
+
+    @Test
+    public void oneWayNotPropagatedBackwards() {
+        Stop s0 = new Stop("s0", 0, 0);
+        Stop s1 = new Stop("s1", 1, 0);
+        Stop s2 = new Stop("s2", 2, 0);
+        s1.addNeighbouringStop(s0);
+        s1.addNeighbouringStop(s2);
+        s2.addNeighbouringStop(s1);
+
+        assertEquals(Integer.MAX_VALUE, s0.getRoutingTable().costTo(s2));
+        assertNull(s0.getRoutingTable().nextStop(s1));
+        assertEquals(1, s1.getRoutingTable().costTo(s0));
+        assertEquals(2, s2.getRoutingTable().costTo(s0));
+        assertEquals(s1, s2.getRoutingTable().nextStop(s0));
+    }
+
+    @Test
+    public void oneWayMatchesFullRebuild() {
+        Random random = new Random(2003);
+        for (int graph = 0; graph < 50; graph++) {
+            List<Stop> incremental = randomStops(random, 12, 20, false);
+            linkRandomly(random, incremental, 20, 2);
+
+            assertSameCosts(rebuiltCopy(incremental), incremental);
+        }
+    }
+
+    @Test
+    public void neighbourRemovedReroutes() {
+        stop1.removeNeighbouringStop(stop2);
+        stop2.removeNeighbouringStop(stop1);
+
+        assertEquals(10, stop0.getRoutingTable().costTo(stop2));
+        assertEquals(stop3, stop0.getRoutingTable().nextStop(stop2));
+        assertEquals(11, stop1.getRoutingTable().costTo(stop2));
+        assertEquals(stop0, stop1.getRoutingTable().nextStop(stop2));
+        assertEquals(stop3, stop2.getRoutingTable().nextStop(stop1));
+    }
+
+    @Test
+    public void neighbourRemovedUnreachable() {
+        stop0.removeNeighbouringStop(stop1);
+        stop1.removeNeighbouringStop(stop0);
+        stop1.removeNeighbouringStop(stop2);
+        stop2.removeNeighbouringStop(stop1);
+
+        assertEquals(Integer.MAX_VALUE, stop0.getRoutingTable().costTo(stop1));
+        assertNull(stop2.getRoutingTable().nextStop(stop1));
+        assertEquals(1, stop1.getRoutingTable().getCosts().size());
+        assertEquals(10, stop0.getRoutingTable().costTo(stop2));
+    }
+
+    @Test
+    public void removalsMatchFullRebuild() {
+        Random random = new Random(2004);
+        List<Stop> incremental = randomStops(random, 40, 50, false);
+        linkRandomly(random, incremental, 100, 0);
+        for (Stop stop : incremental) {
+            for (Stop neighbour : stop.getNeighbours()) {
+                if (random.nextInt(3) == 0) {
+                    stop.removeNeighbouringStop(neighbour);
+                    neighbour.removeNeighbouringStop(stop);
+                }
+            }
+        }
+
+        assertSameCosts(rebuiltCopy(incremental), incremental);
+    }
+
+    @Test
+    public void oneWayRemovalsMatchFullRebuild() {
+        Random random = new Random(2005);
+        for (int graph = 0; graph < 50; graph++) {
+            List<Stop> incremental = randomStops(random, 12, 20, false);
+            linkRandomly(random, incremental, 30, 2);
+            for (int i = 0; i < 15; i++) {
+                Stop stop = incremental.get(random.nextInt(12));
+                List<Stop> neighbours = stop.getNeighbours();
+                if (neighbours.isEmpty()) {
+                    continue;
+                }
+                Stop neighbour = neighbours.get(
+                        random.nextInt(neighbours.size()));
+                if (random.nextBoolean()) {
+                    stop.removeNeighbouringStop(neighbour);
+                } else {
+                    stop.setLinkCost(neighbour, stop.distanceTo(neighbour)
+                            + random.nextInt(20));
+                }
+            }
+
+            assertSameCosts(rebuiltCopy(incremental), incremental);
+        }
+    }
+
+    @Test
+    public void linkCostRaisedReroutes() {
+        stop1.setLinkCost(stop2, 20);
+
+        assertEquals(20, stop1.linkCostTo(stop2));
+        assertEquals(1, stop2.linkCostTo(stop1));
+        assertEquals(10, stop0.getRoutingTable().costTo(stop2));
+        assertEquals(stop3, stop0.getRoutingTable().nextStop(stop2));
+        assertEquals(11, stop1.getRoutingTable().costTo(stop2));
+        assertEquals(stop0, stop1.getRoutingTable().nextStop(stop2));
+
+        // the other direction still uses the link
+        assertEquals(2, stop2.getRoutingTable().costTo(stop0));
+        assertEquals(stop1, stop2.getRoutingTable().nextStop(stop0));
+    }
+
+    @Test
+    public void linkCostLoweredRestores() {
+        stop1.setLinkCost(stop2, 20);
+        stop1.setLinkCost(stop2, 5);
+        assertEquals(6, stop0.getRoutingTable().costTo(stop2));
+        assertEquals(stop1, stop0.getRoutingTable().nextStop(stop2));
+
+        stop1.setLinkCost(stop2, 1);
+        assertEquals(2, stop0.getRoutingTable().costTo(stop2));
+        assertEquals(1, stop1.linkCostTo(stop2));
+    }
+
+    @Test
+    public void linkCostRaisedWhileSuspended() {
+        stop1.getRoutingTable().suspendSynchronisation();
+        stop1.setLinkCost(stop2, 20);
+
+        // only the direct entry changes, and nothing is propagated
+        assertEquals(20, stop1.getRoutingTable().costTo(stop2));
+        assertEquals(stop2, stop1.getRoutingTable().nextStop(stop2));
+        assertEquals(2, stop0.getRoutingTable().costTo(stop2));
+        assertEquals(stop1, stop0.getRoutingTable().nextStop(stop2));
+    }
+
+    @Test
+    public void linkCostNotNeighbour() {
+        stop0.setLinkCost(stop2, 20);
+        stop0.setLinkCost(null, 20);
+
+        assertEquals(2, stop0.linkCostTo(stop2));
+        assertEquals(2, stop0.getRoutingTable().costTo(stop2));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void linkCostBelowDistance() {
+        stop0.setLinkCost(stop3, 5);
+    }
+
+    @Test
+    public void linkCostForgottenWhenRemoved() {
+        stop1.setLinkCost(stop2, 20);
+        stop1.removeNeighbouringStop(stop2);
+        stop1.addNeighbouringStop(stop2);
+
+        assertEquals(1, stop1.linkCostTo(stop2));
+        assertEquals(1, stop1.getRoutingTable().costTo(stop2));
+    }
+
+    @Test
+    public void linkCostsMatchShortestPaths() {
+        Random random = new Random(2017);
+        List<Stop> stops = randomStops(random, 40, 50, false);
+        linkRandomly(random, stops, 100, 0);
+        for (int i = 0; i < 200; i++) {
+            Stop stop = stops.get(random.nextInt(40));
+            List<Stop> neighbours = stop.getNeighbours();
+            if (neighbours.isEmpty()) {
+                continue;
+            }
+            Stop neighbour = neighbours.get(random.nextInt(neighbours.size()));
+            stop.setLinkCost(neighbour, stop.distanceTo(neighbour)
+                    + random.nextInt(30));
+        }
+
+        assertSameCosts(rebuiltCopy(stops), stops);
+    }
+}
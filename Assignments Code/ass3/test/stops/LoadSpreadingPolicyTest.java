@@ -0,0 +1,84 @@
+package stops;
+
+import org.junit.Before;
+import org.junit.Test;
+import passengers.Passenger;
+import routes.BusRoute;
+import routes.Route;
+import vehicles.Bus;
+
+import static org.junit.Assert.*;
+
+public class LoadSpreadingPolicyTest {
+    Stop stopA, stopB, stopC, stopD;
+    Bus small, large;
+
+    @Before
+    public void setUp() throws Exception {
+        stopA = new Stop("stopA", 0, 0);
+        stopB = new Stop("stopB", 2, 0);
+        stopC = new Stop("stopC", 0, 3);
+        stopD = new Stop("stopD", 2, 2);
+
+        // A - B - D costs 4, A - C - D costs 6
+        Route fast = new BusRoute("fast", 1);
+        fast.addStop(stopA);
+        fast.addStop(stopB);
+        fast.addStop(stopD);
+        Route slow = new BusRoute("slow", 2);
+        slow.addStop(stopA);
+        slow.addStop(stopC);
+        slow.addStop(stopD);
+
+        small = new Bus(1, 2, fast, "SMALL");
+        large = new Bus(2, 5, slow, "LARGE");
+        stopA.transportArrive(small);
+        stopA.transportArrive(large);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void negativeSlack() {
+        new LoadSpreadingPolicy(-0.1);
+    }
+
+    @Test
+    public void withoutPolicy() {
+        for (int i = 0; i < 4; i++) {
+            stopA.addPassenger(new Passenger("p" + i, stopD));
+        }
+        assertNull(stopA.getRoutingPolicy());
+        assertEquals(4, stopA.waitingFor(stopB));
+        assertEquals(0, stopA.waitingFor(stopC));
+    }
+
+    @Test
+    public void spreadsByCapacity() {
+        stopA.setRoutingPolicy(new LoadSpreadingPolicy(0.5));
+        for (int i = 0; i < 6; i++) {
+            stopA.addPassenger(new Passenger("p" + i, stopD));
+        }
+        assertEquals(2, stopA.waitingFor(stopB));
+        assertEquals(4, stopA.waitingFor(stopC));
+
+        // passengers for the stop itself or a neighbour have one choice
+        stopA.addPassenger(new Passenger("here", stopA));
+        stopA.addPassenger(new Passenger("next", stopB));
+        assertEquals(1, stopA.waitingFor(stopA));
+        assertEquals(3, stopA.waitingFor(stopB));
+
+        stopA.transportDepart(large, stopC);
+        assertEquals(4, large.passengerCount());
+        assertEquals(0, stopA.waitingFor(stopC));
+    }
+
+    @Test
+    public void alternativeTooExpensive() {
+        stopA.setRoutingPolicy(new LoadSpreadingPolicy());
+        assertEquals(0.25, ((LoadSpreadingPolicy) stopA.getRoutingPolicy())
+                .getSlack(), 0);
+        for (int i = 0; i < 4; i++) {
+            stopA.addPassenger(new Passenger("p" + i, stopD));
+        }
+        assertEquals(4, stopA.waitingFor(stopB));
+    }
+}
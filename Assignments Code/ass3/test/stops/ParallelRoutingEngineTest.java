@@ -0,0 +1,92 @@
+package stops;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.Assert.*;
+import static stops.TestNetworks.assertSameCosts;
+import static stops.TestNetworks.linkRandomly;
+import static stops.TestNetworks.linkSuspended;
+import static stops.TestNetworks.randomStops;
+import static stops.TestNetworks.rebuiltCopy;
+
+public class ParallelRoutingEngineTest {
+    Stop stop0, stop1, stop2, stop3, stop4;
+    RoutingEngine engine;
+
+    @Before
+    public void setUp() throws Exception {
+        stop0 = new Stop("stop0", 0, 0);
+        stop1 = new Stop("stop1", 1, 0);
+        stop2 = new Stop("stop2", 2, 0);
+        stop3 = new Stop("stop3", 0, 5);
+        stop4 = new Stop("stop4", 9, 9);
+
+        // stop0 - stop1 - stop2 - stop3 - stop0
+        linkSuspended(stop0, stop1);
+        linkSuspended(stop1, stop2);
+        linkSuspended(stop2, stop3);
+        linkSuspended(stop3, stop0);
+
+        engine = new ParallelRoutingEngine(new ForkJoinPool(4));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void nullPool() {
+        new ParallelRoutingEngine(null);
+    }
+
+    @Test
+    public void build() {
+        engine.build(Arrays.asList(stop0, stop4));
+
+        assertEquals(2, stop2.getRoutingTable().costTo(stop0));
+        assertEquals(stop1, stop2.getRoutingTable().nextStop(stop0));
+        assertEquals(6, stop3.getRoutingTable().costTo(stop1));
+        assertEquals(stop0, stop3.getRoutingTable().nextStop(stop1));
+        assertEquals(Integer.MAX_VALUE, stop0.getRoutingTable().costTo(stop4));
+        assertEquals(1, stop4.getRoutingTable().getCosts().size());
+    }
+
+    @Test
+    public void buildMatchesDijkstra() {
+        Random random = new Random(2010);
+        List<Stop> parallel = randomStops(random, 200, 80, true);
+        linkRandomly(random, parallel, 400, 0);
+        List<Stop> sequential = rebuiltCopy(parallel);
+        engine.build(parallel);
+        assertSameCosts(sequential, parallel);
+
+        for (int i = 0; i < 200; i++) {
+            RoutingTable expected = sequential.get(i).getRoutingTable();
+            RoutingTable actual = parallel.get(i).getRoutingTable();
+            for (int j = 0; j < 200; j++) {
+                Stop next = expected.nextStop(sequential.get(j));
+                Stop actualNext = actual.nextStop(parallel.get(j));
+                if (next == null) {
+                    assertNull(actualNext);
+                } else {
+                    assertSame(parallel.get(sequential.indexOf(next)),
+                            actualNext);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void buildIntoMatrix() {
+        RoutingMatrix matrix = new RoutingMatrix();
+        matrix.addAll(Arrays.asList(stop0, stop1, stop2, stop3));
+        engine.build(Arrays.asList(stop0));
+
+        assertEquals(5, stop0.getRoutingTable().costTo(stop3));
+        assertEquals(stop3, stop0.getRoutingTable().nextStop(stop3));
+        assertEquals(6, stop1.getRoutingTable().costTo(stop3));
+        assertEquals(stop0, stop1.getRoutingTable().nextStop(stop3));
+    }
+}
@@ -0,0 +1,88 @@
+package stops;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+import static stops.TestNetworks.link;
+
+public class PathCacheTest {
+    Stop stop0, stop1, stop2, stop3, stop4;
+    PathCache cache;
+
+    @Before
+    public void setUp() throws Exception {
+        stop0 = new Stop("stop0", 0, 0);
+        stop1 = new Stop("stop1", 0, 5);
+        stop2 = new Stop("stop2", 5, 5);
+        stop3 = new Stop("stop3", 5, 0);
+        stop4 = new Stop("stop4", 9, 9);
+
+        // the long way round from stop0 to stop3
+        link(stop0, stop1);
+        link(stop1, stop2);
+        link(stop2, stop3);
+
+        cache = new PathCache(2);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void noCapacity() {
+        new PathCache(0);
+    }
+
+    @Test
+    public void pathTo() {
+        RoutePath path = cache.pathTo(stop0, stop3);
+        assertEquals("15:stop0|stop1|stop2|stop3", path.toString());
+        assertSame(path, cache.pathTo(stop0, stop3));
+        assertEquals(1, cache.getHitCount());
+        assertEquals(1, cache.getMissCount());
+
+        assertNull(cache.pathTo(stop0, stop4));
+        assertNull(cache.pathTo(null, stop4));
+        assertEquals(1, cache.size());
+    }
+
+    @Test
+    public void leastRecentlyUsedEvicted() {
+        RoutePath toStop3 = cache.pathTo(stop0, stop3);
+        RoutePath toStop2 = cache.pathTo(stop0, stop2);
+        cache.pathTo(stop0, stop3);
+        cache.pathTo(stop1, stop3);
+        assertEquals(2, cache.size());
+        assertEquals(2, cache.getCapacity());
+
+        assertSame(toStop3, cache.pathTo(stop0, stop3));
+        assertNotSame(toStop2, cache.pathTo(stop0, stop2));
+    }
+
+    @Test
+    public void invalidatedWhenRoutingChanges() {
+        RoutePath toStop3 = cache.pathTo(stop0, stop3);
+        RoutePath toStop1 = cache.pathTo(stop2, stop1);
+
+        // a shortcut changes the route to stop3, but not stop2's to stop1
+        link(stop0, stop3);
+        assertEquals(1, cache.size());
+        assertSame(toStop1, cache.pathTo(stop2, stop1));
+        assertEquals("5:stop0|stop3", cache.pathTo(stop0, stop3).toString());
+
+        // a change anywhere along the way is seen too
+        stop2.setLinkCost(stop1, 7);
+        assertNotSame(toStop1, cache.pathTo(stop2, stop1));
+        assertEquals(7, cache.pathTo(stop2, stop1).getCost());
+        assertNotSame(toStop3, cache.pathTo(stop0, stop3));
+    }
+
+    @Test
+    public void clear() {
+        cache.pathTo(stop0, stop3);
+        cache.clear();
+        assertEquals(0, cache.size());
+
+        // the cache no longer listens, so nothing is left to deliver to it
+        link(stop0, stop3);
+        assertEquals(0, cache.size());
+    }
+}
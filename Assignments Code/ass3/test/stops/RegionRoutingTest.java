@@ -0,0 +1,168 @@
+package stops;
+
+import network.Network;
+import org.junit.Before;
+import org.junit.Test;
+import routes.BusRoute;
+import routes.Route;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+import static stops.TestNetworks.assertSameCosts;
+import static stops.TestNetworks.linkRandomly;
+import static stops.TestNetworks.randomStops;
+import static stops.TestNetworks.rebuiltCopy;
+
+public class RegionRoutingTest {
+    List<Stop> stops;
+
+    @Before
+    public void setUp() throws Exception {
+        // a random network with some one-way links and an isolated stop
+        Random random = new Random(2016);
+        stops = randomStops(random, 200, 100, true);
+        for (int i = 0; i < stops.size() - 1; i++) {
+            for (int j = 0; j < i; j++) {
+                Stop first = stops.get(i);
+                Stop second = stops.get(j);
+                if (first.distanceTo(second) < 12) {
+                    first.addNeighbouringStop(second);
+                    if (random.nextInt(4) != 0) {
+                        second.addNeighbouringStop(first);
+                    }
+                }
+            }
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void noRegions() {
+        new RegionRouting(stops, 0);
+    }
+
+    @Test
+    public void matchesShortestPaths() {
+        StopGraph graph = new StopGraph(stops);
+        int[][] expected = new int[graph.size()][graph.size()];
+        int[] firstHops = new int[graph.size()];
+        for (int i = 0; i < graph.size(); i++) {
+            DijkstraRoutingEngine.shortestPaths(graph, i, expected[i],
+                    firstHops, new CostHeap());
+        }
+
+        RegionRouting routing = new RegionRouting(stops, 9);
+        assertEquals(200, routing.size());
+        assertEquals(9, routing.getRegionCount());
+        assertTrue(routing.getBoundaryCount() > 0);
+        assertTrue(routing.getEntryCount() < 200L * 200);
+
+        for (int i = 0; i < graph.size(); i++) {
+            RoutingTable table = graph.getStop(i).getRoutingTable();
+            int reachable = 0;
+            for (int j = 0; j < graph.size(); j++) {
+                Stop destination = graph.getStop(j);
+                assertEquals(expected[i][j], table.costTo(destination));
+                if (expected[i][j] == Integer.MAX_VALUE) {
+                    assertNull(table.nextStop(destination));
+                    continue;
+                }
+                reachable++;
+
+                // following the next stops costs exactly the cheapest cost
+                Stop current = graph.getStop(i);
+                int cost = 0;
+                while (current != destination) {
+                    Stop next = current.getRoutingTable()
+                            .nextStop(destination);
+                    assertTrue(current.getNeighbours().contains(next));
+                    cost += current.distanceTo(next);
+                    current = next;
+                }
+                assertEquals(expected[i][j], cost);
+            }
+            assertEquals(reachable, table.getDestinations().size());
+        }
+    }
+
+    @Test
+    public void colocatedPathsEnd() {
+        // many stops share a few positions, so many links cost nothing, and
+        // some links cost more than their length
+        Random random = new Random(26);
+        List<Stop> stops = randomStops(random, 80, 5, true);
+        linkRandomly(random, stops, 200, 3);
+        for (Stop stop : stops) {
+            for (Stop neighbour : stop.getNeighbours()) {
+                if (random.nextInt(3) == 0) {
+                    stop.setLinkCost(neighbour, stop.distanceTo(neighbour)
+                            + random.nextInt(10));
+                }
+            }
+        }
+        List<Stop> expected = rebuiltCopy(stops);
+        new RegionRouting(stops, 3);
+        assertSameCosts(expected, stops);
+
+        for (Stop origin : stops) {
+            for (Stop destination : stops) {
+                int cost = origin.getRoutingTable().costTo(destination);
+                RoutePath path = origin.getRoutingTable().pathTo(destination);
+                if (cost == Integer.MAX_VALUE) {
+                    assertNull(path);
+                } else {
+                    assertEquals(cost, path.getCost());
+                }
+            }
+        }
+    }
+
+    @Test
+    public void changedEntries() {
+        Stop stop = stops.get(1);
+        Stop isolated = stops.get(stops.size() - 1);
+        new RegionRouting(stops);
+        RoutingTable table = stop.getRoutingTable();
+        int size = table.getCosts().size();
+
+        table.addOrUpdateEntry(isolated, 5, stops.get(2));
+        assertEquals(5, table.costTo(isolated));
+        assertEquals(size + 1, table.getCosts().size());
+
+        Stop destination = table.getDestinations().get(1);
+        table.removeEntry(destination);
+        assertEquals(Integer.MAX_VALUE, table.costTo(destination));
+        assertNull(table.nextStop(destination));
+        assertEquals(size, table.getCosts().size());
+
+        table.setEntry(destination, 7, stops.get(3));
+        assertEquals(7, table.costTo(destination));
+        assertEquals(stops.get(3), table.nextStop(destination));
+    }
+
+    @Test
+    public void network() throws Exception {
+        Network network = new Network();
+        Stop a = new Stop("a", 0, 0);
+        Stop b = new Stop("b", 0, 3);
+        Stop c = new Stop("c", 4, 3);
+        network.addStops(Arrays.asList(a, b, c));
+        Route route = new BusRoute("route", 1);
+        route.addStop(a);
+        route.addStop(b);
+        route.addStop(c);
+        network.addRoute(route);
+
+        RegionRouting routing = network.partitionRouting();
+        assertEquals(3, routing.size());
+        assertEquals(0, network.getRoutingMatrix().size());
+        assertEquals(7, a.getRoutingTable().costTo(c));
+        assertEquals(b, a.getRoutingTable().nextStop(c));
+
+        network.setRoutingMatrix(new RoutingMatrix());
+        assertEquals(3, network.getRoutingMatrix().size());
+        assertEquals(7, a.getRoutingTable().costTo(c));
+    }
+}
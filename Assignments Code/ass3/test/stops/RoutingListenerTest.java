@@ -0,0 +1,166 @@
+package stops;
+
+import org.junit.Before;
+import org.junit.Test;
+import passengers.Passenger;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.Assert.*;
+import static stops.TestNetworks.link;
+
+public class RoutingListenerTest {
+    Stop stop0, stop1, stop2, stop3, stop4;
+    List<Set<Stop>> notifications;
+    RoutingListener listener;
+
+    @Before
+    public void setUp() throws Exception {
+        stop0 = new Stop("stop0", 0, 0);
+        stop1 = new Stop("stop1", 0, 5);
+        stop2 = new Stop("stop2", 5, 5);
+        stop3 = new Stop("stop3", 5, 0);
+        stop4 = new Stop("stop4", 9, 9);
+
+        // the long way round from stop0 to stop3
+        link(stop0, stop1);
+        link(stop1, stop2);
+        link(stop2, stop3);
+
+        notifications = new ArrayList<>();
+        listener = new RoutingListener() {
+            @Override
+            public void routingChanged(RoutingTable table,
+                                       Set<Stop> destinations) {
+                assertSame(stop0.getRoutingTable(), table);
+                notifications.add(new HashSet<>(destinations));
+            }
+        };
+    }
+
+    @Test
+    public void batchedPerUpdate() {
+        stop0.getRoutingTable().addRoutingListener(listener);
+        stop0.getRoutingTable().addRoutingListener(listener);
+
+        // a shortcut improves the entries for stop3 and stop4 at once
+        link(stop3, stop4);
+        notifications.clear();
+        stop0.addNeighbouringStop(stop3);
+        assertEquals(1, notifications.size());
+        assertEquals(new HashSet<>(Arrays.asList(stop3, stop4)),
+                notifications.get(0));
+
+        // removing it invalidates and recomputes the same entries
+        stop0.removeNeighbouringStop(stop3);
+        assertEquals(2, notifications.size());
+        assertEquals(new HashSet<>(Arrays.asList(stop3, stop4)),
+                notifications.get(1));
+
+        // direct changes are delivered straight away
+        stop0.getRoutingTable().addOrUpdateEntry(stop4, 5, stop1);
+        assertEquals(3, notifications.size());
+        assertEquals(new HashSet<>(Arrays.asList(stop4)),
+                notifications.get(2));
+
+        stop0.getRoutingTable().removeRoutingListener(listener);
+        stop0.getRoutingTable().addOrUpdateEntry(stop4, 4, stop1);
+        assertEquals(3, notifications.size());
+    }
+
+    @Test
+    public void batchedPerBuild() {
+        stop0.getRoutingTable().addRoutingListener(listener);
+        stop4.getRoutingTable().suspendSynchronisation();
+        stop4.addNeighbouringStop(stop3);
+        stop3.getRoutingTable().suspendSynchronisation();
+        stop3.addNeighbouringStop(stop4);
+        assertTrue(notifications.isEmpty());
+
+        new ParallelRoutingEngine().build(Arrays.asList(stop0));
+        assertEquals(1, notifications.size());
+        assertEquals(new HashSet<>(Arrays.asList(stop4)),
+                notifications.get(0));
+    }
+
+    @Test
+    public void buildDeliveredOnCallingThread() {
+        final List<Thread> threads = new ArrayList<>();
+        stop0.getRoutingTable().addRoutingListener(new RoutingListener() {
+            @Override
+            public void routingChanged(RoutingTable table,
+                                       Set<Stop> destinations) {
+                threads.add(Thread.currentThread());
+            }
+        });
+        stop4.getRoutingTable().suspendSynchronisation();
+        stop4.addNeighbouringStop(stop3);
+        stop3.getRoutingTable().suspendSynchronisation();
+        stop3.addNeighbouringStop(stop4);
+
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            new ParallelRoutingEngine(pool).build(Arrays.asList(stop0));
+        } finally {
+            pool.shutdown();
+        }
+        assertEquals(Arrays.asList(Thread.currentThread()), threads);
+    }
+
+    @Test
+    public void otherThreadsNotBatched() throws Exception {
+        stop0.getRoutingTable().addRoutingListener(listener);
+        final List<Thread> threads = new ArrayList<>();
+        stop0.getRoutingTable().addRoutingListener(new RoutingListener() {
+            @Override
+            public void routingChanged(RoutingTable table,
+                                       Set<Stop> destinations) {
+                threads.add(Thread.currentThread());
+            }
+        });
+
+        // an update in progress here does not hold back another thread's
+        Thread other = new Thread() {
+            @Override
+            public void run() {
+                stop0.getRoutingTable().addOrUpdateEntry(stop4, 5, stop1);
+            }
+        };
+        RoutingChanges.begin();
+        try {
+            other.start();
+            other.join();
+            assertEquals(Arrays.asList(other), threads);
+            assertEquals(1, notifications.size());
+        } finally {
+            RoutingChanges.end();
+        }
+        assertEquals(1, notifications.size());
+    }
+
+    @Test
+    public void waitingPassengersRerouted() {
+        Passenger toStop3 = new Passenger("toStop3", stop3);
+        Passenger toStop1 = new Passenger("toStop1", stop1);
+        Passenger toStop4 = new Passenger("toStop4", stop4);
+        stop0.addPassenger(toStop3);
+        stop0.addPassenger(toStop1);
+        stop0.addPassenger(toStop4);
+        assertEquals(2, stop0.waitingFor(stop1));
+        assertEquals(1, stop0.waitingFor(null));
+
+        link(stop0, stop3);
+        assertEquals(1, stop0.waitingFor(stop1));
+        assertEquals(1, stop0.waitingFor(stop3));
+
+        // an unreachable destination becomes reachable
+        link(stop3, stop4);
+        assertEquals(2, stop0.waitingFor(stop3));
+        assertEquals(0, stop0.waitingFor(null));
+    }
+}
@@ -0,0 +1,332 @@
+package stops;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.Assert.*;
+
+public class RoutingMatrixTest {
+    Stop stop0, stop1, stop2, stop3;
+    RoutingMatrix matrix;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Before
+    public void setUp() throws Exception {
+        stop0 = new Stop("stop0", 0, 0);
+        stop1 = new Stop("stop1", 1, 0);
+        stop2 = new Stop("stop2", 3, 0);
+        stop3 = new Stop("stop3", 3, 3);
+
+        matrix = new RoutingMatrix(2);
+        matrix.addAll(Arrays.asList(stop0, stop1, stop2));
+
+        stop0.addNeighbouringStop(stop1);
+        stop1.addNeighbouringStop(stop0);
+        stop1.addNeighbouringStop(stop2);
+        stop2.addNeighbouringStop(stop1);
+    }
+
+    @Test
+    public void ordinals() {
+        assertEquals(3, matrix.size());
+        assertEquals(0, matrix.ordinalOf(stop0));
+        assertEquals(2, matrix.ordinalOf(stop2));
+        assertEquals(-1, matrix.ordinalOf(stop3));
+        assertEquals(stop1, matrix.getStop(1));
+        assertTrue(matrix.contains(stop1));
+        assertFalse(matrix.contains(stop3));
+    }
+
+    @Test
+    public void tableIsView() {
+        assertEquals(3, stop0.getRoutingTable().costTo(stop2));
+        assertEquals(stop1, stop0.getRoutingTable().nextStop(stop2));
+        assertEquals(0, stop2.getRoutingTable().costTo(stop2));
+        assertEquals(3, stop2.getRoutingTable().getCosts().size());
+    }
+
+    @Test
+    public void destinationOutsideMatrix() {
+        stop2.addNeighbouringStop(stop3);
+        stop3.addNeighbouringStop(stop2);
+
+        assertEquals(6, stop0.getRoutingTable().costTo(stop3));
+        assertEquals(stop1, stop0.getRoutingTable().nextStop(stop3));
+        assertEquals(6, stop3.getRoutingTable().costTo(stop0));
+
+        // moved into the arrays once the stop is added
+        matrix.add(stop3);
+        assertEquals(6, stop0.getRoutingTable().costTo(stop3));
+        assertEquals(stop2, stop3.getRoutingTable().nextStop(stop0));
+        assertEquals(4, stop3.getRoutingTable().getCosts().size());
+    }
+
+    @Test
+    public void remove() {
+        matrix.remove(stop0);
+
+        assertEquals(2, matrix.size());
+        assertEquals(3, matrix.ordinalBound());
+        assertFalse(matrix.contains(stop0));
+        assertNull(matrix.getStop(0));
+        assertEquals(2, matrix.ordinalOf(stop2));
+        assertEquals(1, matrix.ordinalOf(stop1));
+
+        // entries are kept by every table
+        assertEquals(3, stop0.getRoutingTable().costTo(stop2));
+        assertEquals(stop1, stop0.getRoutingTable().nextStop(stop2));
+        assertEquals(3, stop2.getRoutingTable().costTo(stop0));
+        assertEquals(stop1, stop2.getRoutingTable().nextStop(stop0));
+        assertEquals(stop2, stop1.getRoutingTable().nextStop(stop2));
+    }
+
+    @Test
+    public void removedOrdinalReused() {
+        matrix.remove(stop0);
+        matrix.add(stop3);
+
+        assertEquals(0, matrix.ordinalOf(stop3));
+        assertEquals(3, matrix.ordinalBound());
+        assertEquals(stop3, matrix.getStop(0));
+        assertEquals(3, stop2.getRoutingTable().costTo(stop0));
+        assertEquals(stop1, stop2.getRoutingTable().nextStop(stop0));
+        assertFalse(stop2.getRoutingTable().getCosts().containsKey(stop3));
+    }
+
+    @Test
+    public void removedOrdinalKeptWhileRoutedVia() {
+        matrix.remove(stop1);
+        matrix.add(stop3);
+
+        // stop0 still routes to stop2 via stop1
+        assertEquals(3, matrix.ordinalOf(stop3));
+        assertEquals(stop1, stop0.getRoutingTable().nextStop(stop2));
+        assertEquals(3, stop0.getRoutingTable().costTo(stop2));
+
+        stop0.getRoutingTable().removeEntry(stop2);
+        stop2.getRoutingTable().removeEntry(stop0);
+        Stop stop4 = new Stop("stop4", 4, 4);
+        matrix.add(stop4);
+        assertEquals(1, matrix.ordinalOf(stop4));
+    }
+
+    @Test
+    public void removedOrdinalReusedAfterParallelBuild() {
+        matrix.remove(stop1);
+        matrix.add(stop3);
+        assertEquals(stop1, stop0.getRoutingTable().nextStop(stop2));
+
+        // the referrer counts are made again when an ordinal is next reused
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            new ParallelRoutingEngine(pool).build(Arrays.asList(stop0));
+        } finally {
+            pool.shutdown();
+        }
+        Stop stop4 = new Stop("stop4", 4, 4);
+        matrix.add(stop4);
+        assertEquals(4, matrix.ordinalOf(stop4));
+        assertEquals(stop1, stop0.getRoutingTable().nextStop(stop2));
+
+        stop0.getRoutingTable().removeEntry(stop2);
+        stop2.getRoutingTable().removeEntry(stop0);
+        Stop stop5 = new Stop("stop5", 5, 5);
+        matrix.add(stop5);
+        assertEquals(1, matrix.ordinalOf(stop5));
+    }
+
+    @Test
+    public void moveBetweenMatrices() {
+        RoutingMatrix other = new RoutingMatrix();
+        other.add(stop1);
+
+        assertFalse(matrix.contains(stop1));
+        assertTrue(other.contains(stop1));
+        assertEquals(2, stop1.getRoutingTable().costTo(stop2));
+        assertEquals(stop1, stop0.getRoutingTable().nextStop(stop2));
+    }
+
+    @Test
+    public void offHeapGrows() {
+        RoutingMatrix offHeap = RoutingMatrix.offHeap(1);
+        matrix.transferTo(offHeap);
+
+        assertEquals(0, matrix.size());
+        assertEquals(3, offHeap.size());
+        assertEquals(3, stop0.getRoutingTable().costTo(stop2));
+        assertEquals(stop1, stop2.getRoutingTable().nextStop(stop0));
+
+        stop2.addNeighbouringStop(stop3);
+        stop3.addNeighbouringStop(stop2);
+        offHeap.add(stop3);
+        assertEquals(4, offHeap.size());
+        assertEquals(6, stop3.getRoutingTable().costTo(stop0));
+        assertEquals(stop2, stop3.getRoutingTable().nextStop(stop0));
+        assertEquals(6, stop0.getRoutingTable().costTo(stop3));
+        assertEquals(4, stop1.getRoutingTable().getCosts().size());
+    }
+
+    @Test
+    public void heapMovesOffHeap() {
+        // heap cells which only fit three stops
+        RoutingCells cells = new HeapRoutingCells(3) {
+            @Override
+            public int maxCapacity() {
+                return 3;
+            }
+        };
+        RoutingMatrix heap = new RoutingMatrix(cells, 3);
+        matrix.transferTo(heap);
+        assertEquals(3, stop0.getRoutingTable().costTo(stop2));
+
+        stop2.addNeighbouringStop(stop3);
+        stop3.addNeighbouringStop(stop2);
+        heap.add(stop3);
+        assertEquals(4, heap.size());
+        assertEquals(3, heap.ordinalOf(stop3));
+        assertEquals(3, stop0.getRoutingTable().costTo(stop2));
+        assertEquals(stop1, stop2.getRoutingTable().nextStop(stop0));
+        assertEquals(6, stop3.getRoutingTable().costTo(stop0));
+        assertEquals(stop2, stop3.getRoutingTable().nextStop(stop0));
+        assertEquals(4, stop1.getRoutingTable().getCosts().size());
+    }
+
+    @Test
+    public void mappedReopen() throws Exception {
+        Path file = folder.getRoot().toPath().resolve("routing.bin");
+        RoutingMatrix mapped = RoutingMatrix.mapped(file, 2);
+        matrix.transferTo(mapped);
+        mapped.flush();
+
+        List<Stop> copies = Arrays.asList(new Stop("stop0", 0, 0),
+                new Stop("stop1", 1, 0), new Stop("stop2", 3, 0));
+        RoutingMatrix reopened = RoutingMatrix.open(file, copies);
+
+        assertEquals(3, reopened.size());
+        assertEquals(3, copies.get(0).getRoutingTable().costTo(copies.get(2)));
+        assertEquals(copies.get(1),
+                copies.get(0).getRoutingTable().nextStop(copies.get(2)));
+        assertEquals(copies.get(1),
+                copies.get(2).getRoutingTable().nextStop(copies.get(0)));
+        assertEquals(3, copies.get(2).getRoutingTable().getCosts().size());
+    }
+
+    @Test
+    public void mappedReopenAfterRemove() throws Exception {
+        Path file = folder.getRoot().toPath().resolve("routing.bin");
+        RoutingMatrix mapped = RoutingMatrix.mapped(file, 4);
+        matrix.transferTo(mapped);
+        mapped.remove(stop2);
+        mapped.flush();
+
+        List<Stop> copies = Arrays.asList(new Stop("stop0", 0, 0),
+                new Stop("stop1", 1, 0), null);
+        RoutingMatrix reopened = RoutingMatrix.open(file, copies);
+
+        assertEquals(2, reopened.size());
+        assertEquals(3, reopened.ordinalBound());
+        assertNull(reopened.getStop(2));
+        assertEquals(1, copies.get(0).getRoutingTable().costTo(copies.get(1)));
+        assertEquals(2, copies.get(0).getRoutingTable().getCosts().size());
+
+        // the freed ordinal is reused once it has been checked
+        reopened.remove(copies.get(1));
+        reopened.add(new Stop("stop3", 3, 3));
+        assertEquals(3, reopened.ordinalBound());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void mappedReopenWrongStops() throws Exception {
+        Path file = folder.getRoot().toPath().resolve("routing.bin");
+        RoutingMatrix mapped = RoutingMatrix.mapped(file, 4);
+        matrix.transferTo(mapped);
+        mapped.flush();
+
+        RoutingMatrix.open(file, Arrays.asList(stop3));
+    }
+
+    @Test
+    public void saveAndLoad() throws Exception {
+        Path file = folder.getRoot().toPath().resolve("network.routing");
+        matrix.save(file, Arrays.asList(stop2, stop0, stop1), 2015L);
+        byte[] saved = Files.readAllBytes(file);
+
+        List<Stop> copies = Arrays.asList(new Stop("stop2", 3, 0),
+                new Stop("stop0", 0, 0), new Stop("stop1", 1, 0));
+        RoutingMatrix loaded = RoutingMatrix.load(file, copies, 2015L);
+
+        assertEquals(3, loaded.size());
+        assertEquals(0, loaded.ordinalOf(copies.get(0)));
+        assertEquals(3, copies.get(1).getRoutingTable().costTo(copies.get(0)));
+        assertEquals(copies.get(2),
+                copies.get(0).getRoutingTable().nextStop(copies.get(1)));
+
+        // changes are kept in memory, and the loaded matrix can still grow
+        Stop stop4 = new Stop("stop4", 3, 4);
+        copies.get(0).addNeighbouringStop(stop4);
+        stop4.addNeighbouringStop(copies.get(0));
+        loaded.add(stop4);
+        assertEquals(4, loaded.size());
+        assertEquals(7, stop4.getRoutingTable().costTo(copies.get(1)));
+        assertEquals(4, copies.get(0).getRoutingTable().costTo(stop4));
+        loaded.flush();
+        assertArrayEquals(saved, Files.readAllBytes(file));
+    }
+
+    @Test
+    public void loadReadOnly() throws Exception {
+        Path file = folder.getRoot().toPath().resolve("network.routing");
+        matrix.save(file, Arrays.asList(stop0, stop1, stop2), 2015L);
+        byte[] saved = Files.readAllBytes(file);
+        assertTrue(file.toFile().setWritable(false, false));
+
+        List<Stop> copies = Arrays.asList(new Stop("stop0", 0, 0),
+                new Stop("stop1", 1, 0), new Stop("stop2", 3, 0));
+        RoutingMatrix loaded = RoutingMatrix.load(file, copies, 2015L);
+        assertEquals(3, copies.get(0).getRoutingTable().costTo(copies.get(2)));
+
+        copies.get(0).getRoutingTable().removeEntry(copies.get(2));
+        assertEquals(Integer.MAX_VALUE,
+                copies.get(0).getRoutingTable().costTo(copies.get(2)));
+        assertEquals(3, loaded.size());
+        assertArrayEquals(saved, Files.readAllBytes(file));
+    }
+
+    @Test
+    public void loadWrongChecksum() throws Exception {
+        Path file = folder.getRoot().toPath().resolve("network.routing");
+        matrix.save(file, Arrays.asList(stop0, stop1, stop2), 2015L);
+
+        List<Stop> copies = Arrays.asList(new Stop("stop0", 0, 0),
+                new Stop("stop1", 1, 0), new Stop("stop2", 3, 0));
+        try {
+            RoutingMatrix.load(file, copies, 2016L);
+            fail();
+        } catch (IOException expected) {
+            assertEquals(1, copies.get(0).getRoutingTable().getCosts().size());
+        }
+        try {
+            RoutingMatrix.load(file, copies.subList(0, 2), 2015L);
+            fail();
+        } catch (IOException expected) {
+            // the number of stops does not match
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void saveStopNotInMatrix() throws Exception {
+        matrix.save(folder.getRoot().toPath().resolve("network.routing"),
+                Arrays.asList(stop0, stop3), 0L);
+    }
+}
@@ -164,6 +164,28 @@ public class RoutingTableTest {
         assertNull(next);
     }
 
+    @Test
+    public void pathTo() {
+        RoutePath path = stop4.getRoutingTable().pathTo(stop3);
+
+        assertEquals("4:stop4|stop0|stop2|stop3", path.toString());
+        assertEquals(stop4, path.getOrigin());
+        assertEquals(stop3, path.getDestination());
+        assertArrayEquals(new int[] {0, 1, 3, 4}, path.getCosts());
+        assertEquals(3, path.costAt(2));
+        assertEquals(stop3.getRoutingTable().costTo(stop4), path.getCost());
+
+        RoutePath here = stop4.getRoutingTable().pathTo(stop4);
+        assertEquals(1, here.length());
+        assertEquals(0, here.getCost());
+    }
+
+    @Test
+    public void pathToNotExistedStop() {
+        assertNull(stop1.getRoutingTable().pathTo(new Stop("stop7", 4, 0)));
+        assertNull(stop1.getRoutingTable().pathTo(null));
+    }
+
     @Test
     public void synchronise() {
         Stop stop7 = new Stop("stop7", 4, 0);
@@ -201,6 +223,18 @@ public class RoutingTableTest {
         assertEquals(2, stop3.getRoutingTable().costTo(stop0));
     }
 
+    @Test
+    public void transferEntriesUsesLinkCost() {
+        Stop stop7 = new Stop("stop7", 4, 0);
+        stop7.addNeighbouringStop(stop3);
+        stop7.setLinkCost(stop3, 10);
+        stop7.getRoutingTable().removeEntry(stop0);
+
+        assertTrue(stop3.getRoutingTable().transferEntries(stop7));
+        assertEquals(13, stop7.getRoutingTable().costTo(stop0));
+        assertEquals(stop3, stop7.getRoutingTable().nextStop(stop0));
+    }
+
     @Test
     public void transgerEntriesHigherCost() {
         stop1.getRoutingTable().addOrUpdateEntry(stop0, 5, stop0);
@@ -218,6 +252,7 @@ public class RoutingTableTest {
         set.addAll(reachable);
 
         assertEquals(7, set.size());
+        assertEquals(7, reachable.size());
         assertTrue(set.contains(stop1));
         assertTrue(set.contains(stop0));
         assertTrue(set.contains(stop2));
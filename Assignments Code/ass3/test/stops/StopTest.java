@@ -93,4 +93,14 @@ public class StopTest {
     @Test
     public void getRoutingTable() {
     }
-}
\ No newline at end of file
+
+    @Test
+    public void getPredecessors() {
+        stop3.addNeighbouringStop(stop4);
+        assertTrue(stop4.getPredecessors().contains(stop3));
+        assertFalse(stop3.getPredecessors().contains(stop4));
+
+        stop3.removeNeighbouringStop(stop4);
+        assertFalse(stop4.getPredecessors().contains(stop3));
+    }
+}
@@ -0,0 +1,93 @@
+package stops;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+
+import static org.junit.Assert.*;
+import static stops.TestNetworks.linkSuspended;
+
+public class StopTraversalTest {
+    Stop stop0, stop1, stop2, stop3, stop4, stop5;
+
+    @Before
+    public void setUp() throws Exception {
+        stop0 = new Stop("stop0", 0, 0);
+        stop1 = new Stop("stop1", 1, 0);
+        stop2 = new Stop("stop2", 2, 0);
+        stop3 = new Stop("stop3", 0, 5);
+        stop4 = new Stop("stop4", 9, 9);
+        stop5 = new Stop("stop5", 9, 8);
+
+        // stop0 - stop1 - stop2 - stop3 - stop0, and stop4 - stop5
+        linkSuspended(stop0, stop1);
+        linkSuspended(stop1, stop2);
+        linkSuspended(stop2, stop3);
+        linkSuspended(stop3, stop0);
+        linkSuspended(stop4, stop5);
+    }
+
+    @Test
+    public void reachableFrom() {
+        List<Stop> reachable = StopTraversal.reachableFrom(stop1);
+
+        assertEquals(4, reachable.size());
+        assertSame(stop1, reachable.get(0));
+        assertEquals(new HashSet<>(Arrays.asList(stop0, stop1, stop2, stop3)),
+                new HashSet<>(reachable));
+        assertTrue(StopTraversal.reachableFrom(null).isEmpty());
+    }
+
+    @Test
+    public void reachableFromMatrix() {
+        RoutingMatrix matrix = new RoutingMatrix();
+        matrix.addAll(Arrays.asList(stop0, stop1, stop2));
+        List<Stop> reachable = StopTraversal.reachableFrom(stop2);
+
+        // stop3 is reachable, but is not in the matrix
+        assertEquals(4, reachable.size());
+        assertSame(stop2, reachable.get(0));
+        assertTrue(reachable.contains(stop3));
+        assertEquals(Arrays.asList(stop5, stop4),
+                StopTraversal.reachableFrom(stop5));
+    }
+
+    @Test
+    public void components() {
+        StopTraversal traversal = new StopTraversal(new StopGraph(
+                Arrays.asList(stop0, stop4)));
+
+        assertEquals(2, traversal.getComponentCount());
+        assertEquals(traversal.componentOf(stop0),
+                traversal.componentOf(stop2));
+        assertNotEquals(traversal.componentOf(stop0),
+                traversal.componentOf(stop5));
+        assertEquals(-1, traversal.componentOf(new Stop("stop6", 0, 0)));
+
+        assertTrue(traversal.isReachable(stop3, stop1));
+        assertTrue(traversal.isReachable(stop4, stop4));
+        assertFalse(traversal.isReachable(stop0, stop4));
+        assertFalse(traversal.isReachable(stop0, null));
+    }
+
+    @Test
+    public void oneWayLinks() {
+        Stop stop6 = new Stop("stop6", 5, 5);
+        Stop stop7 = new Stop("stop7", 6, 5);
+        stop4.addNeighbouringStop(stop6);
+        stop7.addNeighbouringStop(stop6);
+        StopTraversal traversal = new StopTraversal(new StopGraph(
+                Arrays.asList(stop0, stop4, stop7)));
+
+        assertEquals(2, traversal.getComponentCount());
+        assertEquals(traversal.componentOf(stop4),
+                traversal.componentOf(stop7));
+        assertTrue(traversal.isReachable(stop5, stop6));
+        assertTrue(traversal.isReachable(stop7, stop6));
+        assertFalse(traversal.isReachable(stop6, stop5));
+        assertFalse(traversal.isReachable(stop4, stop7));
+    }
+}
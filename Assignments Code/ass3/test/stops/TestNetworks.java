@@ -0,0 +1,152 @@
+package stops;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Builds the networks shared by the routing tests, and checks routing
+ * results against them.
+ */
+public final class TestNetworks {
+    private TestNetworks() {
+    }
+
+    /**
+     * Links the given stops as neighbours in both directions.
+     *
+     * @param a The first stop.
+     * @param b The second stop.
+     */
+    public static void link(Stop a, Stop b) {
+        a.addNeighbouringStop(b);
+        b.addNeighbouringStop(a);
+    }
+
+    /**
+     * Links the given stops as neighbours in both directions without
+     * synchronising any tables, suspending synchronisation of both.
+     *
+     * @param a The first stop.
+     * @param b The second stop.
+     */
+    public static void linkSuspended(Stop a, Stop b) {
+        a.getRoutingTable().suspendSynchronisation();
+        b.getRoutingTable().suspendSynchronisation();
+        link(a, b);
+    }
+
+    /**
+     * Creates stops named s0, s1, ... at random positions in a square.
+     *
+     * @param random The source of the positions.
+     * @param count The number of stops to create.
+     * @param size The width and height of the square.
+     * @param suspended Whether synchronisation of the stops' tables is
+     *                  suspended, so that linking them does not route them.
+     * @return The stops, in order of their names.
+     */
+    public static List<Stop> randomStops(Random random, int count, int size,
+                                         boolean suspended) {
+        List<Stop> stops = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            Stop stop = new Stop("s" + i, random.nextInt(size),
+                    random.nextInt(size));
+            if (suspended) {
+                stop.getRoutingTable().suspendSynchronisation();
+            }
+            stops.add(stop);
+        }
+        return stops;
+    }
+
+    /**
+     * Links random pairs of distinct stops from the given list as
+     * neighbours.
+     *
+     * @param random The source of the pairs.
+     * @param stops The stops to link.
+     * @param links The number of pairs to pick.
+     * @param oneWay One in this many links only goes from the first stop of
+     *               the pair to the second, or no links do if it is zero.
+     */
+    public static void linkRandomly(Random random, List<Stop> stops,
+                                    int links, int oneWay) {
+        for (int i = 0; i < links; i++) {
+            Stop a = stops.get(random.nextInt(stops.size()));
+            Stop b = stops.get(random.nextInt(stops.size()));
+            if (a == b) {
+                continue;
+            }
+            a.addNeighbouringStop(b);
+            if (oneWay == 0 || random.nextInt(oneWay) != 0) {
+                b.addNeighbouringStop(a);
+            }
+        }
+    }
+
+    /**
+     * Creates a copy of the given stops with the same links and link costs,
+     * and builds every routing table of the copy with a
+     * {@link DijkstraRoutingEngine}.
+     *
+     * @param stops The stops to copy.
+     * @return The copies, in the same order as the given stops.
+     */
+    public static List<Stop> rebuiltCopy(List<Stop> stops) {
+        List<Stop> copies = new ArrayList<>();
+        for (Stop stop : stops) {
+            Stop copy = new Stop(stop.getName(), stop.getX(), stop.getY());
+            copy.getRoutingTable().suspendSynchronisation();
+            copies.add(copy);
+        }
+        for (int i = 0; i < stops.size(); i++) {
+            Stop stop = stops.get(i);
+            for (Stop neighbour : stop.getNeighbours()) {
+                Stop copy = copies.get(stops.indexOf(neighbour));
+                copies.get(i).addNeighbouringStop(copy);
+                copies.get(i).setLinkCost(copy, stop.linkCostTo(neighbour));
+            }
+        }
+        new DijkstraRoutingEngine().build(copies);
+        return copies;
+    }
+
+    /**
+     * Checks that the routing tables of the given networks have the same
+     * cost between every pair of stops at the same positions.
+     *
+     * @param expected The stops with the expected routing tables.
+     * @param actual The stops with the routing tables to check.
+     */
+    public static void assertSameCosts(List<Stop> expected,
+                                       List<Stop> actual) {
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            RoutingTable table = expected.get(i).getRoutingTable();
+            RoutingTable other = actual.get(i).getRoutingTable();
+            for (int j = 0; j < expected.size(); j++) {
+                assertEquals(table.costTo(expected.get(j)),
+                        other.costTo(actual.get(j)));
+            }
+        }
+    }
+
+    /**
+     * Checks that each stop on the given path is a neighbour of the stop
+     * before it, and that the links between them add up to the given cost.
+     *
+     * @param cost The expected cost of the path.
+     * @param path The stops on the path, in order.
+     */
+    public static void assertPathCost(int cost, List<Stop> path) {
+        int total = 0;
+        for (int i = 1; i < path.size(); i++) {
+            assertTrue(path.get(i - 1).getNeighbours().contains(path.get(i)));
+            total += path.get(i - 1).linkCostTo(path.get(i));
+        }
+        assertEquals(cost, total);
+    }
+}